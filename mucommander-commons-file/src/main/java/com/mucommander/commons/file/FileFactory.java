@@ -32,9 +32,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.mucommander.commons.file.archive.AbstractArchiveFile;
+import com.mucommander.commons.file.archive.ArchiveFormatMatcher;
 import com.mucommander.commons.file.archive.ArchiveFormatProvider;
 import com.mucommander.commons.file.icon.FileIconProvider;
 import com.mucommander.commons.file.icon.impl.SwingFileIconProvider;
+import com.mucommander.commons.file.metrics.IOMetrics;
+import com.mucommander.commons.file.metrics.MeteredFile;
 import com.mucommander.commons.file.protocol.FileProtocols;
 import com.mucommander.commons.file.protocol.ProtocolProvider;
 import com.mucommander.commons.file.protocol.local.LocalFile;
@@ -105,6 +108,9 @@ public class FileFactory {
     /** Array of registered FileProtocolMapping instances, for quicker access */
     private static ArchiveFormatProvider[] archiveFormatProviders = new ArchiveFormatProvider[0];
 
+    /** Matches filenames against the extensions of the registered archive formats, rebuilt when they change */
+    private static volatile ArchiveFormatMatcher archiveFormatMatcher = new ArchiveFormatMatcher(archiveFormatProviders);
+
     /** Contains a FilePool instance for each registered scheme */
     private static final HashMap<String, FilePool> FILE_POOL_MAP = new HashMap<String, FilePool>();
 
@@ -281,30 +287,28 @@ public class FileFactory {
     }
 
     /**
-     * Updates the <code>ArchiveFormatProvider</code> array to reflect the contents of the Vector.
+     * Updates the <code>ArchiveFormatProvider</code> array and matcher to reflect the contents of the Vector.
      */
-    private static void updateArchiveFormatProviderArray() {
-        archiveFormatProviders = new ArchiveFormatProvider[archiveFormatProvidersV.size()];
-        archiveFormatProvidersV.toArray(archiveFormatProviders);
+    private static synchronized void updateArchiveFormatProviderArray() {
+        ArchiveFormatProvider[] providers = new ArchiveFormatProvider[archiveFormatProvidersV.size()];
+        archiveFormatProvidersV.toArray(providers);
+
+        archiveFormatProviders = providers;
+        archiveFormatMatcher = new ArchiveFormatMatcher(providers);
     }
 
     /**
      * Returns the first <code>ArchiveFormatProvider</code> that matches the specified filename, <code>null</code>
-     * if there is none. Note that if a filename matches the {@link java.io.FilenameFilter} of several registered
-     * providers, the first provider matching the filename will be returned.
+     * if there is none. Note that if a filename matches the extensions (or {@link java.io.FilenameFilter} for providers
+     * that don't declare extensions) of several registered providers, the first provider matching the filename will
+     * be returned.
      *
      * @param filename an archive filename that potentially matches one of the registered <code>ArchiveFormatProvider</code>
      * @return the first <code>ArchiveFormatProvider</code> that matches the specified filename, <code>null</code> if there is none
      */
     public static ArchiveFormatProvider getArchiveFormatProvider(String filename) {
-        if(filename == null)
-            return null;
-
-        for (ArchiveFormatProvider provider : archiveFormatProviders) {
-            if (provider.getFilenameFilter().accept(filename))
-                return provider;
-        }
-        return null;
+        // The matcher walks the filename once against all registered extensions, see ArchiveFormatMatcher
+        return archiveFormatMatcher.getProvider(filename);
     }
 
     /**
@@ -559,7 +563,7 @@ public class FileFactory {
             if(localFileProvider == null)
                 throw new IOException("Unknown file protocol: " + scheme);
 
-            return localFileProvider.getFile(fileURL, instantiationParams);
+            return meter(localFileProvider.getFile(fileURL, instantiationParams));
 
             // Uncomment this line and comment the previous one to simulate a slow filesystem
             //file = new DebugFile(file, 0, 50);
@@ -576,10 +580,17 @@ public class FileFactory {
             if(provider == null)
                 throw new IOException("Unknown file protocol: " + scheme);
 
-            return provider.getFile(fileURL, instantiationParams);
+            return meter(provider.getFile(fileURL, instantiationParams));
         }
     }
 
+    /**
+     * Wraps the given file with a {@link MeteredFile} if I/O metrics are enabled, returns it as is otherwise.
+     */
+    private static AbstractFile meter(AbstractFile file) {
+        return IOMetrics.isEnabled() ? new MeteredFile(file) : file;
+    }
+
     /**
      * Returns a variation of the given filename, appending a pseudo-unique ID to the filename's prefix while keeping
      * the same filename extension.
@@ -752,4 +763,34 @@ public class FileFactory {
     public static void setDefaultAuthenticator(Authenticator authenticator) {
         defaultAuthenticator = authenticator;
     }
+
+    /**
+     * Enables or disables I/O metrics. When enabled, the files created by this factory are wrapped with a
+     * {@link MeteredFile} that records the calls made to their I/O-bound methods with {@link IOMetrics}, per protocol.
+     *
+     * <p>The file instances cached so far are discarded, so that the files that are subsequently requested are
+     * created again, metered or not. Files that are still referenced elsewhere are left as they are, but metered
+     * files stop recording calls as soon as metrics are disabled.</p>
+     *
+     * @param enabled <code>true</code> to enable I/O metrics
+     * @see IOMetrics
+     */
+    public static void setIOMetricsEnabled(boolean enabled) {
+        if(enabled==IOMetrics.isEnabled())
+            return;
+
+        IOMetrics.setEnabled(enabled);
+
+        for(FilePool filePool : FILE_POOL_MAP.values())
+            filePool.clear();
+    }
+
+    /**
+     * Returns <code>true</code> if I/O metrics are enabled, see {@link #setIOMetricsEnabled(boolean)}.
+     *
+     * @return <code>true</code> if I/O metrics are enabled
+     */
+    public static boolean isIOMetricsEnabled() {
+        return IOMetrics.isEnabled();
+    }
 }
@@ -128,11 +128,20 @@ public class FileURL implements Cloneable {
 
     /** Properties, null if none have been set thus far */
     private Hashtable<String, String> properties;
+    /** true if the properties table is shared with other instances and must be copied before being modified */
+    private boolean propertiesShared;
     /** Credentials (login and password parts), null if this URL has none */
     private Credentials credentials;
 
     /** Caches the value returned by #hashCode() for as long as this instance is not modified */
     private int hashCode;
+    /** Caches the value returned by #toString() for as long as this instance is not modified */
+    private String stringRep;
+    /** Caches the path in the form used for path comparisons, see #getComparablePath() */
+    private String comparablePath;
+
+    /** true if paths are compared case-sensitively on the current OS */
+    private final static boolean CASE_SENSITIVE_PATHS = !(OsFamily.getCurrent().equals(OsFamily.WINDOWS) || OsFamily.getCurrent().equals(OsFamily.OS_2));
 
     /** Default handler for schemes that do not have a specific handler */
     private final static SchemeHandler DEFAULT_HANDLER = new DefaultSchemeHandler();
@@ -197,6 +206,49 @@ public class FileURL implements Cloneable {
      */
     private void urlModified() {
         hashCode = 0;
+        stringRep = null;
+        comparablePath = null;
+    }
+
+    /**
+     * Makes this instance the sole owner of its properties table, copying it if it is currently shared with other
+     * instances. This method must be called before modifying the properties table.
+     */
+    private void ensurePropertiesOwned() {
+        if(properties==null)
+            properties = new Hashtable<String, String>();
+        else if(propertiesShared)
+            properties = new Hashtable<String, String>(properties);
+
+        propertiesShared = false;
+    }
+
+    /**
+     * Shares this instance's properties table (if any) with the given URL. The table will be copied by whichever
+     * instance modifies it first.
+     *
+     * @param url the URL to share the properties table with
+     */
+    private void shareProperties(FileURL url) {
+        if(properties!=null) {
+            url.properties = properties;
+            url.propertiesShared = true;
+            propertiesShared = true;
+        }
+    }
+
+    /**
+     * Returns the path of this URL in the form used by {@link #pathEquals(FileURL)} and {@link #hashCode()}: lower-cased
+     * on OSes where paths are case-insensitive, as-is otherwise. The value is cached for as long as this instance is
+     * not modified.
+     *
+     * @return the path of this URL in a form suitable for comparisons
+     */
+    private String getComparablePath() {
+        if(comparablePath==null)
+            comparablePath = CASE_SENSITIVE_PATHS ? path : path.toLowerCase();
+
+        return comparablePath;
     }
 
     /**
@@ -273,6 +325,8 @@ public class FileURL implements Cloneable {
      */
     public void setHandler(SchemeHandler handler) {
         this.handler = handler;
+
+        urlModified();
     }
 
     /**
@@ -613,9 +667,8 @@ public class FileURL implements Cloneable {
                 // Note: Credentials are immutable.
                 parentURL.credentials = credentials;
 
-                // Copy properties to parent (if any)
-                if(properties!=null)
-                    parentURL.properties = new Hashtable<String, String>(properties);
+                // Share properties with parent (if any), they will be copied when first modified
+                shareProperties(parentURL);
 
                 return parentURL;
             }
@@ -624,6 +677,41 @@ public class FileURL implements Cloneable {
         return null;    // URL has no parent
     }
 
+    /**
+     * Returns a new URL designating the child with the given filename of the location designated by this URL.
+     * The child's path is this URL's path, followed by a path separator if it doesn't already end with one, followed
+     * by the given filename. The given filename must not contain any path separator, except for an optional trailing
+     * one.
+     * <p>
+     * The returned FileURL will have the same handler, scheme, host, port, credentials and properties as this one and
+     * no query part. This method is meant to be used by {@link AbstractFile#ls()} implementations: it is cheaper than
+     * cloning this URL and calling {@link #setPath(String)}, as the child's filename needs not be extracted from its
+     * path, and properties are shared with this URL until either of them is modified.
+     * </p>
+     *
+     * @param filename the filename of the child
+     * @return a new URL designating the child with the given filename
+     */
+    public FileURL getChild(String filename) {
+        String separator = getPathSeparator();
+
+        FileURL childURL = new FileURL(handler);
+
+        childURL.scheme = scheme;
+        childURL.host = host;
+        childURL.port = port;
+        childURL.path = path.endsWith(separator)?path+filename:path+separator+filename;
+        childURL.filename = filename.endsWith(separator)?filename.substring(0, filename.length()-separator.length()):filename;
+
+        // Note: Credentials are immutable.
+        childURL.credentials = credentials;
+
+        // Share properties with child (if any), they will be copied when first modified
+        shareProperties(childURL);
+
+        return childURL;
+    }
+
 
     /**
      * Returns the authentication realm corresponding to this URL, i.e. the base location throughout which credentials
@@ -700,9 +788,8 @@ public class FileURL implements Cloneable {
      * @see #getProperty(String)
      */
     public void setProperty(String name, String value) {
-        // Create the property hashtable only when a property is set for the first time
-        if(properties==null)
-            properties = new Hashtable<String, String>();
+        // Create the property hashtable only when a property is set for the first time, copy it if it is shared
+        ensurePropertiesOwned();
 
         if(value==null)
             properties.remove(name);
@@ -910,10 +997,8 @@ public class FileURL implements Cloneable {
      * @return <code>true</code> if the path of this URL and the given URL are equal
      */
     public boolean pathEquals(FileURL url) {
-    	boolean isCaseSensitiveOS = !(OsFamily.getCurrent().equals(OsFamily.WINDOWS) || OsFamily.getCurrent().equals(OsFamily.OS_2));
-    	
-        String path1 = isCaseSensitiveOS ? this.getPath() : this.getPath().toLowerCase();
-        String path2 = isCaseSensitiveOS ? url.getPath() : url.getPath().toLowerCase();
+        String path1 = this.getComparablePath();
+        String path2 = url.getComparablePath();
 
         if(path1.equals(path2))
             return true;
@@ -984,7 +1069,11 @@ public class FileURL implements Cloneable {
      * Returns a String representation of this FileURL, without including the login and password parts it may have.
      */
     public String toString() {
-        return toString(false);
+        // Cache the value for as long as this instance is not modified
+        if(stringRep==null)
+            stringRep = toString(false);
+
+        return stringRep;
     }
 
 
@@ -1007,12 +1096,13 @@ public class FileURL implements Cloneable {
         clonedURL.query = query;
         clonedURL.credentials = credentials;  // Note: Credentials are immutable.
 
-        // Mutable fields
-        if(properties!=null)    // Copy properties (if any)
-            clonedURL.properties = new Hashtable<String, String>(properties);
+        // Mutable fields: properties (if any) are shared and copied when first modified by either instance
+        shareProperties(clonedURL);
 
         // Caches
         clonedURL.hashCode = hashCode;
+        clonedURL.stringRep = stringRep;
+        clonedURL.comparablePath = comparablePath;
 
         return clonedURL;
     }
@@ -1082,7 +1172,7 @@ public class FileURL implements Cloneable {
             String separator = handler.getPathSeparator();
 
             // #equals(Object) is trailing separator insensitive, so the hashCode must be trailing separator invariant
-            int h = PathUtils.getPathHashCode(path, separator);
+            int h = PathUtils.getPathHashCode(getComparablePath(), separator);
 
             h = 31* h + scheme.toLowerCase().hashCode();
             h = 31* h + (port==-1?handler.getStandardPort():port);
@@ -35,6 +35,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Vector;
 import java.util.WeakHashMap;
+import java.util.function.Predicate;
 
 /**
  * <code>AbstractArchiveFile</code> is the superclass of all archive files. It allows archive file to be browsed as if
@@ -409,6 +410,28 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      */
     public abstract ArchiveEntryIterator getEntryIterator() throws IOException, UnsupportedFileOperationException;
 
+    /**
+     * Returns an iterator of {@link ArchiveEntry} that iterates through all the entries of this archive, like
+     * {@link #getEntryIterator()}, for the purpose of reading the entries accepted by the given filter, in the order of
+     * the iterator. The returned iterator must be passed to {@link #getEntryInputStream(ArchiveEntry, ArchiveEntryIterator)}.
+     * <p>
+     * This allows formats that decompress entries sequentially to extract all the accepted entries in a single pass,
+     * ahead of the calls to <code>getEntryInputStream</code>. Accepted entries that are not read are skipped.
+     * The filter may be called when this method is called, before the iterator is returned. This implementation
+     * ignores the filter and returns {@link #getEntryIterator()}.
+     * </p>
+     *
+     * @param filter accepts the entries that will be read
+     * @return an iterator of {@link ArchiveEntry} that iterates through all the entries of this archive
+     * @throws IOException if an error occurred while reading the archive, either because the archive is corrupt or
+     * because of an I/O error
+     * @throws UnsupportedFileOperationException if {@link FileOperation#READ_FILE} operations are not supported by the
+     * underlying file protocol.
+     */
+    public ArchiveEntryIterator getEntryIterator(Predicate<ArchiveEntry> filter) throws IOException, UnsupportedFileOperationException {
+        return getEntryIterator();
+    }
+
     /**
      * Returns an <code>InputStream</code> to read from the given archive entry. The specified {@link ArchiveEntry}
      * instance must be one of the entries that were returned by the {@link ArchiveEntryIterator} returned by
@@ -0,0 +1,196 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Matches filenames against the extensions of a set of {@link ArchiveFormatProvider} instances.
+ * <p>
+ * The extensions returned by {@link ArchiveFormatProvider#getExtensions()} are compiled into a case-insensitive
+ * suffix trie, which allows the provider matching a filename to be found in a single backward pass over the filename,
+ * instead of testing the filename against the {@link ArchiveFormatProvider#getFilenameFilter() filter} of each
+ * provider in turn. Providers that do not declare any extension are matched using their filename filter.
+ * </p>
+ * <p>
+ * Like {@link com.mucommander.commons.file.FileFactory#getArchiveFormatProvider(String)} always did, when a filename
+ * matches several providers (e.g. <code>.gz</code> and <code>.tar.gz</code>), the provider that comes first in the
+ * array passed to the constructor is returned.
+ * </p>
+ * <p>
+ * Instances of this class are immutable and thus thread-safe: a new matcher must be created whenever the set of
+ * providers changes.
+ * </p>
+ *
+ * @see ArchiveFormatProvider
+ */
+public class ArchiveFormatMatcher {
+
+    /** Providers, in order of precedence */
+    private final ArchiveFormatProvider[] providers;
+
+    /** Root of the suffix trie, matches the empty suffix */
+    private final Node root = new Node();
+
+    /** Indexes of the providers that do not declare extensions and must be matched using their filename filter */
+    private final int[] filterProviderIndexes;
+
+    /**
+     * Creates a new matcher for the given providers. In case a filename matches several of them, the first one in
+     * the array is returned by {@link #getProvider(String)}.
+     *
+     * @param providers the providers to match filenames against, in order of precedence
+     */
+    public ArchiveFormatMatcher(ArchiveFormatProvider[] providers) {
+        this.providers = providers.clone();
+
+        List<Integer> filterProviders = new ArrayList<Integer>();
+        for(int i=0; i<providers.length; i++) {
+            List<String> extensions = providers[i].getExtensions();
+            if(extensions==null || extensions.isEmpty()) {
+                filterProviders.add(i);
+                continue;
+            }
+
+            for(String extension : extensions)
+                addExtension(extension, i);
+        }
+
+        filterProviderIndexes = new int[filterProviders.size()];
+        for(int i=0; i<filterProviderIndexes.length; i++)
+            filterProviderIndexes[i] = filterProviders.get(i);
+    }
+
+    /**
+     * Adds the given extension to the trie, associating it with the provider at the given index unless a provider
+     * with a lower index is already associated with it.
+     *
+     * @param extension the extension to add
+     * @param providerIndex index of the provider that declared the extension
+     */
+    private void addExtension(String extension, int providerIndex) {
+        Node node = root;
+        for(int i=extension.length()-1; i>=0; i--)
+            node = node.getOrCreateChild(normalize(extension.charAt(i)));
+
+        if(providerIndex<node.providerIndex)
+            node.providerIndex = providerIndex;
+    }
+
+    /**
+     * Returns the provider matching the given filename, <code>null</code> if there is none.
+     *
+     * @param filename the filename to match
+     * @return the provider matching the given filename, <code>null</code> if there is none
+     */
+    public ArchiveFormatProvider getProvider(String filename) {
+        if(filename==null)
+            return null;
+
+        // Walk the trie from the last character of the filename, remembering the provider with the highest precedence
+        // among the extensions encountered along the way
+        int best = root.providerIndex;
+        Node node = root;
+        for(int i=filename.length()-1; i>=0; i--) {
+            node = node.getChild(normalize(filename.charAt(i)));
+            if(node==null)
+                break;
+
+            if(node.providerIndex<best)
+                best = node.providerIndex;
+        }
+
+        // Providers without extensions only need to be tested if they take precedence over the match found so far
+        for(int index : filterProviderIndexes) {
+            if(index>=best)
+                break;
+
+            if(providers[index].getFilenameFilter().accept(filename))
+                return providers[index];
+        }
+
+        return best==Integer.MAX_VALUE?null:providers[best];
+    }
+
+    /**
+     * Returns <code>true</code> if the given filename matches one of the providers.
+     *
+     * @param filename the filename to match
+     * @return <code>true</code> if the given filename matches one of the providers
+     */
+    public boolean matches(String filename) {
+        return getProvider(filename)!=null;
+    }
+
+    /**
+     * Normalizes the case of the given character, the same way
+     * {@link com.mucommander.commons.util.StringUtils#matchesIgnoreCase(String, String, int)} does.
+     *
+     * @param c the character to normalize
+     * @return the normalized character
+     */
+    private static char normalize(char c) {
+        return Character.isLowerCase(c)?c:Character.toLowerCase(c);
+    }
+
+
+    /**
+     * A node of the suffix trie. Extensions are short and share few characters, so children are kept in small
+     * arrays which are scanned linearly.
+     */
+    private static class Node {
+
+        /** Characters leading to the children of this node */
+        private char[] chars = new char[0];
+
+        /** Children of this node, in the same order as {@link #chars} */
+        private Node[] children = new Node[0];
+
+        /** Index of the provider with the highest precedence whose extension ends at this node */
+        private int providerIndex = Integer.MAX_VALUE;
+
+        private Node getChild(char c) {
+            for(int i=0; i<chars.length; i++)
+                if(chars[i]==c)
+                    return children[i];
+
+            return null;
+        }
+
+        private Node getOrCreateChild(char c) {
+            Node child = getChild(c);
+            if(child==null) {
+                int len = chars.length;
+
+                char[] newChars = new char[len+1];
+                System.arraycopy(chars, 0, newChars, 0, len);
+                newChars[len] = c;
+
+                Node[] newChildren = new Node[len+1];
+                System.arraycopy(children, 0, newChildren, 0, len);
+                newChildren[len] = child = new Node();
+
+                chars = newChars;
+                children = newChildren;
+            }
+
+            return child;
+        }
+    }
+}
@@ -34,4 +34,18 @@ public interface ConnectionHandlerFactory {
      * Creates and returns a {@link ConnectionHandler} instance for the given location.
      */
     ConnectionHandler createConnectionHandler(FileURL location);
+
+    /**
+     * Returns the maximum number of connections that {@link ConnectionPool} may open at the same time to the realm of
+     * the given location, with the same credentials. Each connection can be used by one operation at a time, a data
+     * transfer for instance, so this is also the maximum number of operations that can be performed concurrently.
+     *
+     * <p>This implementation returns {@link ConnectionPool#DEFAULT_MAX_CONNECTIONS_PER_REALM}.</p>
+     *
+     * @param location the location the connections are for
+     * @return the maximum number of simultaneous connections to the realm of the given location
+     */
+    default int getMaxConnections(FileURL location) {
+        return ConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_REALM;
+    }
 }
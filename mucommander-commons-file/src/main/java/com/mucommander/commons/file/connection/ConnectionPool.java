@@ -48,12 +48,13 @@ public class ConnectionPool implements Runnable {
     /** Controls how of often the thread monitor checks connections */
     private final static int MONITOR_SLEEP_PERIOD = 1000;
 
-    /** Maximum number of simultaneous connections per realm/credentials combo */
-    private final static int MAX_CONNECTIONS_PER_REALM = 4;
+    /** Default maximum number of simultaneous connections per realm/credentials combo */
+    public final static int DEFAULT_MAX_CONNECTIONS_PER_REALM = 4;
 
 
     public static ConnectionHandler getConnectionHandler(ConnectionHandlerFactory connectionHandlerFactory, FileURL url, boolean acquireLock) throws InterruptedIOException {
         FileURL realm = url.getRealm();
+        int maxConnections = connectionHandlerFactory.getMaxConnections(url);
 
         while(true) {
             synchronized(connectionHandlers) {      // Ensures that monitor thread is not currently changing the list while we access it
@@ -80,7 +81,7 @@ public class ConnectionPool implements Runnable {
                 		}
                 	}
                     
-                    if(matchingConnHandlers==MAX_CONNECTIONS_PER_REALM) {
+                    if(matchingConnHandlers>=maxConnections) {
                         LOGGER.info("Maximum number of connection per realm reached, waiting for one to be removed or released...");
                         try {
                             // Wait for a ConnectionHandler to be released or removed from the pool
@@ -94,7 +95,7 @@ public class ConnectionPool implements Runnable {
                     }
                 }
 
-                if(matchingConnHandlers==MAX_CONNECTIONS_PER_REALM)
+                if(matchingConnHandlers>=maxConnections)
                     continue;
 
                 // No suitable ConnectionHandler found, create a new one
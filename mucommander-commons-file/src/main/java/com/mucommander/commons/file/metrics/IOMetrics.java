@@ -0,0 +1,223 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.FileFactory;
+
+/**
+ * Records the number of calls, the number of bytes transferred and the latency of file operations, per protocol and
+ * per {@link IOOperation operation}. Calls are recorded by {@link MeteredFile}, which {@link FileFactory} wraps files
+ * with when metrics are {@link FileFactory#setIOMetricsEnabled(boolean) enabled}. Metrics are disabled by default,
+ * unless the {@link #ENABLED_PROPERTY} system property is set to <code>true</code>.
+ *
+ * <p>Once enabled, metrics can also be read and managed with JMX, through the {@link IOMetricsMXBean} registered
+ * under {@link #OBJECT_NAME}.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class IOMetrics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IOMetrics.class);
+
+    /** Name of the system property that enables metrics at startup */
+    public final static String ENABLED_PROPERTY = "mucommander.io_metrics";
+
+    /** Name under which the {@link IOMetricsMXBean} is registered */
+    public final static String OBJECT_NAME = "com.mucommander:type=IOMetrics";
+
+    private final static IOOperation OPERATIONS[] = IOOperation.values();
+
+    /** Metrics of each protocol, indexed by operation */
+    private final static ConcurrentMap<String, OperationMetrics[]> METRICS = new ConcurrentHashMap<String, OperationMetrics[]>();
+
+    private static volatile boolean enabled;
+
+    private static boolean mxBeanRegistered;
+
+    static {
+        if (Boolean.getBoolean(ENABLED_PROPERTY))
+            setEnabled(true);
+    }
+
+    private IOMetrics() {
+    }
+
+    /**
+     * Returns <code>true</code> if metrics are enabled.
+     *
+     * @return <code>true</code> if metrics are enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables metrics. This method does not affect existing files, use
+     * {@link FileFactory#setIOMetricsEnabled(boolean)} to have the files created from now on metered.
+     *
+     * @param enabled <code>true</code> to enable metrics
+     */
+    public static synchronized void setEnabled(boolean enabled) {
+        IOMetrics.enabled = enabled;
+
+        if (enabled && !mxBeanRegistered) {
+            mxBeanRegistered = true;
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBeanImpl(), new ObjectName(OBJECT_NAME));
+            }
+            catch (Exception e) {
+                LOGGER.info("Could not register the I/O metrics MXBean", e);
+            }
+        }
+    }
+
+    /**
+     * Records a call to the given operation that transferred no data.
+     *
+     * @param protocol the protocol of the file the operation was called on
+     * @param operation the operation
+     * @param startNanos the value of <code>System.nanoTime()</code> when the call started
+     * @param failed <code>true</code> if the call threw an exception
+     */
+    public static void record(String protocol, IOOperation operation, long startNanos, boolean failed) {
+        record(protocol, operation, startNanos, 0, failed);
+    }
+
+    /**
+     * Records a call to the given operation. The call is recorded even if metrics have been disabled in the meantime.
+     *
+     * @param protocol the protocol of the file the operation was called on
+     * @param operation the operation
+     * @param startNanos the value of <code>System.nanoTime()</code> when the call started
+     * @param bytes the number of bytes read or written by the call
+     * @param failed <code>true</code> if the call threw an exception
+     */
+    public static void record(String protocol, IOOperation operation, long startNanos, long bytes, boolean failed) {
+        long nanos = System.nanoTime() - startNanos;
+
+        OperationMetrics metrics[] = METRICS.get(protocol);
+        if (metrics == null) {
+            metrics = new OperationMetrics[OPERATIONS.length];
+            for (int i = 0; i < metrics.length; i++)
+                metrics[i] = new OperationMetrics();
+
+            OperationMetrics existing[] = METRICS.putIfAbsent(protocol, metrics);
+            if (existing != null)
+                metrics = existing;
+        }
+
+        metrics[operation.ordinal()].record(nanos, bytes, failed);
+    }
+
+    /**
+     * Returns the metrics recorded so far, sorted by protocol and operation. Operations that were never called are
+     * omitted.
+     *
+     * @return the metrics recorded so far
+     */
+    public static List<IOMetricsEntry> getSnapshot() {
+        List<IOMetricsEntry> entries = new ArrayList<IOMetricsEntry>();
+        for (Map.Entry<String, OperationMetrics[]> protocolMetrics : new TreeMap<String, OperationMetrics[]>(METRICS).entrySet()) {
+            for (IOOperation operation : OPERATIONS) {
+                OperationMetrics metrics = protocolMetrics.getValue()[operation.ordinal()];
+                if (metrics.histogram.getCount() > 0)
+                    entries.add(new IOMetricsEntry(protocolMetrics.getKey(), operation, metrics.errors.sum(), metrics.bytes.sum(), metrics.histogram));
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Discards the metrics recorded so far.
+     */
+    public static void reset() {
+        for (OperationMetrics metrics[] : METRICS.values()) {
+            for (OperationMetrics operationMetrics : metrics)
+                operationMetrics.reset();
+        }
+    }
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * Metrics of an operation of a protocol.
+     */
+    private static class OperationMetrics {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        private void record(long nanos, long nbBytes, boolean failed) {
+            histogram.record(nanos);
+            if (nbBytes > 0)
+                bytes.add(nbBytes);
+            if (failed)
+                errors.increment();
+        }
+
+        private void reset() {
+            histogram.reset();
+            errors.reset();
+            bytes.reset();
+        }
+    }
+
+    /**
+     * Exposes metrics to JMX.
+     */
+    private static class MXBeanImpl implements IOMetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return IOMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            FileFactory.setIOMetricsEnabled(enabled);
+        }
+
+        @Override
+        public List<IOMetricsEntry> getMetrics() {
+            return getSnapshot();
+        }
+
+        @Override
+        public void reset() {
+            IOMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.metrics;
+
+/**
+ * The metrics recorded by {@link IOMetrics} for an operation of a protocol, at a given time. Latencies are expressed
+ * in microseconds, percentiles being estimated by {@link LatencyHistogram#getPercentile(double)}.
+ */
+public class IOMetricsEntry {
+
+    private final String protocol;
+    private final IOOperation operation;
+    private final long count;
+    private final long errors;
+    private final long bytes;
+    private final long meanMicros;
+    private final long medianMicros;
+    private final long percentile90Micros;
+    private final long percentile99Micros;
+    private final long maxMicros;
+
+    IOMetricsEntry(String protocol, IOOperation operation, long errors, long bytes, LatencyHistogram histogram) {
+        this.protocol = protocol;
+        this.operation = operation;
+        this.count = histogram.getCount();
+        this.errors = errors;
+        this.bytes = bytes;
+        this.meanMicros = count == 0 ? 0 : histogram.getTotalNanos() / count / 1000;
+        this.medianMicros = histogram.getPercentile(50);
+        this.percentile90Micros = histogram.getPercentile(90);
+        this.percentile99Micros = histogram.getPercentile(99);
+        this.maxMicros = histogram.getMaxNanos() / 1000;
+    }
+
+    /**
+     * Returns the protocol the operation was performed on.
+     *
+     * @return the protocol the operation was performed on
+     */
+    public String getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * Returns the operation.
+     *
+     * @return the operation
+     */
+    public IOOperation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Returns the number of calls, including failed ones.
+     *
+     * @return the number of calls
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of calls that threw an exception.
+     *
+     * @return the number of calls that threw an exception
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the number of bytes read or written, <code>0</code> for the operations that transfer no data.
+     *
+     * @return the number of bytes read or written
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the mean latency of the calls.
+     *
+     * @return the mean latency, in microseconds
+     */
+    public long getMeanMicros() {
+        return meanMicros;
+    }
+
+    /**
+     * Returns the median latency of the calls.
+     *
+     * @return the median latency, in microseconds
+     */
+    public long getMedianMicros() {
+        return medianMicros;
+    }
+
+    /**
+     * Returns the 90th percentile of the latency of the calls.
+     *
+     * @return the 90th percentile of the latency, in microseconds
+     */
+    public long getPercentile90Micros() {
+        return percentile90Micros;
+    }
+
+    /**
+     * Returns the 99th percentile of the latency of the calls.
+     *
+     * @return the 99th percentile of the latency, in microseconds
+     */
+    public long getPercentile99Micros() {
+        return percentile99Micros;
+    }
+
+    /**
+     * Returns the highest latency of the calls.
+     *
+     * @return the highest latency, in microseconds
+     */
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return protocol+" "+operation+": count="+count+" errors="+errors+" bytes="+bytes
+                +" mean="+meanMicros+"us p50="+medianMicros+"us p90="+percentile90Micros+"us p99="+percentile99Micros+"us max="+maxMicros+"us";
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.metrics;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link IOMetrics}, registered with the platform MBean server under
+ * {@link IOMetrics#OBJECT_NAME} once metrics have been enabled.
+ */
+public interface IOMetricsMXBean {
+
+    /**
+     * Returns <code>true</code> if the files created from now on are metered.
+     *
+     * @return <code>true</code> if metrics are enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Enables or disables metrics, see {@link com.mucommander.commons.file.FileFactory#setIOMetricsEnabled(boolean)}.
+     *
+     * @param enabled <code>true</code> to enable metrics
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Returns the metrics recorded so far, per protocol and operation.
+     *
+     * @return the metrics recorded so far
+     */
+    List<IOMetricsEntry> getMetrics();
+
+    /**
+     * Discards the metrics recorded so far.
+     */
+    void reset();
+}
@@ -0,0 +1,52 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.metrics;
+
+/**
+ * Enumerates the file operations whose calls are recorded by {@link IOMetrics}.
+ *
+ * @see MeteredFile
+ */
+public enum IOOperation {
+
+    /** Listing of a directory's children */
+    LIST,
+    /** Retrieval of a file's attributes: existence, type, size or date */
+    STAT,
+    /** Opening of a file for reading */
+    OPEN_READ,
+    /** Opening of a file for writing */
+    OPEN_WRITE,
+    /** Read call on a stream opened by {@link #OPEN_READ} */
+    READ,
+    /** Write call on a stream opened by {@link #OPEN_WRITE} */
+    WRITE,
+    /** Creation of a directory or an empty file */
+    MKDIR,
+    /** Deletion of a file or directory */
+    DELETE,
+    /** Renaming or moving of a file */
+    RENAME,
+    /** Server-side copy of a file */
+    COPY,
+    /** Change of a file's date or permissions */
+    CHANGE_ATTRIBUTES,
+    /** Retrieval of a volume's free or total space */
+    SPACE
+}
@@ -0,0 +1,151 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies that is cheap to update from several threads at once. Latencies are counted in buckets
+ * whose bounds are powers of two of a microsecond: bucket <code>0</code> holds latencies below a microsecond and
+ * bucket <code>n</code> those in <code>[2^(n-1), 2^n)</code> microseconds. Percentiles are therefore estimated within
+ * a factor of two, which is enough to tell a local call from a network round trip.
+ */
+public class LatencyHistogram {
+
+    /** Number of buckets, the last one holds all the latencies above 2^(NB_BUCKETS-2) microseconds (~ 76 hours) */
+    final static int NB_BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NB_BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records the given latency.
+     *
+     * @param nanos a latency in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+
+        buckets.incrementAndGet(getBucket(TimeUnit.NANOSECONDS.toMicros(nanos)));
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * Returns the bucket holding the given latency.
+     */
+    static int getBucket(long micros) {
+        return Math.min(64 - Long.numberOfLeadingZeros(micros), NB_BUCKETS - 1);
+    }
+
+    /**
+     * Returns the exclusive upper bound of the given bucket, in microseconds.
+     */
+    static long getBucketUpperBound(int bucket) {
+        return 1L << bucket;
+    }
+
+    /**
+     * Returns the number of latencies recorded.
+     *
+     * @return the number of latencies recorded
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < NB_BUCKETS; i++)
+            count += buckets.get(i);
+
+        return count;
+    }
+
+    /**
+     * Returns the sum of the latencies recorded, in nanoseconds.
+     *
+     * @return the sum of the latencies recorded, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Returns the highest latency recorded, in nanoseconds.
+     *
+     * @return the highest latency recorded, in nanoseconds, <code>0</code> if none was recorded
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns the number of latencies recorded in each bucket.
+     *
+     * @return the number of latencies recorded in each bucket
+     */
+    public long[] getBuckets() {
+        long counts[] = new long[NB_BUCKETS];
+        for (int i = 0; i < NB_BUCKETS; i++)
+            counts[i] = buckets.get(i);
+
+        return counts;
+    }
+
+    /**
+     * Returns an estimate of the given percentile of the latencies recorded: the upper bound of the bucket holding it,
+     * or the highest latency recorded if lower, in microseconds.
+     *
+     * @param percentile a percentile, between <code>0</code> and <code>100</code>
+     * @return an estimate of the given percentile in microseconds, <code>0</code> if no latency was recorded
+     */
+    public long getPercentile(double percentile) {
+        long counts[] = getBuckets();
+        long count = 0;
+        for (long bucketCount : counts)
+            count += bucketCount;
+
+        if (count == 0)
+            return 0;
+
+        long maxMicros = TimeUnit.NANOSECONDS.toMicros(getMaxNanos());
+
+        // Rank of the value, starting at 1
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        for (int i = 0; i < NB_BUCKETS - 1; i++) {
+            rank -= counts[i];
+            if (rank <= 0)
+                return Math.min(getBucketUpperBound(i), maxMicros);
+        }
+
+        return maxMicros;
+    }
+
+    /**
+     * Discards all the latencies recorded so far.
+     */
+    public void reset() {
+        for (int i = 0; i < NB_BUCKETS; i++)
+            buckets.set(i, 0);
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+}
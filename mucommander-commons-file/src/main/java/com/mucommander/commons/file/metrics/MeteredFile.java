@@ -0,0 +1,603 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.metrics;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.PermissionAccess;
+import com.mucommander.commons.file.PermissionType;
+import com.mucommander.commons.file.ProxyFile;
+import com.mucommander.commons.file.UnsupportedFileOperationException;
+import com.mucommander.commons.file.filter.FileFilter;
+import com.mucommander.commons.file.filter.FilenameFilter;
+import com.mucommander.commons.io.FileTransferException;
+import com.mucommander.commons.io.FilterRandomAccessInputStream;
+import com.mucommander.commons.io.FilteredRandomOutputStream;
+import com.mucommander.commons.io.RandomAccessInputStream;
+import com.mucommander.commons.io.RandomAccessOutputStream;
+
+/**
+ * MeteredFile is a {@link ProxyFile} that records the calls made to the I/O-bound methods of the proxied file with
+ * {@link IOMetrics}, under the protocol of the file. The streams it returns are wrapped so that each read and write
+ * call, and the number of bytes it transfers, is recorded as well.
+ *
+ * <p>{@link IOMetrics#isEnabled()} is checked on each call, so that a metered file costs next to nothing once metrics
+ * have been disabled. Files are wrapped by {@link com.mucommander.commons.file.FileFactory} when metrics are enabled,
+ * this class need not be instantiated directly.</p>
+ *
+ * <p>As with any other proxy, code that needs the file of a given protocol, such as a {@link
+ * com.mucommander.commons.file.protocol.local.LocalFile}, must look it up with {@link #getAncestor(Class)} or
+ * {@link #getTopAncestor()} rather than checking the type of the file itself.</p>
+ *
+ * @see IOMetrics
+ */
+public class MeteredFile extends ProxyFile {
+
+    /** Start time of the calls that are not recorded */
+    private final static long NOT_METERED = Long.MIN_VALUE;
+
+    /** Protocol the calls are recorded under */
+    private final String protocol;
+
+    /**
+     * Creates a MeteredFile that records the calls made to the given file.
+     *
+     * @param file the file to meter
+     */
+    public MeteredFile(AbstractFile file) {
+        super(file);
+
+        this.protocol = file.getURL().getScheme().toLowerCase();
+    }
+
+    /**
+     * Returns the start time of a call, {@link #NOT_METERED} if metrics are disabled.
+     */
+    private static long startCall() {
+        return IOMetrics.isEnabled() ? System.nanoTime() : NOT_METERED;
+    }
+
+    /**
+     * Records a call that started at the given time, if it is metered.
+     */
+    private void endCall(IOOperation operation, long start, boolean failed) {
+        if (start != NOT_METERED)
+            IOMetrics.record(protocol, operation, start, failed);
+    }
+
+    /**
+     * Returns the file to pass to the proxied file's methods, which expect files of their own kind.
+     */
+    private static AbstractFile unwrap(AbstractFile file) {
+        return file instanceof MeteredFile ? ((MeteredFile) file).getProxiedFile() : file;
+    }
+
+
+    ///////////////////////////////////
+    // Overridden methods (stat-like) //
+    ///////////////////////////////////
+
+    @Override
+    public long getDate() {
+        long start = startCall();
+        long date = file.getDate();
+        endCall(IOOperation.STAT, start, false);
+
+        return date;
+    }
+
+    @Override
+    public long getSize() {
+        long start = startCall();
+        long size = file.getSize();
+        endCall(IOOperation.STAT, start, false);
+
+        return size;
+    }
+
+    @Override
+    public boolean exists() {
+        long start = startCall();
+        boolean exists = file.exists();
+        endCall(IOOperation.STAT, start, false);
+
+        return exists;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        long start = startCall();
+        boolean isDirectory = file.isDirectory();
+        endCall(IOOperation.STAT, start, false);
+
+        return isDirectory;
+    }
+
+    @Override
+    public boolean isSymlink() {
+        long start = startCall();
+        boolean isSymlink = file.isSymlink();
+        endCall(IOOperation.STAT, start, false);
+
+        return isSymlink;
+    }
+
+
+    ///////////////////////////////////
+    // Overridden methods (I/O-bound) //
+    ///////////////////////////////////
+
+    @Override
+    public AbstractFile[] ls() throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            AbstractFile children[] = file.ls();
+            failed = false;
+            return children;
+        }
+        finally {
+            endCall(IOOperation.LIST, start, failed);
+        }
+    }
+
+    @Override
+    public AbstractFile[] ls(FileFilter filter) throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            AbstractFile children[] = file.ls(filter);
+            failed = false;
+            return children;
+        }
+        finally {
+            endCall(IOOperation.LIST, start, failed);
+        }
+    }
+
+    @Override
+    public AbstractFile[] ls(FilenameFilter filter) throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            AbstractFile children[] = file.ls(filter);
+            failed = false;
+            return children;
+        }
+        finally {
+            endCall(IOOperation.LIST, start, failed);
+        }
+    }
+
+    @Override
+    public void mkdir() throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            file.mkdir();
+            failed = false;
+        }
+        finally {
+            endCall(IOOperation.MKDIR, start, failed);
+        }
+    }
+
+    @Override
+    public void mkfile() throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            file.mkfile();
+            failed = false;
+        }
+        finally {
+            endCall(IOOperation.MKDIR, start, failed);
+        }
+    }
+
+    @Override
+    public void delete() throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            file.delete();
+            failed = false;
+        }
+        finally {
+            endCall(IOOperation.DELETE, start, failed);
+        }
+    }
+
+    @Override
+    public void deleteRecursively() throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            file.deleteRecursively();
+            failed = false;
+        }
+        finally {
+            endCall(IOOperation.DELETE, start, failed);
+        }
+    }
+
+    @Override
+    public void renameTo(AbstractFile destFile) throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            file.renameTo(unwrap(destFile));
+            failed = false;
+        }
+        finally {
+            endCall(IOOperation.RENAME, start, failed);
+        }
+    }
+
+    @Override
+    public void copyRemotelyTo(AbstractFile destFile) throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            file.copyRemotelyTo(unwrap(destFile));
+            failed = false;
+        }
+        finally {
+            endCall(IOOperation.COPY, start, failed);
+        }
+    }
+
+    @Override
+    public void changeDate(long lastModified) throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            file.changeDate(lastModified);
+            failed = false;
+        }
+        finally {
+            endCall(IOOperation.CHANGE_ATTRIBUTES, start, failed);
+        }
+    }
+
+    @Override
+    public void changePermission(PermissionAccess access, PermissionType permission, boolean enabled) throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            file.changePermission(access, permission, enabled);
+            failed = false;
+        }
+        finally {
+            endCall(IOOperation.CHANGE_ATTRIBUTES, start, failed);
+        }
+    }
+
+    @Override
+    public void changePermissions(int permissions) throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            file.changePermissions(permissions);
+            failed = false;
+        }
+        finally {
+            endCall(IOOperation.CHANGE_ATTRIBUTES, start, failed);
+        }
+    }
+
+    @Override
+    public long getFreeSpace() throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            long freeSpace = file.getFreeSpace();
+            failed = false;
+            return freeSpace;
+        }
+        finally {
+            endCall(IOOperation.SPACE, start, failed);
+        }
+    }
+
+    @Override
+    public long getTotalSpace() throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            long totalSpace = file.getTotalSpace();
+            failed = false;
+            return totalSpace;
+        }
+        finally {
+            endCall(IOOperation.SPACE, start, failed);
+        }
+    }
+
+    @Override
+    public void copyStream(InputStream in, boolean append, long length) throws FileTransferException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            file.copyStream(in, append, length);
+            failed = false;
+        }
+        finally {
+            if (start != NOT_METERED)
+                IOMetrics.record(protocol, IOOperation.WRITE, start, failed ? 0 : Math.max(length, 0), failed);
+        }
+    }
+
+
+    /////////////////////////////////
+    // Overridden methods (streams) //
+    /////////////////////////////////
+
+    @Override
+    public InputStream getInputStream() throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            InputStream in = file.getInputStream();
+            failed = false;
+            return start == NOT_METERED ? in : new MeteredInputStream(in);
+        }
+        finally {
+            endCall(IOOperation.OPEN_READ, start, failed);
+        }
+    }
+
+    @Override
+    public InputStream getInputStream(long offset) throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            InputStream in = file.getInputStream(offset);
+            failed = false;
+            return start == NOT_METERED ? in : new MeteredInputStream(in);
+        }
+        finally {
+            endCall(IOOperation.OPEN_READ, start, failed);
+        }
+    }
+
+    @Override
+    public RandomAccessInputStream getRandomAccessInputStream() throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            RandomAccessInputStream rais = file.getRandomAccessInputStream();
+            failed = false;
+            return start == NOT_METERED ? rais : new MeteredRandomAccessInputStream(rais);
+        }
+        finally {
+            endCall(IOOperation.OPEN_READ, start, failed);
+        }
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            OutputStream out = file.getOutputStream();
+            failed = false;
+            return start == NOT_METERED ? out : new MeteredOutputStream(out);
+        }
+        finally {
+            endCall(IOOperation.OPEN_WRITE, start, failed);
+        }
+    }
+
+    @Override
+    public OutputStream getAppendOutputStream() throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            OutputStream out = file.getAppendOutputStream();
+            failed = false;
+            return start == NOT_METERED ? out : new MeteredOutputStream(out);
+        }
+        finally {
+            endCall(IOOperation.OPEN_WRITE, start, failed);
+        }
+    }
+
+    @Override
+    public RandomAccessOutputStream getRandomAccessOutputStream() throws IOException, UnsupportedFileOperationException {
+        long start = startCall();
+        boolean failed = true;
+        try {
+            RandomAccessOutputStream raos = file.getRandomAccessOutputStream();
+            failed = false;
+            return start == NOT_METERED ? raos : new MeteredRandomAccessOutputStream(raos);
+        }
+        finally {
+            endCall(IOOperation.OPEN_WRITE, start, failed);
+        }
+    }
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * Records each read call made on an <code>InputStream</code>.
+     */
+    private class MeteredInputStream extends FilterInputStream {
+
+        private MeteredInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            int b = -1;
+            try {
+                b = in.read();
+                failed = false;
+                return b;
+            }
+            finally {
+                IOMetrics.record(protocol, IOOperation.READ, start, b == -1 ? 0 : 1, failed);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            int nbRead = -1;
+            try {
+                nbRead = in.read(b, off, len);
+                failed = false;
+                return nbRead;
+            }
+            finally {
+                IOMetrics.record(protocol, IOOperation.READ, start, Math.max(nbRead, 0), failed);
+            }
+        }
+    }
+
+    /**
+     * Records each write call made on an <code>OutputStream</code>.
+     */
+    private class MeteredOutputStream extends FilterOutputStream {
+
+        private MeteredOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                out.write(b);
+                failed = false;
+            }
+            finally {
+                IOMetrics.record(protocol, IOOperation.WRITE, start, failed ? 0 : 1, failed);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                // Unlike FilterOutputStream, do not write the bytes one by one
+                out.write(b, off, len);
+                failed = false;
+            }
+            finally {
+                IOMetrics.record(protocol, IOOperation.WRITE, start, failed ? 0 : len, failed);
+            }
+        }
+    }
+
+    /**
+     * Records each read call made on a <code>RandomAccessInputStream</code>.
+     */
+    private class MeteredRandomAccessInputStream extends FilterRandomAccessInputStream {
+
+        private MeteredRandomAccessInputStream(RandomAccessInputStream rais) {
+            super(rais);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            int b = -1;
+            try {
+                b = rais.read();
+                failed = false;
+                return b;
+            }
+            finally {
+                IOMetrics.record(protocol, IOOperation.READ, start, b == -1 ? 0 : 1, failed);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            int nbRead = -1;
+            try {
+                nbRead = rais.read(b, off, len);
+                failed = false;
+                return nbRead;
+            }
+            finally {
+                IOMetrics.record(protocol, IOOperation.READ, start, Math.max(nbRead, 0), failed);
+            }
+        }
+    }
+
+    /**
+     * Records each write call made on a <code>RandomAccessOutputStream</code>.
+     */
+    private class MeteredRandomAccessOutputStream extends FilteredRandomOutputStream {
+
+        private MeteredRandomAccessOutputStream(RandomAccessOutputStream raos) {
+            super(raos);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                raos.write(b);
+                failed = false;
+            }
+            finally {
+                IOMetrics.record(protocol, IOOperation.WRITE, start, failed ? 0 : 1, failed);
+            }
+        }
+
+        @Override
+        public void write(byte b[]) throws IOException {
+            write(b, 0, b.length);
+        }
+
+        @Override
+        public void write(byte b[], int off, int len) throws IOException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                raos.write(b, off, len);
+                failed = false;
+            }
+            finally {
+                IOMetrics.record(protocol, IOOperation.WRITE, start, failed ? 0 : len, failed);
+            }
+        }
+    }
+}
@@ -63,4 +63,7 @@ public interface FileProtocols {
     /** Protocol for files served by a web server using vSphere. */
     String VSPHERE   = "vsphere";
 
+    /** Protocol for the simulated files served in-process by a {@link com.mucommander.commons.file.protocol.sim.SimFileSystem}. */
+    String SIM       = "sim";
+
 }
@@ -31,7 +31,12 @@ import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.attribute.BasicFileAttributeView;
 import java.util.Collections;
 import java.util.StringTokenizer;
 import java.util.Vector;
@@ -60,6 +65,9 @@ import com.mucommander.commons.file.util.Kernel32;
 import com.mucommander.commons.file.util.Kernel32API;
 import com.mucommander.commons.file.util.PathUtils;
 import com.mucommander.commons.io.BufferPool;
+import com.mucommander.commons.io.ChannelTransferSource;
+import com.mucommander.commons.io.FileTransferError;
+import com.mucommander.commons.io.FileTransferException;
 import com.mucommander.commons.io.FilteredOutputStream;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
@@ -126,6 +134,14 @@ public class LocalFile extends ProtocolFile {
     /** The corresponding schema part of these files in {@link FileURL} */
     public final static String SCHEMA = "file";
 
+    /** Maximum number of bytes transferred at once by {@link #copyStream(InputStream, boolean, long)} when the
+     * source stream is a {@link ChannelTransferSource} */
+    private final static long TRANSFER_CHUNK_SIZE = 4*1048576;
+
+    /** Granularity of the runs of zeros that are not written to the destination when copying a file, leaving holes
+     * on filesystems that support sparse files */
+    private final static int SPARSE_BLOCK_SIZE = 4096;
+
     /** Pattern matching Windows-like drives' root, e.g. C:\ */
     final static Pattern DRIVE_ROOT_PATTERN = Pattern.compile("^[a-zA-Z]{1}[:]{1}[\\\\]{1}");
 
@@ -650,6 +666,56 @@ public class LocalFile extends ProtocolFile {
             throw new IOException();
     }
 
+    /**
+     * Overridden to delete the contents of directories relative to an open handle on their parent directory, when
+     * the platform supports it (see {@link SecureDirectoryStream}): each file is removed with a single system call,
+     * without resolving its whole path nor creating an <code>AbstractFile</code> instance for it. Symbolic links are
+     * deleted without being followed.
+     */
+    @Override
+    public void deleteRecursively() throws IOException {
+        if(!isDirectory() || isSymlink()) {
+            delete();
+            return;
+        }
+
+        boolean secure;
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(file.toPath())) {
+            secure = stream instanceof SecureDirectoryStream;
+            if(secure)
+                deleteContents((SecureDirectoryStream<Path>)stream);
+        }
+
+        if(secure)
+            delete();
+        else
+            super.deleteRecursively();
+    }
+
+    /**
+     * Deletes the contents of the given directory recursively, without following symbolic links.
+     *
+     * @param directory the directory whose contents to delete
+     * @throws IOException if a file could not be deleted
+     */
+    private static void deleteContents(SecureDirectoryStream<Path> directory) throws IOException {
+        for(Path entry : directory) {
+            Path name = entry.getFileName();
+            boolean isDirectory = directory.getFileAttributeView(name, BasicFileAttributeView.class, LinkOption.NOFOLLOW_LINKS)
+                    .readAttributes().isDirectory();
+
+            if(isDirectory) {
+                try(SecureDirectoryStream<Path> subdirectory = directory.newDirectoryStream(name, LinkOption.NOFOLLOW_LINKS)) {
+                    deleteContents(subdirectory);
+                }
+                directory.deleteDirectory(name);
+            }
+            else {
+                directory.deleteFile(name);
+            }
+        }
+    }
+
 
     @Override
     public AbstractFile[] ls() throws IOException {
@@ -750,6 +816,94 @@ public class LocalFile extends ProtocolFile {
     // Overridden methods //
     ////////////////////////
 
+    /**
+     * Implementation notes: if the given stream is a {@link ChannelTransferSource} that supports channel transfers,
+     * which is the case of the streams returned by {@link #getInputStream()} even when wrapped by a
+     * {@link com.mucommander.commons.io.CounterInputStream} or a
+     * {@link com.mucommander.commons.io.ThroughputLimitInputStream}, data is transferred by the kernel without going
+     * through the Java heap. The transfer is done in chunks of limited size so that the stream can report progress,
+     * limit the throughput or pause in between. The destination file is preallocated when the length is known and runs
+     * of zeros are skipped rather than written, to preserve holes in sparse files.
+     * Other streams are copied using the default implementation.
+     */
+    @Override
+    public void copyStream(InputStream in, boolean append, long length) throws FileTransferException {
+        if(!(in instanceof ChannelTransferSource) || !((ChannelTransferSource)in).isChannelTransferSupported()) {
+            super.copyStream(in, append, length);
+            return;
+        }
+
+        ChannelTransferSource source = (ChannelTransferSource)in;
+        RandomAccessFile raf;
+        long position;
+
+        try {
+            raf = new RandomAccessFile(file, "rw");
+        }
+        catch(IOException e) {
+            throw new FileTransferException(FileTransferError.OPENING_DESTINATION);
+        }
+
+        FileChannel out = raf.getChannel();
+        try {
+            if(append)
+                position = out.size();
+            else {
+                position = 0;
+                out.truncate(0);
+            }
+
+            out.position(position);
+
+            // Preallocate the file, space that ends up not being written to is trimmed when the transfer is over
+            if(length>0)
+                raf.setLength(position+length);
+        }
+        catch(IOException e) {
+            try { raf.close(); }
+            catch(IOException e2) {}
+
+            throw new FileTransferException(FileTransferError.OPENING_DESTINATION);
+        }
+
+        try {
+            long totalTransferred = 0;
+            long nbTransferred;
+            do {
+                try {
+                    nbTransferred = source.transferTo(out, TRANSFER_CHUNK_SIZE);
+                }
+                catch(FileTransferException e) {
+                    // The source could not be read
+                    throw new FileTransferException(e.getReason(), totalTransferred);
+                }
+                catch(IOException e) {
+                    throw new FileTransferException(FileTransferError.WRITING_DESTINATION, totalTransferred);
+                }
+
+                if(nbTransferred>0) {
+                    position += nbTransferred;
+                    totalTransferred += nbTransferred;
+                }
+            }
+            while(nbTransferred!=-1);
+        }
+        finally {
+            // Adjust the file's length to what has actually been transferred, even if the transfer failed:
+            // preallocated space must not be mistaken for copied data (e.g. when resuming a transfer), and trailing
+            // runs of zeros that were skipped must be accounted for
+            try {
+                if(out.size()!=position)
+                    raf.setLength(position);
+
+                raf.close();
+            }
+            catch(IOException e) {
+                throw new FileTransferException(FileTransferError.CLOSING_DESTINATION);
+            }
+        }
+    }
+
     @Override
     public String getName() {
         // If this file has no parent, return:
@@ -815,11 +969,9 @@ public class LocalFile extends ProtocolFile {
         AbstractFile children[] = new AbstractFile[nbFiles];
 
         for(int i=0; i<nbFiles; i++) {
-            // Clone the FileURL of this file and set the child's path, this is more efficient than creating a new
-            // FileURL instance from scratch.
-            FileURL childURL = (FileURL)fileURL.clone();
-
-			childURL.setPath(absPath+SEPARATOR+files[i].getName());
+            // Derive the child's FileURL from this file's, this is more efficient than creating a new FileURL
+            // instance from scratch.
+            FileURL childURL = fileURL.getChild(files[i].getName());
 
             // Retrieves an AbstractFile (LocalFile or AbstractArchiveFile) instance that's potentially already in
             // the cache, reuse this file as the file's parent, and the already-created java.io.File instance.
@@ -920,7 +1072,7 @@ public class LocalFile extends ProtocolFile {
      * <code>InterruptibleChannel</code> and allow a thread waiting for an I/O to be gracefully interrupted using
      * <code>Thread#interrupt()</code>.
      */
-    public static class LocalRandomAccessInputStream extends RandomAccessInputStream {
+    public static class LocalRandomAccessInputStream extends RandomAccessInputStream implements ChannelTransferSource {
 
         private final FileChannel channel;
         private final ByteBuffer bb;
@@ -978,6 +1130,159 @@ public class LocalFile extends ProtocolFile {
         public void seek(long offset) throws IOException {
             channel.position(offset);
         }
+
+        public boolean isChannelTransferSupported() {
+            return true;
+        }
+
+        /**
+         * Implementation notes: errors reading this file are reported with a {@link FileTransferException} whose
+         * reason is {@link FileTransferError#READING_SOURCE}, so that they can be told apart from errors writing to
+         * the target channel.
+         */
+        public long transferTo(FileChannel target, long count) throws IOException {
+            long position;
+            long remaining;
+            try {
+                position = channel.position();
+                remaining = channel.size()-position;
+            }
+            catch(IOException e) {
+                throw new FileTransferException(FileTransferError.READING_SOURCE);
+            }
+
+            // Files may have more data than their size says, e.g. the files of /proc or /sys that are reported
+            // empty: the end of the file is reached only when no more data can be read
+            if(remaining<=0)
+                return copyBeyondSize(target, count);
+
+            count = Math.min(count, remaining);
+
+            // Skip leading zeros rather than writing them, leaving a hole in the target
+            long nbZeros;
+            try {
+                nbZeros = getLeadingZeros(position, count);
+            }
+            catch(IOException e) {
+                throw new FileTransferException(FileTransferError.READING_SOURCE);
+            }
+
+            if(nbZeros>0) {
+                channel.position(position+nbZeros);
+                target.position(target.position()+nbZeros);
+
+                return nbZeros;
+            }
+
+            long nbTransferred;
+            try {
+                nbTransferred = channel.transferTo(position, count, target);
+            }
+            catch(IOException e) {
+                // Tell whether this file or the target failed
+                if(!isReadable(position))
+                    throw new FileTransferException(FileTransferError.READING_SOURCE);
+
+                throw e;
+            }
+            channel.position(position+nbTransferred);
+
+            return nbTransferred;
+        }
+
+        /**
+         * Copies up to <code>count</code> bytes found past the size of the file to the given channel, through the
+         * buffer of this stream.
+         *
+         * @param target the channel to copy data to
+         * @param count maximum number of bytes to copy
+         * @return the number of bytes that were copied, <code>-1</code> if the end of the file has been reached
+         * @throws IOException if an I/O error occurred
+         */
+        private long copyBeyondSize(FileChannel target, long count) throws IOException {
+            synchronized(bb) {
+                bb.position(0);
+                bb.limit((int)Math.min(bb.capacity(), count));
+
+                int nbRead;
+                try {
+                    nbRead = channel.read(bb);
+                }
+                catch(IOException e) {
+                    throw new FileTransferException(FileTransferError.READING_SOURCE);
+                }
+
+                if(nbRead<=0)
+                    return -1;
+
+                bb.flip();
+                while(bb.hasRemaining())
+                    target.write(bb);
+
+                return nbRead;
+            }
+        }
+
+        /**
+         * Returns <code>true</code> if a byte can be read at the given position of the file, or if the position is
+         * past its end.
+         */
+        private boolean isReadable(long position) {
+            synchronized(bb) {
+                try {
+                    bb.position(0);
+                    bb.limit(1);
+                    channel.read(bb, position);
+
+                    return true;
+                }
+                catch(IOException e) {
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * Returns the number of consecutive zeros found at the given position, rounded down to a multiple of
+         * {@link #SPARSE_BLOCK_SIZE}. Only a small block is read if the data does not start with zeros, so that
+         * regular files can be checked at a negligible cost.
+         *
+         * @param position position in the file to look for zeros at
+         * @param count maximum number of bytes to look at
+         * @return the number of consecutive zeros found at the given position, rounded down to a multiple of
+         * {@link #SPARSE_BLOCK_SIZE}
+         * @throws IOException if an I/O error occurred
+         */
+        private long getLeadingZeros(long position, long count) throws IOException {
+            long nbZeros = 0;
+            int probeSize = SPARSE_BLOCK_SIZE;
+
+            synchronized(bb) {
+                while(count-nbZeros>=SPARSE_BLOCK_SIZE) {
+                    bb.position(0);
+                    bb.limit((int)Math.min(Math.min(probeSize, bb.capacity()), (count-nbZeros)/SPARSE_BLOCK_SIZE*SPARSE_BLOCK_SIZE));
+
+                    int nbRead = channel.read(bb, position+nbZeros);
+                    if(nbRead<=0)
+                        break;
+
+                    int i = 0;
+                    while(i+8<=nbRead && bb.getLong(i)==0)
+                        i += 8;
+                    while(i<nbRead && bb.get(i)==0)
+                        i++;
+
+                    nbZeros += i/SPARSE_BLOCK_SIZE*SPARSE_BLOCK_SIZE;
+                    if(i<nbRead || nbRead%SPARSE_BLOCK_SIZE!=0)
+                        break;
+
+                    // Only zeros so far, look at larger blocks
+                    probeSize = bb.capacity();
+                }
+            }
+
+            return nbZeros;
+        }
     }
 
     /**
@@ -991,11 +1296,19 @@ public class LocalFile extends ProtocolFile {
      * being used.</p>
      *
      */
-    public static class LocalInputStream extends FilterInputStream {
+    public static class LocalInputStream extends FilterInputStream implements ChannelTransferSource {
 
         public LocalInputStream(FileChannel channel) {
             super(new LocalRandomAccessInputStream(channel));
         }
+
+        public boolean isChannelTransferSupported() {
+            return true;
+        }
+
+        public long transferTo(FileChannel target, long count) throws IOException {
+            return ((LocalRandomAccessInputStream)in).transferTo(target, count);
+        }
     }
 
     /**
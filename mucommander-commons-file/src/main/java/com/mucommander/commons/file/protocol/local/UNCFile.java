@@ -482,11 +482,9 @@ public class UNCFile extends ProtocolFile {
         for(int i=0; i<nbFiles; i++) {
             File file = files[i];
 
-            // Clone the FileURL of this file and set the child's path, this is more efficient than creating a new
-            // FileURL instance from scratch.
-            FileURL childURL = (FileURL)fileURL.clone();
-
-            childURL.setPath(addTrailingSeparator(fileURL.getPath())+file.getName());
+            // Derive the child's FileURL from this file's, this is more efficient than creating a new FileURL
+            // instance from scratch.
+            FileURL childURL = fileURL.getChild(file.getName());
 
             // Retrieves an AbstractFile (LocalFile or AbstractArchiveFile) instance that's potentially already in
             // the cache, reuse this file as the file's parent, and the already-created java.io.File instance.
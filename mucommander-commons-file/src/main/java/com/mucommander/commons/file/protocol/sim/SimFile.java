@@ -0,0 +1,481 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.protocol.sim;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.FileOperation;
+import com.mucommander.commons.file.FilePermissions;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.PermissionAccess;
+import com.mucommander.commons.file.PermissionBits;
+import com.mucommander.commons.file.PermissionType;
+import com.mucommander.commons.file.UnsupportedFileOperation;
+import com.mucommander.commons.file.UnsupportedFileOperationException;
+import com.mucommander.commons.file.protocol.FileProtocols;
+import com.mucommander.commons.file.protocol.ProtocolFile;
+import com.mucommander.commons.io.RandomAccessInputStream;
+import com.mucommander.commons.io.RandomAccessOutputStream;
+
+/**
+ * SimFile represents a file of a {@link SimFileSystem}, an in-memory filesystem that simulates the latency and the
+ * bandwidth of a remote server.
+ *
+ * <p>The associated {@link FileURL} scheme is {@link FileProtocols#SIM}. The host part of the URL designates the
+ * filesystem, as {@link SimFileSystem#register(String, SimFileSystem) registered}, a filesystem with the default
+ * settings being created for hosts that have none. The path separator is '/'.</p>
+ *
+ * <p>Like the files of most remote protocols, a SimFile retrieves its attributes when it is created, in a single
+ * request, or from the listing of its parent folder. Its attributes are updated by its own methods only.</p>
+ *
+ * @see SimFileSystem
+ */
+public class SimFile extends ProtocolFile {
+
+    /** Name of the instantiation parameter that holds the node of the file */
+    final static String NODE_PARAM = "node";
+
+    public final static String SEPARATOR = "/";
+
+    /** Filesystem the file belongs to */
+    private final SimFileSystem fileSystem;
+
+    /** Absolute path of the file in the filesystem, without a trailing separator */
+    private final String path;
+
+    /** The file in the filesystem, <code>null</code> if it doesn't exist */
+    private volatile SimFileSystem.Node node;
+
+    /** Caches the parent folder, initially null until getParent() gets called */
+    private AbstractFile parent;
+    /** Indicates whether the parent folder instance has been retrieved and cached or not (parent can be null) */
+    private boolean parentValueSet;
+
+    /**
+     * Creates a new instance of SimFile, looking the file up in its filesystem.
+     */
+    protected SimFile(FileURL fileURL) throws IOException {
+        super(fileURL);
+
+        this.fileSystem = SimFileSystem.getFileSystem(fileURL);
+        this.path = getPath(fileURL);
+        this.node = fileSystem.lookup(path);
+    }
+
+    /**
+     * Creates a new instance of SimFile, using the given node that was retrieved by listing the parent folder.
+     */
+    protected SimFile(FileURL fileURL, SimFileSystem.Node node) {
+        super(fileURL);
+
+        this.fileSystem = SimFileSystem.getFileSystem(fileURL);
+        this.path = getPath(fileURL);
+        this.node = node;
+    }
+
+    /**
+     * Returns the path of the given URL, starting with a separator and without a trailing separator.
+     */
+    private static String getPath(FileURL fileURL) {
+        StringBuilder path = new StringBuilder();
+        for (String name : SimFileSystem.split(fileURL.getPath()))
+            path.append(SEPARATOR).append(name);
+
+        return path.length() == 0 ? SEPARATOR : path.toString();
+    }
+
+    /**
+     * Returns the node of this file, throwing an exception if the file doesn't exist.
+     */
+    private SimFileSystem.Node getExistingNode() throws FileNotFoundException {
+        SimFileSystem.Node node = this.node;
+        if (node == null || node.deleted)
+            throw new FileNotFoundException(path);
+
+        return node;
+    }
+
+
+    /////////////////////////////////////////
+    // AbstractFile methods implementation //
+    /////////////////////////////////////////
+
+    @Override
+    public long getDate() {
+        SimFileSystem.Node node = this.node;
+        return node == null ? 0 : node.date;
+    }
+
+    @Override
+    public void changeDate(long lastModified) throws IOException {
+        fileSystem.changeDate(getExistingNode(), lastModified);
+    }
+
+    @Override
+    public long getSize() {
+        SimFileSystem.Node node = this.node;
+        return node == null || node.directory ? 0 : node.size;
+    }
+
+    @Override
+    public AbstractFile getParent() {
+        // Retrieve parent AbstractFile and cache it
+        if (!parentValueSet) {
+            FileURL parentURL = getURL().getParent();
+            if (parentURL != null) {
+                parent = FileFactory.getFile(parentURL);
+                // Note: parent may be null if it can't be resolved
+            }
+
+            parentValueSet = true;
+        }
+        return parent;
+    }
+
+    @Override
+    public void setParent(AbstractFile parent) {
+        this.parent = parent;
+        this.parentValueSet = true;
+    }
+
+    @Override
+    public boolean exists() {
+        SimFileSystem.Node node = this.node;
+        return node != null && !node.deleted;
+    }
+
+    @Override
+    public FilePermissions getPermissions() {
+        return isDirectory() ? FilePermissions.DEFAULT_DIRECTORY_PERMISSIONS : FilePermissions.DEFAULT_FILE_PERMISSIONS;
+    }
+
+    @Override
+    public PermissionBits getChangeablePermissions() {
+        // no permission can be changed
+        return PermissionBits.EMPTY_PERMISSION_BITS;
+    }
+
+    @Override
+    @UnsupportedFileOperation
+    public void changePermission(PermissionAccess access, PermissionType permission, boolean enabled) throws UnsupportedFileOperationException {
+        throw new UnsupportedFileOperationException(FileOperation.CHANGE_PERMISSION);
+    }
+
+    /**
+     * Always returns <code>null</code>, simulated files have no owner.
+     */
+    @Override
+    public String getOwner() {
+        return null;
+    }
+
+    /**
+     * Always returns <code>false</code>, simulated files have no owner.
+     */
+    @Override
+    public boolean canGetOwner() {
+        return false;
+    }
+
+    /**
+     * Always returns <code>null</code>, simulated files have no group.
+     */
+    @Override
+    public String getGroup() {
+        return null;
+    }
+
+    /**
+     * Always returns <code>false</code>, simulated files have no group.
+     */
+    @Override
+    public boolean canGetGroup() {
+        return false;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        SimFileSystem.Node node = this.node;
+        return node != null && node.directory;
+    }
+
+    @Override
+    public boolean isSymlink() {
+        return false;
+    }
+
+    @Override
+    public boolean isSystem() {
+        return false;
+    }
+
+    @Override
+    public AbstractFile[] ls() throws IOException {
+        Map<String, SimFileSystem.Node> children = fileSystem.list(path);
+
+        String parentPath = path.endsWith(SEPARATOR) ? path : path + SEPARATOR;
+        AbstractFile files[] = new AbstractFile[children.size()];
+        int i = 0;
+        for (Map.Entry<String, SimFileSystem.Node> child : children.entrySet()) {
+            FileURL childURL = (FileURL)fileURL.clone();
+            childURL.setPath(parentPath + child.getKey());
+
+            files[i++] = FileFactory.getFile(childURL, this, Collections.<String, Object>singletonMap(NODE_PARAM, child.getValue()));
+        }
+
+        return files;
+    }
+
+    @Override
+    public void mkdir() throws IOException {
+        node = fileSystem.create(path, true);
+    }
+
+    @Override
+    public void mkfile() throws IOException {
+        node = fileSystem.create(path, false);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return getRandomAccessInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        fileSystem.simulateLatency();
+
+        // Truncate the file right away, as a server would
+        node = fileSystem.write(path, new byte[0], 0);
+
+        return new SimOutputStream(new byte[0]);
+    }
+
+    @Override
+    public OutputStream getAppendOutputStream() throws IOException {
+        fileSystem.simulateLatency();
+
+        SimFileSystem.Node node = fileSystem.getNode(path);
+        if (node == null)
+            node = this.node = fileSystem.write(path, new byte[0], 0);
+        else if (node.directory)
+            throw new IOException("File is a directory: " + path);
+
+        // Start with the current content of the file
+        return new SimOutputStream(SimFileSystem.getContent(node));
+    }
+
+    @Override
+    public RandomAccessInputStream getRandomAccessInputStream() throws IOException {
+        fileSystem.simulateLatency();
+
+        SimFileSystem.Node node = getExistingNode();
+        if (node.directory)
+            throw new IOException("File is a directory: " + path);
+
+        return new SimInputStream(node);
+    }
+
+    /**
+     * Always throws {@link UnsupportedFileOperationException}.
+     */
+    @Override
+    @UnsupportedFileOperation
+    public RandomAccessOutputStream getRandomAccessOutputStream() throws UnsupportedFileOperationException {
+        throw new UnsupportedFileOperationException(FileOperation.RANDOM_WRITE_FILE);
+    }
+
+    @Override
+    public void delete() throws IOException {
+        fileSystem.delete(path);
+        node = null;
+    }
+
+    /**
+     * Implementation notes: renaming only works if the destination file belongs to the same filesystem.
+     */
+    @Override
+    public void renameTo(AbstractFile destFile) throws IOException {
+        checkRenamePrerequisites(destFile, false, false);
+
+        AbstractFile destTopAncestor = destFile.getTopAncestor();
+        if (!(destTopAncestor instanceof SimFile) || ((SimFile)destTopAncestor).fileSystem != fileSystem)
+            throw new IOException();
+
+        SimFile destSimFile = (SimFile)destTopAncestor;
+        destSimFile.node = fileSystem.rename(path, destSimFile.path);
+        node = null;
+    }
+
+    /**
+     * Always throws {@link UnsupportedFileOperationException}.
+     */
+    @Override
+    @UnsupportedFileOperation
+    public void copyRemotelyTo(AbstractFile destFile) throws UnsupportedFileOperationException {
+        throw new UnsupportedFileOperationException(FileOperation.COPY_REMOTELY);
+    }
+
+    @Override
+    public long getFreeSpace() {
+        return fileSystem.getFreeSpace();
+    }
+
+    @Override
+    public long getTotalSpace() {
+        return fileSystem.getTotalSpace();
+    }
+
+    /**
+     * Returns the {@link SimFileSystem} this file belongs to.
+     */
+    @Override
+    public Object getUnderlyingFileObject() {
+        return fileSystem;
+    }
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * Reads a file of the filesystem, no faster than the bandwidth of the filesystem.
+     */
+    private class SimInputStream extends RandomAccessInputStream {
+
+        private final SimFileSystem.Node node;
+        /** Content of the file, <code>null</code> for synthetic files */
+        private final byte data[];
+        private final long length;
+        private long offset;
+
+        private final long startNanos = System.nanoTime();
+        private long nbBytesRead;
+
+        private SimInputStream(SimFileSystem.Node node) {
+            this.node = node;
+            this.data = node.data;
+            this.length = data == null ? node.size : data.length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte b[] = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte b[], int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (offset >= length)
+                return -1;
+
+            int nbBytes = (int) Math.min(len, length - offset);
+            if (data != null) {
+                System.arraycopy(data, (int) offset, b, off, nbBytes);
+            }
+            else {
+                for (int i = 0; i < nbBytes; i++)
+                    b[off + i] = SimFileSystem.getSyntheticByte(node, offset + i);
+            }
+            offset += nbBytes;
+
+            nbBytesRead += nbBytes;
+            fileSystem.simulateTransfer(startNanos, nbBytesRead);
+
+            return nbBytes;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public void seek(long offset) {
+            this.offset = offset;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Writes a file of the filesystem, no faster than the bandwidth of the filesystem. The data is stored in the
+     * filesystem when the stream is closed.
+     */
+    private class SimOutputStream extends OutputStream {
+
+        private byte buffer[];
+        private int count;
+        private boolean closed;
+
+        private final long startNanos = System.nanoTime();
+        private long nbBytesWritten;
+
+        private SimOutputStream(byte content[]) {
+            this.buffer = content.length == 0 ? new byte[8192] : content;
+            this.count = content.length;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte b[], int off, int len) throws IOException {
+            if (closed)
+                throw new IOException("Stream closed");
+
+            if (count + len > buffer.length) {
+                byte newBuffer[] = new byte[Math.max(buffer.length * 2, count + len)];
+                System.arraycopy(buffer, 0, newBuffer, 0, count);
+                buffer = newBuffer;
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+
+            nbBytesWritten += len;
+            fileSystem.simulateTransfer(startNanos, nbBytesWritten);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+            closed = true;
+
+            node = fileSystem.write(path, buffer, count);
+            buffer = null;
+        }
+    }
+}
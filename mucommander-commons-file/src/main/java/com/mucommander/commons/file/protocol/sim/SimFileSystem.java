@@ -0,0 +1,594 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.protocol.sim;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.mucommander.commons.file.AuthenticationType;
+import com.mucommander.commons.file.DefaultSchemeHandler;
+import com.mucommander.commons.file.DefaultSchemeParser;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.protocol.FileProtocols;
+
+/**
+ * SimFileSystem is an in-memory filesystem that serves a synthetic tree of folders and files, and simulates the
+ * latency and bandwidth of a remote server. It is accessed through {@link SimFile}, using URLs of the form
+ * <code>sim://name/path</code> where <code>name</code> designates a filesystem {@link #register(String, SimFileSystem)
+ * registered} under that name.
+ *
+ * <p>The synthetic tree is generated lazily, as folders get listed, and is the same from one run to the next: the root
+ * folder and each folder above the maximum depth contain a given number of folders, and every folder contains a given
+ * number of files whose sizes are spread between a minimum and a maximum. The content of synthetic files is computed
+ * from their offset and is never stored. Files and folders can also be created, written, renamed and deleted, the data
+ * written to files being kept in memory.</p>
+ *
+ * <p>Each request that would require a round trip to a remote server (looking a file up, listing a folder, opening a
+ * file, creating, renaming or deleting a file) waits for the {@link #setLatency(long) latency}, and each stream
+ * transfers data no faster than the {@link #setBandwidth(long) bandwidth}. This makes the performance of the code that
+ * accesses files measurable and repeatable, without any server.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @see SimFile
+ */
+public class SimFileSystem {
+
+    /** Filesystems registered so far, by name */
+    private final static Map<String, SimFileSystem> FILE_SYSTEMS = new ConcurrentHashMap<String, SimFileSystem>();
+
+    /** Default depth of the synthetic tree */
+    public final static int DEFAULT_DEPTH = 3;
+    /** Default number of folders in each synthetic folder above the maximum depth */
+    public final static int DEFAULT_NB_FOLDERS = 10;
+    /** Default number of files in each synthetic folder */
+    public final static int DEFAULT_NB_FILES = 100;
+    /** Default minimum size of synthetic files */
+    public final static long DEFAULT_MIN_FILE_SIZE = 1024;
+    /** Default maximum size of synthetic files */
+    public final static long DEFAULT_MAX_FILE_SIZE = 1024 * 1024;
+
+    /** Total space of a filesystem, in bytes */
+    private final static long TOTAL_SPACE = 1L << 40;
+
+    /** Date of the synthetic files and folders */
+    private final static long BASE_DATE = 1577836800000L;   // 2020-01-01 00:00:00 UTC
+
+    private final int depth;
+    private final int nbFolders;
+    private final int nbFiles;
+    private final long minFileSize;
+    private final long maxFileSize;
+
+    /** Latency of each request, in nanoseconds */
+    private volatile long latencyNanos;
+
+    /** Maximum throughput of each stream, in bytes per second, 0 for no limit */
+    private volatile long bandwidth;
+
+    /** Root folder of the tree */
+    private final Node root;
+
+    /** Number of bytes written to files and not deleted since */
+    private long usedSpace;
+
+    /**
+     * Creates a new filesystem with the default tree shape, no latency and no bandwidth limit.
+     */
+    public SimFileSystem() {
+        this(DEFAULT_DEPTH, DEFAULT_NB_FOLDERS, DEFAULT_NB_FILES, DEFAULT_MIN_FILE_SIZE, DEFAULT_MAX_FILE_SIZE);
+    }
+
+    /**
+     * Creates a new filesystem with the given tree shape, no latency and no bandwidth limit.
+     *
+     * @param depth depth of the synthetic folders, <code>0</code> for files in the root folder only
+     * @param nbFolders number of folders in the root folder and in each folder above the maximum depth
+     * @param nbFiles number of files in each folder
+     * @param minFileSize minimum size of the files, in bytes
+     * @param maxFileSize maximum size of the files, in bytes
+     */
+    public SimFileSystem(int depth, int nbFolders, int nbFiles, long minFileSize, long maxFileSize) {
+        this.depth = depth;
+        this.nbFolders = nbFolders;
+        this.nbFiles = nbFiles;
+        this.minFileSize = minFileSize;
+        this.maxFileSize = Math.max(minFileSize, maxFileSize);
+
+        this.root = new Node(true, 0, BASE_DATE, "/".hashCode());
+    }
+
+    /**
+     * Registers the given filesystem under the given name, replacing the filesystem previously registered under that
+     * name, if any. The filesystem can then be accessed with URLs whose host is the given name. This method also
+     * registers the {@link FileProtocols#SIM} protocol with {@link FileFactory} if it hasn't been already.
+     *
+     * @param name the name of the filesystem, used as the host of its URLs
+     * @param fileSystem the filesystem to register
+     */
+    public static void register(String name, SimFileSystem fileSystem) {
+        registerProtocol();
+        FILE_SYSTEMS.put(name.toLowerCase(), fileSystem);
+    }
+
+    /**
+     * Unregisters the filesystem registered under the given name, if any.
+     *
+     * @param name the name of the filesystem
+     */
+    public static void unregister(String name) {
+        FILE_SYSTEMS.remove(name.toLowerCase());
+    }
+
+    /**
+     * Registers the {@link FileProtocols#SIM} protocol with {@link FileFactory} and {@link FileURL}, if it hasn't been
+     * already.
+     */
+    public static synchronized void registerProtocol() {
+        if (FileFactory.isRegisteredProtocol(FileProtocols.SIM))
+            return;
+
+        FileURL.registerHandler(FileProtocols.SIM, new DefaultSchemeHandler(new DefaultSchemeParser(), -1, "/", AuthenticationType.NO_AUTHENTICATION, null));
+        FileFactory.registerProtocol(FileProtocols.SIM, new SimProtocolProvider());
+    }
+
+    /**
+     * Returns the filesystem designated by the given URL, creating and registering a filesystem with the default
+     * settings if none is registered under the URL's host.
+     *
+     * @param url the URL of a file
+     * @return the filesystem the file belongs to
+     */
+    static SimFileSystem getFileSystem(FileURL url) {
+        String name = url.getHost() == null ? "" : url.getHost().toLowerCase();
+        return FILE_SYSTEMS.computeIfAbsent(name, key -> new SimFileSystem());
+    }
+
+    /**
+     * Sets the time that each request takes, before any data is transferred.
+     *
+     * @param latency the latency of each request, in microseconds
+     */
+    public void setLatency(long latency) {
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latency);
+    }
+
+    /**
+     * Returns the time that each request takes, before any data is transferred.
+     *
+     * @return the latency of each request, in microseconds
+     */
+    public long getLatency() {
+        return TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+    }
+
+    /**
+     * Sets the maximum throughput of each stream. Streams do not share the bandwidth, as with servers that are limited
+     * by the latency of their clients rather than by their own capacity.
+     *
+     * @param bandwidth the maximum throughput of each stream in bytes per second, <code>0</code> for no limit
+     */
+    public void setBandwidth(long bandwidth) {
+        this.bandwidth = Math.max(0, bandwidth);
+    }
+
+    /**
+     * Returns the maximum throughput of each stream.
+     *
+     * @return the maximum throughput of each stream in bytes per second, <code>0</code> for no limit
+     */
+    public long getBandwidth() {
+        return bandwidth;
+    }
+
+    /**
+     * Returns the number of files in the synthetic tree.
+     *
+     * @return the number of files in the synthetic tree
+     */
+    public long getNbSyntheticFiles() {
+        long nbFolderNodes = 0;
+        long nbFoldersAtLevel = 1;
+        for (int level = 0; level <= depth; level++) {
+            nbFolderNodes += nbFoldersAtLevel;
+            nbFoldersAtLevel *= nbFolders;
+        }
+
+        return nbFolderNodes * nbFiles;
+    }
+
+
+    ////////////////////////////////
+    // Requests, called by SimFile //
+    ////////////////////////////////
+
+    /**
+     * Waits for the latency of a request.
+     *
+     * @throws InterruptedIOException if the current thread is interrupted while waiting
+     */
+    void simulateLatency() throws InterruptedIOException {
+        long latency = latencyNanos;
+        if (latency > 0)
+            park(latency);
+    }
+
+    /**
+     * Waits until the given number of bytes can have been transferred since the given time, with the current bandwidth.
+     *
+     * @param startNanos the value of <code>System.nanoTime()</code> when the transfer started
+     * @param nbBytes the number of bytes transferred since then
+     * @throws InterruptedIOException if the current thread is interrupted while waiting
+     */
+    void simulateTransfer(long startNanos, long nbBytes) throws InterruptedIOException {
+        long bandwidth = this.bandwidth;
+        if (bandwidth <= 0)
+            return;
+
+        long delay = startNanos + (long) (nbBytes * 1e9 / bandwidth) - System.nanoTime();
+        if (delay > 0)
+            park(delay);
+    }
+
+    private static void park(long nanos) throws InterruptedIOException {
+        long deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted())
+                throw new InterruptedIOException();
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * Looks the file at the given path up, without simulating latency.
+     *
+     * @return the file, <code>null</code> if it doesn't exist
+     */
+    synchronized Node getNode(String path) {
+        Node node = root;
+        for (String name : split(path)) {
+            if (!node.directory)
+                return null;
+
+            node = getChildren(node).get(name);
+            if (node == null)
+                return null;
+        }
+
+        return node;
+    }
+
+    /**
+     * Looks the file at the given path up.
+     *
+     * @return the file, <code>null</code> if it doesn't exist
+     */
+    Node lookup(String path) throws IOException {
+        simulateLatency();
+        return getNode(path);
+    }
+
+    /**
+     * Lists the given folder.
+     *
+     * @return the children of the folder, by name
+     */
+    Map<String, Node> list(String path) throws IOException {
+        simulateLatency();
+
+        synchronized (this) {
+            Node node = getNode(path);
+            if (node == null || !node.directory)
+                throw new FileNotFoundException(path);
+
+            return new TreeMap<String, Node>(getChildren(node));
+        }
+    }
+
+    /**
+     * Creates a folder or an empty file at the given path, whose parent folder must exist.
+     *
+     * @return the new file
+     */
+    Node create(String path, boolean directory) throws IOException {
+        simulateLatency();
+
+        synchronized (this) {
+            Node parent = getParentNode(path);
+            String name = getName(path);
+            if (getChildren(parent).containsKey(name))
+                throw new IOException("File already exists: " + path);
+
+            Node node = new Node(directory, depth, System.currentTimeMillis(), path.hashCode());
+            node.parent = parent;
+            if (directory)
+                node.children = new ConcurrentHashMap<String, Node>();   // never populated
+            else
+                node.data = new byte[0];
+            parent.children.put(name, node);
+
+            return node;
+        }
+    }
+
+    /**
+     * Replaces the content of the given file with the given data, creating the file if it doesn't exist.
+     *
+     * @return the file
+     */
+    synchronized Node write(String path, byte data[], int length) throws IOException {
+        Node parent = getParentNode(path);
+        String name = getName(path);
+
+        Node node = getChildren(parent).get(name);
+        if (node == null) {
+            node = new Node(false, depth, System.currentTimeMillis(), path.hashCode());
+            node.parent = parent;
+            parent.children.put(name, node);
+        }
+        else if (node.directory) {
+            throw new IOException("File is a directory: " + path);
+        }
+
+        if (node.data != null)
+            usedSpace -= node.data.length;
+
+        byte content[] = new byte[length];
+        System.arraycopy(data, 0, content, 0, length);
+        node.data = content;
+        node.size = length;
+        node.date = System.currentTimeMillis();
+        usedSpace += length;
+
+        return node;
+    }
+
+    /**
+     * Deletes the file or empty folder at the given path.
+     */
+    void delete(String path) throws IOException {
+        simulateLatency();
+
+        synchronized (this) {
+            Node parent = getParentNode(path);
+            String name = getName(path);
+
+            Node node = getChildren(parent).get(name);
+            if (node == null)
+                throw new FileNotFoundException(path);
+            if (node.directory && !getChildren(node).isEmpty())
+                throw new IOException("Directory not empty: " + path);
+
+            parent.children.remove(name);
+            node.deleted = true;
+            if (node.data != null)
+                usedSpace -= node.data.length;
+        }
+    }
+
+    /**
+     * Moves the file at the given path to the other path, replacing the file there if it is not a non-empty folder.
+     *
+     * @return the moved file
+     */
+    Node rename(String path, String destPath) throws IOException {
+        simulateLatency();
+
+        synchronized (this) {
+            Node parent = getParentNode(path);
+            String name = getName(path);
+            Node destParent = getParentNode(destPath);
+            String destName = getName(destPath);
+
+            Node node = getChildren(parent).get(name);
+            if (node == null)
+                throw new FileNotFoundException(path);
+
+            // Moving a folder inside itself would detach it from the tree
+            for (Node ancestor = destParent; ancestor != null; ancestor = ancestor.parent) {
+                if (ancestor == node)
+                    throw new IOException("Cannot move a folder inside itself: " + path);
+            }
+
+            Node existing = getChildren(destParent).get(destName);
+            if (existing == node)
+                return node;
+            if (existing != null) {
+                if (existing.directory && !getChildren(existing).isEmpty())
+                    throw new IOException("Directory not empty: " + destPath);
+
+                existing.deleted = true;
+                if (existing.data != null)
+                    usedSpace -= existing.data.length;
+            }
+
+            parent.children.remove(name);
+            destParent.children.put(destName, node);
+            node.parent = destParent;
+
+            return node;
+        }
+    }
+
+    /**
+     * Changes the date of the file at the given path.
+     */
+    void changeDate(Node node, long date) throws IOException {
+        simulateLatency();
+
+        synchronized (this) {
+            node.date = date;
+        }
+    }
+
+    /**
+     * Returns the number of bytes that can still be written to the filesystem.
+     */
+    synchronized long getFreeSpace() {
+        return TOTAL_SPACE - usedSpace;
+    }
+
+    /**
+     * Returns the size of the filesystem.
+     */
+    long getTotalSpace() {
+        return TOTAL_SPACE;
+    }
+
+    /**
+     * Returns the parent folder of the given path, which must exist.
+     */
+    private Node getParentNode(String path) throws IOException {
+        int pos = path.lastIndexOf('/');
+        Node parent = pos <= 0 ? root : getNode(path.substring(0, pos));
+        if (parent == null || !parent.directory)
+            throw new FileNotFoundException(path.substring(0, Math.max(pos, 1)));
+
+        return parent;
+    }
+
+    /**
+     * Returns the children of the given folder, generating its synthetic children the first time.
+     */
+    private Map<String, Node> getChildren(Node node) {
+        if (node.children == null) {
+            Map<String, Node> children = new ConcurrentHashMap<String, Node>();
+
+            if (node.level < depth) {
+                for (int i = 0; i < nbFolders; i++)
+                    addSyntheticChild(node, children, "folder" + i, true);
+            }
+
+            for (int i = 0; i < nbFiles; i++)
+                addSyntheticChild(node, children, "file" + i + ".dat", false);
+
+            node.children = children;
+        }
+
+        return node.children;
+    }
+
+    private void addSyntheticChild(Node parent, Map<String, Node> children, String name, boolean directory) {
+        int seed = mix(parent.seed * 31 + name.hashCode());
+        Node child = new Node(directory, parent.level + 1, BASE_DATE - (seed & 0x3FFFFFFFL), seed);
+        child.parent = parent;
+        if (!directory)
+            child.size = minFileSize + Long.remainderUnsigned(seed & 0xFFFFFFFFL, maxFileSize - minFileSize + 1);
+
+        children.put(name, child);
+    }
+
+    /**
+     * Returns the byte at the given offset of a synthetic file.
+     */
+    static byte getSyntheticByte(Node node, long offset) {
+        return (byte) (mix((int) offset ^ node.seed) >>> 24);
+    }
+
+    /**
+     * Returns a copy of the content of the given file.
+     */
+    static byte[] getContent(Node node) {
+        byte data[] = node.data;
+        if (data != null)
+            return data.clone();
+
+        byte content[] = new byte[(int) node.size];
+        for (int i = 0; i < content.length; i++)
+            content[i] = getSyntheticByte(node, i);
+
+        return content;
+    }
+
+    /**
+     * Scrambles the bits of the given value.
+     */
+    private static int mix(int value) {
+        value ^= value >>> 16;
+        value *= 0x85EBCA6B;
+        value ^= value >>> 13;
+        value *= 0xC2B2AE35;
+        value ^= value >>> 16;
+        return value;
+    }
+
+    /**
+     * Returns the names of the files in the given path.
+     */
+    static List<String> split(String path) {
+        List<String> names = new ArrayList<String>();
+        for (String name : path.split("/")) {
+            if (!name.isEmpty())
+                names.add(name);
+        }
+
+        return names;
+    }
+
+    /**
+     * Returns the name of the file at the given path, <code>""</code> for the root folder.
+     */
+    static String getName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+
+    /**
+     * A file or folder of the tree. Its fields are accessed while holding the lock of the filesystem, except for
+     * those of synthetic files, which never change.
+     */
+    static class Node {
+        /** True for folders */
+        final boolean directory;
+        /** Level of the folder in the synthetic tree */
+        final int level;
+        /** Seed from which the attributes and content of synthetic files are computed */
+        final int seed;
+        /** Parent folder, <code>null</code> for the root folder */
+        Node parent;
+        /** Date of last modification */
+        volatile long date;
+        /** Size of files */
+        volatile long size;
+        /** Content of the files that were written, <code>null</code> for synthetic files */
+        volatile byte data[];
+        /** Children of folders, by name, <code>null</code> until they are generated */
+        Map<String, Node> children;
+        /** True once the file has been deleted */
+        volatile boolean deleted;
+
+        private Node(boolean directory, int level, long date, int seed) {
+            this.directory = directory;
+            this.level = level;
+            this.date = date;
+            this.seed = seed;
+        }
+    }
+}
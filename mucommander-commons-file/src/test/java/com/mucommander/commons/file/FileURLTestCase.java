@@ -435,6 +435,46 @@ public abstract class FileURLTestCase {
         assert url.getParent() == null;
     }
 
+    /**
+     * Ensures that FileURL#getChild(String) works as expected.
+     *
+     * @throws MalformedURLException should not happen
+     */
+    @Test
+    public void testChild() throws MalformedURLException {
+        FileURL url = getURL("login", "password", "host", 10000, "/path", null);
+        url.setProperty("key", "value");
+        url.setQuery("query");
+
+        FileURL childURL = url.getChild("to");
+
+        // Assert that the child URL is equal to the one we'd get by setting the path of a clone
+        FileURL expectedURL = (FileURL)url.clone();
+        expectedURL.setQuery(null);
+        expectedURL.setPath(getSchemePath("/path/to"));
+        assertEquals(expectedURL, childURL);
+        assert "to".equals(childURL.getFilename());
+        assert expectedURL.toString(true).equals(childURL.toString(true));
+
+        // Assert that the query part is null
+        assert childURL.getQuery() == null;
+
+        // Assert that a trailing separator is not part of the filename
+        assert "to".equals(url.getChild("to"+url.getPathSeparator()).getFilename());
+
+        // Assert that the child URL of a path ending with a separator doesn't contain a double separator
+        FileURL grandChildURL = url.getChild("to"+url.getPathSeparator()).getChild("file");
+        assertPathEquals(getSchemePath("/path/to/file"), grandChildURL);
+
+        // Assert that properties are carried over to the child, and that modifying them doesn't affect the parent
+        assert "value".equals(childURL.getProperty("key"));
+        childURL.setProperty("key", "value2");
+        assert "value2".equals(childURL.getProperty("key"));
+        assert "value".equals(url.getProperty("key"));
+        url.setProperty("key2", "value");
+        assert childURL.getProperty("key2") == null;
+    }
+
 
     /**
      * Parses URLs, some borderline but that we consider nonetheless valid, and ensures that they parse without error
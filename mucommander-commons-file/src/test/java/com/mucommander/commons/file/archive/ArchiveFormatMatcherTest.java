@@ -0,0 +1,136 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.archive;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.filter.ExtensionFilenameFilter;
+import com.mucommander.commons.file.filter.FilenameFilter;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A test case for {@link ArchiveFormatMatcher}.
+ */
+public class ArchiveFormatMatcherTest {
+
+    private final static ArchiveFormatProvider GZIP = new TestProvider(".gz");
+    private final static ArchiveFormatProvider TAR = new TestProvider(".tar", ".tar.gz", ".tgz");
+    private final static ArchiveFormatProvider ZIP = new TestProvider(".zip", ".jar");
+    /** A provider that doesn't declare its extensions */
+    private final static ArchiveFormatProvider ISO = new TestProvider(new ExtensionFilenameFilter(".iso"));
+
+    /**
+     * Asserts that filenames are matched case-insensitively against the extensions of all providers.
+     */
+    @Test
+    public void testMatching() {
+        ArchiveFormatMatcher matcher = new ArchiveFormatMatcher(new ArchiveFormatProvider[]{TAR, GZIP, ZIP, ISO});
+
+        assert matcher.getProvider("archive.zip") == ZIP;
+        assert matcher.getProvider("ARCHIVE.ZIP") == ZIP;
+        assert matcher.getProvider("archive.Jar") == ZIP;
+        assert matcher.getProvider("archive.tgz") == TAR;
+        assert matcher.getProvider("archive.gz") == GZIP;
+        assert matcher.getProvider("archive.iso") == ISO;
+
+        assert matcher.getProvider("archive") == null;
+        assert matcher.getProvider("archive.txt") == null;
+        assert matcher.getProvider("zip") == null;
+        assert matcher.getProvider("") == null;
+        assert matcher.getProvider(null) == null;
+
+        assert matcher.matches(".zip");
+        assert !matcher.matches("archive.zip.txt");
+    }
+
+    /**
+     * Asserts that when several providers match a filename, the first one wins, as it used to be the case when
+     * filename filters were tested in turn.
+     */
+    @Test
+    public void testPrecedence() {
+        ArchiveFormatMatcher matcher = new ArchiveFormatMatcher(new ArchiveFormatProvider[]{TAR, GZIP});
+        assert matcher.getProvider("archive.tar.gz") == TAR;
+
+        matcher = new ArchiveFormatMatcher(new ArchiveFormatProvider[]{GZIP, TAR});
+        assert matcher.getProvider("archive.tar.gz") == GZIP;
+        assert matcher.getProvider("archive.tar") == TAR;
+
+        // Providers matched by filter also honour precedence
+        ArchiveFormatProvider gzipByFilter = new TestProvider(new ExtensionFilenameFilter(".gz"));
+        matcher = new ArchiveFormatMatcher(new ArchiveFormatProvider[]{gzipByFilter, TAR});
+        assert matcher.getProvider("archive.tar.gz") == gzipByFilter;
+
+        matcher = new ArchiveFormatMatcher(new ArchiveFormatProvider[]{TAR, gzipByFilter});
+        assert matcher.getProvider("archive.tar.gz") == TAR;
+        assert matcher.getProvider("archive.gz") == gzipByFilter;
+    }
+
+    /**
+     * Asserts that the results of the matcher are the same as those of the providers' filename filters.
+     */
+    @Test
+    public void testConsistencyWithFilters() {
+        ArchiveFormatProvider[] providers = new ArchiveFormatProvider[]{TAR, GZIP, ZIP};
+        ArchiveFormatMatcher matcher = new ArchiveFormatMatcher(providers);
+
+        for(String filename : new String[]{"a.tar.gz", "a.TGZ", "b.gz", "c.zip", "d.zip.gz", ".tar", "tar", "e.tar.gzip", "f.Tar.Gz"}) {
+            ArchiveFormatProvider expected = null;
+            for(ArchiveFormatProvider provider : providers) {
+                if(provider.getFilenameFilter().accept(filename)) {
+                    expected = provider;
+                    break;
+                }
+            }
+
+            assert matcher.getProvider(filename) == expected : filename;
+        }
+    }
+
+    /**
+     * Provider that only provides extensions and a filename filter.
+     */
+    private static class TestProvider implements ArchiveFormatProvider {
+        private final String[] extensions;
+        private final FilenameFilter filter;
+
+        private TestProvider(String... extensions) {
+            this.extensions = extensions;
+            this.filter = new ExtensionFilenameFilter(extensions);
+        }
+
+        private TestProvider(FilenameFilter filter) {
+            this.extensions = null;
+            this.filter = filter;
+        }
+
+        public AbstractArchiveFile getFile(AbstractFile file) {
+            throw new UnsupportedOperationException();
+        }
+
+        public FilenameFilter getFilenameFilter() {
+            return filter;
+        }
+
+        public List<String> getExtensions() {
+            return extensions==null?null:Arrays.asList(extensions);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+/**
+ * This class is a TestNG test case for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Asserts that latencies are counted in the bucket whose bounds are the powers of two surrounding them.
+     */
+    @Test
+    public void testBuckets() {
+        assert LatencyHistogram.getBucket(0) == 0;
+        assert LatencyHistogram.getBucket(1) == 1;
+        assert LatencyHistogram.getBucket(2) == 2;
+        assert LatencyHistogram.getBucket(3) == 2;
+        assert LatencyHistogram.getBucket(1023) == 10;
+        assert LatencyHistogram.getBucket(1024) == 11;
+        assert LatencyHistogram.getBucket(Long.MAX_VALUE) == LatencyHistogram.NB_BUCKETS - 1;
+
+        for (int bucket = 0; bucket < LatencyHistogram.NB_BUCKETS - 1; bucket++)
+            assert LatencyHistogram.getBucket(LatencyHistogram.getBucketUpperBound(bucket)) == bucket + 1;
+    }
+
+    /**
+     * Records latencies and asserts that the count, total, maximum and percentiles reflect them.
+     */
+    @Test
+    public void testRecord() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assert histogram.getCount() == 0;
+        assert histogram.getPercentile(50) == 0;
+
+        // 90 latencies of 10us and 10 of 5ms
+        for (int i = 0; i < 90; i++)
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(10));
+        for (int i = 0; i < 10; i++)
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+
+        assert histogram.getCount() == 100;
+        assert histogram.getTotalNanos() == TimeUnit.MICROSECONDS.toNanos(90 * 10 + 10 * 5000);
+        assert histogram.getMaxNanos() == TimeUnit.MILLISECONDS.toNanos(5);
+
+        // Percentiles are rounded up to a power of two, but never exceed the maximum
+        assert histogram.getPercentile(50) == 16;
+        assert histogram.getPercentile(90) == 16;
+        assert histogram.getPercentile(91) == 5000;
+        assert histogram.getPercentile(100) == 5000;
+
+        histogram.reset();
+        assert histogram.getCount() == 0;
+        assert histogram.getTotalNanos() == 0;
+        assert histogram.getMaxNanos() == 0;
+    }
+
+    /**
+     * Asserts that negative latencies, which <code>System.nanoTime()</code> may yield on some systems, are counted
+     * as zero.
+     */
+    @Test
+    public void testNegativeLatency() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+
+        assert histogram.getCount() == 1;
+        assert histogram.getBuckets()[0] == 1;
+        assert histogram.getTotalNanos() == 0;
+    }
+}
@@ -23,9 +23,20 @@ import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.file.protocol.local.LocalFile;
 
+import com.mucommander.commons.io.ByteCounter;
+import com.mucommander.commons.io.CounterInputStream;
+import com.mucommander.commons.io.RandomAccessOutputStream;
+import com.mucommander.commons.io.ThroughputLimitInputStream;
+
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
 import java.security.NoSuchAlgorithmException;
 import java.util.regex.Matcher;
 
@@ -140,6 +151,94 @@ public class LocalFileTest extends AbstractFileTest {
             testVolume(volume);
     }
 
+    /**
+     * Asserts that {@link LocalFile#copyStream(InputStream, boolean, long)} transfers the data of a local file through
+     * counting and throttling streams, including runs of zeros which are skipped rather than written, and that
+     * transfers can be resumed.
+     *
+     * @throws IOException should not happen
+     * @throws NoSuchAlgorithmException should not happen
+     */
+    @Test
+    public void testChannelTransfer() throws IOException, NoSuchAlgorithmException {
+        // Random data surrounding runs of zeros of various lengths, including a trailing one
+        Random random = new Random();
+        OutputStream out = tempFile.getOutputStream();
+        try {
+            for(int length : new int[]{100000, -5000000, 4097, -4095, 3, -8192}) {
+                byte[] bytes = new byte[Math.abs(length)];
+                if(length>0)
+                    random.nextBytes(bytes);
+                out.write(bytes);
+            }
+        }
+        finally {
+            out.close();
+        }
+        long length = tempFile.getSize();
+
+        AbstractFile destFile = deleteWhenFinished(getTemporaryFile());
+        ByteCounter counter = new ByteCounter();
+        InputStream in = new ThroughputLimitInputStream(new CounterInputStream(tempFile.getInputStream(), counter));
+        try {
+            destFile.copyStream(in, false, length);
+        }
+        finally {
+            in.close();
+        }
+
+        assert length == counter.getByteCount();
+        assert length == destFile.getSize();
+        assert calculateMd5(tempFile).equals(calculateMd5(destFile));
+
+        // Resume the transfer of a truncated copy
+        RandomAccessOutputStream raos = destFile.getRandomAccessOutputStream();
+        try {
+            raos.setLength(200000);
+        }
+        finally {
+            raos.close();
+        }
+
+        in = tempFile.getInputStream(200000);
+        try {
+            destFile.copyStream(in, true, length-200000);
+        }
+        finally {
+            in.close();
+        }
+
+        assert length == destFile.getSize();
+        assert calculateMd5(tempFile).equals(calculateMd5(destFile));
+    }
+
+    /**
+     * Asserts that {@link LocalFile#copyStream(InputStream, boolean, long)} transfers the data of files that report
+     * a size of zero but have contents, like the files of <code>/proc</code>. This test is skipped on platforms that
+     * do not have such files.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testChannelTransferBeyondSize() throws IOException {
+        AbstractFile procFile = FileFactory.getFile("/proc/version");
+        if(procFile==null || !procFile.exists() || procFile.getSize()!=0)
+            return;
+
+        AbstractFile destFile = deleteWhenFinished(getTemporaryFile());
+        InputStream in = procFile.getInputStream();
+        try {
+            destFile.copyStream(in, false, procFile.getSize());
+        }
+        finally {
+            in.close();
+        }
+
+        byte[] expected = Files.readAllBytes(Paths.get("/proc/version"));
+        assert expected.length > 0;
+        assert Arrays.equals(expected, Files.readAllBytes(Paths.get(destFile.getAbsolutePath())));
+    }
+
     /**
      * Tests the regex pattern
      */
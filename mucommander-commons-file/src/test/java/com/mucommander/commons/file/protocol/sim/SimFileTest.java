@@ -0,0 +1,161 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.protocol.sim;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.AbstractFileTest;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.FileOperation;
+import com.mucommander.commons.io.StreamUtils;
+
+/**
+ * An {@link AbstractFileTest} implementation for {@link SimFile}.
+ */
+@Test
+public class SimFileTest extends AbstractFileTest {
+
+    static {
+        SimFileSystem.register("test", new SimFileSystem(2, 3, 5, 0, 10000));
+    }
+
+    /** Used to create unique temporary files */
+    private static int tempFileCounter;
+
+    /////////////////////////////////////
+    // AbstractFileTest implementation //
+    /////////////////////////////////////
+
+    @Override
+    public AbstractFile getTemporaryFile() throws IOException {
+        return FileFactory.getFile("sim://test/temp"+(tempFileCounter++), true);
+    }
+
+    @Override
+    public FileOperation[] getSupportedOperations() {
+        return new FileOperation[] {
+            FileOperation.READ_FILE,
+            FileOperation.RANDOM_READ_FILE,
+            FileOperation.WRITE_FILE,
+            FileOperation.APPEND_FILE,
+            FileOperation.CREATE_DIRECTORY,
+            FileOperation.LIST_CHILDREN,
+            FileOperation.DELETE,
+            FileOperation.RENAME,
+            FileOperation.CHANGE_DATE,
+            FileOperation.GET_FREE_SPACE,
+            FileOperation.GET_TOTAL_SPACE
+        };
+    }
+
+    ////////////////////////////////////////
+    // Additional SimFile-specific tests  //
+    ////////////////////////////////////////
+
+    /**
+     * Asserts that the synthetic tree has the shape the filesystem was created with.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testSyntheticTree() throws IOException {
+        SimFileSystem.register("tree", new SimFileSystem(2, 3, 5, 100, 200));
+        AbstractFile root = FileFactory.getFile("sim://tree/folder1", true);
+        assert root.exists();
+        assert root.isDirectory();
+
+        AbstractFile children[] = root.ls();
+        assert children.length == 3 + 5;
+
+        int nbFiles = 0;
+        for (AbstractFile child : children) {
+            assert child.exists();
+            if (child.isDirectory()) {
+                // Folders at the maximum depth only contain files
+                assert child.ls().length == 5;
+            }
+            else {
+                nbFiles++;
+                assert child.getSize() >= 100 && child.getSize() <= 200;
+            }
+        }
+        assert nbFiles == 5;
+
+        assert !FileFactory.getFile("sim://tree/folder1/folder1/folder1", true).exists();
+        assert new SimFileSystem(2, 3, 5, 100, 200).getNbSyntheticFiles() == (1 + 3 + 9) * 5;
+    }
+
+    /**
+     * Asserts that the content of synthetic files is the same every time they are read, and can be read at any offset.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testSyntheticContent() throws IOException {
+        AbstractFile file = FileFactory.getFile("sim://test/folder0/file3.dat", true);
+        assert file.exists();
+
+        byte content[] = new byte[(int)file.getSize()];
+        try (InputStream in = file.getInputStream()) {
+            StreamUtils.readFully(in, content);
+            assert in.read() == -1;
+        }
+
+        byte contentAgain[] = new byte[content.length];
+        try (InputStream in = FileFactory.getFile("sim://test/folder0/file3.dat", true).getInputStream()) {
+            StreamUtils.readFully(in, contentAgain);
+        }
+        assert Arrays.equals(content, contentAgain);
+
+        try (InputStream in = file.getInputStream(content.length / 2)) {
+            assert in.read() == (content[content.length / 2] & 0xFF);
+        }
+    }
+
+    /**
+     * Asserts that requests wait for the latency of the filesystem, and that streams do not exceed its bandwidth.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testLatencyAndBandwidth() throws IOException {
+        SimFileSystem fileSystem = new SimFileSystem(0, 0, 1, 100000, 100000);
+        fileSystem.setLatency(TimeUnit.MILLISECONDS.toMicros(50));
+        fileSystem.setBandwidth(1000000);
+        SimFileSystem.register("slow", fileSystem);
+
+        long start = System.nanoTime();
+        AbstractFile folder = FileFactory.getFile("sim://slow/", true);
+        AbstractFile children[] = folder.ls();
+        assert TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 2 * 50;
+
+        // Reading 100 KB at 1 MB/s takes 100 ms, plus the latency of opening the file
+        start = System.nanoTime();
+        try (InputStream in = children[0].getInputStream()) {
+            StreamUtils.readFully(in, new byte[100000]);
+        }
+        assert TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50 + 100;
+    }
+}
@@ -116,7 +116,7 @@ public abstract class BlockRandomInputStream extends RandomAccessInputStream {
 
         checkBuffer();
 
-        int ret = block[blockOff];
+        int ret = block[blockOff] & 0xFF;
 
         blockOff++;
         offset ++;
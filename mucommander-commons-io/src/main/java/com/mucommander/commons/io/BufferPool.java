@@ -20,9 +20,20 @@ package com.mucommander.commons.io;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.util.Vector;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class allows to share and reuse byte buffers to avoid excessive memory allocation and garbage collection.
@@ -45,7 +56,16 @@ import java.util.Vector;
  * </ul>
  * </p>
  *
- * <p>Note: this class is thread safe and thus can safely be used by concurrent threads.</p>
+ * <p>Note: this class is thread safe and thus can safely be used by concurrent threads. It does not use any global
+ * lock: each thread keeps the last few buffers it released in a cache of its own, which is looked up first and which no
+ * other thread competes for. Other buffers are kept in lock-free stacks indexed by buffer class and length.
+ * Buffers held by the cache of a thread that has terminated are handed over to the other threads the next time a
+ * buffer has to be created. All the pooled buffers are also registered in a concurrent set, so that a buffer that
+ * is released twice, be it by the same thread or not, is only pooled once.</p>
+ *
+ * <p>The number of buffers that were reused or created is available through {@link #getReuseCount()},
+ * {@link #getThreadCacheReuseCount()} and {@link #getAllocationCount()}, the number of bytes retained by the pool
+ * through {@link #getPoolSize()}.</p>
  *
  * @author Maxence Bernard, Nicolas Rinaudo
  * @see com.mucommander.commons.io.StreamUtils
@@ -54,23 +74,56 @@ public class BufferPool {
     /** Logger used by this class. */
     private static final Logger LOGGER = LoggerFactory.getLogger(BufferPool.class);
 
-    /** List of BufferContainer instances that wraps available buffers */
-    private static Vector<BufferContainer> bufferContainers = new Vector<BufferContainer>();
-
     /** The initial default buffer size */
     public final static int INITIAL_DEFAULT_BUFFER_SIZE = 65536;
 
     /** Size of buffers returned by get*Buffer methods without a size argument */
-    public static int defaultBufferSize = INITIAL_DEFAULT_BUFFER_SIZE;
+    public static volatile int defaultBufferSize = INITIAL_DEFAULT_BUFFER_SIZE;
 
     /** The initial max pool size */
     public final static long INITIAL_POOL_LIMIT = 10485760;
 
     /** Maximum combined size of all pooled buffers, in bytes */
-    public static long maxPoolSize = INITIAL_POOL_LIMIT;
+    public static volatile long maxPoolSize = INITIAL_POOL_LIMIT;
 
     /** Current combined size of all pooled buffers, in bytes */
-    public static long poolSize;
+    private final static AtomicLong poolSize = new AtomicLong();
+
+    /** Current number of pooled buffers */
+    private final static AtomicInteger bufferCount = new AtomicInteger();
+
+    /** Maximum number of buffers kept in the cache of each thread */
+    private final static int THREAD_CACHE_SIZE = 4;
+
+    /** Pooled buffers that are not in a thread cache, indexed by buffer class and length */
+    private final static ConcurrentHashMap<Class<?>, ConcurrentHashMap<Integer, Deque<PooledBuffer>>> sharedBuffers = new ConcurrentHashMap<Class<?>, ConcurrentHashMap<Integer, Deque<PooledBuffer>>>();
+
+    /** Buffers that currently are in the pool, whether in a thread cache or not, compared by identity */
+    private final static Set<PooledBuffer> pooledBuffers = ConcurrentHashMap.newKeySet();
+
+    /** Caches of all the threads that have used the pool and whose cache has not been reclaimed yet */
+    private final static Queue<ThreadCache> threadCaches = new ConcurrentLinkedQueue<ThreadCache>();
+
+    /** Cache of the current thread */
+    private final static ThreadLocal<ThreadCache> threadCache = ThreadLocal.withInitial(() -> {
+        ThreadCache cache = new ThreadCache(Thread.currentThread());
+        threadCaches.add(cache);
+        return cache;
+    });
+
+    /** Number of buffers that were found in the cache of the requesting thread */
+    private final static LongAdder threadCacheReuseCount = new LongAdder();
+
+    /** Number of buffers that were found in the pool, whether in the cache of the requesting thread or not */
+    private final static LongAdder reuseCount = new LongAdder();
+
+    /** Number of buffers that had to be created because none was available in the pool */
+    private final static LongAdder allocationCount = new LongAdder();
+
+    private final static ByteArrayFactory BYTE_ARRAY_FACTORY = new ByteArrayFactory();
+    private final static CharArrayFactory CHAR_ARRAY_FACTORY = new CharArrayFactory();
+    private final static ByteBufferFactory BYTE_BUFFER_FACTORY = new ByteBufferFactory();
+    private final static CharBufferFactory CHAR_BUFFER_FACTORY = new CharBufferFactory();
 
 
     /**
@@ -79,7 +132,7 @@ public class BufferPool {
      *
      * @return a byte array with a length of {@link #getDefaultBufferSize()}
      */
-    public static synchronized byte[] getByteArray() {
+    public static byte[] getByteArray() {
         return getByteArray(getDefaultBufferSize());
     }
 
@@ -97,8 +150,8 @@ public class BufferPool {
      * @param length length of the byte array
      * @return a byte array of the specified size
      */
-    public static synchronized byte[] getByteArray(int length) {
-        return (byte[])getBuffer(new ByteArrayFactory(), length);
+    public static byte[] getByteArray(int length) {
+        return (byte[])getBuffer(BYTE_ARRAY_FACTORY, length);
     }
 
     /**
@@ -107,7 +160,7 @@ public class BufferPool {
      *
      * @return a char array with a length of {@link #getDefaultBufferSize()}
      */
-    public static synchronized char[] getCharArray() {
+    public static char[] getCharArray() {
         return getCharArray(getDefaultBufferSize());
     }
 
@@ -125,8 +178,8 @@ public class BufferPool {
      * @param length length of the char array
      * @return a char array of the specified length
      */
-    public static synchronized char[] getCharArray(int length) {
-        return (char[])getBuffer(new CharArrayFactory(), length);
+    public static char[] getCharArray(int length) {
+        return (char[])getBuffer(CHAR_ARRAY_FACTORY, length);
     }
 
     /**
@@ -135,7 +188,7 @@ public class BufferPool {
      *
      * @return a ByteBuffer with a capacity equal to {@link #getDefaultBufferSize()}
      */
-    public static synchronized ByteBuffer getByteBuffer() {
+    public static ByteBuffer getByteBuffer() {
         return getByteBuffer(getDefaultBufferSize());
     }
 
@@ -153,8 +206,8 @@ public class BufferPool {
      * @param capacity capacity of the ByteBuffer
      * @return a ByteBuffer with the specified capacity
      */
-    public static synchronized ByteBuffer getByteBuffer(int capacity) {
-        return (ByteBuffer)getBuffer(new ByteBufferFactory(), capacity);
+    public static ByteBuffer getByteBuffer(int capacity) {
+        return (ByteBuffer)getBuffer(BYTE_BUFFER_FACTORY, capacity);
     }
 
 
@@ -164,7 +217,7 @@ public class BufferPool {
      *
      * @return a CharBuffer with a capacity equal to {@link #getDefaultBufferSize()}
      */
-    public static synchronized CharBuffer getCharBuffer() {
+    public static CharBuffer getCharBuffer() {
         return getCharBuffer(getDefaultBufferSize());
     }
 
@@ -182,8 +235,8 @@ public class BufferPool {
      * @param capacity capacity of the CharBuffer
      * @return a CharBuffer with the specified capacity
      */
-    public static synchronized CharBuffer getCharBuffer(int capacity) {
-        return (CharBuffer)getBuffer(new CharBufferFactory(), capacity);
+    public static CharBuffer getCharBuffer(int capacity) {
+        return (CharBuffer)getBuffer(CHAR_BUFFER_FACTORY, capacity);
     }
 
 
@@ -194,7 +247,7 @@ public class BufferPool {
      * @param factory BufferFactory used to identify the target buffer class and create a new buffer (if necessary)
      * @return a buffer with a size equal to {@link #getDefaultBufferSize()}
      */
-    public static synchronized Object getBuffer(BufferFactory factory) {
+    public static Object getBuffer(BufferFactory factory) {
         return getBuffer(factory, getDefaultBufferSize());
     }
 
@@ -211,25 +264,35 @@ public class BufferPool {
      * @param size size of the buffer
      * @return a buffer of the specified size
      */
-    public static synchronized Object getBuffer(BufferFactory factory, int size) {
-        int nbBuffers = bufferContainers.size();
-        BufferContainer bufferContainer;
-        Object buffer;
-
-        // Looks for a buffer container in the pool that matches the specified size and buffer class.
-        for(int i=0; i<nbBuffers; i++) {
-            bufferContainer = bufferContainers.elementAt(i);
-            buffer = bufferContainer.getBuffer();
-
-            // Caution: mind the difference between BufferContainer#getLength() and BufferContainer#getSize()
-            if(bufferContainer.getLength()==size && (factory.matchesBufferClass(buffer.getClass()))) {
-                bufferContainers.removeElementAt(i);
-                poolSize -= bufferContainer.getSize();
-                return buffer;
-            }
+    public static Object getBuffer(BufferFactory factory, int size) {
+        Class<?> bufferClass = factory.getBufferClass();
+
+        // Look for a buffer that matches the specified size and buffer class in the cache of the current thread first,
+        // then in the shared stacks
+        PooledBuffer pooledBuffer = threadCache.get().remove(bufferClass, size);
+        if(pooledBuffer!=null) {
+            threadCacheReuseCount.increment();
+        }
+        else {
+            pooledBuffer = pollSharedBuffer(bufferClass, size);
+
+            // Make the buffers held by terminated threads available and try again
+            if(pooledBuffer==null && reclaimThreadCaches())
+                pooledBuffer = pollSharedBuffer(bufferClass, size);
+        }
+
+        if(pooledBuffer!=null) {
+            pooledBuffers.remove(pooledBuffer);
+            reuseCount.increment();
+            bufferCount.decrementAndGet();
+            // Caution: mind the difference between the buffer's length and size
+            poolSize.addAndGet(-pooledBuffer.size);
+
+            return pooledBuffer.buffer;
         }
 
-        LOGGER.trace("Creating new buffer with {} size=", factory, size);
+        LOGGER.trace("Creating new buffer with {} size={}", factory, size);
+        allocationCount.increment();
 
         // No buffer with the same class and size found in the pool, create a new one and return it
         return factory.newBuffer(size);
@@ -248,8 +311,8 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseByteArray(byte buffer[]) {
-        return releaseBuffer(buffer, new ByteArrayFactory());
+    public static boolean releaseByteArray(byte buffer[]) {
+        return releaseBuffer(buffer, BYTE_ARRAY_FACTORY);
     }
 
     /**
@@ -264,8 +327,8 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseCharArray(char buffer[]) {
-        return releaseBuffer(buffer, new CharArrayFactory());
+    public static boolean releaseCharArray(char buffer[]) {
+        return releaseBuffer(buffer, CHAR_ARRAY_FACTORY);
     }
 
     /**
@@ -280,8 +343,8 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseByteBuffer(ByteBuffer buffer) {
-        return releaseBuffer(buffer, new ByteBufferFactory());
+    public static boolean releaseByteBuffer(ByteBuffer buffer) {
+        return releaseBuffer(buffer, BYTE_BUFFER_FACTORY);
     }
 
     /**
@@ -296,8 +359,8 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseCharBuffer(CharBuffer buffer) {
-        return releaseBuffer(buffer, new CharBufferFactory());
+    public static boolean releaseCharBuffer(CharBuffer buffer) {
+        return releaseBuffer(buffer, CHAR_BUFFER_FACTORY);
     }
 
     /**
@@ -314,30 +377,103 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool or the pool size limit has been reached
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseBuffer(Object buffer, BufferFactory factory) {
+    public static boolean releaseBuffer(Object buffer, BufferFactory factory) {
         if(buffer==null)
             throw new IllegalArgumentException("specified buffer is null");
 
+        Class<?> bufferClass = factory.getBufferClass();
         BufferContainer bufferContainer = factory.newBufferContainer(buffer);
+        int bufferLength = bufferContainer.getLength();
+        int bufferSize = bufferContainer.getSize();        // size in bytes (!= length)
 
-        if(bufferContainers.contains(bufferContainer)) {
+        // Register the buffer first, so that concurrent releases of the same buffer cannot both pool it
+        PooledBuffer pooledBuffer = new PooledBuffer(buffer, bufferClass, bufferLength, bufferSize);
+        if(!pooledBuffers.add(pooledBuffer)) {
             LOGGER.info("Warning: specified buffer is already in the pool: {}", buffer);
             return false;
         }
 
-        long bufferSize = bufferContainer.getSize();        // size in bytes (!= length)
+        // Reserve room for the buffer in the pool
+        long currentPoolSize;
+        do {
+            currentPoolSize = poolSize.get();
 
-        if(maxPoolSize!=-1 && poolSize+bufferSize>maxPoolSize) {
-            LOGGER.info("Warning: maximum pool size reached, buffer not added to the pool: {}", buffer);
-            return false;
+            long max = maxPoolSize;
+            if(max!=-1 && currentPoolSize+bufferSize>max) {
+                LOGGER.info("Warning: maximum pool size reached, buffer not added to the pool: {}", buffer);
+                pooledBuffers.remove(pooledBuffer);
+                return false;
+            }
         }
+        while(!poolSize.compareAndSet(currentPoolSize, currentPoolSize+bufferSize));
+
+        bufferCount.incrementAndGet();
 
-        bufferContainers.add(bufferContainer);
-        poolSize += bufferSize;
+        if(!threadCache.get().add(pooledBuffer))
+            getSharedBuffers(bufferClass, bufferLength, true).addFirst(pooledBuffer);
 
         return true;
     }
 
+    /**
+     * Returns the stack of shared buffers of the given class and length, <code>null</code> if there is none and
+     * <code>create</code> is <code>false</code>.
+     *
+     * @param bufferClass the buffer class, as returned by {@link BufferFactory#getBufferClass()}
+     * @param length the buffer length
+     * @param create if <code>true</code>, the stack is created if it doesn't exist yet
+     * @return the stack of shared buffers of the given class and length
+     */
+    private static Deque<PooledBuffer> getSharedBuffers(Class<?> bufferClass, int length, boolean create) {
+        ConcurrentHashMap<Integer, Deque<PooledBuffer>> buffersByLength = sharedBuffers.get(bufferClass);
+        if(buffersByLength==null) {
+            if(!create)
+                return null;
+
+            buffersByLength = sharedBuffers.computeIfAbsent(bufferClass, c -> new ConcurrentHashMap<Integer, Deque<PooledBuffer>>());
+        }
+
+        Deque<PooledBuffer> buffers = buffersByLength.get(length);
+        if(buffers==null && create)
+            buffers = buffersByLength.computeIfAbsent(length, l -> new ConcurrentLinkedDeque<PooledBuffer>());
+
+        return buffers;
+    }
+
+    /**
+     * Removes and returns a shared buffer of the given class and length, <code>null</code> if there is none.
+     */
+    private static PooledBuffer pollSharedBuffer(Class<?> bufferClass, int length) {
+        Deque<PooledBuffer> buffers = getSharedBuffers(bufferClass, length, false);
+
+        return buffers==null?null:buffers.pollFirst();
+    }
+
+    /**
+     * Moves the buffers held by the cache of threads that have terminated to the shared stacks, where other threads
+     * can get them.
+     *
+     * @return <code>true</code> if at least one buffer was moved to the shared stacks
+     */
+    private static boolean reclaimThreadCaches() {
+        boolean reclaimed = false;
+        for(Iterator<ThreadCache> iterator = threadCaches.iterator(); iterator.hasNext(); ) {
+            ThreadCache cache = iterator.next();
+            if(cache.isOwnerAlive())
+                continue;
+
+            iterator.remove();
+
+            PooledBuffer pooledBuffer;
+            while((pooledBuffer = cache.removeAny())!=null) {
+                getSharedBuffers(pooledBuffer.bufferClass, pooledBuffer.length, true).addFirst(pooledBuffer);
+                reclaimed = true;
+            }
+        }
+
+        return reclaimed;
+    }
+
     /**
      * Returns <code>true</code> if the specified buffer is currently in the pool.
      *
@@ -349,7 +485,7 @@ public class BufferPool {
      * @return <code>true</code> if the specified buffer is already in the pool
      */
     public static boolean containsBuffer(Object buffer, BufferFactory factory) {
-        return bufferContainers.contains(factory.newBufferContainer(buffer));
+        return pooledBuffers.contains(new PooledBuffer(buffer));
     }
 
 
@@ -360,7 +496,7 @@ public class BufferPool {
      * @return the number of buffers currently in the pool
      */
     public static int getBufferCount() {
-        return bufferContainers.size();
+        return bufferCount.get();
     }
 
     /**
@@ -371,12 +507,16 @@ public class BufferPool {
      * @return the number of buffers currently in the pool
      */
     public static int getBufferCount(BufferFactory factory) {
-        int count = 0;        
-        int nbBuffers = bufferContainers.size();
-        for(int i=0; i<nbBuffers; i++) {
-            if(factory.matchesBufferClass(bufferContainers.elementAt(i).getBuffer().getClass())) {
-                count ++;
-            }
+        Class<?> bufferClass = factory.getBufferClass();
+        int count = 0;
+
+        for(ThreadCache cache : threadCaches)
+            count += cache.count(bufferClass);
+
+        ConcurrentHashMap<Integer, Deque<PooledBuffer>> buffersByLength = sharedBuffers.get(bufferClass);
+        if(buffersByLength!=null) {
+            for(Deque<PooledBuffer> buffers : buffersByLength.values())
+                count += buffers.size();
         }
 
         return count;
@@ -399,7 +539,7 @@ public class BufferPool {
      *
      * @param bufferSize the new buffer size
      */
-    public static synchronized void setDefaultBufferSize(int bufferSize) {
+    public static void setDefaultBufferSize(int bufferSize) {
         BufferPool.defaultBufferSize = bufferSize;
     }
 
@@ -410,7 +550,37 @@ public class BufferPool {
      * @return the combined size in bytes of all buffers that are currenty in the pool
      */
     public static long getPoolSize() {
-        return poolSize;
+        return poolSize.get();
+    }
+
+    /**
+     * Returns the number of times a buffer was requested and found in the pool, i.e. the number of allocations that
+     * were avoided.
+     *
+     * @return the number of times a buffer was requested and found in the pool
+     */
+    public static long getReuseCount() {
+        return reuseCount.sum();
+    }
+
+    /**
+     * Returns the number of times a buffer was requested and found in the cache of the requesting thread. This number
+     * is included in the value returned by {@link #getReuseCount()}.
+     *
+     * @return the number of times a buffer was requested and found in the cache of the requesting thread
+     */
+    public static long getThreadCacheReuseCount() {
+        return threadCacheReuseCount.sum();
+    }
+
+    /**
+     * Returns the number of times a buffer was requested but had to be created because none was available in the
+     * pool.
+     *
+     * @return the number of times a buffer was requested but had to be created
+     */
+    public static long getAllocationCount() {
+        return allocationCount.sum();
     }
 
     /**
@@ -433,7 +603,7 @@ public class BufferPool {
      *
      * @param maxPoolSize the maximum combined size in bytes for all buffers in the pool
      */
-    public static synchronized void setMaxPoolSize(long maxPoolSize) {
+    public static void setMaxPoolSize(long maxPoolSize) {
         BufferPool.maxPoolSize = maxPoolSize;
     }
 
@@ -472,7 +642,6 @@ public class BufferPool {
          * Implements a shallow equal comparison.
          */
         public boolean equals(Object o) {
-            // Note: this method is used by Vector.contains()
             return (o instanceof BufferContainer) && buffer == ((BufferContainer)o).buffer;
         }
 
@@ -658,4 +827,107 @@ public class BufferPool {
             return CharBuffer.class;
         }
     }
+
+    /**
+     * A buffer in the pool, along with the information needed to match it against requests. Pooled buffers are equal
+     * if they hold the same buffer instance.
+     */
+    private static class PooledBuffer {
+
+        private final Object buffer;
+        private final Class<?> bufferClass;
+        private final int length;
+        private final int size;
+
+        private PooledBuffer(Object buffer, Class<?> bufferClass, int length, int size) {
+            this.buffer = buffer;
+            this.bufferClass = bufferClass;
+            this.length = length;
+            this.size = size;
+        }
+
+        /**
+         * Creates a key to look up the given buffer in {@link #pooledBuffers}.
+         */
+        private PooledBuffer(Object buffer) {
+            this(buffer, null, 0, 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof PooledBuffer) && buffer == ((PooledBuffer)o).buffer;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(buffer);
+        }
+    }
+
+    /**
+     * The buffers cached by a thread. Only the thread that owns the cache adds or removes buffers, until it terminates
+     * and the cache is reclaimed. Slots are nevertheless accessed atomically, so that other threads can look into the
+     * cache at any time.
+     */
+    private static class ThreadCache {
+
+        /** The thread that owns this cache */
+        private final WeakReference<Thread> owner;
+
+        /** Cached buffers, empty slots are null */
+        private final AtomicReferenceArray<PooledBuffer> slots = new AtomicReferenceArray<PooledBuffer>(THREAD_CACHE_SIZE);
+
+        private ThreadCache(Thread owner) {
+            this.owner = new WeakReference<Thread>(owner);
+        }
+
+        private boolean isOwnerAlive() {
+            Thread thread = owner.get();
+            return thread!=null && thread.isAlive();
+        }
+
+        private PooledBuffer remove(Class<?> bufferClass, int length) {
+            for(int i=0; i<THREAD_CACHE_SIZE; i++) {
+                PooledBuffer pooledBuffer = slots.get(i);
+                if(pooledBuffer!=null && pooledBuffer.length==length && pooledBuffer.bufferClass==bufferClass) {
+                    slots.lazySet(i, null);
+                    return pooledBuffer;
+                }
+            }
+
+            return null;
+        }
+
+        private PooledBuffer removeAny() {
+            for(int i=0; i<THREAD_CACHE_SIZE; i++) {
+                PooledBuffer pooledBuffer = slots.getAndSet(i, null);
+                if(pooledBuffer!=null)
+                    return pooledBuffer;
+            }
+
+            return null;
+        }
+
+        private boolean add(PooledBuffer pooledBuffer) {
+            for(int i=0; i<THREAD_CACHE_SIZE; i++) {
+                if(slots.get(i)==null) {
+                    slots.lazySet(i, pooledBuffer);
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private int count(Class<?> bufferClass) {
+            int count = 0;
+            for(int i=0; i<THREAD_CACHE_SIZE; i++) {
+                PooledBuffer pooledBuffer = slots.get(i);
+                if(pooledBuffer!=null && pooledBuffer.bufferClass==bufferClass)
+                    count++;
+            }
+
+            return count;
+        }
+    }
 }
@@ -0,0 +1,60 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * This interface is implemented by input streams which are able to transfer their data directly to a
+ * {@link FileChannel}, without it being copied to a buffer in the Java heap. Streams that merely filter another stream
+ * (counting, throttling, ...) implement this interface by delegating to the underlying stream, and report whether
+ * it supports transfers using {@link #isChannelTransferSupported()}.
+ *
+ * <p>Data is transferred in chunks, the caller being responsible for calling {@link #transferTo(FileChannel, long)}
+ * repeatedly until the end of the stream is reached. This gives filter streams a chance to do their work between
+ * chunks.</p>
+ */
+public interface ChannelTransferSource {
+
+    /**
+     * Returns <code>true</code> if {@link #transferTo(FileChannel, long)} can be used with this stream. If
+     * <code>false</code> is returned, data must be read using the regular <code>InputStream</code> methods.
+     *
+     * @return <code>true</code> if {@link #transferTo(FileChannel, long)} can be used with this stream
+     */
+    boolean isChannelTransferSupported();
+
+    /**
+     * Transfers up to <code>count</code> bytes from the current position of this stream to the current position of
+     * the given channel, and advances both positions by the number of bytes that were transferred.
+     *
+     * <p>Implementations may choose not to write runs of zeros, only advancing the position of the channel past them.
+     * Thus, the caller must make sure that the region of the channel being written to reads as zeros, which is the
+     * case if it lies beyond the end of the channel, and that the channel is eventually extended to its final
+     * position.</p>
+     *
+     * @param target the channel to transfer data to
+     * @param count maximum number of bytes to transfer, must be strictly positive
+     * @return the number of bytes that were transferred, <code>-1</code> if the end of the stream has been reached
+     * @throws IOException if an I/O error occurred while reading from this stream or writing to the channel. Errors
+     * reading from this stream should be reported with a {@link FileTransferException} whose reason is
+     * {@link FileTransferError#READING_SOURCE}, so that callers can tell them apart from errors writing to the channel.
+     */
+    long transferTo(FileChannel target, long count) throws IOException;
+}
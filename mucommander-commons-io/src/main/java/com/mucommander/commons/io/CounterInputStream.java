@@ -19,6 +19,7 @@ package com.mucommander.commons.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 
 /**
  * An InputStream that keeps track of the number of bytes that have been read from it. Bytes that are skipped (using
@@ -32,7 +33,7 @@ import java.io.InputStream;
  * @see ByteCounter
  * @author Maxence Bernard
  */
-public class CounterInputStream extends InputStream {
+public class CounterInputStream extends InputStream implements ChannelTransferSource {
 
     /** Underlying InputStream */
     private final InputStream in;
@@ -167,4 +168,21 @@ public class CounterInputStream extends InputStream {
     public void reset() throws IOException  {
         in.reset();
     }
+
+
+    //////////////////////////////////////////
+    // ChannelTransferSource implementation //
+    //////////////////////////////////////////
+
+    public boolean isChannelTransferSupported() {
+        return in instanceof ChannelTransferSource && ((ChannelTransferSource)in).isChannelTransferSupported();
+    }
+
+    public long transferTo(FileChannel target, long count) throws IOException {
+        long nbTransferred = ((ChannelTransferSource)in).transferTo(target, count);
+        if(nbTransferred>0)
+            counter.add(nbTransferred);
+
+        return nbTransferred;
+    }
 }
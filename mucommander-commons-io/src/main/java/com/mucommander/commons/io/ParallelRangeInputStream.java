@@ -0,0 +1,307 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>ParallelRangeInputStream</code> is an abstract <code>InputStream</code> that reads a resource sequentially,
+ * by fetching several consecutive ranges of the resource concurrently. This class comes in handy for network
+ * resources that can be read at an arbitrary offset, and whose throughput is limited by the latency of each request
+ * rather than by the bandwidth of the network: while the reader consumes a range, the next ones are being transferred.
+ *
+ * <p>Ranges are fetched by the executor specified in the constructor, using {@link #readRange(long, byte[], int, int)}
+ * which must therefore be thread-safe. The data is handed to the reader in order, and at most
+ * <code>maxParallelReads</code> ranges are fetched ahead of the reader, which bounds the memory used by the stream.</p>
+ *
+ * <p>The length of the resource is only used to avoid fetching ranges beyond its end: if the resource turns out to be
+ * longer, the remaining ranges are read one at a time until the end of the resource is reached.</p>
+ */
+public abstract class ParallelRangeInputStream extends InputStream {
+
+    private final ExecutorService executor;
+    private final long length;
+    private final int rangeSize;
+    private final int maxParallelReads;
+
+    /** Ranges being fetched, in order */
+    private final ArrayDeque<Range> pending = new ArrayDeque<Range>();
+
+    /** Offset of the next range to fetch */
+    private long nextRangeOffset;
+
+    /** Range being read, <code>null</code> if none */
+    private byte[] range;
+
+    /** Offset of the range being read */
+    private long rangeOffset;
+
+    /** Position of the reader within the current range */
+    private int rangePos;
+
+    /** True once a range shorter than requested has been read, i.e. the end of the resource has been reached */
+    private boolean eof;
+
+    private boolean closed;
+
+    /**
+     * Creates a new stream reading the resource from the beginning.
+     *
+     * @param executor the executor that fetches the ranges, typically shared by all the streams of a kind
+     * @param length the length of the resource
+     * @param rangeSize the maximum size of a range
+     * @param maxParallelReads the maximum number of ranges fetched ahead of the reader
+     */
+    protected ParallelRangeInputStream(ExecutorService executor, long length, int rangeSize, int maxParallelReads) {
+        this.executor = executor;
+        this.length = length;
+        this.rangeSize = rangeSize;
+        this.maxParallelReads = maxParallelReads;
+    }
+
+    /**
+     * Creates an executor suitable for fetching ranges, whose threads are daemon threads that are stopped when they
+     * have been idle for a while.
+     *
+     * @param nbThreads the maximum number of ranges fetched at the same time
+     * @param threadName the name given to the threads
+     * @return a new executor
+     */
+    public static ExecutorService createExecutor(int nbThreads, final String threadName) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(nbThreads, nbThreads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    /**
+     * Reads up to <code>len</code> bytes of the resource starting at the given offset. This method is called
+     * concurrently by the threads of the executor.
+     *
+     * @param offset the offset in the resource of the first byte to read
+     * @param b the array to fill
+     * @param off the offset in the array at which to store the data
+     * @param len the maximum number of bytes to read
+     * @return the number of bytes read, <code>-1</code> if the end of the resource has been reached
+     * @throws IOException if an I/O error occurs
+     */
+    protected abstract int readRange(long offset, byte[] b, int off, int len) throws IOException;
+
+    /**
+     * Returns the size of the range starting at the given offset. The default implementation returns the range size
+     * specified in the constructor, subclasses may override it to align ranges on particular boundaries.
+     *
+     * @param offset the offset of the range in the resource
+     * @return the size of the range, greater than zero
+     */
+    protected int getRangeSize(long offset) {
+        return rangeSize;
+    }
+
+    /**
+     * Queues the fetching of the next ranges, so that the maximum number of ranges are being fetched ahead of the
+     * reader.
+     */
+    private void fetchAhead() {
+        while (!eof && pending.size() < maxParallelReads && (nextRangeOffset < length || pending.isEmpty())) {
+            final long offset = nextRangeOffset;
+            final int size = getRangeSize(offset);
+
+            pending.add(new Range(offset, size, executor.submit(() -> fetch(offset, size))));
+            nextRangeOffset += size;
+        }
+    }
+
+    /**
+     * Reads the given range, returning a shorter array if the end of the resource is reached.
+     */
+    private byte[] fetch(long offset, int size) throws IOException {
+        byte[] buffer = new byte[size];
+        int total = 0;
+        int nbRead;
+        while (total < size && (nbRead = readRange(offset + total, buffer, total, size - total)) > 0)
+            total += nbRead;
+
+        if (total < size) {
+            byte[] truncated = new byte[total];
+            System.arraycopy(buffer, 0, truncated, 0, total);
+            return truncated;
+        }
+        return buffer;
+    }
+
+    /**
+     * Makes sure that the current range has data left to read, waiting for the next range if necessary.
+     *
+     * @return <code>false</code> if the end of the resource has been reached
+     */
+    private boolean ensureData() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+
+        while (range == null || rangePos == range.length) {
+            if (eof)
+                return false;
+
+            fetchAhead();
+            Range next = pending.poll();
+            try {
+                range = next.data.get();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            }
+            rangeOffset = next.offset;
+            rangePos = 0;
+
+            if (range.length < next.size) {
+                eof = true;
+                cancelPending();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Discards the ranges being fetched. They are left to complete, as interrupting them could leave the underlying
+     * connections in a bad state.
+     */
+    private void cancelPending() {
+        for (Range pendingRange : pending)
+            pendingRange.data.cancel(false);
+        pending.clear();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData())
+            return -1;
+
+        return range[rangePos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+
+        if (!ensureData())
+            return -1;
+
+        int nbBytes = Math.min(len, range.length - rangePos);
+        System.arraycopy(range, rangePos, b, off, nbBytes);
+        rangePos += nbBytes;
+
+        return nbBytes;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+
+        if (n <= 0)
+            return 0;
+
+        int remaining = range == null ? 0 : range.length - rangePos;
+        if (n <= remaining) {
+            rangePos += n;
+            return n;
+        }
+
+        // Past the known end of the resource, read until the actual end is found
+        long target = rangeOffset + rangePos + n;
+        if (eof || target > length)
+            return super.skip(n);
+
+        // Start fetching ranges from the new position, without reading the skipped ones
+        cancelPending();
+        range = null;
+        rangeOffset = target;
+        rangePos = 0;
+        nextRangeOffset = target;
+
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return range == null ? 0 : range.length - rangePos;
+    }
+
+    /**
+     * Discards the ranges being fetched. Subclasses should override this method to release the underlying resource,
+     * calling this implementation first.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+
+        cancelPending();
+        range = null;
+    }
+
+    /**
+     * Returns <code>true</code> if this stream has been closed.
+     *
+     * @return <code>true</code> if this stream has been closed
+     */
+    protected synchronized boolean isClosed() {
+        return closed;
+    }
+
+
+    /**
+     * A range of the resource, being fetched.
+     */
+    private static class Range {
+        /** Offset of the range in the resource */
+        private final long offset;
+        /** Number of bytes requested */
+        private final int size;
+        /** Bytes of the range, fewer than requested if the end of the resource was reached */
+        private final Future<byte[]> data;
+
+        private Range(long offset, int size, Future<byte[]> data) {
+            this.offset = offset;
+            this.size = size;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.io;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <code>PooledHandleRangeInputStream</code> is a {@link ParallelRangeInputStream} that reads ranges through several
+ * handles to the resource, such as random access files, so that each range can seek to and read its own part of the
+ * resource independently.
+ *
+ * <p>Handles are opened as needed, and kept in a pool once they have read a range so that the next ranges reuse them:
+ * as many handles are opened as ranges are fetched at the same time. A handle that failed to read a range is closed
+ * rather than put back in the pool, as it may be left in an unknown state.</p>
+ *
+ * @param <H> the type of handles to the resource
+ */
+public abstract class PooledHandleRangeInputStream<H> extends ParallelRangeInputStream {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledHandleRangeInputStream.class);
+
+    /** Handles to the resource that are not reading a range */
+    private final ArrayDeque<H> idleHandles = new ArrayDeque<H>();
+
+    /**
+     * Creates a new stream reading the resource from the beginning.
+     *
+     * @param executor the executor that fetches the ranges, typically shared by all the streams of a kind
+     * @param length the length of the resource
+     * @param rangeSize the maximum size of a range
+     * @param maxParallelReads the maximum number of ranges fetched ahead of the reader, and thus of handles opened
+     */
+    protected PooledHandleRangeInputStream(ExecutorService executor, long length, int rangeSize, int maxParallelReads) {
+        super(executor, length, rangeSize, maxParallelReads);
+    }
+
+    /**
+     * Opens a first handle to the resource, so that an exception is thrown by the constructor of subclasses if the
+     * resource cannot be read. This method should be called at the end of the constructor.
+     *
+     * @throws IOException if the resource cannot be opened
+     */
+    protected void openFirstHandle() throws IOException {
+        H handle = openHandle();
+        synchronized (idleHandles) {
+            idleHandles.add(handle);
+        }
+    }
+
+    /**
+     * Opens a new handle to the resource. This method is called concurrently by the threads of the executor.
+     *
+     * @return a new handle to the resource
+     * @throws IOException if the resource cannot be opened
+     */
+    protected abstract H openHandle() throws IOException;
+
+    /**
+     * Reads up to <code>len</code> bytes of the resource starting at the given offset, using the given handle which
+     * is not used by any other thread in the meantime.
+     *
+     * @param handle the handle to read from
+     * @param offset the offset in the resource of the first byte to read
+     * @param b the array to fill
+     * @param off the offset in the array at which to store the data
+     * @param len the maximum number of bytes to read
+     * @return the number of bytes read, <code>-1</code> if the end of the resource has been reached
+     * @throws IOException if an I/O error occurs
+     */
+    protected abstract int readRange(H handle, long offset, byte[] b, int off, int len) throws IOException;
+
+    /**
+     * Closes the given handle.
+     *
+     * @param handle the handle to close
+     * @throws IOException if an I/O error occurs
+     */
+    protected abstract void closeHandle(H handle) throws IOException;
+
+    @Override
+    protected int readRange(long offset, byte[] b, int off, int len) throws IOException {
+        H handle;
+        synchronized (idleHandles) {
+            handle = idleHandles.poll();
+        }
+        if (handle == null)
+            handle = openHandle();
+
+        int nbRead;
+        try {
+            nbRead = readRange(handle, offset, b, off, len);
+        }
+        catch (IOException | RuntimeException e) {
+            closeHandleQuietly(handle);
+            throw e;
+        }
+
+        releaseHandle(handle);
+        return nbRead;
+    }
+
+    /**
+     * Makes the given handle available to read other ranges, or closes it if the stream has been closed.
+     */
+    private void releaseHandle(H handle) {
+        synchronized (idleHandles) {
+            if (!isClosed()) {
+                idleHandles.add(handle);
+                return;
+            }
+        }
+
+        closeHandleQuietly(handle);
+    }
+
+    private void closeHandleQuietly(H handle) {
+        try {
+            closeHandle(handle);
+        }
+        catch (IOException e) {
+            LOGGER.debug("failed to close handle", e);
+        }
+    }
+
+    /**
+     * Closes the handles that are idle. The handles still reading a range are closed as soon as they are done.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (idleHandles) {
+            if (isClosed())
+                return;
+
+            super.close();
+            for (H handle : idleHandles)
+                closeHandleQuietly(handle);
+            idleHandles.clear();
+        }
+    }
+}
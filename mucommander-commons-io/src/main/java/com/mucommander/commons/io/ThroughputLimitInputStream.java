@@ -19,6 +19,7 @@ package com.mucommander.commons.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 
 /**
  * ThroughputLimitInputStream extends InputStream to provide control over the transfer speed and limit it to a specified
@@ -43,7 +44,7 @@ import java.io.InputStream;
  *
  * @author Maxence Bernard
  */
-public class ThroughputLimitInputStream extends InputStream {
+public class ThroughputLimitInputStream extends InputStream implements ChannelTransferSource {
 
     /** Underlying InputStream */
     private InputStream in;
@@ -276,4 +277,24 @@ public class ThroughputLimitInputStream extends InputStream {
     public boolean markSupported() {
         return in.markSupported();
     }
+
+
+    //////////////////////////////////////////
+    // ChannelTransferSource implementation //
+    //////////////////////////////////////////
+
+    public boolean isChannelTransferSupported() {
+        return in instanceof ChannelTransferSource && ((ChannelTransferSource)in).isChannelTransferSupported();
+    }
+
+    public long transferTo(FileChannel target, long count) throws IOException {
+        // Wait until at least 1 byte is available if a limit is set and transfer no more than allowed
+        long nbTransferred = ((ChannelTransferSource)in).transferTo(target, bpsLimit>=0?Math.min(getNbAllowedBytes(),count):count);
+
+        // Increase read counter by the number of bytes that have actually been transferred
+        if(nbTransferred>0)
+            addToLimitCounter(nbTransferred);
+
+        return nbTransferred;
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.security;
+
+import com.mucommander.commons.io.ByteUtils;
+
+/**
+ * This class provides static methods to work with the values of <i>CRC32</i> checksums, as calculated by
+ * <code>java.util.zip.CRC32</code>.
+ *
+ * <p>{@link #combine(long, long, long)} allows the checksum of a file to be calculated from the checksums of its
+ * parts, which can then be read concurrently rather than one after another.</p>
+ */
+public class CRC32Utils {
+
+    /** The CRC32 polynomial, in reversed bit order */
+    private final static long POLYNOMIAL = 0xEDB88320L;
+
+    /** Number of bits in a CRC32 value */
+    private final static int CRC_BITS = 32;
+
+    private CRC32Utils() {
+    }
+
+    /**
+     * Returns the CRC32 checksum of the concatenation of two blocks of data, given the checksum of each block and the
+     * length of the second one. This is the algorithm used by zlib's <code>crc32_combine</code> function: its cost
+     * depends on the logarithm of <code>length2</code>, not on the data itself.
+     *
+     * @param crc1 the checksum of the first block
+     * @param crc2 the checksum of the second block
+     * @param length2 the length of the second block, in bytes
+     * @return the checksum of the first block followed by the second one
+     */
+    public static long combine(long crc1, long crc2, long length2) {
+        if (length2 <= 0)
+            return crc1;
+
+        long even[] = new long[CRC_BITS];   // even-power-of-two zeros operator
+        long odd[] = new long[CRC_BITS];    // odd-power-of-two zeros operator
+
+        // Operator for one zero bit
+        odd[0] = POLYNOMIAL;
+        long row = 1;
+        for (int n = 1; n < CRC_BITS; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+
+        // Operators for two and four zero bits
+        square(even, odd);
+        square(odd, even);
+
+        // Apply length2 zero bytes to crc1, the first squaring yields the operator for one zero byte
+        do {
+            square(even, odd);
+            if ((length2 & 1) != 0)
+                crc1 = times(even, crc1);
+            length2 >>= 1;
+
+            if (length2 == 0)
+                break;
+
+            square(odd, even);
+            if ((length2 & 1) != 0)
+                crc1 = times(odd, crc1);
+            length2 >>= 1;
+        } while (length2 != 0);
+
+        return (crc1 ^ crc2) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Returns the hexadecimal representation of the given checksum, in the same format as the digest of a
+     * {@link CRC32MessageDigest}.
+     *
+     * @param crc a CRC32 checksum
+     * @return the hexadecimal representation of the checksum
+     */
+    public static String toHexString(long crc) {
+        return ByteUtils.toHexString(new byte[] {
+                (byte)((crc>>24) & 0xFF),
+                (byte)((crc>>16) & 0xFF),
+                (byte)((crc>>8) & 0xFF),
+                (byte)(crc & 0xFF)
+        });
+    }
+
+    /**
+     * Multiplies the given GF(2) matrix by the given vector.
+     */
+    private static long times(long matrix[], long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0)
+                sum ^= matrix[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Stores the square of the given GF(2) matrix in <code>square</code>.
+     */
+    private static void square(long square[], long matrix[]) {
+        for (int n = 0; n < CRC_BITS; n++)
+            square[n] = times(matrix, matrix[n]);
+    }
+}
@@ -19,6 +19,14 @@ package com.mucommander.commons.io;
 
 import org.testng.annotations.Test;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * This class is a TestNG test case for {@link BufferPool}.
  *
@@ -29,6 +37,8 @@ public class BufferPoolTest {
     public final static int TEST_BUFFER_SIZE_1 = 27;
     public final static int TEST_BUFFER_SIZE_2 = 28;
     public final static int TEST_MAX_POOL_SIZE = 1000;
+    public final static int TEST_BUFFER_SIZE_3 = 29;
+    public final static int TEST_BUFFER_SIZE_4 = 30;
 
     /**
      * Tests <code>BufferPool</code> with byte array (<code>byte[]</code>) buffers.
@@ -187,6 +197,152 @@ public class BufferPoolTest {
         BufferPool.setMaxPoolSize(BufferPool.INITIAL_POOL_LIMIT);
     }
 
+    /**
+     * Asserts that buffers released by a thread that has terminated are handed over to other threads, and that
+     * the reuse and allocation counters are updated accordingly.
+     *
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void testThreadCacheReclaim() throws InterruptedException {
+        BufferPool.ByteArrayFactory factory = new BufferPool.ByteArrayFactory();
+        int originalBufferCount = BufferPool.getBufferCount(factory);
+        long originalPoolSize = BufferPool.getPoolSize();
+
+        final byte[][] released = new byte[1][];
+        Thread thread = new Thread(() -> {
+            released[0] = BufferPool.getByteArray(TEST_BUFFER_SIZE_3);
+            BufferPool.releaseByteArray(released[0]);
+        });
+        thread.start();
+        thread.join();
+
+        assert BufferPool.containsBuffer(released[0], factory);
+        assertBufferCount(originalBufferCount+1, factory);
+        assert originalPoolSize+TEST_BUFFER_SIZE_3 == BufferPool.getPoolSize();
+
+        // The buffer is in the terminated thread's cache, it is reclaimed when a buffer has to be created
+        long reuseCount = BufferPool.getReuseCount();
+        long allocationCount = BufferPool.getAllocationCount();
+        byte[] buffer = BufferPool.getByteArray(TEST_BUFFER_SIZE_2);
+        assert allocationCount+1 == BufferPool.getAllocationCount();
+
+        assert released[0] == BufferPool.getByteArray(TEST_BUFFER_SIZE_3);
+        assert reuseCount+1 == BufferPool.getReuseCount();
+        assertBufferCount(originalBufferCount, factory);
+        assert originalPoolSize == BufferPool.getPoolSize();
+
+        // A buffer released by the current thread is found in its cache
+        long threadCacheReuseCount = BufferPool.getThreadCacheReuseCount();
+        BufferPool.releaseByteArray(buffer);
+        assert buffer == BufferPool.getByteArray(TEST_BUFFER_SIZE_2);
+        assert threadCacheReuseCount+1 == BufferPool.getThreadCacheReuseCount();
+    }
+
+    /**
+     * Has several threads get and release buffers at the same time, and asserts that a buffer is never handed out to
+     * two threads at once and that the pool ends up with consistent counts.
+     *
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        BufferPool.ByteArrayFactory factory = new BufferPool.ByteArrayFactory();
+        int originalBufferCount = BufferPool.getBufferCount(factory);
+        long originalPoolSize = BufferPool.getPoolSize();
+
+        final Set<Object> inUse = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()));
+        final AtomicBoolean failed = new AtomicBoolean();
+
+        Thread[] threads = new Thread[8];
+        for(int t=0; t<threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for(int i=0; i<10000; i++) {
+                    byte[] buffer1 = BufferPool.getByteArray(TEST_BUFFER_SIZE_1);
+                    byte[] buffer2 = BufferPool.getByteArray(TEST_BUFFER_SIZE_1);
+                    if(!inUse.add(buffer1) || !inUse.add(buffer2))
+                        failed.set(true);
+
+                    inUse.remove(buffer2);
+                    BufferPool.releaseByteArray(buffer2);
+                    inUse.remove(buffer1);
+                    BufferPool.releaseByteArray(buffer1);
+                }
+            });
+            threads[t].start();
+        }
+
+        for(Thread thread : threads)
+            thread.join();
+
+        assert !failed.get();
+
+        // Each thread left 2 buffers in the pool, retrieve them to leave BufferPool as it was before the test
+        assertBufferCount(originalBufferCount+2*threads.length, factory);
+        assert originalPoolSize+2*threads.length*TEST_BUFFER_SIZE_1 == BufferPool.getPoolSize();
+        for(int i=0; i<2*threads.length; i++)
+            BufferPool.getByteArray(TEST_BUFFER_SIZE_1);
+
+        assertBufferCount(originalBufferCount, factory);
+        assert originalPoolSize == BufferPool.getPoolSize();
+    }
+
+    /**
+     * Releases a buffer twice from different threads, one after the other then at the same time, and asserts that it
+     * is only pooled and handed out once.
+     *
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void testCrossThreadDoubleRelease() throws InterruptedException {
+        BufferPool.ByteArrayFactory factory = new BufferPool.ByteArrayFactory();
+        int originalBufferCount = BufferPool.getBufferCount(factory);
+
+        // Released by the current thread, which keeps it in its cache, then by another thread
+        final byte[] buffer = BufferPool.getByteArray(TEST_BUFFER_SIZE_4);
+        assert BufferPool.releaseByteArray(buffer);
+
+        final AtomicBoolean releasedAgain = new AtomicBoolean();
+        Thread thread = new Thread(() -> releasedAgain.set(BufferPool.releaseByteArray(buffer)));
+        thread.start();
+        thread.join();
+
+        assert !releasedAgain.get();
+        assertBufferCount(originalBufferCount+1, factory);
+        assert buffer == BufferPool.getByteArray(TEST_BUFFER_SIZE_4);
+        assertBufferCount(originalBufferCount, factory);
+
+        // Released by several threads at the same time
+        final CyclicBarrier barrier = new CyclicBarrier(8);
+        final AtomicInteger nbReleased = new AtomicInteger();
+        Thread[] threads = new Thread[barrier.getParties()];
+        for(int t=0; t<threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    barrier.await();
+                }
+                catch(InterruptedException | BrokenBarrierException e) {
+                    return;
+                }
+
+                if(BufferPool.releaseByteArray(buffer))
+                    nbReleased.incrementAndGet();
+            });
+            threads[t].start();
+        }
+
+        for(Thread t : threads)
+            t.join();
+
+        assert nbReleased.get() == 1;
+        assertBufferCount(originalBufferCount+1, factory);
+
+        // The buffer is handed out once, a new one is created the next time
+        assert buffer == BufferPool.getByteArray(TEST_BUFFER_SIZE_4);
+        assert buffer != BufferPool.getByteArray(TEST_BUFFER_SIZE_4);
+        assertBufferCount(originalBufferCount, factory);
+    }
+
     /**
      * Asserts that the given buffer's size matches the specified one.
      *
@@ -0,0 +1,152 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A test case for {@link ParallelRangeInputStream}.
+ *
+ * @see ParallelRangeInputStream
+ */
+public class ParallelRangeInputStreamTest {
+
+    private final static int RANGE_SIZE = 1000;
+
+    private final static ExecutorService EXECUTOR = ParallelRangeInputStream.createExecutor(4, "test reader");
+
+    @AfterClass
+    public void shutdownExecutor() {
+        EXECUTOR.shutdown();
+    }
+
+    /**
+     * Creates a stream reading the given data, which returns short reads to exercise the way ranges are filled.
+     *
+     * @param data the data to read
+     * @param length the length of the data announced to the stream
+     * @return a stream reading the given data
+     */
+    private ParallelRangeInputStream getStream(final byte[] data, long length) {
+        return new ParallelRangeInputStream(EXECUTOR, length, RANGE_SIZE, 3) {
+            @Override
+            protected int readRange(long offset, byte[] b, int off, int len) {
+                if (offset >= data.length)
+                    return -1;
+
+                int nbBytes = Math.min(Math.min(len, 300), data.length - (int) offset);
+                System.arraycopy(data, (int) offset, b, off, nbBytes);
+                return nbBytes;
+            }
+        };
+    }
+
+    private static byte[] getData(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] readFully(ParallelRangeInputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[777];
+        int nbRead;
+        while ((nbRead = in.read(buffer)) != -1)
+            out.write(buffer, 0, nbRead);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads resources of various lengths, some of them ending on a range boundary.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testRead() throws IOException {
+        for (int length : new int[] {0, 1, RANGE_SIZE - 1, RANGE_SIZE, RANGE_SIZE + 1, 10 * RANGE_SIZE, 12345}) {
+            byte[] data = getData(length);
+            try (ParallelRangeInputStream in = getStream(data, length)) {
+                assert Arrays.equals(data, readFully(in));
+                assert -1 == in.read();
+            }
+        }
+    }
+
+    /**
+     * Reads resources whose actual length differs from the announced one.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testReadWithWrongLength() throws IOException {
+        byte[] data = getData(5 * RANGE_SIZE + 10);
+
+        try (ParallelRangeInputStream in = getStream(data, 2 * RANGE_SIZE)) {
+            assert Arrays.equals(data, readFully(in));
+        }
+
+        try (ParallelRangeInputStream in = getStream(data, 20 * RANGE_SIZE)) {
+            assert Arrays.equals(data, readFully(in));
+        }
+    }
+
+    /**
+     * Skips bytes within the current range, past it and past the end of the resource.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testSkip() throws IOException {
+        byte[] data = getData(10 * RANGE_SIZE);
+
+        try (ParallelRangeInputStream in = getStream(data, data.length)) {
+            assert (data[0] & 0xFF) == in.read();
+            assert 10 == in.skip(10);
+            assert (data[11] & 0xFF) == in.read();
+            assert 3 * RANGE_SIZE == in.skip(3 * RANGE_SIZE);
+            assert (data[3 * RANGE_SIZE + 12] & 0xFF) == in.read();
+            assert 0 == in.skip(0);
+
+            long remaining = data.length - (3 * RANGE_SIZE + 13);
+            assert remaining == in.skip(remaining + 100);
+            assert -1 == in.read();
+        }
+    }
+
+    /**
+     * Ensures that a closed stream cannot be read.
+     *
+     * @throws IOException should not happen
+     */
+    @Test(expectedExceptions = IOException.class)
+    public void testReadAfterClose() throws IOException {
+        ParallelRangeInputStream in = getStream(getData(RANGE_SIZE * 3), RANGE_SIZE * 3);
+        in.read();
+        in.close();
+        in.close();
+        in.read();
+    }
+}
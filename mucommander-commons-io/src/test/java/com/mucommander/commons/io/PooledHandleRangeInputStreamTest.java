@@ -0,0 +1,181 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A test case for {@link PooledHandleRangeInputStream}.
+ *
+ * @see PooledHandleRangeInputStream
+ */
+public class PooledHandleRangeInputStreamTest {
+
+    private final static int RANGE_SIZE = 1000;
+
+    private final static int MAX_PARALLEL_READS = 3;
+
+    private final static ExecutorService EXECUTOR = ParallelRangeInputStream.createExecutor(4, "test reader");
+
+    @AfterClass
+    public void shutdownExecutor() {
+        EXECUTOR.shutdown();
+    }
+
+    /**
+     * A handle to the data read by {@link TestStream}.
+     */
+    private static class Handle {
+        private boolean closed;
+    }
+
+    /**
+     * Reads the given data through handles, failing the read of the given range once.
+     */
+    private static class TestStream extends PooledHandleRangeInputStream<Handle> {
+        private final byte[] data;
+        private final long failingOffset;
+        private final Set<Handle> openHandles = Collections.synchronizedSet(new HashSet<Handle>());
+        private final AtomicInteger nbOpenedHandles = new AtomicInteger();
+        private volatile Handle failedHandle;
+
+        private TestStream(byte[] data, long failingOffset) throws IOException {
+            super(EXECUTOR, data.length, RANGE_SIZE, MAX_PARALLEL_READS);
+            this.data = data;
+            this.failingOffset = failingOffset;
+
+            openFirstHandle();
+        }
+
+        @Override
+        protected Handle openHandle() {
+            Handle handle = new Handle();
+            openHandles.add(handle);
+            nbOpenedHandles.incrementAndGet();
+            return handle;
+        }
+
+        @Override
+        protected int readRange(Handle handle, long offset, byte[] b, int off, int len) throws IOException {
+            assert !handle.closed;
+
+            if (offset == failingOffset && failedHandle == null) {
+                failedHandle = handle;
+                throw new IOException("read failure");
+            }
+
+            if (offset >= data.length)
+                return -1;
+
+            int nbBytes = Math.min(len, data.length - (int) offset);
+            System.arraycopy(data, (int) offset, b, off, nbBytes);
+            return nbBytes;
+        }
+
+        @Override
+        protected void closeHandle(Handle handle) {
+            assert !handle.closed;
+            handle.closed = true;
+            openHandles.remove(handle);
+        }
+    }
+
+    private static byte[] getData(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] readFully(ParallelRangeInputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[777];
+        int nbRead;
+        while ((nbRead = in.read(buffer)) != -1)
+            out.write(buffer, 0, nbRead);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a resource and asserts that handles are reused by the ranges, and all closed when the stream is closed.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testHandlesReused() throws IOException {
+        byte[] data = getData(50 * RANGE_SIZE + 10);
+        TestStream in = new TestStream(data, -1);
+
+        assert Arrays.equals(data, readFully(in));
+        assert in.nbOpenedHandles.get() <= MAX_PARALLEL_READS + 1;
+
+        in.close();
+        waitForHandlesClosed(in);
+    }
+
+    /**
+     * Asserts that a handle that failed to read a range is closed rather than reused.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testFailedHandleDiscarded() throws IOException {
+        TestStream in = new TestStream(getData(10 * RANGE_SIZE), 2 * RANGE_SIZE);
+
+        try {
+            readFully(in);
+            assert false;
+        }
+        catch (IOException e) {
+            // Expected
+        }
+
+        assert in.failedHandle.closed;
+        assert !in.openHandles.contains(in.failedHandle);
+
+        in.close();
+        waitForHandlesClosed(in);
+    }
+
+    /**
+     * Waits for the handles still reading discarded ranges to be closed.
+     */
+    private static void waitForHandlesClosed(TestStream in) {
+        for (int i = 0; i < 100 && !in.openHandles.isEmpty(); i++) {
+            try {
+                Thread.sleep(10);
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+        }
+
+        assert in.openHandles.isEmpty();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.security;
+
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.io.ByteUtils;
+
+/**
+ * This class is a TestNG test case for {@link CRC32Utils}.
+ */
+public class CRC32UtilsTest {
+
+    /**
+     * Returns the CRC32 checksum of the given part of an array.
+     */
+    private static long crc(byte b[], int off, int len) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(b, off, len);
+        return crc32.getValue();
+    }
+
+    /**
+     * Combines the checksums of the parts of random data of various lengths and asserts that the result matches the
+     * checksum of the whole data.
+     */
+    @Test
+    public void testCombine() {
+        Random random = new Random();
+        byte data[] = new byte[100000];
+        random.nextBytes(data);
+
+        long expected = crc(data, 0, data.length);
+
+        int partSizes[] = {1, 7, 1024, 4096, 33333, data.length};
+        for (int partSize : partSizes) {
+            long combined = 0;
+            for (int off = 0; off < data.length; off += partSize) {
+                int len = Math.min(partSize, data.length - off);
+                combined = CRC32Utils.combine(combined, crc(data, off, len), len);
+            }
+
+            assert combined == expected;
+        }
+    }
+
+    /**
+     * Asserts that combining a checksum with that of empty data leaves it unchanged.
+     */
+    @Test
+    public void testCombineEmpty() {
+        byte data[] = "muCommander".getBytes();
+        long crc = crc(data, 0, data.length);
+
+        assert CRC32Utils.combine(crc, 0, 0) == crc;
+        assert CRC32Utils.combine(0, crc, data.length) == crc;
+    }
+
+    /**
+     * Asserts that {@link CRC32Utils#toHexString(long)} returns the same representation as
+     * {@link CRC32MessageDigest}.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void testToHexString() throws Exception {
+        MessageDigest digest = new CRC32MessageDigest();
+        byte data[] = new byte[] {0, 1, 2, 3};
+
+        assert CRC32Utils.toHexString(crc(data, 0, data.length)).equals(ByteUtils.toHexString(digest.digest(data)));
+        assert CRC32Utils.toHexString(0).equals("00000000");
+    }
+}
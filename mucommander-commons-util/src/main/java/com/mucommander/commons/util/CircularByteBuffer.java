@@ -155,6 +155,7 @@ public class CircularByteBuffer {
 			markPosition = 0;
 			outputStreamClosed = false;
 			inputStreamClosed = false;
+			notifyAll();
 		}
 	}
 
@@ -247,6 +248,23 @@ public class CircularByteBuffer {
 		}
 	}
 
+	/**
+	 * Waits until data is read from or written to the buffer, or one of its streams is closed. Must be called while
+	 * holding the lock on this buffer, which is released while waiting. At most 100 milliseconds are spent waiting,
+	 * callers must check whether they can proceed and call this method again if not.
+	 *
+	 * @param interruptedMessage message of the exception thrown if the calling thread is interrupted
+	 * @throws IOException if the calling thread was interrupted while waiting
+	 */
+	private void waitForChange(String interruptedMessage) throws IOException {
+		try {
+			wait(100);
+		} catch(InterruptedException x){
+			Thread.currentThread().interrupt();
+			throw new IOException(interruptedMessage);
+		}
+	}
+
 	/**
 	 * double the size of the buffer
 	 *
@@ -447,6 +465,7 @@ public class CircularByteBuffer {
 		@Override public void close() throws IOException {
 			synchronized (CircularByteBuffer.this){
 				inputStreamClosed = true;
+				CircularByteBuffer.this.notifyAll();
 			}
 		}
 
@@ -507,15 +526,12 @@ public class CircularByteBuffer {
 							readPosition = 0;
 						}
 						ensureMark();
+						CircularByteBuffer.this.notifyAll();
 						return result;
 					} else if (outputStreamClosed){
 						return -1;
 					}
-				}
-				try {
-					Thread.sleep(100);
-				} catch(Exception x){
-					throw new IOException("Blocking read operation interrupted.");
+					waitForChange("Blocking read operation interrupted.");
 				}
 			}
 		}
@@ -570,15 +586,12 @@ public class CircularByteBuffer {
 							readPosition = 0;
 						}
 						ensureMark();
+						CircularByteBuffer.this.notifyAll();
 						return length;
 					} else if (outputStreamClosed){
 						return -1;
 					}
-				}
-				try {
-					Thread.sleep(100);
-				} catch(Exception x){
-					throw new IOException("Blocking read operation interrupted.");
+					waitForChange("Blocking read operation interrupted.");
 				}
 			}
 		}
@@ -630,15 +643,12 @@ public class CircularByteBuffer {
 							readPosition = 0;
 						}
 						ensureMark();
+						CircularByteBuffer.this.notifyAll();
 						return length;
 					} else if (outputStreamClosed){
 						return 0;
 					}
-				}
-				try {
-					Thread.sleep(100);
-				} catch(Exception x){
-					throw new IOException("Blocking read operation interrupted.");
+					waitForChange("Blocking read operation interrupted.");
 				}
 			}
 		}
@@ -672,6 +682,7 @@ public class CircularByteBuffer {
 					flush();
 				}
 				outputStreamClosed = true;
+				CircularByteBuffer.this.notifyAll();
 			}
 		}
 
@@ -751,12 +762,11 @@ public class CircularByteBuffer {
 					}
 					off += written;
 					len -= written;
-				}
-				if (len > 0){
-					try {
-						Thread.sleep(100);
-					} catch(Exception x){
-						throw new IOException("Waiting for available space in buffer interrupted.");
+					if (written > 0){
+						CircularByteBuffer.this.notifyAll();
+					}
+					if (len > 0){
+						waitForChange("Waiting for available space in buffer interrupted.");
 					}
 				}
 			}
@@ -795,13 +805,10 @@ public class CircularByteBuffer {
 							writePosition = 0;
 						}
 						written = true;
+						CircularByteBuffer.this.notifyAll();
 					}
-				}
-				if (!written){
-					try {
-						Thread.sleep(100);
-					} catch(Exception x){
-						throw new IOException("Waiting for available space in buffer interrupted.");
+					if (!written){
+						waitForChange("Waiting for available space in buffer interrupted.");
 					}
 				}
 			}
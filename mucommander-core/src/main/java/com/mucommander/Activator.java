@@ -103,8 +103,9 @@ public class Activator implements BundleActivator {
         // Register core functionality service
         CoreService coreService = createCoreService();
         coreRegistration = context.registerService(CoreService.class, coreService, null);
-        // Traps VM shutdown
-        Runtime.getRuntime().addShutdownHook(shutdownHook = new ShutdownHook());
+        // Traps VM shutdown, a batch run leaves the configuration as it is
+        if (batch() == null)
+            Runtime.getRuntime().addShutdownHook(shutdownHook = new ShutdownHook());
         Application.run(this);
     }
 
@@ -120,7 +121,7 @@ public class Activator implements BundleActivator {
         bookmarksRegistration.unregister();
         searchRegistration.unregister();
         // if the activator performs the shutdown tasks, no need for the shutdown-hook
-        if (ShutdownHook.performShutdownTasks())
+        if (shutdownHook != null && ShutdownHook.performShutdownTasks())
             Runtime.getRuntime().removeShutdownHook(shutdownHook);
     }
 
@@ -193,6 +194,18 @@ public class Activator implements BundleActivator {
         return context.getProperty("mucommander.credentials");
     }
 
+    public String batch() {
+        return context.getProperty("mucommander.batch");
+    }
+
+    public String onCollision() {
+        return context.getProperty("mucommander.onCollision");
+    }
+
+    public String onError() {
+        return context.getProperty("mucommander.onError");
+    }
+
     private CoreService createCoreService() {
         return new CoreService() {
 
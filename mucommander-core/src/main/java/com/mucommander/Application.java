@@ -17,7 +17,10 @@
 
 package com.mucommander;
 
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.List;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -25,6 +28,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.mucommander.auth.CredentialsManager;
+import com.mucommander.batch.BatchException;
+import com.mucommander.batch.BatchJobSpec;
+import com.mucommander.batch.BatchRunner;
 import com.mucommander.command.Command;
 import com.mucommander.command.CommandException;
 import com.mucommander.command.CommandManager;
@@ -193,84 +199,91 @@ public class Application {
     }
 
 
-    private void run() {
-        try {
-            // Associations handling.
-            String assoc = activator.assoc();
-            if (assoc != null) {
-                try {com.mucommander.command.CommandManager.setAssociationFile(assoc);}
-                catch(Exception e) {printError("Could not set association files", e, activator.fatalWarnings());}
-            }
+    /**
+     * Applies the command line options that change the location of the configuration files.
+     */
+    private void applyCommandLineOptions() {
+        // Associations handling.
+        String assoc = activator.assoc();
+        if (assoc != null) {
+            try {com.mucommander.command.CommandManager.setAssociationFile(assoc);}
+            catch(Exception e) {printError("Could not set association files", e, activator.fatalWarnings());}
+        }
 
-            // Custom commands handling.
-            String commands = activator.commands();
-            if (commands != null) {
-                try {com.mucommander.command.CommandManager.setCommandFile(commands);}
-                catch(Exception e) {printError("Could not set commands file", e, activator.fatalWarnings());}
-            }
+        // Custom commands handling.
+        String commands = activator.commands();
+        if (commands != null) {
+            try {com.mucommander.command.CommandManager.setCommandFile(commands);}
+            catch(Exception e) {printError("Could not set commands file", e, activator.fatalWarnings());}
+        }
 
-            // Bookmarks handling.
-            String bookmark = activator.bookmark();
-            if (bookmark != null) {
-                try {com.mucommander.bookmark.BookmarkManager.setBookmarksFile(bookmark);}
-                catch(Exception e) {printError("Could not set bookmarks file", e, activator.fatalWarnings());}
-            }
+        // Bookmarks handling.
+        String bookmark = activator.bookmark();
+        if (bookmark != null) {
+            try {com.mucommander.bookmark.BookmarkManager.setBookmarksFile(bookmark);}
+            catch(Exception e) {printError("Could not set bookmarks file", e, activator.fatalWarnings());}
+        }
 
-            // Configuration handling.
-            String configuration = activator.configuration();
-            if (configuration != null) {
-                try {MuConfigurations.setPreferencesFile(configuration);}
-                catch(Exception e) {printError("Could not set configuration file", e, activator.fatalWarnings());}
-            }
+        // Configuration handling.
+        String configuration = activator.configuration();
+        if (configuration != null) {
+            try {MuConfigurations.setPreferencesFile(configuration);}
+            catch(Exception e) {printError("Could not set configuration file", e, activator.fatalWarnings());}
+        }
 
-            // Shell history.
-            String shellHistory = activator.shellHistory();
-            if (shellHistory != null) {
-                try {ShellHistoryManager.setHistoryFile(shellHistory);}
-                catch(Exception e) {printError("Could not set shell history file", e, activator.fatalWarnings());}
-            }
+        // Shell history.
+        String shellHistory = activator.shellHistory();
+        if (shellHistory != null) {
+            try {ShellHistoryManager.setHistoryFile(shellHistory);}
+            catch(Exception e) {printError("Could not set shell history file", e, activator.fatalWarnings());}
+        }
 
-            // Keymap file.
-            String keymap = activator.keymap();
-            if (keymap != null) {
-                try {com.mucommander.ui.action.ActionKeymapIO.setActionsFile(keymap);}
-                catch(Exception e) {printError("Could not set keymap file", e, activator.fatalWarnings());}
-            }
+        // Keymap file.
+        String keymap = activator.keymap();
+        if (keymap != null) {
+            try {com.mucommander.ui.action.ActionKeymapIO.setActionsFile(keymap);}
+            catch(Exception e) {printError("Could not set keymap file", e, activator.fatalWarnings());}
+        }
 
-            // Toolbar file.
-            String toolbar = activator.toolbar();
-            if (toolbar != null) {
-                try {ToolBarIO.setDescriptionFile(toolbar);}
-                catch(Exception e) {printError("Could not set keymap file", e, activator.fatalWarnings());}
-            }
+        // Toolbar file.
+        String toolbar = activator.toolbar();
+        if (toolbar != null) {
+            try {ToolBarIO.setDescriptionFile(toolbar);}
+            catch(Exception e) {printError("Could not set keymap file", e, activator.fatalWarnings());}
+        }
 
-            // Commandbar file.
-            String commandbar = activator.commandbar();
-            if (commandbar != null) {
-                try {CommandBarIO.setDescriptionFile(commandbar);}
-                catch(Exception e) {printError("Could not set commandbar description file", e, activator.fatalWarnings());}
-            }
+        // Commandbar file.
+        String commandbar = activator.commandbar();
+        if (commandbar != null) {
+            try {CommandBarIO.setDescriptionFile(commandbar);}
+            catch(Exception e) {printError("Could not set commandbar description file", e, activator.fatalWarnings());}
+        }
 
-            // Credentials file.
-            String credentials = activator.credentials();
-            if (credentials != null) {
-                try {com.mucommander.auth.CredentialsManager.setCredentialsFile(credentials);}
-                catch(Exception e) {printError("Could not set credentials file", e, activator.fatalWarnings());}
-            }
+        // Credentials file.
+        String credentials = activator.credentials();
+        if (credentials != null) {
+            try {com.mucommander.auth.CredentialsManager.setCredentialsFile(credentials);}
+            catch(Exception e) {printError("Could not set credentials file", e, activator.fatalWarnings());}
+        }
 
-            // Preference folder.
-            String preferences = activator.preferences();
-            if (preferences != null) {
-                try {PlatformManager.setPreferencesFolder(preferences);}
-                catch(Exception e) {printError("Could not set preferences folder", e, activator.fatalWarnings());}
-            }
+        // Preference folder.
+        String preferences = activator.preferences();
+        if (preferences != null) {
+            try {PlatformManager.setPreferencesFolder(preferences);}
+            catch(Exception e) {printError("Could not set preferences folder", e, activator.fatalWarnings());}
+        }
 
-            // Extensions folder.
-            String extensions = activator.extensions();
-            if (extensions != null) {
-                try {ExtensionManager.setExtensionsFolder(extensions);}
-                catch(Exception e) {printError("Could not set extensions folder", e, activator.fatalWarnings());}
-            }
+        // Extensions folder.
+        String extensions = activator.extensions();
+        if (extensions != null) {
+            try {ExtensionManager.setExtensionsFolder(extensions);}
+            catch(Exception e) {printError("Could not set extensions folder", e, activator.fatalWarnings());}
+        }
+    }
+
+    private void run() {
+        try {
+            applyCommandLineOptions();
 
             // - Configuration init ---------------------------------------
             // ------------------------------------------------------------
@@ -455,6 +468,59 @@ public class Application {
         }
     }
 
+    /**
+     * Runs the jobs of the batch file given on the command line, without user interface. Unlike the user interface,
+     * the batch leaves the configuration files as they are.
+     *
+     * @return the exit status: <code>0</code> if all jobs have finished, <code>1</code> if some of them failed,
+     * <code>2</code> if the batch could not be run
+     */
+    private int runBatch() {
+        try {
+            applyCommandLineOptions();
+
+            try {MuConfigurations.check();}
+            catch(Exception e) {printFileError("Could not load configuration", e, activator.fatalWarnings());}
+
+            MuLogging.configureLogging();
+            ResourceLoader.setDefaultClassLoader(this.getClass().getClassLoader());
+
+            try {
+                ExtensionManager.addExtensionsToClasspath();
+            }
+            catch(Exception e) {
+                LOGGER.debug("Failed to add extensions to the classpath", e);
+            }
+
+            configureFilesystems();
+
+            try {com.mucommander.bookmark.BookmarkManager.loadBookmarks();}
+            catch(Exception e) {printFileError("Could not load bookmarks", e, activator.fatalWarnings());}
+
+            try {com.mucommander.auth.CredentialsManager.loadCredentials();}
+            catch(Exception e) {printFileError("Could not load credentials", e, activator.fatalWarnings());}
+
+            BatchRunner runner = new BatchRunner(BatchRunner.getFileExistsAction(activator.onCollision()),
+                    BatchRunner.isSkipErrors(activator.onError()), System.out);
+
+            String batch = activator.batch();
+            List<BatchJobSpec> specs;
+            try (Reader reader = "-".equals(batch) ? new InputStreamReader(System.in) : new FileReader(batch)) {
+                specs = BatchJobSpec.parse(reader);
+            }
+
+            return runner.run(specs) == 0 ? 0 : 1;
+        }
+        catch(BatchException | IOException e) {
+            printError(e.getMessage(), false);
+            return 2;
+        }
+        catch(Throwable t) {
+            LOGGER.error("Batch failed", t);
+            return 2;
+        }
+    }
+
     private static void setSystemIconsPolicy() {
         String conf = MuConfigurations.getPreferences().getVariable(MuPreference.USE_SYSTEM_FILE_ICONS, MuPreferences.DEFAULT_USE_SYSTEM_FILE_ICONS);
         SystemIconsPolicy policy = SystemIconsPolicy.APPLICATIONS_ONLY;
@@ -494,7 +560,11 @@ public class Application {
      */
     public static void run(Activator activator) {
         Application.activator = activator;
-        new Application().run();
+        if (activator.batch() != null)
+            // Lets the bundle start, the VM exits once the jobs have ended
+            new Thread(() -> System.exit(new Application().runBatch()), "Batch runner").start();
+        else
+            new Application().run();
     }
 
     /**
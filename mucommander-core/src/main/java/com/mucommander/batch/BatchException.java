@@ -0,0 +1,36 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.batch;
+
+/**
+ * Exception thrown when a batch of jobs cannot be read, or when one of its jobs cannot be created.
+ */
+public class BatchException extends Exception {
+    /**
+     * Creates a new exception with the specified message.
+     * @param message exception's message.
+     */
+    public BatchException(String message) {super(message);}
+
+    /**
+     * Creates a new exception with the specified message and cause.
+     * @param message exception's message.
+     * @param cause   root cause of the new exception.
+     */
+    public BatchException(String message, Throwable cause) {super(message, cause);}
+}
@@ -0,0 +1,212 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A job of a batch, as described by a line of a batch file. Each line names the kind of job followed by its
+ * arguments, separated by spaces:
+ * <pre>
+ * copy     SOURCE... DEST_FOLDER
+ * move     SOURCE... DEST_FOLDER
+ * pack     SOURCE... ARCHIVE
+ * unpack   ARCHIVE... DEST_FOLDER
+ * checksum ALGORITHM SOURCE... CHECKSUM_FILE
+ * search   FOLDER PATTERN [OPTION=VALUE]...
+ * </pre>
+ * Arguments that contain spaces can be enclosed in double quotes, and any character can be escaped with a backslash.
+ * Empty lines and lines starting with <code>#</code> are ignored.
+ */
+public class BatchJobSpec {
+
+    /**
+     * The kinds of jobs a batch can run.
+     */
+    public enum Type {
+        COPY(2),
+        MOVE(2),
+        PACK(2),
+        UNPACK(2),
+        CHECKSUM(3),
+        SEARCH(2);
+
+        /** Minimum number of arguments of the job */
+        private final int minArguments;
+
+        Type(int minArguments) {
+            this.minArguments = minArguments;
+        }
+
+        /**
+         * Returns the name of this kind of job, as written in batch files.
+         *
+         * @return the name of this kind of job
+         */
+        public String getName() {
+            return name().toLowerCase();
+        }
+    }
+
+    /** Character that starts a comment line */
+    private final static char COMMENT_CHAR = '#';
+
+    private final int line;
+    private final Type type;
+    private final List<String> arguments;
+
+    BatchJobSpec(int line, Type type, List<String> arguments) {
+        this.line = line;
+        this.type = type;
+        this.arguments = Collections.unmodifiableList(arguments);
+    }
+
+    /**
+     * Reads all the jobs of a batch file, so that syntax errors are reported before any job is run.
+     *
+     * @param reader the batch file
+     * @return the jobs of the batch, in order
+     * @throws IOException if the batch file could not be read
+     * @throws BatchException if a line of the batch file is not a valid job
+     */
+    public static List<BatchJobSpec> parse(Reader reader) throws IOException, BatchException {
+        List<BatchJobSpec> specs = new ArrayList<BatchJobSpec>();
+        BufferedReader in = new BufferedReader(reader);
+
+        String text;
+        int line = 0;
+        while ((text = in.readLine()) != null) {
+            BatchJobSpec spec = parse(text, ++line);
+            if (spec != null)
+                specs.add(spec);
+        }
+
+        return specs;
+    }
+
+    /**
+     * Parses a line of a batch file.
+     *
+     * @param text the line
+     * @param line the number of the line in the batch file, starting at 1
+     * @return the job described by the line, <code>null</code> if the line is empty or a comment
+     * @throws BatchException if the line is not a valid job
+     */
+    static BatchJobSpec parse(String text, int line) throws BatchException {
+        text = text.trim();
+        if (text.isEmpty() || text.charAt(0) == COMMENT_CHAR)
+            return null;
+
+        List<String> tokens = tokenize(text, line);
+
+        Type type = null;
+        for (Type value : Type.values()) {
+            if (value.getName().equalsIgnoreCase(tokens.get(0))) {
+                type = value;
+                break;
+            }
+        }
+        if (type == null)
+            throw new BatchException("Line " + line + ": unknown job " + tokens.get(0));
+
+        List<String> arguments = tokens.subList(1, tokens.size());
+        if (arguments.size() < type.minArguments)
+            throw new BatchException("Line " + line + ": " + type.getName() + " expects at least " + type.minArguments + " arguments");
+
+        return new BatchJobSpec(line, type, new ArrayList<String>(arguments));
+    }
+
+    /**
+     * Splits the given line into tokens separated by spaces, honouring double quotes and backslash escapes.
+     */
+    private static List<String> tokenize(String text, int line) throws BatchException {
+        List<String> tokens = new ArrayList<String>();
+        StringBuilder token = new StringBuilder();
+        boolean inToken = false;
+        boolean inQuotes = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (c == '\\' && i + 1 < text.length()) {
+                token.append(text.charAt(++i));
+                inToken = true;
+            }
+            else if (c == '"') {
+                inQuotes = !inQuotes;
+                inToken = true;
+            }
+            else if (Character.isWhitespace(c) && !inQuotes) {
+                if (inToken) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                    inToken = false;
+                }
+            }
+            else {
+                token.append(c);
+                inToken = true;
+            }
+        }
+
+        if (inQuotes)
+            throw new BatchException("Line " + line + ": unterminated quote");
+
+        if (inToken)
+            tokens.add(token.toString());
+
+        return tokens;
+    }
+
+    /**
+     * Returns the number of the line that describes this job in the batch file, starting at 1.
+     *
+     * @return the number of the line that describes this job
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the kind of this job.
+     *
+     * @return the kind of this job
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the arguments of this job, without the kind of job.
+     *
+     * @return the arguments of this job
+     */
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    @Override
+    public String toString() {
+        return type.getName() + " (line " + line + ")";
+    }
+}
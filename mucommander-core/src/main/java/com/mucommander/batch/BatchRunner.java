@@ -0,0 +1,441 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.archiver.Archiver;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.commons.io.security.MuProvider;
+import com.mucommander.job.FileJob;
+import com.mucommander.job.FileJobListener;
+import com.mucommander.job.FileJobState;
+import com.mucommander.job.JobProgress;
+import com.mucommander.job.impl.ArchiveJob;
+import com.mucommander.job.impl.CalculateChecksumJob;
+import com.mucommander.job.impl.CopyJob;
+import com.mucommander.job.impl.MoveJob;
+import com.mucommander.job.impl.TransferFileJob;
+import com.mucommander.job.impl.UnpackJob;
+import com.mucommander.search.SearchBuilder;
+import com.mucommander.search.SearchJob;
+import com.mucommander.text.DurationFormat;
+import com.mucommander.text.SizeFormat;
+import com.mucommander.ui.dialog.file.FileCollisionDialog;
+
+/**
+ * Runs the jobs of a batch one after another, without user interface. The jobs are the ones the user interface runs,
+ * created without a progress dialog or main frame. Their progress is printed periodically, followed by the time they
+ * took and their throughput once they have ended.
+ * <p>
+ * As there is nobody to ask, collisions and errors are handled according to policies given when the runner is
+ * created. A job that is cancelled, because of an error or of a collision, fails. The runner then goes on with the
+ * next job.
+ * </p>
+ *
+ * @see BatchJobSpec
+ */
+public class BatchRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchRunner.class);
+
+    /** Names of the collision policies, mapped to the corresponding {@link FileCollisionDialog} actions */
+    private final static Map<String, Integer> COLLISION_POLICIES = new HashMap<String, Integer>();
+    static {
+        COLLISION_POLICIES.put("cancel", FileCollisionDialog.CANCEL_ACTION);
+        COLLISION_POLICIES.put("skip", FileCollisionDialog.SKIP_ACTION);
+        COLLISION_POLICIES.put("overwrite", FileCollisionDialog.OVERWRITE_ACTION);
+        COLLISION_POLICIES.put("overwrite-if-older", FileCollisionDialog.OVERWRITE_IF_OLDER_ACTION);
+        COLLISION_POLICIES.put("resume", FileCollisionDialog.RESUME_ACTION);
+    }
+
+    /** Error policy that skips the files that cannot be processed */
+    private final static String SKIP_ERROR_POLICY = "skip";
+    /** Error policy that cancels the job when a file cannot be processed */
+    private final static String CANCEL_ERROR_POLICY = "cancel";
+
+    /** Interval between two progress lines, in milliseconds */
+    private final static long PROGRESS_INTERVAL = 5000;
+
+    private final int fileExistsAction;
+    private final boolean skipErrors;
+    private final PrintStream out;
+
+    /**
+     * Creates a new runner.
+     *
+     * @param fileExistsAction the action to perform when a file already exists, see {@link #getFileExistsAction(String)}
+     * @param skipErrors <code>true</code> to skip the files that cannot be processed, <code>false</code> to cancel the job
+     * @param out the stream progress and statistics are printed to
+     */
+    public BatchRunner(int fileExistsAction, boolean skipErrors, PrintStream out) {
+        this.fileExistsAction = fileExistsAction;
+        this.skipErrors = skipErrors;
+        this.out = out;
+    }
+
+    /**
+     * Returns the {@link FileCollisionDialog} action of the given collision policy: <code>overwrite</code>,
+     * <code>overwrite-if-older</code>, <code>resume</code>, <code>skip</code> or <code>cancel</code>.
+     *
+     * @param policy the name of a collision policy
+     * @return the action to perform when a file already exists
+     * @throws BatchException if the policy is unknown
+     */
+    public static int getFileExistsAction(String policy) throws BatchException {
+        Integer action = policy == null ? null : COLLISION_POLICIES.get(policy.toLowerCase());
+        if (action == null)
+            throw new BatchException("Unknown collision policy: " + policy);
+
+        return action;
+    }
+
+    /**
+     * Returns <code>true</code> if the given error policy is <code>skip</code>, <code>false</code> if it is
+     * <code>cancel</code>.
+     *
+     * @param policy the name of an error policy
+     * @return <code>true</code> if files that cannot be processed are skipped
+     * @throws BatchException if the policy is unknown
+     */
+    public static boolean isSkipErrors(String policy) throws BatchException {
+        if (SKIP_ERROR_POLICY.equalsIgnoreCase(policy))
+            return true;
+        if (CANCEL_ERROR_POLICY.equalsIgnoreCase(policy))
+            return false;
+
+        throw new BatchException("Unknown error policy: " + policy);
+    }
+
+    /**
+     * Runs the given jobs one after another.
+     *
+     * @param specs the jobs to run
+     * @return the number of jobs that failed
+     * @throws InterruptedException if the current thread was interrupted while waiting for a job
+     */
+    public int run(List<BatchJobSpec> specs) throws InterruptedException {
+        int nbFailed = 0;
+        long startTime = System.currentTimeMillis();
+
+        for (BatchJobSpec spec : specs) {
+            try {
+                if (!run(spec))
+                    nbFailed++;
+            }
+            catch (BatchException e) {
+                LOGGER.debug("failed to create " + spec, e);
+                out.println(spec + ": " + e.getMessage());
+                nbFailed++;
+            }
+        }
+
+        out.println(String.format("%d jobs, %d failed, in %s", specs.size(), nbFailed,
+                DurationFormat.format(System.currentTimeMillis() - startTime)));
+
+        return nbFailed;
+    }
+
+    /**
+     * Runs the given job.
+     *
+     * @return <code>true</code> if the job has finished, <code>false</code> if it has been cancelled
+     */
+    private boolean run(BatchJobSpec spec) throws BatchException, InterruptedException {
+        FileJob job = createJob(spec);
+        if (job == null) {
+            out.println(spec + ": skipped, the destination already exists");
+            return fileExistsAction != FileCollisionDialog.CANCEL_ACTION;
+        }
+
+        job.setAutoSkipErrors(skipErrors);
+
+        CountDownLatch ended = new CountDownLatch(1);
+        job.addFileJobListener(new FileJobListener() {
+            @Override
+            public void jobStateChanged(FileJob source, FileJobState oldState, FileJobState newState) {
+                if (newState == FileJobState.FINISHED || newState == FileJobState.INTERRUPTED)
+                    ended.countDown();
+            }
+        });
+
+        out.println(spec + ": started");
+        job.start();
+        while (!ended.await(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS))
+            printProgress(spec, job);
+
+        boolean finished = job.getState() == FileJobState.FINISHED;
+        printStatistics(spec, job, finished);
+
+        if (job instanceof SearchJob) {
+            for (AbstractFile file : ((SearchJob) job).getFindings())
+                out.println(file.getAbsolutePath());
+        }
+
+        return finished;
+    }
+
+    /**
+     * Prints a line showing the progress of the given job.
+     */
+    private void printProgress(BatchJobSpec spec, FileJob job) {
+        JobProgress progress = job.getJobProgress();
+        progress.calcJobProgress(true);
+
+        StringBuilder line = new StringBuilder(spec.toString());
+        line.append(": ").append(progress.getTotalProgressText());
+        if (progress.isTransferFileJob()) {
+            line.append(", ").append(SizeFormat.format(progress.getBytesTotal(), SizeFormat.DIGITS_MEDIUM | SizeFormat.UNIT_SHORT | SizeFormat.INCLUDE_SPACE));
+            line.append(" at ").append(SizeFormat.format(progress.getCurrentBps(), SizeFormat.UNIT_SPEED | SizeFormat.DIGITS_MEDIUM | SizeFormat.UNIT_SHORT | SizeFormat.INCLUDE_SPACE));
+        }
+        line.append(", ").append(progress.getJobStatusString());
+
+        out.println(line);
+    }
+
+    /**
+     * Prints the time the given job took and its throughput, in a format suited both to people and scripts.
+     */
+    private void printStatistics(BatchJobSpec spec, FileJob job, boolean finished) {
+        long time = Math.max(1, job.getEffectiveJobTime());
+
+        StringBuilder line = new StringBuilder(spec.toString());
+        line.append(finished ? ": finished" : ": cancelled");
+        line.append(" in ").append(time).append(" ms");
+
+        if (job instanceof TransferFileJob) {
+            TransferFileJob transferJob = (TransferFileJob) job;
+            long bytes = transferJob.getTotalByteCount() - transferJob.getTotalSkippedByteCount();
+            long bps = (long) (bytes * 1000d / time);
+            line.append(", ").append(bytes).append(" bytes");
+            line.append(", ").append(bps).append(" bytes/s");
+            line.append(" (").append(SizeFormat.format(bps, SizeFormat.UNIT_SPEED | SizeFormat.DIGITS_MEDIUM | SizeFormat.UNIT_SHORT | SizeFormat.INCLUDE_SPACE)).append(")");
+        }
+        else if (job instanceof SearchJob) {
+            line.append(", ").append(((SearchJob) job).getFindings().size()).append(" files found");
+        }
+
+        out.println(line);
+    }
+
+    /**
+     * Creates the job described by the given spec.
+     *
+     * @return the job, <code>null</code> if it must be skipped because its destination file already exists
+     */
+    FileJob createJob(BatchJobSpec spec) throws BatchException {
+        List<String> arguments = spec.getArguments();
+        int last = arguments.size() - 1;
+
+        switch (spec.getType()) {
+        case COPY:
+            return new CopyJob(null, null, getSourceFiles(arguments, 0, last), getDestinationFolder(arguments.get(last)),
+                    null, CopyJob.TransferMode.COPY, fileExistsAction);
+
+        case MOVE:
+            return new MoveJob(null, null, getSourceFiles(arguments, 0, last), getDestinationFolder(arguments.get(last)),
+                    null, fileExistsAction, false);
+
+        case UNPACK:
+            return new UnpackJob(null, null, getSourceFiles(arguments, 0, last), getDestinationFolder(arguments.get(last)),
+                    fileExistsAction);
+
+        case PACK: {
+            FileSet files = getSourceFiles(arguments, 0, last);
+            AbstractFile archive = getFile(arguments.get(last));
+            int format = getArchiveFormat(archive, files.size() > 1 || files.get(0).isDirectory());
+            if (!isDestinationAvailable(archive))
+                return null;
+
+            // The archive may be created before the job starts
+            ArchiveJob job = new ArchiveJob(null, null, files, archive, format, null);
+            job.setFileExistsAction(fileExistsAction);
+            return job;
+        }
+
+        case CHECKSUM: {
+            MessageDigest digest = getDigest(arguments.get(0));
+            FileSet files = getSourceFiles(arguments, 1, last);
+            AbstractFile checksumFile = getFile(arguments.get(last));
+            if (!isDestinationAvailable(checksumFile))
+                return null;
+
+            // The checksum file may be created before the job starts
+            CalculateChecksumJob job = new CalculateChecksumJob(null, null, files, checksumFile, digest);
+            job.setFileExistsAction(fileExistsAction);
+            return job;
+        }
+
+        case SEARCH: {
+            Map<String, String> properties = new HashMap<String, String>();
+            for (String option : arguments.subList(2, arguments.size())) {
+                int index = option.indexOf('=');
+                if (index <= 0)
+                    throw new BatchException("Invalid search option: " + option);
+                properties.put(option.substring(0, index), option.substring(index + 1));
+            }
+
+            return SearchBuilder.newSearch()
+                    .where(getExistingFile(arguments.get(0)))
+                    .what(arguments.get(1))
+                    .searchArchives(properties)
+                    .searchHidden(properties)
+                    .searchSubfolders(properties)
+                    .searchDepth(properties)
+                    .matchCaseInsensitive(properties)
+                    .matchRegex(properties)
+                    .searchText(properties)
+                    .findDuplicates(properties)
+                    .build();
+        }
+
+        default:
+            throw new BatchException("Unsupported job: " + spec.getType().getName());
+        }
+    }
+
+    /**
+     * Returns the given files, which must exist and be located in the same folder.
+     */
+    private static FileSet getSourceFiles(List<String> paths, int from, int to) throws BatchException {
+        FileSet files = null;
+        for (String path : paths.subList(from, to)) {
+            AbstractFile file = getExistingFile(path);
+            AbstractFile parent = file.getParent();
+            if (files == null)
+                files = new FileSet(parent);
+            else if (parent == null || !parent.equals(files.getBaseFolder()))
+                throw new BatchException("Source files must be located in the same folder: " + path);
+
+            files.add(file);
+        }
+
+        if (files == null)
+            throw new BatchException("No source file");
+
+        return files;
+    }
+
+    /**
+     * Returns the given folder, which is created if it does not exist yet.
+     */
+    private static AbstractFile getDestinationFolder(String path) throws BatchException {
+        AbstractFile folder = getFile(path);
+        try {
+            if (!folder.exists())
+                folder.mkdirs();
+        }
+        catch (IOException e) {
+            throw new BatchException("Cannot create folder " + path, e);
+        }
+
+        if (!folder.isBrowsable())
+            throw new BatchException("Not a folder: " + path);
+
+        return folder;
+    }
+
+    /**
+     * Returns <code>false</code> if the given destination file exists and must not be overwritten. A file that is
+     * entirely written by a job is only overwritten by the <code>overwrite</code> collision policy.
+     */
+    private boolean isDestinationAvailable(AbstractFile file) {
+        return !file.exists() || fileExistsAction == FileCollisionDialog.OVERWRITE_ACTION;
+    }
+
+    /**
+     * Returns the archive format matching the extension of the given file.
+     */
+    private static int getArchiveFormat(AbstractFile archive, boolean manyEntries) throws BatchException {
+        String name = archive.getName().toLowerCase();
+        int format = -1;
+        int extensionLength = 0;
+        // Picks the longest matching extension, e.g. tar.gz rather than gz
+        for (int candidate : Archiver.getFormats(manyEntries)) {
+            String extension = "." + Archiver.getFormatExtension(candidate);
+            if (name.endsWith(extension) && extension.length() > extensionLength) {
+                format = candidate;
+                extensionLength = extension.length();
+            }
+        }
+
+        if (format == -1)
+            throw new BatchException("Unsupported archive format: " + archive.getName());
+
+        return format;
+    }
+
+    /**
+     * Returns the message digest implementing the given algorithm.
+     */
+    private static MessageDigest getDigest(String algorithm) throws BatchException {
+        // Registers the additional algorithms provided by the muCommander API, such as CRC32
+        MuProvider.registerProvider();
+        try {
+            return MessageDigest.getInstance(algorithm);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new BatchException("Unsupported checksum algorithm: " + algorithm, e);
+        }
+    }
+
+    /**
+     * Returns the given file, which must exist.
+     */
+    private static AbstractFile getExistingFile(String path) throws BatchException {
+        AbstractFile file = getFile(path);
+        if (!file.exists())
+            throw new BatchException("No such file: " + path);
+
+        return file;
+    }
+
+    /**
+     * Returns the file at the given URL or path, relative paths being resolved against the current folder.
+     */
+    private static AbstractFile getFile(String path) throws BatchException {
+        if (path.indexOf("://") == -1 && !new File(path).isAbsolute())
+            path = new File(path).getAbsolutePath();
+
+        AbstractFile file;
+        try {
+            file = FileFactory.getFile(path, true);
+        }
+        catch (IOException e) {
+            throw new BatchException("Cannot access " + path, e);
+        }
+
+        if (file == null)
+            throw new BatchException("Invalid path: " + path);
+
+        return file;
+    }
+}
@@ -80,7 +80,8 @@ public class LocalLocationHistory {
 		LOGGER.trace("folder="+folderURL);
 		if(folderURL.getScheme().equals(LocalFile.SCHEMA)) {
 			AbstractFile folder = FileFactory.getFile(folderURL);
-			if (folder.isDirectory() && (folder instanceof LocalFile) && !((LocalFile)folder.getRoot()).guessRemovableDrive()) {
+			// The folder may be a proxy to a local file, such as a metered file
+			if (folder.isDirectory() && folder.hasAncestor(LocalFile.class) && !folder.getRoot().getAncestor(LocalFile.class).guessRemovableDrive()) {
 				this.lastRecallableFolder = folder.getAbsolutePath();
 				LOGGER.trace("lastRecallableFolder= "+lastRecallableFolder);
 			}
@@ -127,11 +127,23 @@ public abstract class FileJob implements Runnable {
     /** Whether or not this job is executed in the background */
     private boolean runInBackground;
 
+    /** Priority of this job over the other jobs waiting to be started, see {@link #getPriority()} */
+    private int priority = NORMAL_PRIORITY;
+
+    /** Priority of jobs that should be started before the others */
+    public final static int HIGH_PRIORITY = 1;
+
+    /** Default priority of jobs */
+    public final static int NORMAL_PRIORITY = 0;
+
+    /** Priority of jobs that should be started after the others */
+    public final static int LOW_PRIORITY = -1;
+
     /**
      * Creates a new FileJob without starting it.
      *
      * @param progressDialog dialog which shows this job's progress
-     * @param mainFrame mainFrame this job has been triggered by
+     * @param mainFrame mainFrame this job has been triggered by, <code>null</code> for a job run without user interface
      * @param files files which are going to be processed
      */
     public FileJob(ProgressDialog progressDialog, MainFrame mainFrame, FileSet files) {
@@ -143,7 +155,7 @@ public abstract class FileJob implements Runnable {
     /**
      * Creates a new FileJob without starting it, and with no associated ProgressDialog.
      *
-     * @param mainFrame mainFrame this job has been triggered by
+     * @param mainFrame mainFrame this job has been triggered by, <code>null</code> for a job run without user interface
      * @param files files which are going to be processed
      */
     public FileJob(MainFrame mainFrame, FileSet files) {
@@ -203,18 +215,37 @@ public abstract class FileJob implements Runnable {
 	
 	
     /**
-     * Starts file job in a separate thread.
+     * Starts file job in a separate thread. Jobs that {@link #isDeviceIntensive() access their files intensively}
+     * may wait for other jobs running on the same devices to end before they are actually started, see
+     * {@link JobsManager#isJobQueued(FileJob)}.
      */
     public void start() {
         // Return if job has already been started
         if (getState() != FileJobState.NOT_STARTED)
             return;
 
+        if (isDeviceIntensive())
+            JobsManager.getInstance().scheduleJob(this);
+        else
+            startThread();
+    }
+
+    /**
+     * Starts the thread in which the file job is performed.
+     *
+     * @return <code>false</code> if the job has already been started, or has been interrupted before it was started
+     */
+    boolean startThread() {
+        if (getState() != FileJobState.NOT_STARTED)
+            return false;
+
         setState(FileJobState.RUNNING);
         startDate = System.currentTimeMillis();
 
         jobThread = new Thread(this, getClass().getName());
         jobThread.start();
+
+        return true;
     }
 
 
@@ -283,6 +314,28 @@ public abstract class FileJob implements Runnable {
     }
 
 
+    /**
+     * Returns the priority of this job over the other jobs waiting to be started: jobs of a higher priority are
+     * started first. The priority is {@link #NORMAL_PRIORITY} unless specified otherwise.
+     *
+     * @return the priority of this job
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the priority of this job over the other jobs waiting to be started. If this job is waiting to be started,
+     * it is moved in the queue accordingly.
+     *
+     * @param priority the new priority of this job, one of the <code>*_PRIORITY</code> constants or any other value
+     */
+    public void setPriority(int priority) {
+        this.priority = priority;
+
+        JobsManager.getInstance().jobPriorityChanged(this);
+    }
+
     /**
      * Registers a FileJobListener to receive notifications whenever state of this FileJob changes.
      *
@@ -433,8 +486,9 @@ public abstract class FileJob implements Runnable {
                 // Switch to RUNNING state and notify listeners
                 setState(FileJobState.RUNNING);
             }
-            // Pause job if it not paused already
-            else if(paused && getState() != FileJobState.PAUSED && getState() != FileJobState.INTERRUPTED && getState() != FileJobState.FINISHED) {
+            // Pause job if it not paused already, jobs waiting to be started cannot be paused
+            else if(paused && getState() != FileJobState.PAUSED && getState() != FileJobState.INTERRUPTED && getState() != FileJobState.FINISHED
+                    && getState() != FileJobState.NOT_STARTED) {
                 // Memorize pause time in order to calculate pause time when the job is resumed
                 setPauseStartDate();
                 // Call the jobPaused method to notify of the new job's state
@@ -582,6 +636,13 @@ public abstract class FileJob implements Runnable {
         if(NotifierProvider.isAvailable() && NotifierProvider.getNotifier().isEnabled())
             NotifierProvider.displayBackgroundNotification(NotificationType.JOB_ERROR, title, message);
 
+        // Without a main frame there is nobody to ask, e.g. when the job is run by a benchmark: stop the job
+        if(getMainFrame()==null) {
+            LOGGER.warn("{}: {}", title, message);
+            interrupt();
+            return FileJobAction.CANCEL;
+        }
+
         QuestionDialog dialog;
         if(getProgressDialog()==null)
             dialog = new QuestionDialog(getMainFrame(), 
@@ -641,6 +702,9 @@ public abstract class FileJob implements Runnable {
      * Check and if needed, refreshes both file tables's current folders, based on the job's refresh policy.
      */
     protected void refreshTables() {
+        if(mainFrame==null)
+            return;
+
     	FolderPanel activePanel = getMainFrame().getActivePanel();
     	FolderPanel inactivePanel = getMainFrame().getInactivePanel();
 
@@ -741,6 +805,25 @@ public abstract class FileJob implements Runnable {
     protected AbstractFile getBaseSourceFolder() {
         return baseSourceFolder;
     }
+
+    /**
+     * Returns the base destination folder, <code>null</code> if this job doesn't write files to another folder. This
+     * implementation returns <code>null</code>, jobs that have a destination folder should override it.
+     * @return the base destination folder
+     */
+    protected AbstractFile getBaseDestinationFolder() {
+        return null;
+    }
+
+    /**
+     * Returns <code>true</code> if this job reads or writes files intensively, in which case the number of such jobs
+     * running at once on the same device (local volume or remote server) is limited. This implementation returns
+     * <code>false</code>.
+     * @return <code>true</code> if this job reads or writes files intensively
+     */
+    protected boolean isDeviceIntensive() {
+        return false;
+    }
 	
 	
     /////////////////////////////
@@ -751,7 +834,7 @@ public abstract class FileJob implements Runnable {
      * This method is public as a side-effect of this class implementing <code>Runnable</code>.
      */
     public final void run() {
-        FileTable activeTable = getMainFrame().getActiveTable();
+        FileTable activeTable = getMainFrame()==null ? null : getMainFrame().getActiveTable();
 
         // Notify that this job has started
         jobStarted();
@@ -772,7 +855,7 @@ public abstract class FileJob implements Runnable {
 
             // Unmark file in active table if 'auto unmark' is enabled
             // and file was processed successfully
-            if (autoUnmark && success) {
+            if (autoUnmark && success && activeTable != null) {
                 // Do not repaint rows individually as it would be too expensive
                 activeTable.setFileMarked(currentFile, false, false);
             }
@@ -0,0 +1,280 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.protocol.local.LocalFile;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+
+/**
+ * Schedules the jobs that read and write files intensively, so that only a limited number of them access the same
+ * device at once. A device is either a local volume or a remote server, identified by its realm.
+ * <p>
+ * Jobs that are started while as many jobs as allowed are already running on one of their devices are queued. Queued
+ * jobs are ordered by {@link FileJob#getPriority() priority}, then by the order in which they were started, and can be
+ * moved in the queue. Whenever a job ends, the first queued jobs whose devices are all available are started. Jobs on
+ * different devices therefore keep on running concurrently. Jobs of {@link FileJob#HIGH_PRIORITY high priority}, which
+ * the user is waiting for, are started right away regardless of the jobs running on their devices.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @see JobsManager
+ */
+class JobScheduler implements FileJobListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobScheduler.class);
+
+    /** Prefix of the devices that are local volumes */
+    private final static String LOCAL_DEVICE_PREFIX = "local:";
+
+    /** Jobs waiting to be started, in the order they will be started */
+    private final List<FileJob> queue = new ArrayList<FileJob>();
+
+    /** Devices of the jobs that are queued or running */
+    private final Map<FileJob, Set<String>> jobDevices = new HashMap<FileJob, Set<String>>();
+
+    /** Number of running jobs, per device */
+    private final Map<String, Integer> runningJobs = new HashMap<String, Integer>();
+
+    /**
+     * Starts the given job if none of its devices is busy, queues it otherwise.
+     *
+     * @param job the job to start
+     */
+    synchronized void schedule(FileJob job) {
+        if (jobDevices.containsKey(job))
+            return;
+
+        jobDevices.put(job, getDevices(job));
+        job.addFileJobListener(this);
+
+        queue.add(getQueueIndex(job), job);
+        dispatch();
+    }
+
+    /**
+     * Releases the devices of the given job, which has ended, and starts the queued jobs that can run.
+     *
+     * @param job a job that has ended
+     */
+    synchronized void jobEnded(FileJob job) {
+        Set<String> devices = jobDevices.remove(job);
+        if (devices == null)
+            return;
+
+        job.removeFileJobListener(this);
+
+        if (!queue.remove(job)) {
+            for (String device : devices) {
+                int count = runningJobs.get(device) - 1;
+                if (count == 0)
+                    runningJobs.remove(device);
+                else
+                    runningJobs.put(device, count);
+            }
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Returns <code>true</code> if the given job is waiting to be started.
+     *
+     * @param job a job
+     * @return <code>true</code> if the given job is waiting to be started
+     */
+    synchronized boolean isQueued(FileJob job) {
+        return queue.contains(job);
+    }
+
+    /**
+     * Returns the jobs waiting to be started, in the order they will be started.
+     *
+     * @return the jobs waiting to be started
+     */
+    synchronized List<FileJob> getQueuedJobs() {
+        return new ArrayList<FileJob>(queue);
+    }
+
+    /**
+     * Moves the given job to the given position in the queue, regardless of its priority.
+     *
+     * @param job a queued job
+     * @param index the new position of the job in the queue
+     * @return <code>false</code> if the job is not queued
+     */
+    synchronized boolean moveJob(FileJob job, int index) {
+        if (!queue.remove(job))
+            return false;
+
+        queue.add(Math.max(0, Math.min(index, queue.size())), job);
+        dispatch();
+
+        return true;
+    }
+
+    /**
+     * Moves the given job in the queue according to its new priority, if it is queued.
+     *
+     * @param job a job whose priority has changed
+     */
+    synchronized void priorityChanged(FileJob job) {
+        if (!queue.remove(job))
+            return;
+
+        queue.add(getQueueIndex(job), job);
+        dispatch();
+    }
+
+    /**
+     * Returns the position at which the given job is queued: after the jobs of the same or a higher priority.
+     */
+    private int getQueueIndex(FileJob job) {
+        int index = 0;
+        while (index < queue.size() && queue.get(index).getPriority() >= job.getPriority())
+            index++;
+
+        return index;
+    }
+
+    /**
+     * Starts the queued jobs whose devices are all available, in the order of the queue.
+     */
+    private void dispatch() {
+        Iterator<FileJob> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            FileJob job = iterator.next();
+            Set<String> devices = jobDevices.get(job);
+
+            // Jobs of high priority do not wait for the jobs running on their devices
+            if (job.getPriority() < FileJob.HIGH_PRIORITY && !isAvailable(devices))
+                continue;
+
+            iterator.remove();
+
+            LOGGER.debug("starting {} on {}", job, devices);
+            if (!job.startThread()) {
+                // The job has been interrupted in the meantime
+                jobDevices.remove(job);
+                job.removeFileJobListener(this);
+                JobsManager.getInstance().jobEnded(job);
+                continue;
+            }
+
+            for (String device : devices) {
+                Integer count = runningJobs.get(device);
+                runningJobs.put(device, count == null ? 1 : count + 1);
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if fewer jobs than allowed are running on each of the given devices.
+     */
+    private boolean isAvailable(Set<String> devices) {
+        for (String device : devices) {
+            Integer count = runningJobs.get(device);
+            if (count != null && count >= getMaxRunningJobs(device))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the maximum number of jobs that can run at once on the given device.
+     */
+    private static int getMaxRunningJobs(String device) {
+        int max = device.startsWith(LOCAL_DEVICE_PREFIX)
+                ? MuConfigurations.getPreferences().getVariable(MuPreference.LOCAL_JOBS_PER_DEVICE, MuPreferences.DEFAULT_LOCAL_JOBS_PER_DEVICE)
+                : MuConfigurations.getPreferences().getVariable(MuPreference.REMOTE_JOBS_PER_DEVICE, MuPreferences.DEFAULT_REMOTE_JOBS_PER_DEVICE);
+
+        return max <= 0 ? Integer.MAX_VALUE : max;
+    }
+
+    /**
+     * Returns the devices the given job reads from and writes to.
+     */
+    private static Set<String> getDevices(FileJob job) {
+        Set<String> devices = new HashSet<String>();
+        addDevice(devices, job.getBaseSourceFolder());
+        addDevice(devices, job.getBaseDestinationFolder());
+
+        return devices;
+    }
+
+    /**
+     * Adds the device the given file is located on, if any, to the given set.
+     */
+    private static void addDevice(Set<String> devices, AbstractFile file) {
+        if (file != null)
+            devices.add(getDevice(file));
+    }
+
+    /**
+     * Returns the device the given file is located on: files located on the same device share the same key.
+     *
+     * @param file a file
+     * @return the key of the device the file is located on
+     */
+    static String getDevice(AbstractFile file) {
+        // Archive entries are located on the device of the archive
+        while (file.getParentArchive() != null)
+            file = file.getParentArchive();
+
+        if (file.hasAncestor(LocalFile.class))
+            return LOCAL_DEVICE_PREFIX + file.getVolume().getAbsolutePath();
+
+        return file.getURL().getRealm().toString(false);
+    }
+
+
+    ////////////////////////////////////
+    // FileJobListener implementation //
+    ////////////////////////////////////
+
+    /**
+     * Removes the queued jobs that are interrupted before they were started.
+     */
+    @Override
+    public void jobStateChanged(FileJob source, FileJobState oldState, FileJobState newState) {
+        if (newState != FileJobState.INTERRUPTED || !isQueued(source))
+            return;
+
+        // The job won't run, so it won't notify JobsManager that it has ended
+        JobsManager.getInstance().jobEnded(source);
+    }
+
+    @Override
+    public void jobExecutionModeChanged(FileJob source, boolean background) {
+    }
+}
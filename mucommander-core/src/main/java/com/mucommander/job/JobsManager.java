@@ -54,6 +54,9 @@ public class JobsManager implements FileJobListener {
 	/** A list of monitored jobs. */
 	private List<FileJob> jobs;
 
+	/** Starts the jobs that access files intensively, so that they don't compete for the same devices */
+	private final JobScheduler scheduler = new JobScheduler();
+
 	/** An instance of this class */
 	private static final JobsManager instance = new JobsManager();
 		
@@ -197,11 +200,67 @@ public class JobsManager implements FileJobListener {
 	 * @param job a job to remove
 	 */
 	void jobEnded(FileJob job) {
+	    scheduler.jobEnded(job);
+
 	    Timer timer = new Timer(FINISHED_JOB_REMOVE_TIME, event -> removeJob(job));
 	    timer.setRepeats(false);
 	    timer.start();
 	}
 
+	/**
+	 * Starts the given job once no more than the allowed number of jobs are running on the devices it accesses.
+	 * @param job a job to start
+	 */
+	void scheduleJob(FileJob job) {
+	    scheduler.schedule(job);
+	}
+
+	/**
+	 * Moves the given job in the queue of jobs waiting to be started, if it is queued, according to its new priority.
+	 * @param job a job whose priority has changed
+	 */
+	void jobPriorityChanged(FileJob job) {
+	    scheduler.priorityChanged(job);
+	}
+
+	/**
+	 * Returns the device (local volume or remote server) the given file is located on, as used to limit the number of
+	 * jobs accessing the same device at once: files located on the same device share the same key.
+	 * @param file a file
+	 * @return the key of the device the file is located on
+	 */
+	public static String getDevice(AbstractFile file) {
+	    return JobScheduler.getDevice(file);
+	}
+
+	/**
+	 * Checks if the given job is waiting for other jobs running on the same devices to end before it is started.
+	 * @param job a job to check
+	 * @return true if the job is waiting to be started, false otherwise
+	 */
+	public boolean isJobQueued(FileJob job) {
+	    return scheduler.isQueued(job);
+	}
+
+	/**
+	 * Returns jobs that are waiting to be started, in the order in which they will be started.
+	 * @return jobs that are waiting to be started.
+	 */
+	public List<FileJob> getQueuedJobs() {
+	    return scheduler.getQueuedJobs();
+	}
+
+	/**
+	 * Moves the given job to the given position in the queue of jobs waiting to be started, regardless of its
+	 * priority.
+	 * @param job a job waiting to be started
+	 * @param index the new position of the job in the queue, 0 to start it before the other queued jobs
+	 * @return true if the job has been moved, false if it is not waiting to be started
+	 */
+	public boolean moveQueuedJob(FileJob job, int index) {
+	    return scheduler.moveJob(job, index);
+	}
+
 	/**
 	 * Returns jobs that are running in the background.
 	 * @return jobs that are running in the background.
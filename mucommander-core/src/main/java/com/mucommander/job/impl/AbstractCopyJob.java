@@ -79,6 +79,11 @@ public abstract class AbstractCopyJob extends TransferFileJob {
         this.defaultFileExistsAction = fileExistsAction;
     }
 
+    @Override
+    protected AbstractFile getBaseDestinationFolder() {
+        return baseDestFolder;
+    }
+
     /**
      * Creates a destination file given a destination folder and a new file name.
      * @param destFolder a destination folder
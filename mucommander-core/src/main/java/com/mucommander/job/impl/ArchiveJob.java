@@ -63,6 +63,9 @@ public class ArchiveJob extends TransferFileJob {
     /** Lock to avoid Archiver.close() to be called while data is being written */
     private final Object ioLock = new Object();
 
+    /** Action to perform when the archive already exists, the user is asked by default */
+    private int fileExistsAction = FileCollisionDialog.ASK_ACTION;
+
 
     public ArchiveJob(ProgressDialog progressDialog, MainFrame mainFrame, FileSet files, AbstractFile destFile, int archiveFormat, String archiveComment) {
         super(progressDialog, mainFrame, files);
@@ -74,6 +77,16 @@ public class ArchiveJob extends TransferFileJob {
         this.baseFolderPath = getBaseSourceFolder().getAbsolutePath(false);
     }
 
+    /**
+     * Sets the action to perform when the archive already exists, instead of asking the user. Only
+     * {@link FileCollisionDialog#OVERWRITE_ACTION} lets the job go on, any other action cancels it.
+     *
+     * @param fileExistsAction a {@link FileCollisionDialog} action, {@link FileCollisionDialog#ASK_ACTION} to ask the user
+     */
+    public void setFileExistsAction(int fileExistsAction) {
+        this.fileExistsAction = fileExistsAction;
+    }
+
 
     ////////////////////////////////////
     // TransferFileJob implementation //
@@ -153,6 +166,11 @@ public class ArchiveJob extends TransferFileJob {
     // Overridden methods //
     ////////////////////////
 
+    @Override
+    protected AbstractFile getBaseDestinationFolder() {
+        return destFile.getParent();
+    }
+
     /**
      * Overriden method to initialize the archiver and handle the case where the destination file already exists.
      */
@@ -165,7 +183,9 @@ public class ArchiveJob extends TransferFileJob {
         if(collision!=FileCollisionChecker.NO_COLLOSION) {
             // File already exists in destination, ask the user what to do (cancel, overwrite,...) but
             // do not offer the multiple files mode options such as 'skip' and 'apply to all'.
-            int choice = waitForUserResponse(new FileCollisionDialog(getProgressDialog(), getMainFrame(), collision, null, destFile, false, false));
+            int choice = fileExistsAction==FileCollisionDialog.ASK_ACTION
+                ?waitForUserResponse(new FileCollisionDialog(getProgressDialog(), getMainFrame(), collision, null, destFile, false, false))
+                :fileExistsAction;
 
             // Overwrite file
             if (choice== FileCollisionDialog.OVERWRITE_ACTION) {
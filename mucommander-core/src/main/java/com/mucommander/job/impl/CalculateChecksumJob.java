@@ -80,6 +80,9 @@ public class CalculateChecksumJob extends TransferFileJob {
     /** The MessageDigest that serves to calculate the checksum */
     private MessageDigest digest;
 
+    /** Action to perform when the checksum file already exists, the user is asked by default */
+    private int fileExistsAction = FileCollisionDialog.ASK_ACTION;
+
 
     public CalculateChecksumJob(ProgressDialog progressDialog, MainFrame mainFrame, FileSet files, AbstractFile checksumFile, MessageDigest digest) {
         super(progressDialog, mainFrame, files);
@@ -91,6 +94,16 @@ public class CalculateChecksumJob extends TransferFileJob {
         this.baseSourcePath = getBaseSourceFolder().getAbsolutePath(true);
     }
 
+    /**
+     * Sets the action to perform when the checksum file already exists, instead of asking the user. Only
+     * {@link FileCollisionDialog#OVERWRITE_ACTION} lets the job go on, any other action cancels it.
+     *
+     * @param fileExistsAction a {@link FileCollisionDialog} action, {@link FileCollisionDialog#ASK_ACTION} to ask the user
+     */
+    public void setFileExistsAction(int fileExistsAction) {
+        this.fileExistsAction = fileExistsAction;
+    }
+
 
     ////////////////////////////////////
     // TransferFileJob implementation //
@@ -211,7 +224,9 @@ public class CalculateChecksumJob extends TransferFileJob {
         if(collision!=FileCollisionChecker.NO_COLLOSION) {
             // File already exists in destination, ask the user what to do (cancel, overwrite,...) but
             // do not offer the multiple files mode options such as 'skip' and 'apply to all'.
-            int choice = waitForUserResponse(new FileCollisionDialog(getProgressDialog(), getMainFrame(), collision, null, checksumFile, false, false));
+            int choice = fileExistsAction==FileCollisionDialog.ASK_ACTION
+                ?waitForUserResponse(new FileCollisionDialog(getProgressDialog(), getMainFrame(), collision, null, checksumFile, false, false))
+                :fileExistsAction;
 
             // Overwrite file
             if (choice== FileCollisionDialog.OVERWRITE_ACTION) {
@@ -255,8 +270,9 @@ public class CalculateChecksumJob extends TransferFileJob {
     protected void jobCompleted() {
         super.jobCompleted();
 
-        // Open the checksum file in a viewer
-        ViewerRegistrar.createViewerFrame(getMainFrame(), checksumFile, IconManager.getImageIcon(checksumFile.getIcon()).getImage());
+        // Open the checksum file in a viewer, unless the job is run without user interface
+        if(getMainFrame()!=null)
+            ViewerRegistrar.createViewerFrame(getMainFrame(), checksumFile, IconManager.getImageIcon(checksumFile.getIcon()).getImage());
     }
 
     @Override
@@ -22,13 +22,22 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.commons.io.BufferPool;
+import com.mucommander.commons.io.RandomAccessOutputStream;
 import com.mucommander.commons.io.StreamUtils;
+import com.mucommander.commons.io.ThroughputLimitInputStream;
+import com.mucommander.commons.io.security.CRC32Utils;
 import com.mucommander.job.FileJobAction;
 import com.mucommander.job.FileJobState;
 import com.mucommander.text.Translator;
@@ -37,6 +46,12 @@ import com.mucommander.ui.main.MainFrame;
 
 /**
  * This job combines files into one file, optionally checking the CRC of the merged file.
+ * <p>
+ * When the destination file can be written at random positions, it is created with its final size and the parts are
+ * copied concurrently, each one at its own offset. Otherwise, the parts are appended one after another. In both cases,
+ * the CRC of the merged file is combined from the CRC of each part, calculated while it is copied, rather than read
+ * again from the merged file.
+ * </p>
  * @author Mariusz Jakubowski
  */
 public class CombineFilesJob extends AbstractCopyJob {
@@ -46,6 +61,17 @@ public class CombineFilesJob extends AbstractCopyJob {
 	private OutputStream out;
 	private AbstractFile crcFile;
 
+	/** Copies the parts concurrently into the destination file, null if they are appended one after another */
+	private FileTransferPool transferPool;
+	/** Offset of each part in the destination file */
+	private long partOffsets[];
+	/** Length of each part */
+	private long partLengths[];
+	/** CRC32 checksum of each part */
+	private long partChecksums[];
+	/** Indexes of the parts whose concurrent copy failed, which are copied again by the job's thread */
+	private final Queue<Integer> failedParts = new ConcurrentLinkedQueue<Integer>();
+
 
 	public CombineFilesJob(ProgressDialog progressDialog, MainFrame mainFrame,
 			FileSet files, AbstractFile destFile,
@@ -69,11 +95,29 @@ public class CombineFilesJob extends AbstractCopyJob {
         
         if (getState() == FileJobState.INTERRUPTED)
             return false;
-        
+
+        int index = getCurrentFileIndex();
+        boolean processed = transferPool != null ? submitPart(index) : appendPart(file, index);
+
+        // Wait for all the parts to be written before the job completes
+        if (transferPool != null && index == getNbFiles()-1)
+            processed = completeConcurrentTransfers() && processed;
+
+        return processed;
+	}
+
+	/**
+	 * Appends the given part to the destination file.
+	 * @param file the part
+	 * @param index the index of the part
+	 * @return <code>true</code> if the part has been appended
+	 */
+	private boolean appendPart(AbstractFile file, int index) {
         try {
-			InputStream in = file.getInputStream();
-			setCurrentInputStream(in);
-			StreamUtils.copyStream(in, out);
+			InputStream in = setCurrentInputStream(file.getInputStream());
+			CheckedInputStream checkedIn = new CheckedInputStream(in, new CRC32());
+			partLengths[index] = StreamUtils.copyStream(checkedIn, out);
+			partChecksums[index] = checkedIn.getChecksum().getValue();
 		} catch (IOException e) {
             LOGGER.debug("Caught exception", e);
             showErrorDialog(errorDialogTitle,
@@ -89,6 +133,136 @@ public class CombineFilesJob extends AbstractCopyJob {
         
 		return true;
 	}
+
+	/**
+	 * Returns a pool for copying the parts concurrently into the destination file, or <code>null</code> if they
+	 * should be appended one after another. Computes the offset of each part in the destination file.
+	 */
+	private FileTransferPool createTransferPool() {
+		int nbParts = getNbFiles();
+		if (nbParts < 2 || append || getThroughputLimit() > 0
+				|| !destFile.isFileOperationSupported(FileOperation.RANDOM_WRITE_FILE)
+				|| destFile.getParentArchive() != null)
+			return null;
+
+		long offset = 0;
+		for (int i=0; i<nbParts; i++) {
+			long size = files.elementAt(i).getSize();
+			if (size < 0)
+				return null;
+			partOffsets[i] = offset;
+			partLengths[i] = size;
+			offset += size;
+		}
+
+		int nbThreads = FileTransferPool.getConcurrentTransfers(baseDestFolder);
+		if (nbThreads < 2)
+			return null;
+
+		// Allocate the whole file at once, so that parts can be written at their offset in any order
+		try (RandomAccessOutputStream raos = destFile.getRandomAccessOutputStream()) {
+			raos.setLength(offset);
+		} catch (IOException e) {
+			LOGGER.debug("failed to allocate "+destFile+", parts will be appended", e);
+			return null;
+		}
+
+		return new FileTransferPool(Math.min(nbThreads, nbParts), "CombineFilesJob transfer");
+	}
+
+	/**
+	 * Hands the given part to the transfer pool. If the copy fails, the part is copied again by the job's thread
+	 * in {@link #completeConcurrentTransfers()}, which reports errors to the user.
+	 * @param index the index of the part
+	 * @return <code>true</code> if the part has been submitted
+	 */
+	private boolean submitPart(int index) {
+		try {
+			transferPool.submit(() -> {
+				if (getState() == FileJobState.INTERRUPTED)
+					return;
+
+				try {
+					copyPart(index);
+				} catch (IOException e) {
+					LOGGER.debug("concurrent copy of part "+files.elementAt(index)+" failed", e);
+					failedParts.add(index);
+				}
+			});
+
+			return true;
+		} catch (InterruptedException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Copies the given part at its offset in the destination file, calculating its CRC32 checksum.
+	 * @param index the index of the part
+	 * @throws IOException if an error occurred while copying the part
+	 */
+	private void copyPart(int index) throws IOException {
+		AbstractFile part = files.elementAt(index);
+		ThroughputLimitInputStream in = addConcurrentInputStream(part.getInputStream());
+		try {
+			CheckedInputStream checkedIn = new CheckedInputStream(in, new CRC32());
+			try (RandomAccessOutputStream raos = destFile.getRandomAccessOutputStream()) {
+				raos.seek(partOffsets[index]);
+				long written = StreamUtils.copyStream(checkedIn, raos, BufferPool.getDefaultBufferSize(), partLengths[index]);
+				if (written != partLengths[index])
+					throw new IOException("unexpected end of "+part);
+			}
+			partChecksums[index] = checkedIn.getChecksum().getValue();
+		} finally {
+			removeConcurrentInputStream(in);
+		}
+	}
+
+	/**
+	 * Waits for the transfer pool to copy the parts that were submitted to it, then copies the parts whose copy
+	 * failed again.
+	 * @return <code>true</code> if all the parts have been copied
+	 */
+	private boolean completeConcurrentTransfers() {
+		try {
+			transferPool.awaitCompletion();
+		} catch (InterruptedException e) {
+			return false;
+		}
+
+		Integer index;
+		while ((index = failedParts.poll()) != null) {
+			if (getState() == FileJobState.INTERRUPTED)
+				return false;
+
+			nextFile(files.elementAt(index));
+			try {
+				copyPart(index);
+			} catch (IOException e) {
+				LOGGER.debug("Caught exception", e);
+				showErrorDialog(errorDialogTitle,
+						Translator.get("error_while_transferring", destFile.getName()),
+						new String[]{FileJobAction.CANCEL_TEXT},
+						new int[]{FileJobAction.CANCEL}
+						);
+				interrupt();
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Combines the checksums of the parts into the checksum of the merged file.
+	 */
+	private String getCombinedChecksum() {
+		long crc = 0;
+		for (int i=0; i<partChecksums.length; i++)
+			crc = CRC32Utils.combine(crc, partChecksums[i], partLengths[i]);
+
+		return CRC32Utils.toHexString(crc);
+	}
 	
 	/**
 	 * Creates the destination (merged) file.
@@ -103,6 +277,15 @@ public class CombineFilesJob extends AbstractCopyJob {
         	return;
         }
         
+        int nbParts = getNbFiles();
+        partOffsets = new long[nbParts];
+        partLengths = new long[nbParts];
+        partChecksums = new long[nbParts];
+
+        transferPool = createTransferPool();
+        if (transferPool != null)
+            return;
+
         try {
     		out = destFile.getOutputStream();
         } catch(IOException e) {
@@ -135,6 +318,8 @@ public class CombineFilesJob extends AbstractCopyJob {
     protected void jobStopped() {
 		super.jobStopped();
 		closeOutputStream();
+		if (transferPool != null)
+			transferPool.shutdown();
 	}
 	
 	@Override
@@ -162,7 +347,7 @@ public class CombineFilesJob extends AbstractCopyJob {
 			BufferedReader crcReader = new BufferedReader(new InputStreamReader(crcIn));
 			String crcLine = crcReader.readLine();
 			crcLine = crcLine.substring(crcLine.lastIndexOf(' ')+1).trim();
-			String crcDest = destFile.calculateChecksum("CRC32");
+			String crcDest = getCombinedChecksum();
 			if (!crcLine.equals(crcDest)) {
 	            showErrorDialog(errorDialogTitle,
 	                    Translator.get("combine_files_job.crc_check_failed", crcDest, crcLine),
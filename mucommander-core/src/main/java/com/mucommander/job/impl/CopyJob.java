@@ -19,6 +19,10 @@
 package com.mucommander.job.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +34,7 @@ import com.mucommander.commons.file.archive.AbstractArchiveFile;
 import com.mucommander.commons.file.archive.AbstractRWArchiveFile;
 import com.mucommander.commons.file.protocol.local.LocalFile;
 import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.commons.io.FileTransferException;
 import com.mucommander.job.FileJobAction;
 import com.mucommander.job.FileJobState;
 import com.mucommander.text.Translator;
@@ -52,6 +57,23 @@ public class CopyJob extends AbstractCopyJob {
     /** Operating mode : COPY_MODE or DOWNLOAD_MODE */
     private TransferMode mode;
 
+    /** Files larger than this are always copied by the job's thread, where their progress can be reported */
+    private final static long MAX_CONCURRENT_TRANSFER_SIZE = 8*1048576;
+
+    /** Pool of threads copying regular files while the job's thread walks the source tree, null if files are copied
+     * sequentially */
+    private FileTransferPool transferPool;
+
+    /** True once {@link #transferPool} has been initialized */
+    private boolean transferPoolInitialized;
+
+    /** Source and destination files of the concurrent transfers that failed, which are retried by the job's thread */
+    private final Queue<AbstractFile[]> failedTransfers = new ConcurrentLinkedQueue<AbstractFile[]>();
+
+    /** Source and destination folders whose date is to be set once concurrent transfers have completed, in the
+     * order in which the folders have been processed */
+    private final List<AbstractFile[]> pendingFolderDates = new ArrayList<AbstractFile[]>();
+
     public enum TransferMode {
         COPY,
         DOWNLOAD
@@ -92,6 +114,25 @@ public class CopyJob extends AbstractCopyJob {
      */
     @Override
     protected boolean processFile(AbstractFile file, Object recurseParams) {
+        boolean processed = copyRecursively(file, recurseParams);
+
+        // Wait for the files of a top-level folder to be copied before moving on to the next top-level file
+        if (recurseParams==null)
+            completeConcurrentTransfers();
+
+        return processed;
+    }
+
+    /**
+     * Copies recursively the given file or folder. Regular files located in a folder may be handed to the transfer
+     * pool rather than copied by the calling thread, see {@link #completeConcurrentTransfers()}.
+     *
+     * @param file the file or folder to move
+     * @param recurseParams destination folder where the given file will be copied (null for top level files)
+     *
+     * @return <code>true</code> if the file has been copied, or is being copied concurrently.
+     */
+    private boolean copyRecursively(AbstractFile file, Object recurseParams) {
         // Stop if interrupted
         if (getState() == FileJobState.INTERRUPTED)
             return false;
@@ -100,7 +141,7 @@ public class CopyJob extends AbstractCopyJob {
         AbstractFile destFolder = recurseParams==null ? baseDestFolder : (AbstractFile)recurseParams;
 		
         // Is current file in base folder ?
-        boolean isFileInBaseFolder = files.indexOf(file)!=-1;
+        boolean isFileInBaseFolder = recurseParams==null;
 
         // Determine filename in destination
         String destFileName = isFileInBaseFolder && newName!=null ? newName : file.getName();
@@ -168,16 +209,12 @@ public class CopyJob extends AbstractCopyJob {
                     // needs to work with the folder after calling super.processFile.
                     currentDestFile = destFile;
 
-                    // Only when finished with folder, set destination folder's date to match the original folder one
-                    if (destFile.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
-                        try {
-                            destFile.changeDate(file.getDate());
-                        }
-                        catch (IOException e) {
-                            LOGGER.debug("failed to change the date of "+destFile, e);
-                            // Fail silently
-                        }
-                    }
+                    // Only when finished with folder, set destination folder's date to match the original folder one.
+                    // If files are still being copied to the folder, this has to wait until they are.
+                    if (transferPool!=null)
+                        pendingFolderDates.add(new AbstractFile[]{file, destFile});
+                    else
+                        copyFolderDate(file, destFile);
 
                     return true;
                 }
@@ -194,11 +231,126 @@ public class CopyJob extends AbstractCopyJob {
         }
         // File is a regular file, copy it
         else  {
-            // Copy the file
+            // Copy the file in the transfer pool if possible, top-level files are always copied by the job's thread
+            if (!isFileInBaseFolder && canCopyConcurrently(file))
+                return submitTransfer(file, destFile);
+
             return tryCopyFile(file, destFile, append, errorDialogTitle);
         }
     }
 
+    /**
+     * Sets the date of the given destination folder to match the source folder's one, failing silently.
+     */
+    private void copyFolderDate(AbstractFile sourceFolder, AbstractFile destFolder) {
+        if (destFolder.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
+            try {
+                destFolder.changeDate(sourceFolder.getDate());
+            }
+            catch (IOException e) {
+                LOGGER.debug("failed to change the date of "+destFolder, e);
+                // Fail silently
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the given regular file can be copied by the transfer pool. Files are copied
+     * concurrently only when none of the per-file features of the job (appending, integrity check, throughput limit,
+     * progress of the current file) is needed and the destination allows it.
+     */
+    private boolean canCopyConcurrently(AbstractFile file) {
+        if (append || isIntegrityCheckEnabled() || getThroughputLimit()>0)
+            return false;
+
+        long size = file.getSize();
+        if (size<0 || size>MAX_CONCURRENT_TRANSFER_SIZE)
+            return false;
+
+        return getTransferPool()!=null;
+    }
+
+    /**
+     * Returns the pool used to copy files concurrently, creating it the first time this method is called. Returns
+     * <code>null</code> if files cannot or should not be copied concurrently.
+     */
+    private FileTransferPool getTransferPool() {
+        if (!transferPoolInitialized) {
+            transferPoolInitialized = true;
+
+            // Archive entries are neither read nor written concurrently
+            AbstractFile baseSourceFolder = getBaseSourceFolder();
+            if (baseSourceFolder==null || baseSourceFolder.getParentArchive()!=null || baseDestFolder.getParentArchive()!=null)
+                return null;
+
+            int nbThreads = FileTransferPool.getConcurrentTransfers(baseDestFolder);
+
+            if (nbThreads>1)
+                transferPool = new FileTransferPool(nbThreads, "CopyJob transfer");
+        }
+
+        return transferPool;
+    }
+
+    /**
+     * Hands the given file to the transfer pool. If the transfer fails, the file is copied again by the job's thread
+     * in {@link #completeConcurrentTransfers()}, which reports errors to the user like it does for any other file.
+     *
+     * @return <code>true</code> if the file has been submitted
+     */
+    private boolean submitTransfer(AbstractFile sourceFile, AbstractFile destFile) {
+        try {
+            transferPool.submit(() -> {
+                if (getState() == FileJobState.INTERRUPTED)
+                    return;
+
+                try {
+                    copyFileConcurrently(sourceFile, destFile);
+                }
+                catch (FileTransferException | RuntimeException e) {
+                    LOGGER.debug("concurrent transfer of "+sourceFile+" failed", e);
+                    failedTransfers.add(new AbstractFile[]{sourceFile, destFile});
+                }
+            });
+
+            return true;
+        }
+        catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Waits for the transfer pool to copy the files that were submitted to it, then copies the files whose transfer
+     * failed again, and finally sets the date of the folders that were created. This method is called after each
+     * top-level file, subclasses that process files with a destination folder of their own must call it once they
+     * are done.
+     */
+    protected void completeConcurrentTransfers() {
+        if (transferPool==null)
+            return;
+
+        try {
+            transferPool.awaitCompletion();
+        }
+        catch (InterruptedException e) {
+            return;
+        }
+
+        AbstractFile[] failedTransfer;
+        while ((failedTransfer = failedTransfers.poll())!=null) {
+            if (getState() == FileJobState.INTERRUPTED)
+                return;
+
+            nextFile(failedTransfer[0]);
+            tryCopyFile(failedTransfer[0], failedTransfer[1], false, errorDialogTitle);
+        }
+
+        for (AbstractFile[] folders : pendingFolderDates)
+            copyFolderDate(folders[0], folders[1]);
+        pendingFolderDates.clear();
+    }
+
 
 
     // This job modifies baseDestFolder and its subfolders
@@ -212,6 +364,14 @@ public class CopyJob extends AbstractCopyJob {
     // Overridden methods //
     ////////////////////////
 
+    @Override
+    protected void jobStopped() {
+        super.jobStopped();
+
+        if (transferPool!=null)
+            transferPool.shutdown();
+    }
+
     @Override
     protected void jobCompleted() {
         super.jobCompleted();
@@ -19,6 +19,10 @@
 package com.mucommander.job.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +30,7 @@ import org.slf4j.LoggerFactory;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.archive.AbstractArchiveFile;
 import com.mucommander.commons.file.archive.AbstractRWArchiveFile;
+import com.mucommander.commons.file.protocol.FileProtocols;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.core.desktop.DesktopManager;
 import com.mucommander.desktop.AbstractTrash;
@@ -47,6 +52,11 @@ import com.mucommander.ui.main.WindowManager;
  * folders are deleted recursively
  * </ul>
  *
+ * <p>When files are permanently deleted, the contents of folders are listed and deleted concurrently by several threads,
+ * as many as the folders' protocol can sustain. Folders located on protocols that can delete a whole tree at once
+ * (see {@link #BULK_DELETE_PROTOCOLS}) are deleted with {@link AbstractFile#deleteRecursively()}, falling back to
+ * deleting files one by one if that fails.</p>
+ *
  * @author Maxence Bernard
  */
 public class DeleteJob extends FileJob {
@@ -67,6 +77,23 @@ public class DeleteJob extends FileJob {
     /** True when an archive is being optimized */
     private boolean isOptimizingArchive;
 
+    /** Deletes the contents of folders concurrently, null if moveToTrash is true */
+    private ForkJoinPool pool;
+
+    /** Ensures that errors are reported to the user one at a time */
+    private final Object errorLock = new Object();
+
+    /** Number of files deleted concurrently on local volumes */
+    private final static int LOCAL_PARALLELISM = 4;
+
+    /** Number of files deleted concurrently on remote servers */
+    private final static int REMOTE_PARALLELISM = 8;
+
+    /** Protocols whose folders are first attempted to be deleted with a single call to {@link AbstractFile#deleteRecursively()}.
+     * Local folders are not, as such a call could not report progress nor be paused or cancelled while it walks a large
+     * tree: they are walked concurrently instead, so that each file goes through {@link #nextFile(AbstractFile)}. */
+    private final static String BULK_DELETE_PROTOCOLS[] = {FileProtocols.S3};
+
 
     /**
      * Creates a new DeleteJob without starting it.
@@ -125,22 +152,121 @@ public class DeleteJob extends FileJob {
         if (getState() == FileJobState.INTERRUPTED)
             return false;
 
-        // Delete files recursively, only if trash is not used.
+        if (moveToTrash)
+            return delete(file);
+
+        return pool.invoke(new DeleteTask(file));
+    }
+
+    /**
+     * Deletes the given file, asking the user what to do if it cannot be deleted.
+     *
+     * @param file the file to delete
+     * @return <code>true</code> if the file has been deleted
+     */
+    private boolean delete(AbstractFile file) {
         int ret;
-        if(!moveToTrash && file.isDirectory()) {
-            String filePath = file.getAbsolutePath();
-            filePath = filePath.substring(getBaseSourceFolder().getAbsolutePath(false).length()+1, filePath.length());
+        do {		// Loop for retry
+            try {
+                deleteFile(file);
+
+                return true;
+            }
+            catch(IOException e) {
+                LOGGER.debug("IOException caught", e);
+
+                ret = showErrorDialog(errorDialogTitle,
+                                      Translator.get(file.isDirectory()?"cannot_delete_folder":"cannot_delete_file", file.getName())
+                                      );
+                // Retry loops
+                if(ret==FileJobAction.RETRY)
+                    continue;
+                // Cancel, skip or close dialog returns false
+                return false;
+            }
+        } while(true);
+    }
+
+    /**
+     * Returns the number of files that can be deleted concurrently in the given folder.
+     *
+     * @param folder the folder whose files are deleted
+     * @return the number of files that can be deleted concurrently
+     */
+    private static int getParallelism(AbstractFile folder) {
+        if(folder.getParentArchive()!=null)
+            return 1;
+
+        return FileProtocols.FILE.equals(folder.getURL().getScheme())?LOCAL_PARALLELISM:REMOTE_PARALLELISM;
+    }
+
+    /**
+     * Returns <code>true</code> if the given folder can be deleted with a single call to
+     * {@link AbstractFile#deleteRecursively()}.
+     *
+     * @param folder a folder
+     * @return <code>true</code> if the given folder can be deleted with a single call
+     */
+    private static boolean canDeleteInBulk(AbstractFile folder) {
+        String scheme = folder.getURL().getScheme();
+        for(String protocol : BULK_DELETE_PROTOCOLS)
+            if(protocol.equals(scheme))
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Deletes a file or folder recursively, deleting the contents of folders concurrently.
+     */
+    private class DeleteTask extends RecursiveTask<Boolean> {
+
+        private final AbstractFile file;
+
+        private DeleteTask(AbstractFile file) {
+            this.file = file;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (getState() == FileJobState.INTERRUPTED)
+                return false;
+
+            // Notify job that we're starting to process this file (needed for recursive calls to processFile),
+            // this also blocks while the job is paused
+            nextFile(file);
 
             // Important: symlinks must *not* be followed -- following symlinks could have disastrous effects.
-            if(!file.isSymlink()) {
+            if(file.isDirectory() && !file.isSymlink()) {
+                if(canDeleteInBulk(file)) {
+                    try {
+                        file.deleteRecursively();
+                        return true;
+                    }
+                    catch(IOException e) {
+                        LOGGER.debug("Failed to delete {} at once, deleting its files one by one", file, e);
+                    }
+                }
+
+                String filePath = file.getAbsolutePath();
+                filePath = filePath.substring(getBaseSourceFolder().getAbsolutePath(false).length()+1, filePath.length());
+
+                int ret;
                 do {		// Loop for retry
                     // Delete each file in this folder
                     try {
                         AbstractFile subFiles[] = file.ls();
-                        for(int i=0; i<subFiles.length && getState() != FileJobState.INTERRUPTED; i++) {
-                            // Notify job that we're starting to process this file (needed for recursive calls to processFile)
-                            nextFile(subFiles[i]);
-                            processFile(subFiles[i], null);
+                        List<DeleteTask> tasks = new ArrayList<DeleteTask>(subFiles.length);
+                        for(AbstractFile subFile : subFiles)
+                            tasks.add(new DeleteTask(subFile));
+
+                        // Archive entries are deleted by rewriting the archive, one at a time
+                        if(file.isArchive() || file.getParentArchive()!=null) {
+                            for(DeleteTask task : tasks)
+                                task.invoke();
+                        }
+                        else {
+                            invokeAll(tasks);
                         }
                         break;
                     }
@@ -156,30 +282,13 @@ public class DeleteJob extends FileJob {
                     }
                 } while(true);
             }
-        }
-        // Return now if the job was interrupted, so that we do not attempt to delete this folder
-        if (getState() == FileJobState.INTERRUPTED)
-            return false;
-
-        do {		// Loop for retry
-            try {
-                deleteFile(file);
 
-                return true;
-            }
-            catch(IOException e) {
-                LOGGER.debug("IOException caught", e);
-
-                ret = showErrorDialog(errorDialogTitle,
-                                      Translator.get(file.isDirectory()?"cannot_delete_folder":"cannot_delete_file", file.getName())
-                                      );
-                // Retry loops
-                if(ret==FileJobAction.RETRY)
-                    continue;
-                // Cancel, skip or close dialog returns false
+            // Return now if the job was interrupted, so that we do not attempt to delete this folder
+            if (getState() == FileJobState.INTERRUPTED)
                 return false;
-            }
-        } while(true);
+
+            return delete(file);
+        }
     }
 
     // This job modifies baseFolder and subfolders
@@ -193,10 +302,40 @@ public class DeleteJob extends FileJob {
     // Overridden methods //
     ////////////////////////
 
+    @Override
+    protected boolean isDeviceIntensive() {
+        return !moveToTrash;
+    }
+
+    @Override
+    protected void jobStarted() {
+        super.jobStarted();
+
+        if(!moveToTrash)
+            pool = new ForkJoinPool(getParallelism(getBaseSourceFolder()));
+    }
+
+    /**
+     * Overridden to report the errors of the files being deleted concurrently one at a time. Errors that occur after
+     * the job has been interrupted are not reported.
+     */
+    @Override
+    protected int showErrorDialog(String title, String message, String actionTexts[], int actionValues[]) {
+        synchronized(errorLock) {
+            if (getState() == FileJobState.INTERRUPTED)
+                return FileJobAction.CANCEL;
+
+            return super.showErrorDialog(title, message, actionTexts, actionValues);
+        }
+    }
+
     @Override
     protected void jobStopped() {
         super.jobStopped();
 
+        if(pool!=null)
+            pool.shutdown();
+
         if(moveToTrash)
             trash.waitForPendingOperations();
     }
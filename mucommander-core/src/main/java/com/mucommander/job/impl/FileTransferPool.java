@@ -0,0 +1,124 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job.impl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.protocol.local.LocalFile;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+
+/**
+ * A small pool of worker threads used by a job to transfer several files at once, while its own thread keeps on
+ * walking the source file tree.
+ * <p>
+ * The number of tasks that can be pending at any given time is bounded: {@link #submit(Runnable)} blocks the calling
+ * thread when the workers are lagging behind, which keeps the job's thread from getting too far ahead of the actual
+ * transfers.
+ * </p>
+ */
+class FileTransferPool {
+
+    /** Executes the tasks */
+    private final ExecutorService executor;
+
+    /** Limits the number of tasks queued or being executed */
+    private final Semaphore permits;
+
+    /** Maximum number of tasks queued or being executed */
+    private final int maxPendingTasks;
+
+    /**
+     * Creates a new pool using the given number of worker threads.
+     *
+     * @param nbThreads the number of worker threads, must be greater than 0
+     * @param name the name of the worker threads, a sequence number is appended to it
+     */
+    FileTransferPool(int nbThreads, final String name) {
+        this.maxPendingTasks = nbThreads*2;
+        this.permits = new Semaphore(maxPendingTasks);
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(nbThreads, runnable -> {
+            Thread thread = new Thread(runnable, name+" #"+threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the number of files that the user allows to be transferred at once to the given destination, as set
+     * in the preferences for local and remote destinations.
+     *
+     * @param destFolder the folder files are transferred to
+     * @return the number of files that can be transferred at once, 1 if files must be transferred one at a time
+     */
+    static int getConcurrentTransfers(AbstractFile destFolder) {
+        return destFolder.hasAncestor(LocalFile.class)
+                ? MuConfigurations.getPreferences().getVariable(MuPreference.LOCAL_CONCURRENT_TRANSFERS, MuPreferences.DEFAULT_LOCAL_CONCURRENT_TRANSFERS)
+                : MuConfigurations.getPreferences().getVariable(MuPreference.REMOTE_CONCURRENT_TRANSFERS, MuPreferences.DEFAULT_REMOTE_CONCURRENT_TRANSFERS);
+    }
+
+    /**
+     * Submits a task to the pool, blocking until there is room for it if too many tasks are already pending.
+     *
+     * @param task the task to execute
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     */
+    void submit(Runnable task) throws InterruptedException {
+        permits.acquire();
+
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                }
+                finally {
+                    permits.release();
+                }
+            });
+        }
+        catch(RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Blocks until all the tasks submitted so far have been executed.
+     *
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     */
+    void awaitCompletion() throws InterruptedException {
+        permits.acquire(maxPendingTasks);
+        permits.release(maxPendingTasks);
+    }
+
+    /**
+     * Stops the worker threads once the pending tasks have been executed. No more tasks can be submitted after this
+     * method has been called.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+}
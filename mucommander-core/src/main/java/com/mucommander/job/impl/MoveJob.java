@@ -31,6 +31,7 @@ import com.mucommander.commons.file.archive.AbstractRWArchiveFile;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.job.FileJobAction;
 import com.mucommander.job.FileJobState;
+import com.mucommander.job.JobsManager;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.dialog.file.ProgressDialog;
 import com.mucommander.ui.main.MainFrame;
@@ -271,6 +272,22 @@ public class MoveJob extends AbstractCopyJob {
     // Overridden methods //
     ////////////////////////
 
+    /**
+     * Overridden to return <code>false</code> when the files are moved within the same device, where they are renamed
+     * rather than copied: renaming files does not keep the device busy.
+     */
+    @Override
+    protected boolean isDeviceIntensive() {
+        if(renameMode)
+            return false;
+
+        AbstractFile sourceFolder = getBaseSourceFolder();
+        return sourceFolder==null
+            || !sourceFolder.getURL().schemeEquals(baseDestFolder.getURL())
+            || !sourceFolder.isFileOperationSupported(FileOperation.RENAME)
+            || !JobsManager.getDevice(sourceFolder).equals(JobsManager.getDevice(baseDestFolder));
+    }
+
     @Override
     protected void jobCompleted() {
         super.jobCompleted();
@@ -22,6 +22,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,7 +40,10 @@ import com.mucommander.commons.io.BufferPool;
 import com.mucommander.commons.io.ChecksumInputStream;
 import com.mucommander.commons.io.FileTransferError;
 import com.mucommander.commons.io.FileTransferException;
+import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.StreamUtils;
+import com.mucommander.commons.io.ThroughputLimitInputStream;
+import com.mucommander.commons.io.security.CRC32Utils;
 import com.mucommander.job.FileJobAction;
 import com.mucommander.job.FileJobState;
 import com.mucommander.text.Translator;
@@ -48,6 +55,12 @@ import com.mucommander.ui.main.MainFrame;
 
 /**
  * This job split the file into parts with given size.
+ * <p>
+ * When the source file can be read at random positions and the destination has enough free space for all the parts,
+ * parts are written concurrently, each one read from its own offset in the source file. The CRC of the source file is
+ * then combined from the CRC of each part. Otherwise, the source file is read once, from start to end, and the parts
+ * written one after another, which allows the user to insert a new media when the destination is full.
+ * </p>
  * @author Mariusz Jakubowski
  */
 public class SplitFileJob extends AbstractCopyJob {
@@ -60,6 +73,15 @@ public class SplitFileJob extends AbstractCopyJob {
 	private long sizeLeft;
 	private boolean recalculateCRC;
 
+	/** Copies the parts concurrently, null if they are copied one after another from origFileStream */
+	private FileTransferPool transferPool;
+	/** Destination file of each part copied concurrently, null for the parts that were skipped */
+	private AbstractFile partFiles[];
+	/** CRC32 checksum of each part copied concurrently */
+	private long partChecksums[];
+	/** Indexes of the parts whose concurrent copy failed, which are copied again by the job's thread */
+	private final Queue<Integer> failedParts = new ConcurrentLinkedQueue<Integer>();
+
 
 	/**
 	 * A class for holding file name and size of one part.
@@ -89,7 +111,6 @@ public class SplitFileJob extends AbstractCopyJob {
         this.sourceFile = file;
         this.destFolder = destFolder;
         this.errorDialogTitle = Translator.get("split_file_dialog.error_title");
-        createInputStream();
         sizeLeft = sourceFile.getSize();
         for (int i=1; i<=parts; i++) {
         	addDummyFile(i, Math.min(partSize, sizeLeft));
@@ -122,7 +143,44 @@ public class SplitFileJob extends AbstractCopyJob {
 	@Override
     protected void jobStarted() {
 		super.jobStarted();
-		createInputStream();
+		transferPool = createTransferPool();
+		if (transferPool == null) {
+			createInputStream();
+		} else {
+			partFiles = new AbstractFile[getNbFiles()];
+			partChecksums = new long[getNbFiles()];
+		}
+	}
+
+	/**
+	 * Returns a pool for copying the parts concurrently, or <code>null</code> if they should be copied one after
+	 * another.
+	 */
+	private FileTransferPool createTransferPool() {
+		int nbParts = getNbFiles();
+		if (nbParts < 2 || getThroughputLimit() > 0 || !sourceFile.isFileOperationSupported(FileOperation.RANDOM_READ_FILE))
+			return null;
+
+		// Archive entries are neither read nor written concurrently
+		if (sourceFile.getParentArchive() != null || destFolder.getParentArchive() != null)
+			return null;
+
+		// Parts are written one after another unless they all fit in the destination, so that the user can be asked
+		// to insert a new media when it's full
+		try {
+			long freeSpace = destFolder.getFreeSpace();
+			if (freeSpace < 0 || freeSpace < sourceFile.getSize())
+				return null;
+		} catch (IOException e) {
+			LOGGER.debug("failed to get the free space of "+destFolder, e);
+			return null;
+		}
+
+		int nbThreads = FileTransferPool.getConcurrentTransfers(destFolder);
+		if (nbThreads < 2)
+			return null;
+
+		return new FileTransferPool(Math.min(nbThreads, nbParts), "SplitFileJob transfer");
 	}
 
 	/**
@@ -157,18 +215,41 @@ public class SplitFileJob extends AbstractCopyJob {
 
     @Override
     protected boolean processFile(AbstractFile file, Object recurseParams) {
+        boolean processed = splitPart(file);
+
+        // Wait for all the parts to be written before the job completes
+        if (transferPool != null && getCurrentFileIndex() == getNbFiles()-1)
+            processed = completeConcurrentTransfers() && processed;
+
+        return processed;
+    }
+
+    /**
+     * Writes the given part, or hands it to the transfer pool if parts are copied concurrently.
+     *
+     * @param file the part to write
+     * @return <code>true</code> if the part has been written, or is being written concurrently
+     */
+    private boolean splitPart(AbstractFile file) {
         if (getState() == FileJobState.INTERRUPTED)
             return false;
         
         // Create destination AbstractFile instance
         AbstractFile destFile = createDestinationFile(file, baseDestFolder, file.getName());
-        if (destFile == null)
+        if (destFile == null) {
+            recalculateCRC = true;
             return false;
+        }
 
         destFile = checkForCollision(sourceFile, baseDestFolder, destFile, false);
-        if (destFile == null)
+        if (destFile == null) {
+            recalculateCRC = true;
             return false;
-        
+        }
+
+        if (transferPool != null)
+            return submitPart(getCurrentFileIndex(), destFile);
+
         OutputStream out = null;
         try {
 			out = destFile.getOutputStream();
@@ -200,29 +281,7 @@ public class SplitFileJob extends AbstractCopyJob {
 				}
 			}
 			
-	        // Preserve source file's date
-            if(destFile.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
-                try {
-                    destFile.changeDate(sourceFile.getDate());
-                }
-                catch (IOException e) {
-                    LOGGER.debug("failed to change date of "+destFile, e);
-                    // Fail silently
-                }
-            }
-
-	        // Preserve source file's permissions: preserve only the permissions bits that are supported by the source
-            // file and use default permissions for the rest of them.
-            if(destFile.isFileOperationSupported(FileOperation.CHANGE_PERMISSION)) {
-                try {
-                    // use #importPermissions(AbstractFile, int) to avoid isDirectory test
-                    destFile.importPermissions(sourceFile, FilePermissions.DEFAULT_FILE_PERMISSIONS);
-                }
-                catch (IOException e) {
-                    LOGGER.debug("failed to import "+sourceFile+" permissions into "+destFile, e);
-                    // Fail silently
-                }
-            }
+	        copyAttributes(destFile);
 		}
         catch (IOException e) {
             LOGGER.debug("Caught exception", e);
@@ -247,17 +306,181 @@ public class SplitFileJob extends AbstractCopyJob {
     }
 
 
+    /**
+     * Preserves the source file's date and permissions in the given part.
+     *
+     * @param destFile a part
+     */
+    private void copyAttributes(AbstractFile destFile) {
+        // Preserve source file's date
+        if(destFile.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
+            try {
+                destFile.changeDate(sourceFile.getDate());
+            }
+            catch (IOException e) {
+                LOGGER.debug("failed to change date of "+destFile, e);
+                // Fail silently
+            }
+        }
+
+        // Preserve source file's permissions: preserve only the permissions bits that are supported by the source
+        // file and use default permissions for the rest of them.
+        if(destFile.isFileOperationSupported(FileOperation.CHANGE_PERMISSION)) {
+            try {
+                // use #importPermissions(AbstractFile, int) to avoid isDirectory test
+                destFile.importPermissions(sourceFile, FilePermissions.DEFAULT_FILE_PERMISSIONS);
+            }
+            catch (IOException e) {
+                LOGGER.debug("failed to import "+sourceFile+" permissions into "+destFile, e);
+                // Fail silently
+            }
+        }
+    }
+
+    /**
+     * Returns the length of the given part.
+     */
+    private long getPartLength(int index) {
+        return Math.min(partSize, sourceFile.getSize() - index*partSize);
+    }
+
+    /**
+     * Hands the given part to the transfer pool. If the copy fails, the part is copied again by the job's thread
+     * in {@link #completeConcurrentTransfers()}, which reports errors to the user.
+     *
+     * @param index the index of the part
+     * @param destFile the file the part is written to
+     * @return <code>true</code> if the part has been submitted
+     */
+    private boolean submitPart(int index, AbstractFile destFile) {
+        partFiles[index] = destFile;
+        try {
+            transferPool.submit(() -> {
+                if (getState() == FileJobState.INTERRUPTED)
+                    return;
+
+                try {
+                    copyPart(index);
+                }
+                catch (IOException e) {
+                    LOGGER.debug("concurrent copy of part "+destFile+" failed", e);
+                    failedParts.add(index);
+                }
+            });
+
+            return true;
+        }
+        catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Copies the given part from its offset in the source file, calculating its CRC32 checksum.
+     *
+     * @param index the index of the part
+     * @throws IOException if an error occurred while copying the part
+     */
+    private void copyPart(int index) throws IOException {
+        AbstractFile destFile = partFiles[index];
+        long length = getPartLength(index);
+
+        RandomAccessInputStream rais = sourceFile.getRandomAccessInputStream();
+        ThroughputLimitInputStream in;
+        try {
+            rais.seek(index*partSize);
+            in = addConcurrentInputStream(rais);
+        }
+        catch (IOException e) {
+            rais.close();
+            throw e;
+        }
+
+        try {
+            CheckedInputStream checkedIn = new CheckedInputStream(in, new CRC32());
+            try (OutputStream out = destFile.getOutputStream()) {
+                long written = StreamUtils.copyStream(checkedIn, out, BufferPool.getDefaultBufferSize(), length);
+                if (written != length)
+                    throw new IOException("unexpected end of "+sourceFile);
+            }
+            partChecksums[index] = checkedIn.getChecksum().getValue();
+        }
+        finally {
+            removeConcurrentInputStream(in);
+        }
+
+        copyAttributes(destFile);
+    }
+
+    /**
+     * Waits for the transfer pool to copy the parts that were submitted to it, then copies the parts whose copy
+     * failed again.
+     *
+     * @return <code>true</code> if all the parts have been copied
+     */
+    private boolean completeConcurrentTransfers() {
+        try {
+            transferPool.awaitCompletion();
+        }
+        catch (InterruptedException e) {
+            return false;
+        }
+
+        Integer index;
+        while ((index = failedParts.poll()) != null) {
+            if (getState() == FileJobState.INTERRUPTED)
+                return false;
+
+            nextFile(files.elementAt(index));
+            try {
+                copyPart(index);
+            }
+            catch (IOException e) {
+                LOGGER.debug("Caught exception", e);
+
+                showErrorDialog(errorDialogTitle,
+                        Translator.get("error_while_transferring", partFiles[index].getName()),
+                        new String[]{FileJobAction.CANCEL_TEXT},
+                        new int[]{FileJobAction.CANCEL}
+                        );
+                interrupt();
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Combines the checksums of the parts copied concurrently into the checksum of the source file.
+     */
+    private String getCombinedChecksum() {
+        long crc = 0;
+        for (int i=0; i<partChecksums.length; i++)
+            crc = CRC32Utils.combine(crc, partChecksums[i], getPartLength(i));
+
+        return CRC32Utils.toHexString(crc);
+    }
+
     // This job modifies baseDestFolder and its subfolders
     @Override
     protected boolean hasFolderChanged(AbstractFile folder) {
         return baseDestFolder.isParentOf(folder);
     }
     
+    @Override
+    protected void jobStopped() {
+        super.jobStopped();
+
+        if (transferPool != null)
+            transferPool.shutdown();
+    }
+
     @Override
     protected void jobCompleted() {
     	// create checksum file
     	if (isIntegrityCheckEnabled()) {
-            if(origFileStream!=null && (origFileStream instanceof ChecksumInputStream)) {
+            if(transferPool!=null || (origFileStream instanceof ChecksumInputStream)) {
             	String crcFileName = sourceFile.getName() + ".sfv";
                 try {
 	            	String sourceChecksum;
@@ -265,6 +488,8 @@ public class SplitFileJob extends AbstractCopyJob {
 	            		origFileStream = sourceFile.getInputStream();
 						sourceChecksum = AbstractFile.calculateChecksum(origFileStream, MessageDigest.getInstance("CRC32"));
 						origFileStream.close();
+	            	} else if (transferPool!=null) {
+	            		sourceChecksum = getCombinedChecksum();
 	            	} else {
 	                	sourceChecksum = ((ChecksumInputStream)origFileStream).getChecksumString();
 	            	}
@@ -25,6 +25,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,6 +77,10 @@ public abstract class TransferFileJob extends FileJob {
     /** InputStream currently being processed, may be null */
     private ThroughputLimitInputStream tlin;
 
+    /** InputStreams of the files being copied by {@link #copyFileConcurrently(AbstractFile, AbstractFile)}, in
+     * threads other than the job's */
+    private final Set<ThroughputLimitInputStream> concurrentStreams = new HashSet<ThroughputLimitInputStream>();
+
     /** ThroughputLimit in bytes per second, -1 initially (no limit) */
     private long throughputLimit = -1;
 
@@ -239,6 +245,103 @@ public abstract class TransferFileJob extends FileJob {
     }
 
 
+    /**
+     * Copies the given source file to the specified destination file, like {@link #copyFile(AbstractFile, AbstractFile, boolean)}
+     * does but without resuming and checking integrity. Unlike <code>copyFile</code>, this method can be called by
+     * several threads at once: the source InputStream is not registered as the current one but is nevertheless
+     * accounted in the total byte count, paused, throttled and closed along with the job.
+     * <p>
+     * This method does not report errors to the user, it is up to the caller to do so.
+     * </p>
+     *
+     * @param sourceFile the file to copy
+     * @param destFile the file to copy the source file to
+     * @throws FileTransferException if an error occurred while copying the file
+     */
+    protected void copyFileConcurrently(AbstractFile sourceFile, AbstractFile destFile) throws FileTransferException {
+        // Throw a specific FileTransferException if source and destination files are identical
+        if(sourceFile.equalsCanonical(destFile))
+            throw new FileTransferException(FileTransferError.SOURCE_AND_DESTINATION_IDENTICAL);
+
+        boolean copied = false;
+        if(sourceFile.isFileOperationSupported(FileOperation.COPY_REMOTELY)) {
+            try {
+                sourceFile.copyRemotelyTo(destFile);
+                copied = true;
+            }
+            catch(IOException e) {
+                // The file will be copied manually
+            }
+        }
+
+        if(!copied) {
+            ThroughputLimitInputStream in;
+            try {
+                in = addConcurrentInputStream(sourceFile.getInputStream());
+            }
+            catch(IOException e) {
+                LOGGER.debug("IOException caught, throwing FileTransferException", e);
+                throw new FileTransferException(FileTransferError.OPENING_SOURCE);
+            }
+
+            try {
+                destFile.copyStream(in, false, sourceFile.getSize());
+            }
+            finally {
+                removeConcurrentInputStream(in);
+            }
+        }
+
+        // Preserve source file's date, permissions and Mac OS X file type and creator
+        tryCopyFileDate(sourceFile, destFile);
+        tryCopyFilePermissions(sourceFile, destFile);
+        DesktopManager.postCopy(sourceFile, destFile);
+    }
+
+    /**
+     * Registers an InputStream used by {@link #copyFileConcurrently(AbstractFile, AbstractFile)}, accounting the bytes
+     * read from it in the total byte count.
+     *
+     * @param in the InputStream to register
+     * @return the 'augmented' InputStream using the given stream as the underlying InputStream
+     * @throws IOException if the job has been interrupted
+     */
+    protected synchronized ThroughputLimitInputStream addConcurrentInputStream(InputStream in) throws IOException {
+        if(getState() == FileJobState.INTERRUPTED) {
+            in.close();
+            throw new IOException("Job interrupted");
+        }
+
+        ThroughputLimitInputStream concurrentIn = new ThroughputLimitInputStream(new CounterInputStream(in, totalByteCounter),
+                getState() == FileJobState.PAUSED?0:throughputLimit);
+        concurrentStreams.add(concurrentIn);
+
+        return concurrentIn;
+    }
+
+    /**
+     * Unregisters and closes an InputStream previously registered with {@link #addConcurrentInputStream(InputStream)}.
+     *
+     * @param in the InputStream to unregister
+     */
+    protected synchronized void removeConcurrentInputStream(ThroughputLimitInputStream in) {
+        concurrentStreams.remove(in);
+
+        try { in.close(); }
+        catch(IOException e) {}
+    }
+
+    /**
+     * Sets the throughput limit of the InputStreams registered by concurrent transfers.
+     *
+     * @param bytesPerSecond the new throughput limit, 0 to block reads, -1 for no limit
+     */
+    private synchronized void setConcurrentThroughputLimit(long bytesPerSecond) {
+        for(ThroughputLimitInputStream in : concurrentStreams)
+            in.setThroughputLimit(bytesPerSecond);
+    }
+
+
     private void tryCopyFilePermissions(AbstractFile sourceFile, AbstractFile destFile) {
         if(destFile.isFileOperationSupported(FileOperation.CHANGE_PERMISSION)) {
             try {
@@ -550,8 +653,12 @@ public abstract class TransferFileJob extends FileJob {
         this.throughputLimit = bytesPerSecond<=0?-1:bytesPerSecond;
 
         synchronized(this) {
-            if(getState() != FileJobState.PAUSED && tlin !=null)
-                tlin.setThroughputLimit(throughputLimit);
+            if(getState() != FileJobState.PAUSED) {
+                if(tlin !=null)
+                    tlin.setThroughputLimit(throughputLimit);
+
+                setConcurrentThroughputLimit(throughputLimit);
+            }
         }
     }
 
@@ -570,6 +677,15 @@ public abstract class TransferFileJob extends FileJob {
     // Overridden methods //
     ////////////////////////
 
+    /**
+     * Overrides {@link FileJob#isDeviceIntensive()} to return <code>true</code>: transferring files keeps the source
+     * and destination devices busy.
+     */
+    @Override
+    protected boolean isDeviceIntensive() {
+        return true;
+    }
+
     /**
      * Overrides {@link FileJob#jobStopped()} to stop any file processing by closing the source InputStream.
      */
@@ -583,6 +699,12 @@ public abstract class TransferFileJob extends FileJob {
 
                 closeCurrentInputStream();
             }
+
+            // Interrupt concurrent transfers, if any
+            for(ThroughputLimitInputStream in : concurrentStreams) {
+                try { in.close(); }
+                catch(IOException e) {}
+            }
         }
     }
 
@@ -598,6 +720,8 @@ public abstract class TransferFileJob extends FileJob {
         synchronized(this) {
             if(tlin !=null)
                 tlin.setThroughputLimit(0);
+
+            setConcurrentThroughputLimit(0);
         }
     }
 
@@ -614,6 +738,8 @@ public abstract class TransferFileJob extends FileJob {
             // Restore previous throughput limit (if any, -1 by default)
             if(tlin !=null)
                 tlin.setThroughputLimit(throughputLimit);
+
+            setConcurrentThroughputLimit(throughputLimit);
         }
     }
 
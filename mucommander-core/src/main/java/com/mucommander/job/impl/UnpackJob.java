@@ -35,6 +35,7 @@ import com.mucommander.ui.main.MainFrame;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -185,42 +186,25 @@ public class UnpackJob extends AbstractCopyJob {
         String destSeparator = destFolder.getSeparator();
         String relDestPath;
 
-        // Unpack the archive, copying entries one by one, in the iterator's order
+        // Unpack the archive, copying entries one by one, in the iterator's order. The archive is told which entries
+        // are going to be read, so that formats which decompress entries sequentially can extract them in one pass.
         try {
-            iterator = archiveFile.getEntryIterator();
+            final List<ArchiveEntry> selection = selectedEntries==null ? null : new ArrayList<ArchiveEntry>(selectedEntries);
+            iterator = archiveFile.getEntryIterator(archiveEntry -> selection==null || getSelectedEntryIndex(selection, archiveEntry.getPath())!=-1);
             while((entry = iterator.nextEntry())!=null && getState() != FileJobState.INTERRUPTED) {
                 entryPath = entry.getPath();
 
-                boolean processEntry = false;
-                if(selectedEntries ==null) {    // Entries are processed
-                    processEntry = true;
-                }
-                else {                          // We need to determine if the entry should be processed or not
+                if(selectedEntries!=null) {     // We need to determine if the entry should be processed or not
                     // Process this entry if the selectedEntries set contains this entry, or a parent of this entry
-                    int nbSelectedEntries = selectedEntries.size();
-                    for(int i=0; i<nbSelectedEntries; i++) {
-                        ArchiveEntry selectedEntry = selectedEntries.get(i);
-                        // Note: paths of directory entries must end with '/', so this compares whether
-                        // selectedEntry is a parent of the current entry.
-                        if(selectedEntry.isDirectory()) {
-                            if(entryPath.startsWith(selectedEntry.getPath())) {
-                                processEntry = true;
-                                break;
-                                // Note: we can't remove selectedEntryPath from the set, we still need it
-                            }
-                        }
-                        else if(entryPath.equals(selectedEntry.getPath())) {
-                            // If the (regular file) entry is in the set, remove it as we no longer need it (will speed up
-                            // subsequent searches)
-                            processEntry = true;
-                            selectedEntries.remove(i);
-                            break;
-                        }
-                    }
-                }
+                    int i = getSelectedEntryIndex(selectedEntries, entryPath);
+                    if(i==-1)
+                        continue;
 
-                if(!processEntry)
-                    continue;
+                    // If the (regular file) entry is in the set, remove it as we no longer need it (will speed up
+                    // subsequent searches). Note: we can't remove a directory entry from the set, we still need it.
+                    if(!selectedEntries.get(i).isDirectory())
+                        selectedEntries.remove(i);
+                }
 
                 // Resolve the entry file
                 entryFile = archiveFile.getArchiveEntryFile(entryPath);
@@ -316,6 +300,26 @@ public class UnpackJob extends AbstractCopyJob {
         return false;
     }
 
+    /**
+     * Returns the index of the given selected entries that is the entry with the given path, or a parent of it.
+     *
+     * @param selection selected entries
+     * @param entryPath path of an archive entry
+     * @return the index of the entry or its parent in the selected entries, <code>-1</code> if there is none
+     */
+    private static int getSelectedEntryIndex(List<ArchiveEntry> selection, String entryPath) {
+        int nbSelectedEntries = selection.size();
+        for(int i=0; i<nbSelectedEntries; i++) {
+            ArchiveEntry selectedEntry = selection.get(i);
+            // Note: paths of directory entries must end with '/', so this compares whether
+            // selectedEntry is a parent of the current entry.
+            if(selectedEntry.isDirectory() ? entryPath.startsWith(selectedEntry.getPath()) : entryPath.equals(selectedEntry.getPath()))
+                return i;
+        }
+
+        return -1;
+    }
+
     // This job modifies the base destination folder and its subfolders
     @Override
     protected boolean hasFolderChanged(AbstractFile folder) {
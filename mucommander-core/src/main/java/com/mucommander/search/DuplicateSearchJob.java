@@ -0,0 +1,305 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.search;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileOperation;
+import com.mucommander.commons.file.protocol.local.LocalFile;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.commons.io.ByteUtils;
+import com.mucommander.commons.io.RandomAccessInputStream;
+import com.mucommander.commons.io.StreamUtils;
+import com.mucommander.job.FileJobState;
+import com.mucommander.job.JobsManager;
+import com.mucommander.ui.main.MainFrame;
+
+/**
+ * This job finds the files that have the same content, among the files that match the search.
+ *
+ * <p>Files are compared in stages, each stage only reading the files that the previous one could not tell apart:
+ * files are first grouped by size, then by a digest of their first and last {@link #PARTIAL_SIZE} bytes, and finally
+ * by a digest of their whole content. Files are read concurrently, by a pool of threads per device, and each group of
+ * duplicates is added to the findings as soon as it is confirmed, after the other files of the group.</p>
+ *
+ * <p>Empty files, folders and symbolic links are ignored.</p>
+ */
+public class DuplicateSearchJob extends SearchJob {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DuplicateSearchJob.class);
+
+    /** Number of bytes read at the beginning and at the end of files to compare them partially */
+    final static int PARTIAL_SIZE = 4 * 1024;
+
+    /** Number of files read concurrently on a local volume */
+    private final static int LOCAL_PARALLELISM = 4;
+
+    /** Number of files read concurrently on a remote server, higher to make up for latency */
+    private final static int REMOTE_PARALLELISM = 8;
+
+    /** Algorithm of the digests files are compared with */
+    private final static String DIGEST_ALGORITHM = "MD5";
+
+    /** Files that match the search, which duplicates are searched among */
+    private final Queue<AbstractFile> candidates = new ConcurrentLinkedQueue<>();
+
+    /** Number of bytes read to compare files */
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    /** Total size of the files that match the search */
+    private long candidateBytes;
+
+    /** Number of groups of duplicates found */
+    private int nbGroups;
+
+    /** Executors that read the files, per device */
+    private final Map<String, ExecutorService> executors = new HashMap<>();
+
+    /** Devices the files are located on, per parent folder URL, as looking up the volume of a local file is costly */
+    private final Map<String, String> folderDevices = new HashMap<>();
+
+    public DuplicateSearchJob(MainFrame mainFrame, FileSet files) {
+        super(mainFrame, files);
+    }
+
+    /**
+     * Returns the number of bytes read so far to compare files.
+     *
+     * @return the number of bytes read so far to compare files
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * Returns the total size of the files that match the search, i.e. the number of bytes that would be read to
+     * compare them by digest only. This value is only known once all folders have been searched.
+     *
+     * @return the total size of the files that match the search
+     */
+    public long getCandidateBytes() {
+        return candidateBytes;
+    }
+
+    /**
+     * Returns the number of groups of duplicates found so far.
+     *
+     * @return the number of groups of duplicates found so far
+     */
+    public synchronized int getNbGroups() {
+        return nbGroups;
+    }
+
+    /**
+     * Keeps the files that match the search aside, they are only reported once their duplicates are found.
+     */
+    @Override
+    protected void found(List<AbstractFile> files) {
+        for (AbstractFile file : files) {
+            if (!file.isDirectory() && !file.isSymlink() && file.getSize() > 0)
+                candidates.add(file);
+        }
+    }
+
+    @Override
+    protected void searchCompleted() {
+        long start = System.currentTimeMillis();
+
+        Map<Long, List<AbstractFile>> sizeGroups = candidates.stream().collect(Collectors.groupingBy(AbstractFile::getSize));
+        candidateBytes = candidates.stream().mapToLong(AbstractFile::getSize).sum();
+        candidates.clear();
+
+        try {
+            List<CompletableFuture<Void>> groups = new ArrayList<>();
+            for (List<AbstractFile> sizeGroup : sizeGroups.values()) {
+                if (sizeGroup.size() < 2)
+                    continue;
+
+                boolean fullyRead = sizeGroup.get(0).getSize() <= 2 * PARTIAL_SIZE;
+                groups.add(digest(sizeGroup, this::getPartialDigest).thenCompose(partialGroups -> {
+                    // Files that are not longer than the partial digest are already compared by content
+                    if (fullyRead) {
+                        partialGroups.forEach(this::confirmed);
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+
+                    return CompletableFuture.allOf(partialGroups.stream()
+                            .map(partialGroup -> digest(partialGroup, this::getDigest)
+                                    .thenAccept(fullGroups -> fullGroups.forEach(this::confirmed)))
+                            .toArray(CompletableFuture[]::new));
+                }));
+            }
+
+            CompletableFuture.allOf(groups.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            LOGGER.info("failed to compare files", e.getCause());
+        } finally {
+            synchronized (executors) {
+                executors.values().forEach(ExecutorService::shutdownNow);
+            }
+        }
+
+        LOGGER.info("found {} groups of duplicates in {} ms, read {} bytes out of {}", getNbGroups(),
+                System.currentTimeMillis() - start, getBytesRead(), candidateBytes);
+    }
+
+    /**
+     * Reports the given group of files with the same content.
+     */
+    private void confirmed(List<AbstractFile> group) {
+        if (getState() == FileJobState.INTERRUPTED)
+            return;
+
+        synchronized (this) {
+            nbGroups++;
+        }
+        super.found(group);
+    }
+
+    /**
+     * Calculates the given digest of the given files concurrently, and returns the groups of at least two files with
+     * the same digest. Files whose digest could not be calculated are left out.
+     */
+    private CompletableFuture<List<List<AbstractFile>>> digest(List<AbstractFile> files, Function<AbstractFile, String> digester) {
+        List<CompletableFuture<String>> digests = files.stream()
+                .map(file -> CompletableFuture.supplyAsync(() -> getState() == FileJobState.INTERRUPTED ? null : digester.apply(file), getExecutor(file)))
+                .collect(Collectors.toList());
+
+        return CompletableFuture.allOf(digests.toArray(new CompletableFuture[0])).thenApply(v -> {
+            Map<String, List<AbstractFile>> groups = new HashMap<>();
+            for (int i = 0; i < files.size(); i++) {
+                String digest = digests.get(i).join();
+                if (digest != null)
+                    groups.computeIfAbsent(digest, key -> new ArrayList<>()).add(files.get(i));
+            }
+
+            return groups.values().stream()
+                    .filter(group -> group.size() > 1)
+                    .collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * Returns the digest of the whole content of the given file, <code>null</code> if it could not be read.
+     */
+    private String getDigest(AbstractFile file) {
+        try {
+            String digest = file.calculateChecksum(DIGEST_ALGORITHM);
+            bytesRead.addAndGet(file.getSize());
+            return digest;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            LOGGER.debug("failed to read " + file.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the digest of the first and last {@link #PARTIAL_SIZE} bytes of the given file, <code>null</code> if it
+     * could not be read. The end of the file is read with random access when the file supports it, otherwise the
+     * bytes in between are skipped.
+     */
+    private String getPartialDigest(AbstractFile file) {
+        long size = file.getSize();
+        byte head[] = new byte[(int)Math.min(size, PARTIAL_SIZE)];
+        byte tail[] = new byte[(int)Math.min(size - head.length, PARTIAL_SIZE)];
+
+        try {
+            if (tail.length > 0 && file.isFileOperationSupported(FileOperation.RANDOM_READ_FILE)) {
+                try (RandomAccessInputStream in = file.getRandomAccessInputStream()) {
+                    in.readFully(head);
+                    in.seek(size - tail.length);
+                    in.readFully(tail);
+                }
+            } else {
+                try (InputStream in = file.getInputStream()) {
+                    StreamUtils.readFully(in, head);
+                    StreamUtils.skipFully(in, size - head.length - tail.length);
+                    StreamUtils.readFully(in, tail);
+                }
+            }
+            bytesRead.addAndGet(head.length + tail.length);
+
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            digest.update(head);
+            digest.update(tail);
+            return ByteUtils.toHexString(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            LOGGER.debug("failed to read " + file.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the executor that reads the files of the device the given file is located on, creating it if needed.
+     * A device is either a local volume or a remote server, identified as by the jobs that are limited per device.
+     */
+    private ExecutorService getExecutor(AbstractFile file) {
+        // Files that are not folders are located on the device of their parent folder
+        AbstractFile folder = file.getParent();
+
+        synchronized (executors) {
+            String device = folder == null
+                    ? JobsManager.getDevice(file)
+                    : folderDevices.computeIfAbsent(folder.getURL().toString(false), key -> JobsManager.getDevice(file));
+            return executors.computeIfAbsent(device, key -> createExecutor(device, isLocal(file) ? LOCAL_PARALLELISM : REMOTE_PARALLELISM));
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the given file is located on a local volume.
+     */
+    private static boolean isLocal(AbstractFile file) {
+        // Archive entries are located on the device of the archive
+        while (file.getParentArchive() != null)
+            file = file.getParentArchive();
+
+        return file.hasAncestor(LocalFile.class);
+    }
+
+    /**
+     * Creates an executor that reads the files of the given device with the given number of daemon threads.
+     */
+    private static ExecutorService createExecutor(String device, int nbThreads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(nbThreads, runnable -> {
+            Thread thread = new Thread(runnable, "Duplicate search reader " + device + " #" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
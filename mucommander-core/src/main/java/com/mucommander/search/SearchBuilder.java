@@ -50,6 +50,7 @@ public class SearchBuilder {
     public static final String SEARCH_TEXT = "text";
     public static final String TEXT_CASEINSENSITIVE = "text-caseinsensitive";
     public static final String TEXT_MATCH_REGEX= "text-regex";
+    public static final String FIND_DUPLICATES = "duplicates";
 
     private AbstractFile entrypoint;
     private String searchStr;
@@ -64,6 +65,7 @@ public class SearchBuilder {
     private String searchText;
     private boolean textCaseInsensitive;
     private boolean textMatchRegex;
+    private boolean findDuplicates;
 
     private SearchBuilder() {
         searchSubfolders = true;
@@ -159,8 +161,16 @@ public class SearchBuilder {
         return this;
     }
 
+    public SearchBuilder findDuplicates(Map<String, String> properties) {
+        String value = properties.get(SearchBuilder.FIND_DUPLICATES);
+        if (value != null)
+            findDuplicates = Boolean.parseBoolean(value);
+        return this;
+    }
+
     public SearchJob build() {
-        SearchJob job = new SearchJob(mainFrame, new FileSet(entrypoint, entrypoint));
+        FileSet files = new FileSet(entrypoint, entrypoint);
+        SearchJob job = findDuplicates ? new DuplicateSearchJob(mainFrame, files) : new SearchJob(mainFrame, files);
         job.setListener(listener);
         job.setDepth(searchDepth);
         
@@ -94,10 +94,25 @@ public class SearchJob extends FileJob {
         List<AbstractFile> passed = Stream.of(files)
                 .filter(fileMatcher)
                 .collect(Collectors.toList());
-        if (!passed.isEmpty()) {
-            findings.addAll(passed);
-            listener.searchChanged();
-        }
+        if (!passed.isEmpty())
+            found(passed);
+    }
+
+    /**
+     * Adds the given files to the findings and notifies the listener. This method is called concurrently, with the
+     * files of a folder that match the search, and may be overridden to process them before they are reported.
+     *
+     * @param files files that match the search
+     */
+    protected void found(List<AbstractFile> files) {
+        findings.addAll(files);
+        listener.searchChanged();
+    }
+
+    /**
+     * Called once all the folders have been searched, before the job finishes. This implementation does nothing.
+     */
+    protected void searchCompleted() {
     }
 
     public List<AbstractFile> getFindings() {
@@ -126,6 +141,8 @@ public class SearchJob extends FileJob {
         for (int i=0; getState() != FileJobState.INTERRUPTED && i<depth && !files.isEmpty(); i++) {
             files = search(files);
         }
+        if (getState() != FileJobState.INTERRUPTED)
+            searchCompleted();
         LOGGER.info("completed searching {}", file);
         listener = null;
         return true;
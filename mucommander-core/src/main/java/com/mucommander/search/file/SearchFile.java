@@ -215,6 +215,7 @@ public class SearchFile extends ProtocolFile implements SearchListener {
                 .matchCaseInsensitive(properties)
                 .matchRegex(properties)
                 .searchText(properties)
+                .findDuplicates(properties)
                 .build();
     }
 }
@@ -67,6 +67,7 @@ public class SearchDialog extends FocusDialog implements ActionListener, Documen
     private JCheckBox searchSubfolders;
     private JCheckBox searchArchives;
     private JCheckBox searchHidden;
+    private JCheckBox findDuplicates;
     private JCheckBox matchCase;
     private JCheckBox matchRegex;
     private JSpinner depth;
@@ -79,6 +80,7 @@ public class SearchDialog extends FocusDialog implements ActionListener, Documen
     private static boolean lastSearchSubfolders = true;
     private static boolean lastSearchArchives = false;
     private static boolean lastSearchHidden = false;
+    private static boolean lastFindDuplicates = false;
     private static boolean lastMatchCase = true;
     private static boolean lastMatchRegex = false;
     private static int lastDepth = 0;
@@ -164,6 +166,9 @@ public class SearchDialog extends FocusDialog implements ActionListener, Documen
         searchHidden = new JCheckBox(Translator.get("search_dialog.search_hidden_files"), lastSearchHidden);
         compPanel.addRow("", searchHidden, 10);
 
+        findDuplicates = new JCheckBox(Translator.get("search_dialog.find_duplicates"), lastFindDuplicates);
+        compPanel.addRow("", findDuplicates, 10);
+
         depth = new JSpinner();
         IntEditor editor = new IntEditor(depth, "#####", UNLIMITED_DEPTH);
         depth.setEditor(editor);
@@ -257,6 +262,7 @@ public class SearchDialog extends FocusDialog implements ActionListener, Documen
         lastSearchSubfolders = searchSubfolders.isSelected();
         lastSearchArchives = searchArchives.isSelected();
         lastSearchHidden = searchHidden.isSelected();
+        lastFindDuplicates = findDuplicates.isSelected();
         lastMatchCase = matchCase.isSelected();
         lastMatchRegex = matchRegex.isSelected();
         lastDepth = ((Number) this.depth.getValue()).intValue();
@@ -279,6 +285,8 @@ public class SearchDialog extends FocusDialog implements ActionListener, Documen
             properties.add(new Pair<>(SearchBuilder.SEARCH_ARCHIVES, Boolean.TRUE.toString()));
         if (lastSearchHidden)
             properties.add(new Pair<>(SearchBuilder.SEARCH_HIDDEN, Boolean.TRUE.toString()));
+        if (lastFindDuplicates)
+            properties.add(new Pair<>(SearchBuilder.FIND_DUPLICATES, Boolean.TRUE.toString()));
         if (!lastMatchCase)
             properties.add(new Pair<>(SearchBuilder.MATCH_CASEINSENSITIVE, Boolean.TRUE.toString()));
         if (lastMatchRegex)
@@ -0,0 +1,107 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.sync;
+
+import com.mucommander.commons.file.AbstractFile;
+
+/**
+ * A file of a source folder that is missing or different in a destination folder, as found by
+ * {@link FolderComparator}.
+ */
+public class FileDifference {
+
+    /**
+     * Reasons why a file needs to be copied to the destination folder.
+     */
+    public enum Reason {
+        /** The file does not exist in the destination folder */
+        MISSING,
+        /** The file is a folder in one folder and a regular file in the other */
+        TYPE,
+        /** The files have different sizes */
+        SIZE,
+        /** The source file is more recent than the destination file */
+        DATE,
+        /** The files have the same size but a different content */
+        CONTENT
+    }
+
+    private final String path;
+    private final AbstractFile sourceFile;
+    private final AbstractFile destFile;
+    private final AbstractFile destFolder;
+    private final Reason reason;
+
+    FileDifference(String path, AbstractFile sourceFile, AbstractFile destFile, AbstractFile destFolder, Reason reason) {
+        this.path = path;
+        this.sourceFile = sourceFile;
+        this.destFile = destFile;
+        this.destFolder = destFolder;
+        this.reason = reason;
+    }
+
+    /**
+     * Returns the path of the file relative to the compared folders, using <code>/</code> as a separator.
+     *
+     * @return the path of the file relative to the compared folders
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the file in the source folder.
+     *
+     * @return the file in the source folder
+     */
+    public AbstractFile getSourceFile() {
+        return sourceFile;
+    }
+
+    /**
+     * Returns the file in the destination folder, <code>null</code> if it is {@link Reason#MISSING missing}.
+     *
+     * @return the file in the destination folder, <code>null</code> if it is missing
+     */
+    public AbstractFile getDestinationFile() {
+        return destFile;
+    }
+
+    /**
+     * Returns the folder the source file must be copied to, which exists.
+     *
+     * @return the folder the source file must be copied to
+     */
+    public AbstractFile getDestinationFolder() {
+        return destFolder;
+    }
+
+    /**
+     * Returns the reason why the file needs to be copied.
+     *
+     * @return the reason why the file needs to be copied
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return path + " (" + reason + ")";
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.sync;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.protocol.FileProtocols;
+
+/**
+ * Compares the content of a source folder with that of a destination folder, recursively, and returns the files that
+ * need to be copied for the destination folder to be up-to-date. Files that only exist in the destination folder are
+ * ignored.
+ * <p>
+ * Both trees are listed at once, each of them by several threads. Their files are then matched by path with a hash
+ * join: the files of the destination tree are indexed by path, and looked up for each file of the source tree.
+ * Regular files are compared by size and date or, if content comparison is enabled, by size and digest, the digests
+ * being calculated concurrently. Folders that are missing in the destination folder are reported as a whole, without
+ * their content.
+ * </p>
+ */
+public class FolderComparator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FolderComparator.class);
+
+    /** Dates that differ by less than this number of milliseconds are considered equal, as some filesystems (FAT, Zip, FTP) store dates with a 2-second precision */
+    private final static long DATE_TOLERANCE = 2000;
+
+    /** Number of folders listed, or files read, concurrently on local volumes */
+    private final static int LOCAL_PARALLELISM = 4;
+
+    /** Number of folders listed, or files read, concurrently on remote servers */
+    private final static int REMOTE_PARALLELISM = 8;
+
+    /** Digest used to compare the content of files, which only needs to tell different contents apart */
+    private final static String DIGEST_ALGORITHM = "MD5";
+
+    /** Separator of the relative paths of files */
+    private final static char SEPARATOR = '/';
+
+    private final AbstractFile sourceFolder;
+    private final AbstractFile destFolder;
+    private final boolean compareContent;
+
+    /** Number of files listed so far */
+    private final AtomicLong nbFilesListed = new AtomicLong();
+
+    /** Number of files whose content has been compared so far */
+    private final AtomicLong nbFilesRead = new AtomicLong();
+
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a new comparator for the given folders.
+     *
+     * @param sourceFolder the folder whose files are to be copied
+     * @param destFolder the folder the files are to be copied to
+     * @param compareContent <code>true</code> to compare files of the same size by content, <code>false</code> to compare them by date
+     */
+    public FolderComparator(AbstractFile sourceFolder, AbstractFile destFolder, boolean compareContent) {
+        this.sourceFolder = sourceFolder;
+        this.destFolder = destFolder;
+        this.compareContent = compareContent;
+    }
+
+    /**
+     * Compares the folders and returns the files of the source folder that are missing or different in the
+     * destination folder, sorted by path.
+     *
+     * @return the files that need to be copied
+     * @throws InterruptedIOException if the comparison was {@link #cancel() cancelled}
+     * @throws IOException if a folder could not be listed or a file could not be read
+     */
+    public List<FileDifference> compare() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(getParallelism(sourceFolder), getParallelism(destFolder)));
+        try {
+            Map<String, AbstractFile> sourceFiles = new ConcurrentHashMap<String, AbstractFile>();
+            Map<String, AbstractFile> destFiles = new ConcurrentHashMap<String, AbstractFile>();
+
+            // List both trees at once
+            ListTask sourceTask = new ListTask(sourceFolder, "", sourceFiles);
+            ListTask destTask = new ListTask(destFolder, "", destFiles);
+            pool.execute(sourceTask);
+            pool.execute(destTask);
+            join(sourceTask);
+            join(destTask);
+            checkCancelled();
+
+            LOGGER.debug("listed {} source files and {} destination files", sourceFiles.size(), destFiles.size());
+
+            List<FileDifference> differences = new ArrayList<FileDifference>();
+            List<FileDifference> sameSize = new ArrayList<FileDifference>();
+
+            // Folders missing in the destination are copied as a whole, the files they contain need not be compared
+            Set<String> missingFolders = new HashSet<String>();
+            for (Map.Entry<String, AbstractFile> entry : sourceFiles.entrySet()) {
+                AbstractFile destFile = destFiles.get(entry.getKey());
+                if (entry.getValue().isDirectory() && (destFile == null || !destFile.isDirectory()))
+                    missingFolders.add(entry.getKey());
+            }
+
+            for (Map.Entry<String, AbstractFile> entry : sourceFiles.entrySet()) {
+                String path = entry.getKey();
+                if (isInFolders(path, missingFolders))
+                    continue;
+
+                AbstractFile sourceFile = entry.getValue();
+                AbstractFile destFile = destFiles.get(path);
+                FileDifference.Reason reason;
+                if (destFile == null)
+                    reason = FileDifference.Reason.MISSING;
+                else if (sourceFile.isDirectory() != destFile.isDirectory())
+                    reason = FileDifference.Reason.TYPE;
+                else if (sourceFile.isDirectory())
+                    continue;
+                else if (sourceFile.getSize() != destFile.getSize())
+                    reason = FileDifference.Reason.SIZE;
+                else if (compareContent) {
+                    sameSize.add(new FileDifference(path, sourceFile, destFile, getDestinationFolder(path, destFiles), FileDifference.Reason.CONTENT));
+                    continue;
+                }
+                else if (sourceFile.getDate() - destFile.getDate() >= DATE_TOLERANCE)
+                    reason = FileDifference.Reason.DATE;
+                else
+                    continue;
+
+                differences.add(new FileDifference(path, sourceFile, destFile, getDestinationFolder(path, destFiles), reason));
+            }
+
+            if (!sameSize.isEmpty())
+                differences.addAll(compareContent(pool, sameSize));
+
+            differences.sort(Comparator.comparing(FileDifference::getPath));
+
+            return differences;
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the files among the given ones whose content differs, reading them concurrently.
+     */
+    private List<FileDifference> compareContent(ForkJoinPool pool, List<FileDifference> files) throws IOException {
+        ForkJoinTask<List<FileDifference>> task = pool.submit(() -> files.parallelStream()
+                .filter(this::hasDifferentContent)
+                .collect(Collectors.toList()));
+
+        try {
+            return task.get();
+        }
+        catch (InterruptedException e) {
+            cancel();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e) {
+            checkCancelled();
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException)
+                throw ((UncheckedIOException)cause).getCause();
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the source and destination files of the given difference have different contents.
+     */
+    private boolean hasDifferentContent(FileDifference difference) {
+        if (cancelled)
+            return false;
+
+        try {
+            boolean different = !difference.getSourceFile().calculateChecksum(DIGEST_ALGORITHM)
+                    .equals(difference.getDestinationFile().calculateChecksum(DIGEST_ALGORITHM));
+            nbFilesRead.incrementAndGet();
+
+            return different;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports MD5
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Waits for the given listing task to complete.
+     */
+    private void join(ListTask task) throws IOException {
+        try {
+            task.join();
+        }
+        catch (UncheckedIOException e) {
+            checkCancelled();
+            throw e.getCause();
+        }
+    }
+
+    private void checkCancelled() throws InterruptedIOException {
+        if (cancelled)
+            throw new InterruptedIOException("Comparison cancelled");
+    }
+
+    /**
+     * Returns the folder of the destination tree the file with the given path is to be copied to.
+     */
+    private AbstractFile getDestinationFolder(String path, Map<String, AbstractFile> destFiles) {
+        int pos = path.lastIndexOf(SEPARATOR);
+        return pos == -1 ? destFolder : destFiles.get(path.substring(0, pos));
+    }
+
+    /**
+     * Returns <code>true</code> if the file with the given path is located, at any depth, in one of the given folders.
+     */
+    private static boolean isInFolders(String path, Set<String> folders) {
+        if (folders.isEmpty())
+            return false;
+
+        int pos;
+        while ((pos = path.lastIndexOf(SEPARATOR)) != -1) {
+            path = path.substring(0, pos);
+            if (folders.contains(path))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the number of folders to list concurrently in the given folder.
+     */
+    private static int getParallelism(AbstractFile folder) {
+        if (folder.getParentArchive() != null)
+            return 1;
+
+        return FileProtocols.FILE.equals(folder.getURL().getScheme()) ? LOCAL_PARALLELISM : REMOTE_PARALLELISM;
+    }
+
+    /**
+     * Stops the comparison as soon as possible, making {@link #compare()} throw an <code>InterruptedIOException</code>.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns the number of files listed so far, in both folders.
+     *
+     * @return the number of files listed so far
+     */
+    public long getNbFilesListed() {
+        return nbFilesListed.get();
+    }
+
+    /**
+     * Returns the number of files whose content has been compared so far.
+     *
+     * @return the number of files whose content has been compared so far
+     */
+    public long getNbFilesRead() {
+        return nbFilesRead.get();
+    }
+
+
+    /**
+     * Lists a folder, indexing its files by path, and its subfolders concurrently.
+     */
+    private class ListTask extends RecursiveAction {
+
+        private final AbstractFile folder;
+        private final String path;
+        private final Map<String, AbstractFile> files;
+
+        private ListTask(AbstractFile folder, String path, Map<String, AbstractFile> files) {
+            this.folder = folder;
+            this.path = path;
+            this.files = files;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled)
+                return;
+
+            AbstractFile children[];
+            try {
+                children = folder.ls();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            List<ListTask> subfolders = new ArrayList<ListTask>();
+            for (AbstractFile child : children) {
+                String childPath = path.isEmpty() ? child.getName() : path + SEPARATOR + child.getName();
+                files.put(childPath, child);
+
+                if (child.isDirectory() && !child.isSymlink())
+                    subfolders.add(new ListTask(child, childPath, files));
+            }
+            nbFilesListed.addAndGet(children.length);
+
+            invokeAll(subfolders);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.sync;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.job.FileJobAction;
+import com.mucommander.job.FileJobState;
+import com.mucommander.job.impl.CopyJob;
+import com.mucommander.text.Translator;
+import com.mucommander.ui.dialog.file.FileCollisionDialog;
+import com.mucommander.ui.dialog.file.ProgressDialog;
+import com.mucommander.ui.main.MainFrame;
+
+/**
+ * This job makes a destination folder up-to-date with a source folder: the folders are first compared by a
+ * {@link FolderComparator}, then only the files that are missing or different in the destination folder are copied,
+ * overwriting the existing ones. Files that only exist in the destination folder are left untouched.
+ */
+public class SynchronizeJob extends CopyJob {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SynchronizeJob.class);
+
+    private final FolderComparator comparator;
+
+    /** Files to copy, null while the folders are being compared */
+    private volatile List<FileDifference> differences;
+
+    /** Index of the file being copied in {@link #differences} */
+    private volatile int differenceIndex;
+
+    /**
+     * Creates a new SynchronizeJob without starting it.
+     *
+     * @param progressDialog dialog which shows this job's progress
+     * @param mainFrame mainFrame this job has been triggered by
+     * @param sourceFolder the folder whose files are copied
+     * @param destFolder the folder to make up-to-date
+     * @param compareContent <code>true</code> to compare files of the same size by content, <code>false</code> to compare them by date
+     */
+    public SynchronizeJob(ProgressDialog progressDialog, MainFrame mainFrame, AbstractFile sourceFolder, AbstractFile destFolder, boolean compareContent) {
+        super(progressDialog, mainFrame, new FileSet(sourceFolder, sourceFolder), destFolder, null, TransferMode.COPY, FileCollisionDialog.OVERWRITE_ACTION);
+
+        this.errorDialogTitle = Translator.get("synchronize_dialog.error_title");
+        this.comparator = new FolderComparator(getBaseSourceFolder(), destFolder, compareContent);
+    }
+
+    /**
+     * Returns the files that are being copied, <code>null</code> while the folders are being compared.
+     *
+     * @return the files that are being copied
+     */
+    public List<FileDifference> getDifferences() {
+        return differences;
+    }
+
+    /**
+     * Compares the folders, letting the user retry if it fails.
+     *
+     * @return the files to copy, <code>null</code> if the comparison failed or was cancelled
+     */
+    private List<FileDifference> compare() {
+        do {
+            try {
+                return comparator.compare();
+            }
+            catch (InterruptedIOException e) {
+                return null;
+            }
+            catch (IOException e) {
+                LOGGER.debug("failed to compare folders", e);
+
+                int ret = showErrorDialog(errorDialogTitle, Translator.get("synchronize_dialog.cannot_compare", e.getMessage()));
+                if (ret!=FileJobAction.RETRY)
+                    return null;
+            }
+        } while(true);
+    }
+
+
+    ////////////////////////
+    // Overridden methods //
+    ////////////////////////
+
+    /**
+     * Compares the source folder, which is the only top-level file of this job, with the destination folder and
+     * copies the files that differ to their destination folder.
+     */
+    @Override
+    protected boolean processFile(AbstractFile file, Object recurseParams) {
+        // Files located in the folders being copied
+        if (recurseParams!=null)
+            return super.processFile(file, recurseParams);
+
+        List<FileDifference> differences = compare();
+        if (differences==null)
+            return false;
+
+        LOGGER.info("{} files to copy from {} to {}", differences.size(), file, getBaseDestinationFolder());
+        this.differences = differences;
+
+        for (differenceIndex=0; differenceIndex<differences.size(); differenceIndex++) {
+            if (getState() == FileJobState.INTERRUPTED)
+                break;
+
+            FileDifference difference = differences.get(differenceIndex);
+            nextFile(difference.getSourceFile());
+            super.processFile(difference.getSourceFile(), difference.getDestinationFolder());
+        }
+
+        completeConcurrentTransfers();
+
+        return true;
+    }
+
+    @Override
+    public void interrupt() {
+        comparator.cancel();
+        super.interrupt();
+    }
+
+    @Override
+    public float getTotalPercentDone() {
+        List<FileDifference> differences = this.differences;
+        if (differences==null)
+            return 0;
+
+        return differences.isEmpty() ? 1 : Math.min(differenceIndex, differences.size())/(float)differences.size();
+    }
+
+    @Override
+    public String getStatusString() {
+        if (differences==null)
+            return Translator.get("synchronize_dialog.comparing", Long.toString(comparator.getNbFilesListed()));
+
+        return super.getStatusString();
+    }
+}
@@ -190,6 +190,7 @@ public class ActionManager {
     	registerAction(new ShowBookmarksQLAction.Descriptor(),              new ShowBookmarksQLAction.Factory());
     	registerAction(new CustomizeCommandBarAction.Descriptor(),          new CustomizeCommandBarAction.Factory());
         registerAction(new ShowDebugConsoleAction.Descriptor(),             new ShowDebugConsoleAction.Factory());
+        registerAction(new ShowIOMetricsAction.Descriptor(),                new ShowIOMetricsAction.Factory());
         registerAction(new ShowFilePropertiesAction.Descriptor(),           new ShowFilePropertiesAction.Factory());
         registerAction(new ShowFilePopupMenuAction.Descriptor(),            new ShowFilePopupMenuAction.Factory());
     	registerAction(new ShowKeyboardShortcutsAction.Descriptor(),        new ShowKeyboardShortcutsAction.Factory());
@@ -215,6 +216,7 @@ public class ActionManager {
     	registerAction(new StopAction.Descriptor(),                         new StopAction.Factory());
     	registerAction(new SwapFoldersAction.Descriptor(),       	        new SwapFoldersAction.Factory());
     	registerAction(new SwitchActiveTableAction.Descriptor(),            new SwitchActiveTableAction.Factory());
+    	registerAction(new SynchronizeFoldersAction.Descriptor(),           new SynchronizeFoldersAction.Factory());
     	registerAction(new ToggleAutoSizeAction.Descriptor(),               new ToggleAutoSizeAction.Factory());
 //    	registerAction(new ToggleColumnAction.Descriptor(),           	    new ToggleColumnAction.Factory());
     	registerAction(new ToggleCommandBarAction.Descriptor(),             new ToggleCommandBarAction.Factory());
@@ -0,0 +1,100 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.action.impl;
+
+import java.util.Map;
+
+import javax.swing.KeyStroke;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.sync.SynchronizeJob;
+import com.mucommander.text.Translator;
+import com.mucommander.ui.action.AbstractActionDescriptor;
+import com.mucommander.ui.action.ActionCategory;
+import com.mucommander.ui.action.ActionDescriptor;
+import com.mucommander.ui.action.ActionFactory;
+import com.mucommander.ui.action.InvokesDialog;
+import com.mucommander.ui.action.MuAction;
+import com.mucommander.ui.dialog.QuestionDialog;
+import com.mucommander.ui.dialog.file.ProgressDialog;
+import com.mucommander.ui.main.MainFrame;
+
+/**
+ * This action makes the current folder of the inactive panel up-to-date with that of the active panel, by copying
+ * only the files that are missing or different, see {@link SynchronizeJob}.
+ */
+@InvokesDialog
+public class SynchronizeFoldersAction extends MuAction {
+
+    private final static int COMPARE_DATES_ACTION = 0;
+    private final static int COMPARE_CONTENTS_ACTION = 1;
+    private final static int CANCEL_ACTION = 2;
+
+    public SynchronizeFoldersAction(MainFrame mainFrame, Map<String,Object> properties) {
+        super(mainFrame, properties);
+    }
+
+    @Override
+    public void performAction() {
+        AbstractFile sourceFolder = mainFrame.getActivePanel().getCurrentFolder();
+        AbstractFile destFolder = mainFrame.getInactivePanel().getCurrentFolder();
+
+        if (sourceFolder.equalsCanonical(destFolder))
+            return;
+
+        QuestionDialog dialog = new QuestionDialog(mainFrame,
+                Translator.get("synchronize_dialog.title"),
+                Translator.get("synchronize_dialog.confirm", sourceFolder.getAbsolutePath(), destFolder.getAbsolutePath()),
+                mainFrame,
+                new String[] {Translator.get("synchronize_dialog.compare_dates"), Translator.get("synchronize_dialog.compare_contents"), Translator.get("cancel")},
+                new int[] {COMPARE_DATES_ACTION, COMPARE_CONTENTS_ACTION, CANCEL_ACTION},
+                0);
+
+        int ret = dialog.getActionValue();
+        if (ret==-1 || ret==CANCEL_ACTION)
+            return;
+
+        ProgressDialog progressDialog = new ProgressDialog(mainFrame, Translator.get("synchronize_dialog.synchronizing"));
+        SynchronizeJob job = new SynchronizeJob(progressDialog, mainFrame, sourceFolder, destFolder, ret==COMPARE_CONTENTS_ACTION);
+        progressDialog.start(job);
+    }
+
+	@Override
+	public ActionDescriptor getDescriptor() {
+		return new Descriptor();
+	}
+
+    public static class Factory implements ActionFactory {
+
+		public MuAction createAction(MainFrame mainFrame, Map<String,Object> properties) {
+			return new SynchronizeFoldersAction(mainFrame, properties);
+		}
+    }
+
+    public static class Descriptor extends AbstractActionDescriptor {
+    	public static final String ACTION_ID = "SynchronizeFolders";
+
+		public String getId() { return ACTION_ID; }
+
+		public ActionCategory getCategory() { return ActionCategory.FILES; }
+
+		public KeyStroke getDefaultAltKeyStroke() { return null; }
+
+		public KeyStroke getDefaultKeyStroke() { return null; }
+    }
+}
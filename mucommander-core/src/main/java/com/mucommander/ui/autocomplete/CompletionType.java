@@ -95,10 +95,11 @@ public abstract class CompletionType {
         }
 
         /**
-         * Stop this thread execution.
+         * Stop this thread execution, interrupting it if it is waiting for completions.
          */
         public void done() {
             isStopped = true;
+            interrupt();
         }
 
         /**
@@ -24,9 +24,11 @@ import java.util.Vector;
 
 import javax.swing.JList;
 
+import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileURL;
 import com.mucommander.ui.autocomplete.AutocompleterTextComponent;
 import com.mucommander.ui.autocomplete.completers.services.CompletionService;
+import com.mucommander.ui.autocomplete.completers.services.FilesService;
 
 /**
  * Interface that each type of completion must implement.
@@ -114,6 +116,20 @@ public abstract class Completer {
         return result;
     }
 
+    /**
+     * Prepares the completions of the given folder ahead of time from a listing of the folder, for the registered
+     * services that complete file paths.
+     *
+     * @param folder - a folder whose completions are likely to be requested soon.
+     * @param date - the date of the folder at the time it was listed.
+     * @param children - the children of the folder.
+     */
+    public void prewarm(AbstractFile folder, long date, AbstractFile[] children) {
+        for (CompletionService service : services)
+            if (service instanceof FilesService)
+                ((FilesService) service).prewarm(folder, date, children);
+    }
+
     /**
      * Given the selected string (from the auto-completion's list), try to 
      * get a completion from the registered services.
@@ -0,0 +1,156 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.autocomplete.completers.services;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * The possible completions in a directory, i.e. the names of the directory's children files, indexed so that the names
+ * starting with a given prefix can be found with a binary search.
+ * <p>
+ * Names are sorted in case-insensitive order and matched case-insensitively, the way {@link PrefixFilter} does.
+ * </p>
+ *
+ * @see FilesService
+ */
+class DirectoryCompletions {
+
+    /** Absolute path of the directory, with a trailing separator */
+    private final String directoryPath;
+
+    /** Date of the directory at the time it was listed */
+    private final long date;
+
+    /** Names of the directory's children, in case-insensitive order */
+    private final String[] names;
+
+    /** Case-folded names of the directory's children, in the same order as {@link #names} */
+    private final String[] keys;
+
+    /** Time at which the directory was last found unchanged */
+    private volatile long validationTime;
+
+    /**
+     * Creates a new index of the given names.
+     *
+     * @param directoryPath absolute path of the directory, with a trailing separator
+     * @param date date of the directory at the time it was listed
+     * @param names names of the directory's children
+     */
+    DirectoryCompletions(String directoryPath, long date, String[] names) {
+        this.directoryPath = directoryPath;
+        this.date = date;
+        this.validationTime = System.currentTimeMillis();
+
+        int nbNames = names.length;
+        String[][] entries = new String[nbNames][];
+        for (int i=0; i<nbNames; i++)
+            entries[i] = new String[] {fold(names[i]), names[i]};
+
+        Arrays.sort(entries, (e1, e2) -> e1[0].compareTo(e2[0]));
+
+        this.names = new String[nbNames];
+        this.keys = new String[nbNames];
+        for (int i=0; i<nbNames; i++) {
+            keys[i] = entries[i][0];
+            this.names[i] = entries[i][1];
+        }
+    }
+
+    /**
+     * Folds the case of the given string the same way {@link String#CASE_INSENSITIVE_ORDER} does, character by
+     * character, so that folded strings can be compared and matched with plain string methods.
+     *
+     * @param s the string to fold
+     * @return the folded string
+     */
+    private static String fold(String s) {
+        int len = s.length();
+        char[] chars = new char[len];
+        for (int i=0; i<len; i++)
+            chars[i] = Character.toLowerCase(Character.toUpperCase(s.charAt(i)));
+
+        return new String(chars);
+    }
+
+    /**
+     * Returns the index of the first key that is greater than or equal to the given one.
+     *
+     * @param key a folded string
+     * @return the index of the first key that is greater than or equal to the given one
+     */
+    private int lowerBound(String key) {
+        int index = Arrays.binarySearch(keys, key);
+        if (index < 0)
+            return -index - 1;
+
+        // Several names may have the same key
+        while (index > 0 && keys[index-1].equals(key))
+            index--;
+
+        return index;
+    }
+
+    /**
+     * Returns the names starting with the given prefix, ignoring case.
+     *
+     * @param prefix a prefix, <code>null</code> to get all the names
+     * @return the names starting with the given prefix, in case-insensitive order
+     */
+    Vector<String> getCompletions(String prefix) {
+        if (prefix == null)
+            return new Vector<String>(Arrays.asList(names));
+
+        String key = fold(prefix);
+        Vector<String> result = new Vector<String>();
+        for (int i=lowerBound(key); i<keys.length && keys[i].startsWith(key); i++)
+            result.add(names[i]);
+
+        return result;
+    }
+
+    /**
+     * Returns the path corresponding to the given completion if it matches one of the names, ignoring case,
+     * <code>null</code> otherwise.
+     *
+     * @param selectedCompletion a completion
+     * @return the path corresponding to the given completion, <code>null</code> if it doesn't match any name
+     */
+    String complete(String selectedCompletion) {
+        String key = fold(selectedCompletion);
+        int index = lowerBound(key);
+
+        return index < keys.length && keys[index].equals(key) ? directoryPath + names[index] : null;
+    }
+
+    long getDate() {
+        return date;
+    }
+
+    long getValidationTime() {
+        return validationTime;
+    }
+
+    /**
+     * Records that the directory has been found unchanged.
+     */
+    void validate() {
+        validationTime = System.currentTimeMillis();
+    }
+}
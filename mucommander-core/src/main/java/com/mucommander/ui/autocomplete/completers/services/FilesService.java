@@ -18,8 +18,18 @@
 package com.mucommander.ui.autocomplete.completers.services;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +39,17 @@ import com.mucommander.commons.file.FileFactory;
 
 /**
  * This <code>CompletionService</code> handles file paths completion.
+ * <p>
+ * Directories are listed in the background, by threads shared by all the services. The listings of the most
+ * recently used directories are kept in a bounded cache, indexed so that completions can be looked up with a
+ * binary search. A cached listing is returned right away; if it hasn't been checked for a while, the directory's
+ * date is checked in the background and the listing refreshed if the directory has changed.
+ * </p>
+ * <p>
+ * When a directory that isn't in the cache is requested, the listings of other directories that haven't started yet
+ * are cancelled, as they were requested for paths the user has typed past. {@link #prewarm(AbstractFile, long, AbstractFile[])}
+ * adds a directory that has already been listed, typically the current folder of a panel, without listing it again.
+ * </p>
  * 
  * @author Arik Hadas
  */
@@ -36,14 +57,35 @@ import com.mucommander.commons.file.FileFactory;
 public abstract class FilesService implements CompletionService {
     private static final Logger LOGGER = LoggerFactory.getLogger(FilesService.class);
 
-    private String cachedDirectoryName;
-    private String[] cachedDirectoryFileNames;
-    private long cachedDirectoryDate;
+    /** Maximum number of directories whose listing is kept in the cache */
+    private final static int CACHE_CAPACITY = 32;
 
-    public FilesService() {
-        cachedDirectoryFileNames = new String[0];
-        cachedDirectoryDate = -1;
-    }
+    /** Number of milliseconds after which a cached listing is checked for changes */
+    private final static int REVALIDATION_DELAY = 5000;
+
+    /** Number of threads listing directories */
+    private final static int NB_LISTING_THREADS = 2;
+
+    /** Lists directories in the background */
+    private final static ExecutorService LISTING_EXECUTOR = Executors.newFixedThreadPool(NB_LISTING_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "Completion listing");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Listings of the most recently used directories, indexed by absolute path */
+    private final Map<String, DirectoryCompletions> cache = new LinkedHashMap<String, DirectoryCompletions>(CACHE_CAPACITY, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DirectoryCompletions> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+
+    /** Listings that have been requested and are not finished yet, indexed by absolute path */
+    private final Map<String, Future<DirectoryCompletions>> pendingListings = new HashMap<String, Future<DirectoryCompletions>>();
+
+    /** Listing the last completions were returned from */
+    private volatile DirectoryCompletions lastCompletions;
 
     /**
      * This abstract function gets a directory and should return it's children
@@ -55,53 +97,199 @@ public abstract class FilesService implements CompletionService {
      */
     protected abstract AbstractFile[] getFiles(AbstractFile directory) throws IOException;
 
+    /**
+     * Returns the files among the given children of a directory that match the criteria of
+     * {@link #getFiles(AbstractFile)}. This implementation returns all of them.
+     *
+     * @param children children of a directory
+     * @return subgroup of the given children
+     */
+    protected AbstractFile[] getFiles(AbstractFile[] children) {
+        return children;
+    }
+
     public Vector<String> getPossibleCompletions(String path) {
-        Vector<String> result = new Vector<String>();
-        int index = Math.max(path.lastIndexOf('\\'), path.lastIndexOf('/'));	
-        if (index != -1) {
-            String currentDirectoryName = path.substring(0, index+1);
-
-            AbstractFile currentDirectory = FileFactory.getFile(currentDirectoryName);
-            if (currentDirectory != null && currentDirectory.exists()) {	        
-                long currentDirectoryDate = currentDirectory.getDate();
-                if (cachedDirectoryName == null || !cachedDirectoryName.equals(currentDirectoryName) || currentDirectoryDate != cachedDirectoryDate) {
-                    AbstractFile[] currentDirectoryFiles;
-                    try {
-                        currentDirectoryFiles = getFiles(currentDirectory);
-                    } catch (IOException e) {
-                        LOGGER.debug("Caught exception", e);
-                        return new Vector<String>();
-                    }
-
-                    int nbCurrentDirectoryFiles = currentDirectoryFiles.length;
-                    cachedDirectoryFileNames = new String[nbCurrentDirectoryFiles];
-
-                    for (int i=0; i<nbCurrentDirectoryFiles; i++) {
-                        AbstractFile abstractFileI = currentDirectoryFiles[i];
-                        cachedDirectoryFileNames[i] = abstractFileI.getName() + (abstractFileI.isDirectory() ? abstractFileI.getSeparator() : "");
-                    }
-
-                    Arrays.sort(cachedDirectoryFileNames, String.CASE_INSENSITIVE_ORDER);
-
-                    cachedDirectoryName = currentDirectory.getAbsolutePath() + (currentDirectory.isDirectory() ? "" : currentDirectory.getSeparator());
-                    cachedDirectoryDate = currentDirectoryDate;
-                }
+        int index = Math.max(path.lastIndexOf('\\'), path.lastIndexOf('/'));
+        if (index == -1)
+            return new Vector<String>();
 
-                final String prefix = index==path.length()-1 ? null : path.substring(index + 1).toLowerCase();
-                result = PrefixFilter.createPrefixFilter(prefix).filter(cachedDirectoryFileNames);
-            }
+        AbstractFile currentDirectory = FileFactory.getFile(path.substring(0, index+1));
+        if (currentDirectory == null)
+            return new Vector<String>();
+
+        DirectoryCompletions completions;
+        try {
+            completions = getCompletions(currentDirectory);
+        } catch (InterruptedException | CancellationException e) {
+            // The completions are not needed anymore
+            return new Vector<String>();
+        } catch (ExecutionException e) {
+            LOGGER.debug("Caught exception", e.getCause());
+            return new Vector<String>();
         }
-        return result;
+
+        if (completions == null)
+            return new Vector<String>();
+
+        lastCompletions = completions;
+
+        return completions.getCompletions(index==path.length()-1 ? null : path.substring(index + 1));
     }
 
     public String complete(String selectedCompletion) {
-        String result = null;
-        int nbCachedFileNames = cachedDirectoryFileNames.length;
-        for (int i=0; i < nbCachedFileNames; i++)
-            if (cachedDirectoryFileNames[i].equalsIgnoreCase(selectedCompletion)) {
-                result = cachedDirectoryName + cachedDirectoryFileNames[i];
-                break;
+        DirectoryCompletions completions = lastCompletions;
+        return completions == null ? null : completions.complete(selectedCompletion);
+    }
+
+    /**
+     * Adds the given listing of a directory to the cache, so that its completions are readily available when
+     * requested. The completions are indexed in the background; the directory is not listed again.
+     *
+     * @param directory a directory
+     * @param date date of the directory at the time it was listed
+     * @param children children of the directory
+     */
+    public synchronized void prewarm(final AbstractFile directory, final long date, final AbstractFile[] children) {
+        final String key = directory.getAbsolutePath(true);
+
+        DirectoryCompletions cached = cache.get(key);
+        if (cached != null && cached.getDate() == date) {
+            cached.validate();
+            return;
+        }
+
+        if (pendingListings.containsKey(key))
+            return;
+
+        execute(new Listing(key, () -> addToCache(key, date, getFiles(children))));
+    }
+
+    /**
+     * Returns the completions of the given directory, from the cache if possible, waiting for the directory to be
+     * listed otherwise.
+     *
+     * @param directory a directory
+     * @return the completions of the given directory, <code>null</code> if it doesn't exist
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     * @throws ExecutionException if the directory could not be listed
+     */
+    private DirectoryCompletions getCompletions(AbstractFile directory) throws InterruptedException, ExecutionException {
+        String key = directory.getAbsolutePath(true);
+        Future<DirectoryCompletions> listing;
+
+        synchronized(this) {
+            DirectoryCompletions cached = cache.get(key);
+            if (cached != null) {
+                if (System.currentTimeMillis() - cached.getValidationTime() > REVALIDATION_DELAY && !pendingListings.containsKey(key))
+                    submitListing(directory, key, cached);
+
+                return cached;
             }
-        return result;
+
+            listing = pendingListings.get(key);
+            if (listing == null)
+                listing = submitListing(directory, key, null);
+
+            cancelPendingListings(key);
+        }
+
+        return listing.get();
+    }
+
+    /**
+     * Cancels the listings that have not started yet, except the one of the given directory.
+     *
+     * @param key absolute path of the directory whose listing should not be cancelled
+     */
+    private void cancelPendingListings(String key) {
+        // Cancelled listings remove themselves from the pending listings
+        for (Map.Entry<String, Future<DirectoryCompletions>> entry : new ArrayList<Map.Entry<String, Future<DirectoryCompletions>>>(pendingListings.entrySet())) {
+            if (!entry.getKey().equals(key))
+                entry.getValue().cancel(false);
+        }
+    }
+
+    /**
+     * Lists the given directory in the background and adds its completions to the cache.
+     *
+     * @param directory a directory
+     * @param key absolute path of the directory
+     * @param previous the completions of the directory currently in the cache, <code>null</code> if none. If the
+     * directory has not changed since, they are kept.
+     * @return the listing
+     */
+    private Future<DirectoryCompletions> submitListing(final AbstractFile directory, final String key, final DirectoryCompletions previous) {
+        return execute(new Listing(key, () -> {
+            if (!directory.exists()) {
+                synchronized(FilesService.this) {
+                    cache.remove(key);
+                }
+                return null;
+            }
+
+            long date = directory.getDate();
+            if (previous != null && previous.getDate() == date) {
+                previous.validate();
+                return previous;
+            }
+
+            return addToCache(key, date, getFiles(directory));
+        }));
+    }
+
+    /**
+     * Registers the given listing as pending and runs it in the background.
+     *
+     * @param listing the listing to run
+     * @return the listing
+     */
+    private Future<DirectoryCompletions> execute(Listing listing) {
+        pendingListings.put(listing.key, listing);
+        LISTING_EXECUTOR.execute(listing);
+        return listing;
+    }
+
+    /**
+     * The listing of a directory, which is no longer pending once it is finished or cancelled. It only removes its own
+     * entry from the pending listings: a listing that was cancelled while running may finish after a newer listing of
+     * the same directory has been requested.
+     */
+    private class Listing extends FutureTask<DirectoryCompletions> {
+
+        /** Absolute path of the directory */
+        private final String key;
+
+        private Listing(String key, Callable<DirectoryCompletions> callable) {
+            super(callable);
+            this.key = key;
+        }
+
+        @Override
+        protected void done() {
+            synchronized(FilesService.this) {
+                pendingListings.remove(key, this);
+            }
+        }
+    }
+
+    /**
+     * Indexes the completions of the given files and adds them to the cache.
+     *
+     * @param key absolute path of the directory
+     * @param date date of the directory at the time it was listed
+     * @param files files of the directory to complete
+     * @return the completions
+     */
+    private DirectoryCompletions addToCache(String key, long date, AbstractFile[] files) {
+        int nbFiles = files.length;
+        String[] names = new String[nbFiles];
+        for (int i=0; i<nbFiles; i++)
+            names[i] = files[i].getName() + (files[i].isDirectory() ? files[i].getSeparator() : "");
+
+        DirectoryCompletions completions = new DirectoryCompletions(key, date, names);
+        synchronized(this) {
+            cache.put(key, completions);
+        }
+        return completions;
     }
 }
@@ -40,4 +40,9 @@ public class FilteredFilesService extends FilesService {
     protected AbstractFile[] getFiles(AbstractFile directory) throws IOException {
         return fileFilter.filter(directory.ls());
     }
+
+    @Override
+    protected AbstractFile[] getFiles(AbstractFile[] children) {
+        return fileFilter.filter(children);
+    }
 }
@@ -0,0 +1,254 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.dialog.debug;
+
+import java.awt.BorderLayout;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.metrics.IOMetrics;
+import com.mucommander.commons.file.metrics.IOMetricsEntry;
+import com.mucommander.commons.util.ui.dialog.FocusDialog;
+import com.mucommander.text.SizeFormat;
+import com.mucommander.text.Translator;
+import com.mucommander.ui.action.ActionProperties;
+import com.mucommander.ui.action.impl.ShowIOMetricsAction;
+import com.mucommander.ui.main.MainFrame;
+
+/**
+ * This dialog shows the I/O metrics recorded by {@link IOMetrics}: the number of calls, the number of bytes
+ * transferred and the latency of each file operation, per protocol. The metrics are refreshed periodically while the
+ * dialog is visible. The dialog also makes it possible to enable or disable metrics and to reset them.
+ *
+ * @see ShowIOMetricsAction
+ * @see FileFactory#setIOMetricsEnabled(boolean)
+ */
+public class IOMetricsDialog extends FocusDialog implements ActionListener {
+
+    /** Displays the metrics, one row per protocol and operation */
+    private JTable metricsTable;
+
+    /** Holds the metrics displayed by the table */
+    private MetricsTableModel tableModel;
+
+    /** Enables or disables metrics */
+    private JCheckBox enabledCheckBox;
+
+    /** Discards the metrics recorded so far when pressed */
+    private JButton resetButton;
+
+    /** Closes the dialog when pressed */
+    private JButton closeButton;
+
+    /** Refreshes the metrics periodically */
+    private Timer refreshTimer;
+
+    /** Number of milliseconds between two refreshes of the metrics */
+    private final static int REFRESH_INTERVAL = 1000;
+
+    // Dialog size constraints
+    private final static Dimension MINIMUM_DIALOG_DIMENSION = new Dimension(700,400);
+    private final static Dimension MAXIMUM_DIALOG_DIMENSION = new Dimension(900,600);
+
+    /**
+     * Creates a new {@link IOMetricsDialog} using the given {@link MainFrame} as a parent.
+     *
+     * @param mainFrame the {@link MainFrame} to use as a parent
+     */
+    public IOMetricsDialog(MainFrame mainFrame) {
+        super(mainFrame, ActionProperties.getActionLabel(ShowIOMetricsAction.Descriptor.ACTION_ID), mainFrame);
+
+        Container contentPane = getContentPane();
+
+        tableModel = new MetricsTableModel();
+        metricsTable = new JTable(tableModel);
+        metricsTable.setAutoCreateRowSorter(true);
+        refreshMetrics();
+
+        JScrollPane scrollPane = new JScrollPane(metricsTable, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED, JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        contentPane.add(scrollPane, BorderLayout.CENTER);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+
+        enabledCheckBox = new JCheckBox(Translator.get("io_metrics_dialog.enabled"), FileFactory.isIOMetricsEnabled());
+        enabledCheckBox.addActionListener(this);
+        southPanel.add(enabledCheckBox, BorderLayout.WEST);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout());
+
+        resetButton = new JButton(Translator.get("reset"));
+        resetButton.addActionListener(this);
+        buttonPanel.add(resetButton);
+
+        closeButton = new JButton(Translator.get("close"));
+        closeButton.addActionListener(this);
+        buttonPanel.add(closeButton);
+
+        southPanel.add(buttonPanel, BorderLayout.EAST);
+        contentPane.add(southPanel, BorderLayout.SOUTH);
+
+        setMinimumSize(MINIMUM_DIALOG_DIMENSION);
+        setMaximumSize(MAXIMUM_DIALOG_DIMENSION);
+
+        setInitialFocusComponent(closeButton);
+
+        refreshTimer = new Timer(REFRESH_INTERVAL, this);
+        refreshTimer.start();
+    }
+
+    /**
+     * Refreshes the table with the metrics recorded so far.
+     */
+    private void refreshMetrics() {
+        tableModel.setEntries(IOMetrics.getSnapshot());
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+
+        super.dispose();
+    }
+
+
+    ///////////////////////////////////
+    // ActionListener implementation //
+    ///////////////////////////////////
+
+    public void actionPerformed(ActionEvent e) {
+        Object source = e.getSource();
+
+        if(source==refreshTimer) {
+            refreshMetrics();
+        }
+        else if(source==enabledCheckBox) {
+            FileFactory.setIOMetricsEnabled(enabledCheckBox.isSelected());
+        }
+        else if(source==resetButton) {
+            IOMetrics.reset();
+            refreshMetrics();
+        }
+        else if(source==closeButton) {
+            dispose();
+        }
+    }
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * Table model that displays a list of {@link IOMetricsEntry}, latencies being expressed in milliseconds.
+     */
+    private static class MetricsTableModel extends AbstractTableModel {
+
+        private final static String COLUMN_KEYS[] = {
+                "io_metrics_dialog.protocol",
+                "io_metrics_dialog.operation",
+                "io_metrics_dialog.count",
+                "io_metrics_dialog.errors",
+                "io_metrics_dialog.bytes",
+                "io_metrics_dialog.mean",
+                "io_metrics_dialog.median",
+                "io_metrics_dialog.percentile_90",
+                "io_metrics_dialog.percentile_99",
+                "io_metrics_dialog.max"
+        };
+
+        private List<IOMetricsEntry> entries = new ArrayList<>();
+
+        private void setEntries(List<IOMetricsEntry> entries) {
+            this.entries = entries;
+            fireTableDataChanged();
+        }
+
+        public int getRowCount() {
+            return entries.size();
+        }
+
+        public int getColumnCount() {
+            return COLUMN_KEYS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return Translator.get(COLUMN_KEYS[column]);
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            switch(column) {
+                case 0:
+                case 1:
+                case 4:
+                    return String.class;
+                case 2:
+                case 3:
+                    return Long.class;
+                default:
+                    return Double.class;
+            }
+        }
+
+        public Object getValueAt(int row, int column) {
+            IOMetricsEntry entry = entries.get(row);
+
+            switch(column) {
+                case 0:
+                    return entry.getProtocol();
+                case 1:
+                    return entry.getOperation().toString();
+                case 2:
+                    return entry.getCount();
+                case 3:
+                    return entry.getErrors();
+                case 4:
+                    return SizeFormat.format(entry.getBytes(), SizeFormat.DIGITS_MEDIUM| SizeFormat.UNIT_SHORT| SizeFormat.INCLUDE_SPACE);
+                case 5:
+                    return toMillis(entry.getMeanMicros());
+                case 6:
+                    return toMillis(entry.getMedianMicros());
+                case 7:
+                    return toMillis(entry.getPercentile90Micros());
+                case 8:
+                    return toMillis(entry.getPercentile99Micros());
+                default:
+                    return toMillis(entry.getMaxMicros());
+            }
+        }
+
+        private static Double toMillis(long micros) {
+            return micros/1000d;
+        }
+    }
+}
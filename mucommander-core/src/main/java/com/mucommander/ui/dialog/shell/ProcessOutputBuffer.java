@@ -0,0 +1,287 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.dialog.shell;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffers the output of a process before it is displayed in a text area.
+ * <p>
+ * Output can be {@link #append(String) appended} from any thread. It is stored in a ring buffer whose capacity is the
+ * maximum number of characters displayed by the text area: when a process outputs more than that in a short period of
+ * time, only the most recent output is kept. The text area is updated from the event dispatch thread at a fixed rate,
+ * with all the output received since the last update, and its oldest lines are removed once it holds more characters
+ * than the capacity of the buffer.
+ * </p>
+ * <p>
+ * Optionally, the whole output can also be saved to a temporary file, so that it can still be read once it's no longer
+ * displayed.
+ * </p>
+ * @see RunDialog
+ */
+class ProcessOutputBuffer implements ActionListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessOutputBuffer.class);
+
+    // - Instance fields -----------------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    /** Text area the output is displayed in. */
+    private JTextArea textArea;
+    /** Updates the text area at a fixed rate. */
+    private Timer     timer;
+    /** Output that hasn't been displayed yet. */
+    private char[]    ring;
+    /** Index of the first character of pending output in the ring. */
+    private int       start;
+    /** Number of characters of pending output in the ring. */
+    private int       length;
+    /** Whether pending output has been dropped, in which case the text area's content must be replaced. */
+    private boolean   overflow;
+    /** Whether some output has been dropped since the file the output is saved to has been created. */
+    private boolean   truncated;
+    /** File the whole output is saved to, <code>null</code> if output isn't being saved. */
+    private File      outputFile;
+    /** Used to write to {@link #outputFile}. */
+    private Writer    outputWriter;
+
+
+
+    // - Misc. class variables -----------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    /** Number of milliseconds between two updates of the text area. */
+    private final static int REFRESH_INTERVAL = 40;
+    /** Number of characters that can be removed past the first line to remove, to remove whole lines only. */
+    private final static int MAX_LINE_LENGTH  = 1024;
+
+
+
+    // - Initialisation ------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    /**
+     * Creates a new buffer displaying output in the specified text area.
+     * @param textArea text area the output is displayed in.
+     * @param capacity maximum number of characters displayed by the text area.
+     */
+    ProcessOutputBuffer(JTextArea textArea, int capacity) {
+        this.textArea = textArea;
+        ring          = new char[Math.max(1, capacity)];
+        timer         = new Timer(REFRESH_INTERVAL, this);
+    }
+
+
+
+    // - Output management ---------------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    /**
+     * Appends the specified string to the output. This method can be called from any thread.
+     * @param s string to append to the output.
+     */
+    synchronized void append(String s) {
+        int len    = s.length();
+        int offset = 0;
+
+        // Only the end of the string fits in the ring.
+        if(len >= ring.length) {
+            offset = len - ring.length;
+            start  = 0;
+            length = 0;
+            setOverflow();
+        }
+        // Drops the oldest pending output if there isn't enough room left.
+        else if(length + len > ring.length) {
+            int excess = length + len - ring.length;
+            start      = (start + excess) % ring.length;
+            length    -= excess;
+            setOverflow();
+        }
+
+        int end   = (start + length) % ring.length;
+        int first = Math.min(len - offset, ring.length - end);
+        s.getChars(offset, offset + first, ring, end);
+        s.getChars(offset + first, len, ring, 0);
+        length += len - offset;
+
+        if(outputWriter != null) {
+            try {outputWriter.write(s);}
+            catch(IOException e) {
+                LOGGER.debug("Failed to save process output to "+outputFile, e);
+                closeOutputFile();
+                if(!outputFile.delete())
+                    LOGGER.debug("Failed to delete process output file "+outputFile);
+                outputFile = null;
+            }
+        }
+    }
+
+    /**
+     * Records that some output has been dropped before being displayed.
+     */
+    private void setOverflow() {
+        overflow  = true;
+        truncated = true;
+    }
+
+    /**
+     * Removes all output, both pending and displayed. This method must be called from the event dispatch thread.
+     */
+    void clear() {
+        synchronized(this) {
+            start    = 0;
+            length   = 0;
+            overflow = false;
+        }
+        textArea.setText("");
+    }
+
+    /**
+     * Displays the pending output in the text area. This method must be called from the event dispatch thread.
+     */
+    void flush() {
+        String  text;
+        boolean replace;
+
+        synchronized(this) {
+            if(length == 0)
+                return;
+
+            int first = Math.min(length, ring.length - start);
+            StringBuilder sb = new StringBuilder(length);
+            sb.append(ring, start, first);
+            sb.append(ring, 0, length - first);
+            text     = sb.toString();
+            replace  = overflow;
+            start    = 0;
+            length   = 0;
+            overflow = false;
+        }
+
+        if(replace)
+            textArea.setText(text);
+        else
+            textArea.append(text);
+
+        // Removes the oldest lines from the text area if it holds too many characters.
+        Document document = textArea.getDocument();
+        int      excess   = document.getLength() - ring.length;
+        if(excess > 0) {
+            synchronized(this) {
+                truncated = true;
+            }
+            Element root = document.getDefaultRootElement();
+            int     end  = root.getElement(root.getElementIndex(excess - 1)).getEndOffset();
+            if(end - excess > MAX_LINE_LENGTH || end > document.getLength())
+                end = excess;
+            try {document.remove(0, end);}
+            catch(BadLocationException e) {
+                LOGGER.debug("Failed to remove old process output", e);
+            }
+        }
+
+        textArea.setCaretPosition(document.getLength());
+        textArea.getCaret().setVisible(true);
+    }
+
+    /**
+     * Called by the timer to update the text area.
+     * @param e describes the timer event.
+     */
+    public void actionPerformed(ActionEvent e) {flush();}
+
+    /**
+     * Starts updating the text area at a fixed rate.
+     */
+    void start() {timer.start();}
+
+    /**
+     * Stops updating the text area, after displaying the pending output.
+     */
+    void stop() {
+        timer.stop();
+        flush();
+    }
+
+
+
+    // - Output saving -------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    /**
+     * Starts saving the whole output to a new temporary file.
+     */
+    synchronized void startSavingOutput() {
+        closeOutputFile();
+        try {
+            outputFile   = File.createTempFile("mucommander-output", ".txt");
+            outputWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8));
+            truncated    = false;
+        }
+        catch(IOException e) {
+            LOGGER.debug("Failed to create process output file", e);
+            outputFile = null;
+        }
+    }
+
+    /**
+     * Stops saving the output.
+     * <p>
+     * If the output has been displayed entirely, the file it was saved to is deleted and <code>null</code> is returned.
+     * </p>
+     * @return the file the whole output has been saved to, <code>null</code> if none.
+     */
+    synchronized File stopSavingOutput() {
+        File file = outputWriter == null ? null : outputFile;
+        closeOutputFile();
+        outputFile = null;
+
+        if(file != null && !truncated) {
+            if(!file.delete())
+                LOGGER.debug("Failed to delete process output file "+file);
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * Closes the file the output is saved to, if any.
+     */
+    private void closeOutputFile() {
+        if(outputWriter == null)
+            return;
+
+        try {outputWriter.close();}
+        catch(IOException e) {
+            LOGGER.debug("Failed to close process output file "+outputFile, e);
+        }
+        outputWriter = null;
+    }
+}
@@ -27,6 +27,7 @@ import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.File;
 import java.io.PrintStream;
 
 import javax.swing.Box;
@@ -35,6 +36,7 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +46,9 @@ import com.mucommander.commons.util.ui.dialog.DialogToolkit;
 import com.mucommander.commons.util.ui.dialog.FocusDialog;
 import com.mucommander.commons.util.ui.layout.XBoxPanel;
 import com.mucommander.commons.util.ui.layout.YBoxPanel;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
 import com.mucommander.process.AbstractProcess;
 import com.mucommander.process.ProcessListener;
 import com.mucommander.shell.Shell;
@@ -85,6 +90,8 @@ public class RunDialog extends FocusDialog implements ActionListener, ProcessLis
     private JButton       clearButton;
     /** Text area used to display the shell output. */
     private JTextArea     outputTextArea;
+    /** Buffers the shell output before it is displayed. */
+    private ProcessOutputBuffer outputBuffer;
     /** Used to let the user known that the command is still running. */
     private SpinningDial  dial;
 
@@ -129,6 +136,9 @@ public class RunDialog extends FocusDialog implements ActionListener, ProcessLis
         outputTextArea.setSelectionColor(ThemeManager.getCurrentColor(Theme.SHELL_SELECTED_BACKGROUND_COLOR));
         outputTextArea.setFont(ThemeManager.getCurrentFont(Theme.SHELL_FONT));
 
+        outputBuffer = new ProcessOutputBuffer(outputTextArea, MuConfigurations.getPreferences().getVariable(
+                MuPreference.SHELL_OUTPUT_BUFFER_SIZE, MuPreferences.DEFAULT_SHELL_OUTPUT_BUFFER_SIZE));
+
         // Creates a scroll pane on the shell output area.
         return new JScrollPane(outputTextArea, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED, JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
     }
@@ -217,6 +227,8 @@ public class RunDialog extends FocusDialog implements ActionListener, ProcessLis
                         processInput.close();
                         currentProcess.destroy();
                     }
+                    outputBuffer.stop();
+                    outputBuffer.stopSavingOutput();
                 }
             });
 
@@ -239,7 +251,21 @@ public class RunDialog extends FocusDialog implements ActionListener, ProcessLis
             processInput.close();
             processInput = null;
         }
-        switchToRunState();
+
+        // The last output is displayed before the output file is closed, as displaying it may truncate the output
+        // area, in which case the output file is kept.
+        SwingUtilities.invokeLater(() -> {
+            outputBuffer.stop();
+
+            // Lets the user know where to find the output that is no longer displayed.
+            File outputFile = outputBuffer.stopSavingOutput();
+            if(outputFile != null) {
+                addToTextArea("\n"+Translator.get("run_dialog.output_saved", outputFile.getAbsolutePath())+"\n");
+                outputBuffer.flush();
+            }
+
+            switchToRunState();
+        });
     }	
 
     /**
@@ -320,7 +346,7 @@ public class RunDialog extends FocusDialog implements ActionListener, ProcessLis
             // Sets the new focus depending on whether a process is currently running or not.
             if(currentProcess == null) {
                 inputCombo.requestFocus();
-                outputTextArea.setText("");
+                outputBuffer.clear();
             }
             else {
                 outputTextArea.requestFocus();
@@ -390,7 +416,10 @@ public class RunDialog extends FocusDialog implements ActionListener, ProcessLis
             this.runStopButton.setText(Translator.get("run_dialog.stop"));
 
             // Resets the process output area.
-            outputTextArea.setText("");
+            outputBuffer.clear();
+            outputBuffer.start();
+            if(MuConfigurations.getPreferences().getVariable(MuPreference.SAVE_SHELL_OUTPUT, MuPreferences.DEFAULT_SAVE_SHELL_OUTPUT))
+                outputBuffer.startSavingOutput();
             outputTextArea.setCaretPosition(0);
             outputTextArea.getCaret().setVisible(true);
             outputTextArea.requestFocus();
@@ -407,18 +436,21 @@ public class RunDialog extends FocusDialog implements ActionListener, ProcessLis
         catch(Exception e) {
             // Notifies the user that an error occurred and resets to normal state.
             addToTextArea(Translator.get("generic_error"));
+            outputBuffer.stop();
+            outputBuffer.stopSavingOutput();
             switchToRunState();
         }
     }
 
     /**
      * Appends the specified string to the shell output area.
+     * <p>
+     * This method can be called from any thread: the string is buffered, and displayed with the rest of the output
+     * at the next update of the shell output area.
+     * </p>
      * @param s string to append to the shell output area.
      */
     private void addToTextArea(String s) {
-        outputTextArea.append(s);
-        outputTextArea.setCaretPosition(outputTextArea.getText().length());
-        outputTextArea.getCaret().setVisible(true);
-        outputTextArea.repaint();
+        outputBuffer.append(s);
     }
 }
@@ -37,8 +37,10 @@ import com.mucommander.search.file.SearchProtocolProvider;
 import com.mucommander.ui.autocomplete.AutocompleterTextComponent;
 import com.mucommander.ui.autocomplete.CompleterFactory;
 import com.mucommander.ui.autocomplete.TextFieldCompletion;
+import com.mucommander.ui.autocomplete.completers.Completer;
 import com.mucommander.ui.event.LocationEvent;
 import com.mucommander.ui.event.LocationListener;
+import com.mucommander.ui.main.table.FileTableModel;
 import com.mucommander.ui.progress.ProgressTextField;
 import com.mucommander.ui.theme.ColorChangedEvent;
 import com.mucommander.ui.theme.FontChangedEvent;
@@ -68,6 +70,9 @@ public class LocationTextField extends ProgressTextField implements LocationList
     /** Used to save the path that was entered by the user after validation of the location textfield */
     private String locationFieldTextSave;
 
+    /** Provides the auto-completion of locations */
+    private Completer completer;
+
     /** For windows path, regex that finds trailing space characters at the end of a path */
     private static Pattern windowsTrailingSpacePattern;
 
@@ -113,6 +118,7 @@ public class LocationTextField extends ProgressTextField implements LocationList
      * Adds auto-completion capabilities to this text field.
      */
     private void enableAutoCompletion() {
+        completer = CompleterFactory.getLocationCompleter();
         new TextFieldCompletion(new AutocompleterTextComponent(this) {
 
             @Override
@@ -128,7 +134,7 @@ public class LocationTextField extends ProgressTextField implements LocationList
             public void OnEscPressed(KeyEvent keyEvent) {
                 textFieldCancelled();
             }
-        }, CompleterFactory.getLocationCompleter());
+        }, completer);
     }
 
     /**
@@ -205,6 +211,11 @@ public class LocationTextField extends ProgressTextField implements LocationList
     public void locationChanged(LocationEvent e) {
         // Re-enable component and change the location field's text to the new current folder's path
         folderChangeCompleted(true);
+
+        // Paths typed in the location field are most likely to start with the new current folder, whose listing is
+        // reused rather than listing the folder again
+        FileTableModel tableModel = folderPanel.getFileTable().getFileTableModel();
+        completer.prewarm(tableModel.getCurrentFolder(), tableModel.getCurrentFolderDateSnapshot(), tableModel.getCachedFiles());
     }
 
     @Override
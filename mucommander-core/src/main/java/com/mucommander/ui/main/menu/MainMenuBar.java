@@ -112,6 +112,7 @@ import com.mucommander.ui.action.impl.ShowAboutAction;
 import com.mucommander.ui.action.impl.ShowBookmarksQLAction;
 import com.mucommander.ui.action.impl.ShowDebugConsoleAction;
 import com.mucommander.ui.action.impl.ShowFilePropertiesAction;
+import com.mucommander.ui.action.impl.ShowIOMetricsAction;
 import com.mucommander.ui.action.impl.ShowKeyboardShortcutsAction;
 import com.mucommander.ui.action.impl.ShowParentFoldersQLAction;
 import com.mucommander.ui.action.impl.ShowPreferencesAction;
@@ -125,6 +126,7 @@ import com.mucommander.ui.action.impl.SplitFileAction;
 import com.mucommander.ui.action.impl.SplitHorizontallyAction;
 import com.mucommander.ui.action.impl.SplitVerticallyAction;
 import com.mucommander.ui.action.impl.SwapFoldersAction;
+import com.mucommander.ui.action.impl.SynchronizeFoldersAction;
 import com.mucommander.ui.action.impl.ToggleAutoSizeAction;
 import com.mucommander.ui.action.impl.ToggleCommandBarAction;
 import com.mucommander.ui.action.impl.ToggleHiddenFilesAction;
@@ -286,6 +288,7 @@ public class MainMenuBar extends JMenuBar implements ActionListener, MenuListene
 
         markMenu.add(new JSeparator());
         MenuToolkit.addMenuItem(markMenu, ActionManager.getActionInstance(CompareFoldersAction.Descriptor.ACTION_ID, mainFrame), menuItemMnemonicHelper);
+        MenuToolkit.addMenuItem(markMenu, ActionManager.getActionInstance(SynchronizeFoldersAction.Descriptor.ACTION_ID, mainFrame), menuItemMnemonicHelper);
 
         add(markMenu);
 
@@ -439,6 +442,7 @@ public class MainMenuBar extends JMenuBar implements ActionListener, MenuListene
         MenuToolkit.addMenuItem(helpMenu, ActionManager.getActionInstance(GoToDocumentationAction.Descriptor.ACTION_ID, mainFrame), menuItemMnemonicHelper);
         MenuToolkit.addMenuItem(helpMenu, ActionManager.getActionInstance(ShowKeyboardShortcutsAction.Descriptor.ACTION_ID, mainFrame), menuItemMnemonicHelper);
         MenuToolkit.addMenuItem(helpMenu, ActionManager.getActionInstance(ShowDebugConsoleAction.Descriptor.ACTION_ID, mainFrame), menuItemMnemonicHelper);
+        MenuToolkit.addMenuItem(helpMenu, ActionManager.getActionInstance(ShowIOMetricsAction.Descriptor.ACTION_ID, mainFrame), menuItemMnemonicHelper);
 
         // Links to website, only shows for OS/Window manager that can launch the default browser to open URLs
         if(DesktopManager.canBrowse()) {
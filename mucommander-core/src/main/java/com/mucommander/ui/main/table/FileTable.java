@@ -1030,6 +1030,7 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
 
         // Sort table, doesn't affect marked files
         tableModel.sortRows();
+        quickSearch.itemsChanged();
 
         // Restore selected file
         selectFile(selectedFile);
@@ -1671,6 +1672,11 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
             return getFileNameAtRow(index);
 		}
 
+		@Override
+		protected String getFoldedItemString(int index) {
+            return tableModel.getFoldedFileNameAtRow(index);
+		}
+
 		@Override
 		protected void searchStringBecameEmpty(String searchString) {
 			mainFrame.getStatusBar().setStatusInfo(searchString); // TODO: is needed?
@@ -41,6 +41,7 @@ import com.mucommander.conf.MuPreferences;
 import com.mucommander.search.file.SearchProtocolProvider;
 import com.mucommander.text.CustomDateFormat;
 import com.mucommander.text.SizeFormat;
+import com.mucommander.ui.quicksearch.QuickSearch;
 
 
 /**
@@ -64,6 +65,9 @@ public class FileTableModel extends AbstractTableModel {
     /** Cached file instances */
     private AbstractFile cachedFiles[];
 
+    /** Case-folded names of the cached files, used by quick search */
+    private String foldedNames[];
+
     /** Index array */
     private int fileArrayIndex[];
 
@@ -147,6 +151,7 @@ public class FileTableModel extends AbstractTableModel {
     public FileTableModel() {
         // Init arrays to avoid NullPointerExceptions until setCurrentFolder() gets called for the first time
         cachedFiles = new AbstractFile[0];
+        foldedNames = new String[0];
         fileArrayIndex = new int[0];
         cellValuesCache = new Object[0][Column.values().length-1];
         rowMarked = new boolean[0];
@@ -229,6 +234,7 @@ public class FileTableModel extends AbstractTableModel {
 
         // Initialize file indexes and create CachedFile instances to speed up table display and navigation
         this.cachedFiles = children;
+        this.foldedNames = new String[nbFiles];
         this.fileArrayIndex = new int[nbFiles];
         AbstractFile file;
         for(int i=0; i<nbFiles; i++) {
@@ -238,6 +244,7 @@ public class FileTableModel extends AbstractTableModel {
             prefetchCachedFileAttributes(file);
 
             cachedFiles[i] = file;
+            foldedNames[i] = QuickSearch.fold(file.getName());
             fileArrayIndex[i] = i;
         }
 
@@ -373,6 +380,28 @@ public class FileTableModel extends AbstractTableModel {
         return null;
     }
 
+    /**
+     * Returns the name of the file located at the given row index, case-folded with {@link QuickSearch#fold(String)}.
+     * The folded names are computed once, when the current folder is set, so this method doesn't allocate anything.
+     *
+     * <p>Returns <code>null</code> if rowIndex is lower than 0 or is greater than or equals
+     * {@link #getRowCount() getRowCount()}.</p>
+     *
+     * @param rowIndex a row index, comprised between 0 and #getRowCount()
+     * @return the case-folded name of the file located at the given row index
+     */
+    public synchronized String getFoldedFileNameAtRow(int rowIndex) {
+        if(rowIndex==0 && parent!=null)
+            return "..";
+
+        if(parent!=null)
+            rowIndex--;
+
+        if(rowIndex>=0 && rowIndex<fileArrayIndex.length)
+            return foldedNames[fileArrayIndex[rowIndex]];
+        return null;
+    }
+
     /**
      * Returns the current folder's children. The returned array contains {@link CachedFile} instances, where
      * most attributes have already been fetched and cached.
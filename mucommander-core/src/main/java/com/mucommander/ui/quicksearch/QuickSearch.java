@@ -19,6 +19,9 @@ package com.mucommander.ui.quicksearch;
 
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.swing.JComponent;
 
@@ -30,6 +33,13 @@ import org.slf4j.LoggerFactory;
  * the user's keyboard input.
  * This class is abstract, and should be inherited by subclasses that define 'quick search' 
  * functionality for specific components. 
+ * <p>
+ * The items matching the search string are computed once per search string change and kept in memory, so that
+ * testing whether an item matches (which is done each time it is painted) doesn't involve any string operation.
+ * Since an item that contains the search string also contains all its prefixes, the matches of the search string are
+ * found among the matches of the previous search string when a character is appended to it, and the matches of the
+ * previous search string are restored when the last character is removed.
+ * </p>
  * 
  * @author Arik Hadas
  */
@@ -39,6 +49,15 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
 	/** Quick search string */
     private String searchString;
 
+    /** Quick search string, case-folded with {@link #fold(String)} */
+    private String foldedSearchString;
+
+    /** Items that match the successive prefixes of the search string, from the shortest to the longest prefix */
+    private List<Matches> matchesStack = new ArrayList<Matches>();
+
+    /** Number of items when the items of {@link #matchesStack} were found */
+    private int matchesNumOfItems;
+
 	/** Timestamp of the last search string change, used when quick search is active */
     private long lastSearchStringChange;
 
@@ -73,6 +92,8 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
         if(!isActive()) {
             // Reset search string
             searchString = "";
+            foldedSearchString = "";
+            matchesStack.clear();
             // Start the thread that's responsible for canceling the quick search on timeout
             timeoutThread = new Thread(this, "QuickSearch timeout thread");
             timeoutThread.start();
@@ -88,6 +109,7 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
     public synchronized void stop() {
         if(isActive()) {
             timeoutThread = null;
+            matchesStack.clear();
 
             searchStopped();
         }
@@ -111,7 +133,57 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
      * @return true if the current quick search string matches the given string
      */
     public boolean matches(String string) {
-        return isActive() && string.toLowerCase().indexOf(searchString.toLowerCase())!=-1;
+        return isActive() && fold(string).indexOf(foldedSearchString)!=-1;
+    }
+
+    /**
+     * Returns <code>true</code> if the current quick search string matches the item at the given index.
+     * Always returns <code>false</code> when the quick search is inactive.
+     * <p>
+     * Contrary to {@link #matches(String)}, this method doesn't allocate anything once the items matching the
+     * current quick search string have been found, which makes it suitable for being called by cell renderers.
+     * </p>
+     *
+     * @param index index of the item to test
+     * @return true if the current quick search string matches the item at the given index
+     */
+    public synchronized boolean matches(int index) {
+        if(!isActive())
+            return false;
+
+        return foldedSearchString.length()==0 || Arrays.binarySearch(getMatchingItems(), index)>=0;
+    }
+
+    /**
+     * Discards the items found to match the quick search string. This method must be called when items are added,
+     * removed or reordered while the quick search is active.
+     */
+    public synchronized void itemsChanged() {
+        matchesStack.clear();
+    }
+
+    /**
+     * Folds the case of the given string, character by character, so that case-insensitive matches can be found with
+     * plain string methods. The folded string has the same length as the given one, the given string itself is
+     * returned if it doesn't contain any uppercase character.
+     *
+     * @param string the string to fold
+     * @return the folded string
+     */
+    public static String fold(String string) {
+        int len = string.length();
+        int i = 0;
+        while(i<len && Character.toLowerCase(string.charAt(i))==string.charAt(i))
+            i++;
+
+        if(i==len)
+            return string;
+
+        char[] chars = string.toCharArray();
+        for(; i<len; i++)
+            chars[i] = Character.toLowerCase(chars[i]);
+
+        return new String(chars);
     }
 
 
@@ -157,6 +229,7 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
         // the cancel() method will be called, and repainting twice would result in an
         // unpleasant graphical artifact.
         searchString = searchString.substring(0, searchString.length()-1);
+        foldedSearchString = fold(searchString);
         if(searchString.length() != 0)
             component.repaint();
 	}
@@ -166,6 +239,7 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
         // Since the search string has been updated, match information has changed as well
         // and we need to repaint the table.
         searchString += keyChar;
+        foldedSearchString = fold(searchString);
         component.repaint();
 	}
 	
@@ -193,33 +267,75 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
         }
     }
 	
+	/**
+	 * Returns the indexes of the items that contain the quick search string, ignoring case, in ascending order.
+	 * The matches of the longest prefix of the search string that have already been found are narrowed down, rather
+	 * than testing all items again.
+	 *
+	 * @return the indexes of the items that match the quick search string
+	 */
+	private synchronized int[] getMatchingItems() {
+        int numOfItems = getNumOfItems();
+        if(numOfItems!=matchesNumOfItems) {
+            matchesStack.clear();
+            matchesNumOfItems = numOfItems;
+        }
+
+        // Discard the matches of strings that are no longer a prefix of the search string
+        int size;
+        while((size=matchesStack.size())>0 && !foldedSearchString.startsWith(matchesStack.get(size-1).foldedString))
+            matchesStack.remove(size-1);
+
+        Matches previous = size==0?null:matchesStack.get(size-1);
+        if(previous!=null && previous.foldedString.length()==foldedSearchString.length())
+            return previous.items;
+
+        int nbCandidates = previous==null?numOfItems:previous.items.length;
+        int[] items = new int[nbCandidates];
+        int nbItems = 0;
+        for(int i=0; i<nbCandidates; i++) {
+            int index = previous==null?i:previous.items[i];
+            String item = getFoldedItemString(index);
+            if(item!=null && item.indexOf(foldedSearchString)!=-1)
+                items[nbItems++] = index;
+        }
+
+        items = Arrays.copyOf(items, nbItems);
+        matchesStack.add(new Matches(foldedSearchString, items));
+
+        return items;
+	}
+
 	private int getBestMatch(int startRow, boolean descending, boolean findBestMatch) {
-    	String searchStringLC = searchString.toLowerCase();
+        int[] items = getMatchingItems();
+
+        // Position of the first matching item to test
+        int start = Arrays.binarySearch(items, startRow);
+        if(start<0)
+            start = descending ? -start-1 : -start-2;
+
+        // If findBestMatch was not specified, stop to the first match
+        if(!findBestMatch) {
+            int firstMatch = start>=0 && start<items.length ? items[start] : -1;
+            LOGGER.trace("firstMatch="+firstMatch);
+            return firstMatch;
+        }
+
     	int searchStringLen = searchString.length();
         int startsWithCaseMatch = -1;
         int startsWithNoCaseMatch = -1;
         int containsCaseMatch = -1;
         int containsNoCaseMatch = -1;
-        int nbRows = getNumOfItems();
 
-        // Iterate on rows and look the first strings to match one of the following tests,
+        // Iterate on matching rows and look the first strings to match one of the following tests,
         // in the following order of importance :
         // - search string matches the beginning of the string with the same case
         // - search string matches the beginning of the string with a different case
         // - string contains search string with the same case
         // - string contains search string with a different case
-        for(int i=startRow; descending?i<nbRows:i>=0; i=descending?i+1:i-1) {
-            // if findBestMatch was not specified, stop to the first match
-            if(!findBestMatch && (startsWithCaseMatch!=-1 || startsWithNoCaseMatch!=-1 || containsCaseMatch!=-1 || containsNoCaseMatch!=-1))
-                break;
-
+        for(int j=start; descending?j<items.length:j>=0; j=descending?j+1:j-1) {
+            int i = items[j];
             String item = getItemString(i);
-            int itemLen = item.length();
-
-            // No need to compare strings if quick search string is longer than compared string,
-            // they won't match
-            if(itemLen<searchStringLen)
-                continue;
 
             // Compare quick search string against
             if (item.startsWith(searchString)) {
@@ -232,15 +348,14 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
             if(startsWithNoCaseMatch!=-1)
                 continue;
 
-            String itemLC = item.toLowerCase();
-            if(itemLC.startsWith(searchStringLC)) {
+            if(getFoldedItemString(i).startsWith(foldedSearchString)) {
                 // We've got a match, let's see if we can find a better match on the next string
                 startsWithNoCaseMatch = i;
             }
 
             // No need to check if the compared string contains search string if both size are equal,
             // in the case startsWith test yields the same result
-            if(itemLen==searchStringLen)
+            if(item.length()==searchStringLen)
                 continue;
 
             // If we already have a match on this test case, let's skip to the next string
@@ -253,15 +368,9 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
                 continue;
             }
 
-            // If we already have a match on this test case, let's skip to the next string
-            if(containsNoCaseMatch!=-1)
-                continue;
-
-            if(itemLC.indexOf(searchStringLC)!=-1) {
-                // We've got a match, let's see if we can find a better match on the next string
+            // All the items we iterate on contain the search string with a different case
+            if(containsNoCaseMatch==-1)
                 containsNoCaseMatch = i;
-                continue;
-            }
         }
     	
         // Determines what the best match is, based on all the matches we found
@@ -277,6 +386,18 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
         return bestMatch;
     }
 
+    /**
+     * Return item at a given index as a case-folded String, see {@link #fold(String)}. This method can be overridden
+     * to return a precomputed value.
+     *
+     * @param index - index of item
+     * @return item at index as a case-folded String, <code>null</code> if there is no such item
+     */
+    protected String getFoldedItemString(int index) {
+        String item = getItemString(index);
+        return item==null?null:fold(item);
+    }
+
 	//////////////////////
 	// Abstract methods //
 	//////////////////////
@@ -348,6 +469,19 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
         while(timeoutThread!=null);
     }
 
+    /**
+     * Items matching a case-folded search string.
+     */
+    private static class Matches {
+        private final String foldedString;
+        private final int[] items;
+
+        private Matches(String foldedString, int[] items) {
+            this.foldedString = foldedString;
+            this.items = items;
+        }
+    }
+
     ///////////////////////////////
     // KeyAdapter implementation //
     ///////////////////////////////
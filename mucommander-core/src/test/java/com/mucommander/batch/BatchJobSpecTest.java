@@ -0,0 +1,115 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.batch;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * This class is a TestNG test case for {@link BatchJobSpec}.
+ */
+public class BatchJobSpecTest {
+
+    /**
+     * Parses a batch with comments, empty lines and several kinds of jobs.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void testParse() throws Exception {
+        List<BatchJobSpec> specs = BatchJobSpec.parse(new StringReader(
+                "# nightly transfers\n" +
+                "\n" +
+                "copy /data/a /data/b /backup\n" +
+                "  CHECKSUM MD5 /backup/a /backup/a.md5  \n" +
+                "search /backup *.log text=error\n"));
+
+        assert specs.size() == 3;
+
+        assert specs.get(0).getType() == BatchJobSpec.Type.COPY;
+        assert specs.get(0).getLine() == 3;
+        assert specs.get(0).getArguments().equals(Arrays.asList("/data/a", "/data/b", "/backup"));
+
+        assert specs.get(1).getType() == BatchJobSpec.Type.CHECKSUM;
+        assert specs.get(1).getLine() == 4;
+        assert specs.get(1).getArguments().equals(Arrays.asList("MD5", "/backup/a", "/backup/a.md5"));
+
+        assert specs.get(2).getType() == BatchJobSpec.Type.SEARCH;
+        assert specs.get(2).getArguments().equals(Arrays.asList("/backup", "*.log", "text=error"));
+    }
+
+    /**
+     * Asserts that quotes group words and that backslashes escape characters.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void testQuotes() throws Exception {
+        BatchJobSpec spec = BatchJobSpec.parse("move \"/my files/a b\" /tmp/a\\ b \"\" /dest", 1);
+
+        assert spec.getArguments().equals(Arrays.asList("/my files/a b", "/tmp/a b", "", "/dest"));
+    }
+
+    /**
+     * Asserts that empty lines and comments are ignored.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void testIgnoredLines() throws Exception {
+        assert BatchJobSpec.parse("", 1) == null;
+        assert BatchJobSpec.parse("   ", 1) == null;
+        assert BatchJobSpec.parse("  # copy /a /b", 1) == null;
+    }
+
+    /**
+     * Asserts that invalid lines are reported with their line number.
+     */
+    @Test
+    public void testInvalidLines() {
+        String lines[] = {
+            "delete /a",
+            "copy /a",
+            "checksum MD5 /a",
+            "copy \"/a /b"
+        };
+
+        for (String line : lines) {
+            try {
+                BatchJobSpec.parse(line, 7);
+                assert false : line;
+            }
+            catch (BatchException e) {
+                assert e.getMessage().startsWith("Line 7:") : e.getMessage();
+            }
+        }
+    }
+
+    /**
+     * Asserts that a syntax error anywhere in a batch fails the whole batch.
+     *
+     * @throws Exception should not happen
+     */
+    @Test(expectedExceptions = BatchException.class)
+    public void testInvalidBatch() throws Exception {
+        BatchJobSpec.parse(new StringReader("copy /a /b\nunpack /c\n"));
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.batch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListResourceBundle;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.io.ByteUtils;
+import com.mucommander.text.Translator;
+import com.mucommander.ui.dialog.file.FileCollisionDialog;
+
+/**
+ * This class is a TestNG test case for {@link BatchRunner}, running checksum jobs on a temporary folder without user
+ * interface.
+ */
+public class BatchRunnerTest {
+
+    /** Content of the files the checksum is calculated of */
+    private final static String CONTENTS[] = {"first file\n", "second file\n"};
+
+    /** Folder containing the files */
+    private File folder;
+
+    /** Files the checksum is calculated of */
+    private File files[];
+
+    /** Checksum file written by the jobs */
+    private File checksumFile;
+
+    /**
+     * Initializes the translator with an empty dictionary, the jobs and the statistics using the keys as messages.
+     */
+    @BeforeClass
+    public void initTranslator() {
+        ResourceBundle emptyBundle = new ListResourceBundle() {
+            @Override
+            protected Object[][] getContents() {
+                return new Object[0][];
+            }
+        };
+        Translator.init(emptyBundle, emptyBundle, new ArrayList<Locale>());
+    }
+
+    /**
+     * Creates a temporary folder with a few files.
+     *
+     * @throws IOException should not happen
+     */
+    @BeforeMethod
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("batch").toFile();
+
+        files = new File[CONTENTS.length];
+        for (int i = 0; i < CONTENTS.length; i++) {
+            files[i] = new File(folder, "file" + i + ".txt");
+            Files.write(files[i].toPath(), CONTENTS[i].getBytes(StandardCharsets.UTF_8));
+        }
+
+        checksumFile = new File(folder, "files.md5");
+    }
+
+    /**
+     * Deletes the temporary folder.
+     */
+    @AfterMethod
+    public void tearDown() {
+        for (File file : folder.listFiles())
+            file.delete();
+        folder.delete();
+    }
+
+    /**
+     * Runs a batch calculating the checksum of the files with the given collision policy, asserting that the job does
+     * not fail.
+     */
+    private void runChecksum(int fileExistsAction) throws Exception {
+        String line = "checksum MD5";
+        for (File file : files)
+            line += " \"" + file.getAbsolutePath() + "\"";
+        line += " \"" + checksumFile.getAbsolutePath() + "\"";
+
+        List<BatchJobSpec> specs = BatchJobSpec.parse(new StringReader(line));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int nbFailed = new BatchRunner(fileExistsAction, false, new PrintStream(output, true, "UTF-8")).run(specs);
+
+        assert nbFailed == 0 : output.toString("UTF-8");
+    }
+
+    /**
+     * Returns the checksum file the batch is expected to write, in the 'SUMS' format.
+     */
+    private String getExpectedChecksums() throws NoSuchAlgorithmException {
+        StringBuilder checksums = new StringBuilder();
+        for (int i = 0; i < CONTENTS.length; i++) {
+            byte digest[] = MessageDigest.getInstance("MD5").digest(CONTENTS[i].getBytes(StandardCharsets.UTF_8));
+            checksums.append(ByteUtils.toHexString(digest)).append("  ").append(files[i].getName()).append('\n');
+        }
+
+        return checksums.toString();
+    }
+
+    /**
+     * Returns the content of the checksum file.
+     */
+    private String readChecksumFile() throws IOException {
+        return new String(Files.readAllBytes(checksumFile.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs a checksum job to completion, asserting that it neither waits for the user nor opens the checksum file in
+     * a viewer.
+     *
+     * @throws Exception should not happen
+     */
+    @Test(timeOut = 60000)
+    public void testChecksum() throws Exception {
+        runChecksum(FileCollisionDialog.SKIP_ACTION);
+        assert getExpectedChecksums().equals(readChecksumFile());
+    }
+
+    /**
+     * Asserts that an existing checksum file is overwritten by the <code>overwrite</code> collision policy, without
+     * asking the user.
+     *
+     * @throws Exception should not happen
+     */
+    @Test(timeOut = 60000)
+    public void testChecksumOverwrite() throws Exception {
+        Files.write(checksumFile.toPath(), "outdated".getBytes(StandardCharsets.UTF_8));
+
+        runChecksum(FileCollisionDialog.OVERWRITE_ACTION);
+        assert getExpectedChecksums().equals(readChecksumFile());
+    }
+
+    /**
+     * Asserts that an existing checksum file is left as it is by the <code>skip</code> collision policy.
+     *
+     * @throws Exception should not happen
+     */
+    @Test(timeOut = 60000)
+    public void testChecksumSkip() throws Exception {
+        Files.write(checksumFile.toPath(), "outdated".getBytes(StandardCharsets.UTF_8));
+
+        runChecksum(FileCollisionDialog.SKIP_ACTION);
+        assert "outdated".equals(readChecksumFile());
+    }
+}
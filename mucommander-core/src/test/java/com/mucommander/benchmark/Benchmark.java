@@ -0,0 +1,345 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListResourceBundle;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.archive.zip.ZipFormatProvider;
+import com.mucommander.commons.file.metrics.IOMetrics;
+import com.mucommander.commons.file.metrics.IOMetricsEntry;
+import com.mucommander.commons.file.metrics.IOOperation;
+import com.mucommander.commons.file.metrics.LatencyHistogram;
+import com.mucommander.commons.file.protocol.sim.SimFileSystem;
+import com.mucommander.text.Translator;
+import com.mucommander.ui.main.table.FileTableModelScenario;
+
+/**
+ * Runs end-to-end scenarios against a {@link SimFileSystem simulated filesystem}, without user interface, and reports
+ * their throughput and latency percentiles. The scenarios drive the same code as the application does:
+ * {@link com.mucommander.commons.file.FileFactory}, the file table model and the search, copy, unpack, synchronize,
+ * checksum and duplicate search jobs.
+ *
+ * <p>The shape of the simulated filesystem, its latency and its bandwidth are set on the command line, so that the
+ * scenarios can be run against a local-like filesystem as well as a remote-like one:</p>
+ * <pre>
+ * Benchmark [-depth n] [-folders n] [-files n] [-minsize bytes] [-maxsize bytes]
+ *           [-latency microseconds] [-bandwidth bytes/s] [-warmup n] [-iterations n] [scenario...]
+ * </pre>
+ * All scenarios are run if none is specified. Besides the duration of iterations, the report includes the I/O
+ * operations performed by the measured iterations, as recorded by {@link IOMetrics}.
+ */
+public class Benchmark {
+
+    /** Name under which the simulated filesystem is registered */
+    private final static String FILE_SYSTEM_NAME = "benchmark";
+
+    private final static int DEFAULT_DEPTH = 2;
+    private final static int DEFAULT_NB_FOLDERS = 10;
+    private final static int DEFAULT_NB_FILES = 50;
+    private final static long DEFAULT_MIN_FILE_SIZE = 1024;
+    private final static long DEFAULT_MAX_FILE_SIZE = 64 * 1024;
+    private final static int DEFAULT_WARMUP_ITERATIONS = 2;
+    private final static int DEFAULT_ITERATIONS = 5;
+
+    private final static double MB = 1024 * 1024;
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final AbstractFile root;
+
+    /**
+     * Creates a benchmark that runs scenarios against the given filesystem.
+     *
+     * @param fileSystem the simulated filesystem
+     * @param warmupIterations number of iterations run before measuring a scenario
+     * @param iterations number of iterations measured
+     * @throws IOException if the root of the filesystem could not be resolved
+     */
+    public Benchmark(SimFileSystem fileSystem, int warmupIterations, int iterations) throws IOException {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+
+        SimFileSystem.register(FILE_SYSTEM_NAME, fileSystem);
+        this.root = FileFactory.getFile("sim://" + FILE_SYSTEM_NAME + "/", true);
+    }
+
+    /**
+     * Returns the synthetic folder read by the scenarios that process a single folder.
+     *
+     * @param root the root folder of the simulated filesystem
+     * @return the folder read by the scenarios
+     * @throws IOException if the folder could not be resolved
+     */
+    public static AbstractFile getSourceFolder(AbstractFile root) throws IOException {
+        AbstractFile folder = root.getDirectChild("folder0");
+        return folder.exists() ? folder : root;
+    }
+
+    /**
+     * Returns the number of regular files in the given folder, recursively.
+     *
+     * @param folder a folder
+     * @return the number of regular files in the folder
+     * @throws IOException if a folder could not be listed
+     */
+    public static long countFiles(AbstractFile folder) throws IOException {
+        long nbFiles = 0;
+        for (AbstractFile child : folder.ls())
+            nbFiles += child.isDirectory() ? countFiles(child) : 1;
+
+        return nbFiles;
+    }
+
+    /**
+     * Runs the given scenario and prints its results to the standard output.
+     *
+     * @param scenario the scenario to run
+     * @throws Exception if an iteration of the scenario failed
+     */
+    public void run(Scenario scenario) throws Exception {
+        for (int i = 0; i < warmupIterations; i++)
+            runIteration(scenario);
+
+        LatencyHistogram durations = new LatencyHistogram();
+        Map<String, OperationStats> operations = new LinkedHashMap<String, OperationStats>();
+        long nbFiles = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            scenario.setUp(root);
+
+            IOMetrics.reset();
+            long start = System.nanoTime();
+            nbFiles += scenario.run(root);
+            durations.record(System.nanoTime() - start);
+
+            // Only keep the operations performed by the measured part of the iteration
+            for (IOMetricsEntry entry : IOMetrics.getSnapshot()) {
+                String key = entry.getProtocol() + " " + entry.getOperation();
+                OperationStats stats = operations.get(key);
+                if (stats == null)
+                    operations.put(key, stats = new OperationStats(entry.getOperation()));
+                stats.add(entry);
+            }
+
+            scenario.tearDown(root);
+        }
+
+        report(scenario, nbFiles, durations, operations);
+    }
+
+    private void runIteration(Scenario scenario) throws Exception {
+        scenario.setUp(root);
+        scenario.run(root);
+        scenario.tearDown(root);
+    }
+
+    /**
+     * Prints the results of a scenario.
+     */
+    private void report(Scenario scenario, long nbFiles, LatencyHistogram durations, Map<String, OperationStats> operations) {
+        double seconds = durations.getTotalNanos() / 1e9;
+
+        long bytesRead = 0;
+        long bytesWritten = 0;
+        for (OperationStats stats : operations.values()) {
+            if (stats.operation == IOOperation.READ)
+                bytesRead += stats.bytes;
+            else if (stats.operation == IOOperation.WRITE)
+                bytesWritten += stats.bytes;
+        }
+
+        System.out.println(scenario.getName() + ": " + durations.getCount() + " iterations, " + nbFiles / Math.max(1, durations.getCount()) + " files/iteration");
+        System.out.println(String.format(Locale.US, "  throughput: %.1f files/s, %.2f MB/s read, %.2f MB/s written",
+                nbFiles / seconds, bytesRead / MB / seconds, bytesWritten / MB / seconds));
+        System.out.println(String.format(Locale.US, "  iteration: mean=%.1fms p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms",
+                toMillis(durations.getTotalNanos() / Math.max(1, durations.getCount())),
+                toMillis(durations.getPercentile(50)),
+                toMillis(durations.getPercentile(90)),
+                toMillis(durations.getPercentile(99)),
+                toMillis(durations.getMaxNanos())));
+
+        for (Map.Entry<String, OperationStats> entry : operations.entrySet())
+            System.out.println("  " + entry.getKey() + ": " + entry.getValue());
+
+        System.out.println();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Initializes what the scenarios need outside of the user interface.
+     */
+    private static void init() {
+        // The jobs translate their messages, an empty dictionary has them use the keys
+        ResourceBundle emptyBundle = new ListResourceBundle() {
+            @Override
+            protected Object[][] getContents() {
+                return new Object[0][];
+            }
+        };
+        Translator.init(emptyBundle, emptyBundle, new ArrayList<Locale>());
+
+        FileFactory.registerArchiveFormat(new ZipFormatProvider());
+        FileFactory.setIOMetricsEnabled(true);
+    }
+
+    public static void main(String args[]) throws Exception {
+        int depth = DEFAULT_DEPTH;
+        int nbFolders = DEFAULT_NB_FOLDERS;
+        int nbFiles = DEFAULT_NB_FILES;
+        long minFileSize = DEFAULT_MIN_FILE_SIZE;
+        long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+        long latency = 0;
+        long bandwidth = 0;
+        int warmupIterations = DEFAULT_WARMUP_ITERATIONS;
+        int iterations = DEFAULT_ITERATIONS;
+        List<String> scenarioNames = new ArrayList<String>();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("-")) {
+                scenarioNames.add(arg);
+                continue;
+            }
+
+            if (i + 1 == args.length)
+                usage();
+            String value = args[++i];
+
+            switch (arg) {
+            case "-depth":
+                depth = Integer.parseInt(value);
+                break;
+            case "-folders":
+                nbFolders = Integer.parseInt(value);
+                break;
+            case "-files":
+                nbFiles = Integer.parseInt(value);
+                break;
+            case "-minsize":
+                minFileSize = Long.parseLong(value);
+                break;
+            case "-maxsize":
+                maxFileSize = Long.parseLong(value);
+                break;
+            case "-latency":
+                latency = Long.parseLong(value);
+                break;
+            case "-bandwidth":
+                bandwidth = Long.parseLong(value);
+                break;
+            case "-warmup":
+                warmupIterations = Integer.parseInt(value);
+                break;
+            case "-iterations":
+                iterations = Integer.parseInt(value);
+                break;
+            default:
+                usage();
+            }
+        }
+
+        List<Scenario> scenarios = new ArrayList<Scenario>(Arrays.asList(
+                new BrowseScenario(),
+                new FileTableModelScenario(),
+                new SearchScenario(),
+                new CopyScenario(),
+                new UnpackScenario(),
+                new SynchronizeScenario(),
+                new ChecksumScenario(),
+                new DuplicateSearchScenario()));
+        if (!scenarioNames.isEmpty()) {
+            scenarios.removeIf(scenario -> !scenarioNames.contains(scenario.getName()));
+            if (scenarios.isEmpty())
+                usage();
+        }
+
+        init();
+
+        SimFileSystem fileSystem = new SimFileSystem(depth, nbFolders, nbFiles, minFileSize, maxFileSize);
+        fileSystem.setLatency(latency);
+        fileSystem.setBandwidth(bandwidth);
+
+        System.out.println("Simulated filesystem: depth=" + depth + " folders=" + nbFolders + " files=" + nbFiles
+                + " (" + fileSystem.getNbSyntheticFiles() + " in total) sizes=" + minFileSize + "-" + maxFileSize
+                + " bytes latency=" + latency + "us bandwidth=" + (bandwidth <= 0 ? "unlimited" : bandwidth + " bytes/s"));
+        System.out.println();
+
+        Benchmark benchmark = new Benchmark(fileSystem, warmupIterations, iterations);
+        for (Scenario scenario : scenarios)
+            benchmark.run(scenario);
+
+        // Jobs leave Swing timers behind them
+        System.exit(0);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: Benchmark [-depth n] [-folders n] [-files n] [-minsize bytes] [-maxsize bytes]");
+        System.err.println("                 [-latency microseconds] [-bandwidth bytes/s] [-warmup n] [-iterations n]");
+        System.err.println("                 [browse|table|search|copy|unpack|sync|checksum|duplicates...]");
+        System.exit(1);
+    }
+
+
+    /**
+     * The calls to an I/O operation over all the measured iterations of a scenario. Counts and means are exact,
+     * percentiles are the highest of those of the iterations.
+     */
+    private static class OperationStats {
+        private final IOOperation operation;
+        private long count;
+        private long errors;
+        private long bytes;
+        private long totalMicros;
+        private long p50Micros;
+        private long p99Micros;
+        private long maxMicros;
+
+        private OperationStats(IOOperation operation) {
+            this.operation = operation;
+        }
+
+        private void add(IOMetricsEntry entry) {
+            count += entry.getCount();
+            errors += entry.getErrors();
+            bytes += entry.getBytes();
+            totalMicros += entry.getMeanMicros() * entry.getCount();
+            p50Micros = Math.max(p50Micros, entry.getMedianMicros());
+            p99Micros = Math.max(p99Micros, entry.getPercentile99Micros());
+            maxMicros = Math.max(maxMicros, entry.getMaxMicros());
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + " errors=" + errors + " bytes=" + bytes + " mean=" + totalMicros / Math.max(1, count)
+                    + "us p50=" + p50Micros + "us p99=" + p99Micros + "us max=" + maxMicros + "us";
+        }
+    }
+}
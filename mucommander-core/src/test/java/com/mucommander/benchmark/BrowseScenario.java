@@ -0,0 +1,60 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+
+/**
+ * Browses the whole simulated filesystem the way the file tables do: each folder is resolved by its URL, listed, and
+ * the attributes displayed by the tables are read from its children.
+ */
+class BrowseScenario extends Scenario {
+
+    BrowseScenario() {
+        super("browse");
+    }
+
+    @Override
+    public long run(AbstractFile root) throws IOException {
+        long nbFiles = 0;
+
+        Deque<String> folders = new ArrayDeque<String>();
+        folders.add(root.getURL().toString(false));
+        while (!folders.isEmpty()) {
+            AbstractFile folder = FileFactory.getFile(folders.poll(), true);
+            for (AbstractFile child : folder.ls()) {
+                child.getSize();
+                child.getDate();
+                child.isHidden();
+                child.getPermissionsString();
+
+                if (child.isDirectory())
+                    folders.add(child.getURL().toString(false));
+
+                nbFiles++;
+            }
+        }
+
+        return nbFiles;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.benchmark;
+
+import java.security.MessageDigest;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.job.impl.CalculateChecksumJob;
+
+/**
+ * Calculates the MD5 digest of every file of a synthetic folder, with {@link CalculateChecksumJob}. This is what
+ * finding duplicates would cost without comparing files by size and partial content first.
+ */
+class ChecksumScenario extends Scenario {
+
+    /** Name of the checksum file, created in the root folder */
+    private final static String CHECKSUM_FILE_NAME = "checksums.md5";
+
+    /** Number of files in the synthetic folder */
+    private long nbFiles;
+
+    ChecksumScenario() {
+        super("checksum");
+    }
+
+    @Override
+    public void setUp(AbstractFile root) throws Exception {
+        nbFiles = Benchmark.countFiles(Benchmark.getSourceFolder(root));
+    }
+
+    @Override
+    public long run(AbstractFile root) throws Exception {
+        FileSet files = new FileSet(root, Benchmark.getSourceFolder(root));
+
+        runJob(new CalculateChecksumJob(null, null, files, root.getDirectChild(CHECKSUM_FILE_NAME), MessageDigest.getInstance("MD5")));
+
+        return nbFiles;
+    }
+
+    @Override
+    public void tearDown(AbstractFile root) throws Exception {
+        root.getDirectChild(CHECKSUM_FILE_NAME).delete();
+    }
+}
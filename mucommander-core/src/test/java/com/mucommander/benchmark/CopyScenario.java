@@ -0,0 +1,64 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.benchmark;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.job.impl.CopyJob;
+import com.mucommander.job.impl.CopyJob.TransferMode;
+import com.mucommander.ui.dialog.file.FileCollisionDialog;
+
+/**
+ * Copies a synthetic folder to a new folder of the simulated filesystem, with {@link CopyJob}.
+ */
+class CopyScenario extends Scenario {
+
+    /** Folder the synthetic folder is copied to */
+    private AbstractFile destFolder;
+
+    /** Number of files in the copied folder */
+    private long nbFiles;
+
+    CopyScenario() {
+        super("copy");
+    }
+
+    @Override
+    public void setUp(AbstractFile root) throws Exception {
+        destFolder = root.getDirectChild("copy");
+        destFolder.mkdir();
+
+        nbFiles = Benchmark.countFiles(Benchmark.getSourceFolder(root));
+    }
+
+    @Override
+    public long run(AbstractFile root) throws Exception {
+        AbstractFile sourceFolder = Benchmark.getSourceFolder(root);
+        FileSet files = new FileSet(root, sourceFolder);
+
+        CopyJob job = new CopyJob(null, null, files, destFolder, null, TransferMode.COPY, FileCollisionDialog.OVERWRITE_ACTION);
+        runJob(job);
+
+        return nbFiles;
+    }
+
+    @Override
+    public void tearDown(AbstractFile root) throws Exception {
+        destFolder.deleteRecursively();
+    }
+}
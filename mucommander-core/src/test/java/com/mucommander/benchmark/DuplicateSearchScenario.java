@@ -0,0 +1,103 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.benchmark;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.io.StreamUtils;
+import com.mucommander.search.DuplicateSearchJob;
+import com.mucommander.search.SearchBuilder;
+
+/**
+ * Searches a synthetic folder for files with the same content, with {@link DuplicateSearchJob}, after copying one file
+ * out of {@link #DUPLICATE_INTERVAL} to a subfolder. Comparing the results of this scenario with those of the
+ * <code>checksum</code> scenario shows what is saved by only reading the files whose size and partial content match.
+ */
+class DuplicateSearchScenario extends Scenario {
+
+    /** One file out of this number is duplicated */
+    private final static int DUPLICATE_INTERVAL = 100;
+
+    /** Folder the duplicated files are copied to */
+    private AbstractFile duplicatesFolder;
+
+    /** Number of files in the synthetic folder, including the duplicates */
+    private long nbFiles;
+
+    /** Number of files visited while duplicating files */
+    private int nbVisited;
+
+    DuplicateSearchScenario() {
+        super("duplicates");
+    }
+
+    @Override
+    public void setUp(AbstractFile root) throws Exception {
+        AbstractFile sourceFolder = Benchmark.getSourceFolder(root);
+        duplicatesFolder = sourceFolder.getDirectChild("duplicates");
+        duplicatesFolder.mkdir();
+
+        nbVisited = 0;
+        duplicate(sourceFolder);
+
+        nbFiles = Benchmark.countFiles(sourceFolder);
+    }
+
+    /**
+     * Copies one file out of {@link #DUPLICATE_INTERVAL} of the given folder to the duplicates folder.
+     */
+    private void duplicate(AbstractFile folder) throws Exception {
+        for (AbstractFile file : folder.ls()) {
+            if (file.equals(duplicatesFolder))
+                continue;
+
+            if (file.isDirectory()) {
+                duplicate(file);
+            }
+            else if (nbVisited++ % DUPLICATE_INTERVAL == 0) {
+                AbstractFile duplicate = duplicatesFolder.getDirectChild(nbVisited + "-" + file.getName());
+                try (InputStream in = file.getInputStream(); OutputStream out = duplicate.getOutputStream()) {
+                    StreamUtils.copyStream(in, out);
+                }
+            }
+        }
+    }
+
+    @Override
+    public long run(AbstractFile root) throws Exception {
+        DuplicateSearchJob job = (DuplicateSearchJob) SearchBuilder.newSearch()
+                .what("*")
+                .where(Benchmark.getSourceFolder(root))
+                .findDuplicates(Collections.singletonMap(SearchBuilder.FIND_DUPLICATES, Boolean.TRUE.toString()))
+                .build();
+
+        runJob(job);
+
+        System.out.println(String.format("%s: %d groups of duplicates, %d bytes read out of %d", getName(),
+                job.getNbGroups(), job.getBytesRead(), job.getCandidateBytes()));
+
+        return nbFiles;
+    }
+
+    @Override
+    public void tearDown(AbstractFile root) throws Exception {
+        duplicatesFolder.deleteRecursively();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.job.FileJob;
+import com.mucommander.job.FileJobListener;
+import com.mucommander.job.FileJobState;
+
+/**
+ * A scenario measured by {@link Benchmark}. Each iteration of a scenario calls {@link #run(AbstractFile)}, which is
+ * timed, between calls to {@link #setUp(AbstractFile)} and {@link #tearDown(AbstractFile)}, which are not.
+ */
+public abstract class Scenario {
+
+    private final String name;
+
+    /**
+     * Creates a new scenario.
+     *
+     * @param name name of the scenario, used to select it on the command line
+     */
+    protected Scenario(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of this scenario.
+     *
+     * @return the name of this scenario
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Prepares an iteration of this scenario. This implementation does nothing.
+     *
+     * @param root the root folder of the simulated filesystem
+     * @throws Exception if the scenario could not be prepared
+     */
+    public void setUp(AbstractFile root) throws Exception {
+    }
+
+    /**
+     * Runs an iteration of this scenario.
+     *
+     * @param root the root folder of the simulated filesystem
+     * @return the number of files processed by the iteration
+     * @throws Exception if the iteration failed
+     */
+    public abstract long run(AbstractFile root) throws Exception;
+
+    /**
+     * Cleans up after an iteration of this scenario. This implementation does nothing.
+     *
+     * @param root the root folder of the simulated filesystem
+     * @throws Exception if the scenario could not be cleaned up
+     */
+    public void tearDown(AbstractFile root) throws Exception {
+    }
+
+    /**
+     * Starts the given job and waits for it to end.
+     *
+     * @param job the job to run, which must not have been started
+     * @throws IOException if the job was interrupted, e.g. because of an error
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     */
+    protected static void runJob(FileJob job) throws IOException, InterruptedException {
+        CountDownLatch ended = new CountDownLatch(1);
+        job.addFileJobListener(new FileJobListener() {
+            @Override
+            public void jobStateChanged(FileJob source, FileJobState oldState, FileJobState newState) {
+                if (newState == FileJobState.FINISHED || newState == FileJobState.INTERRUPTED)
+                    ended.countDown();
+            }
+        });
+
+        job.start();
+        ended.await();
+
+        if (job.getState() == FileJobState.INTERRUPTED)
+            throw new IOException(job + " was interrupted");
+    }
+}
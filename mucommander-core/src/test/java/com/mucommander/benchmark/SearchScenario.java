@@ -0,0 +1,44 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.benchmark;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.search.SearchBuilder;
+import com.mucommander.search.SearchJob;
+
+/**
+ * Searches the whole simulated filesystem for files whose name matches a wildcard pattern, with {@link SearchJob}.
+ */
+class SearchScenario extends Scenario {
+
+    SearchScenario() {
+        super("search");
+    }
+
+    @Override
+    public long run(AbstractFile root) throws Exception {
+        SearchJob job = SearchBuilder.newSearch()
+                .what("file1*.dat")
+                .where(root)
+                .build();
+
+        runJob(job);
+
+        return job.getFindings().size();
+    }
+}
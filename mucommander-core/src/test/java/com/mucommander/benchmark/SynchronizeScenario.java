@@ -0,0 +1,88 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.benchmark;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.job.impl.CopyJob;
+import com.mucommander.job.impl.CopyJob.TransferMode;
+import com.mucommander.sync.SynchronizeJob;
+import com.mucommander.ui.dialog.file.FileCollisionDialog;
+
+/**
+ * Synchronizes a copy of a synthetic folder in which one file out of {@link #CHANGE_INTERVAL} is outdated, with
+ * {@link SynchronizeJob}. Comparing the results of this scenario with those of the <code>copy</code> scenario shows
+ * what is saved by transferring only the files that differ.
+ */
+class SynchronizeScenario extends Scenario {
+
+    /** One file out of this number is outdated in the copy */
+    private final static int CHANGE_INTERVAL = 100;
+
+    /** Copy of the synthetic folder */
+    private AbstractFile destFolder;
+
+    /** Number of files in the synthetic folder */
+    private long nbFiles;
+
+    /** Number of files visited while outdating files */
+    private int nbVisited;
+
+    SynchronizeScenario() {
+        super("sync");
+    }
+
+    @Override
+    public void setUp(AbstractFile root) throws Exception {
+        AbstractFile sourceFolder = Benchmark.getSourceFolder(root);
+        destFolder = root.getDirectChild("mirror");
+        destFolder.mkdir();
+
+        runJob(new CopyJob(null, null, new FileSet(root, sourceFolder), destFolder, null, TransferMode.COPY, FileCollisionDialog.OVERWRITE_ACTION));
+
+        nbVisited = 0;
+        outdate(destFolder.getDirectChild(sourceFolder.getName()));
+
+        nbFiles = Benchmark.countFiles(sourceFolder);
+    }
+
+    /**
+     * Gives one file out of {@link #CHANGE_INTERVAL} of the given folder an older date than that of its source.
+     */
+    private void outdate(AbstractFile folder) throws Exception {
+        for (AbstractFile file : folder.ls()) {
+            if (file.isDirectory())
+                outdate(file);
+            else if (nbVisited++ % CHANGE_INTERVAL == 0)
+                file.changeDate(0);
+        }
+    }
+
+    @Override
+    public long run(AbstractFile root) throws Exception {
+        AbstractFile sourceFolder = Benchmark.getSourceFolder(root);
+
+        runJob(new SynchronizeJob(null, null, sourceFolder, destFolder.getDirectChild(sourceFolder.getName()), false));
+
+        return nbFiles;
+    }
+
+    @Override
+    public void tearDown(AbstractFile root) throws Exception {
+        destFolder.deleteRecursively();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.commons.io.StreamUtils;
+import com.mucommander.job.impl.UnpackJob;
+import com.mucommander.ui.dialog.file.FileCollisionDialog;
+
+/**
+ * Unpacks a Zip archive of a synthetic folder to a new folder of the simulated filesystem, with {@link UnpackJob}.
+ */
+class UnpackScenario extends Scenario {
+
+    /** Name of the archive, created in the root folder */
+    private final static String ARCHIVE_NAME = "archive.zip";
+
+    /** Folder the archive is unpacked to */
+    private AbstractFile destFolder;
+
+    /** Number of files in the archive */
+    private long nbFiles;
+
+    UnpackScenario() {
+        super("unpack");
+    }
+
+    @Override
+    public void setUp(AbstractFile root) throws Exception {
+        if (nbFiles == 0) {
+            AbstractFile sourceFolder = Benchmark.getSourceFolder(root);
+            try (ZipOutputStream out = new ZipOutputStream(root.getDirectChild(ARCHIVE_NAME).getOutputStream())) {
+                nbFiles = addEntries(out, sourceFolder, sourceFolder.getName() + "/");
+            }
+        }
+
+        destFolder = root.getDirectChild("unpack");
+        destFolder.mkdir();
+    }
+
+    /**
+     * Adds the files of the given folder to the archive, recursively.
+     *
+     * @return the number of files added
+     */
+    private static long addEntries(ZipOutputStream out, AbstractFile folder, String path) throws IOException {
+        out.putNextEntry(new ZipEntry(path));
+        out.closeEntry();
+
+        long nbFiles = 0;
+        for (AbstractFile child : folder.ls()) {
+            if (child.isDirectory()) {
+                nbFiles += addEntries(out, child, path + child.getName() + "/");
+            }
+            else {
+                out.putNextEntry(new ZipEntry(path + child.getName()));
+                try (InputStream in = child.getInputStream()) {
+                    StreamUtils.copyStream(in, out);
+                }
+                out.closeEntry();
+                nbFiles++;
+            }
+        }
+
+        return nbFiles;
+    }
+
+    @Override
+    public long run(AbstractFile root) throws Exception {
+        AbstractFile archive = root.getDirectChild(ARCHIVE_NAME);
+
+        UnpackJob job = new UnpackJob(null, null, new FileSet(root, archive), destFolder, FileCollisionDialog.OVERWRITE_ACTION);
+        runJob(job);
+
+        return nbFiles;
+    }
+
+    @Override
+    public void tearDown(AbstractFile root) throws Exception {
+        destFolder.deleteRecursively();
+    }
+}
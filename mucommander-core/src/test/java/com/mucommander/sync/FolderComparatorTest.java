@@ -0,0 +1,217 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.sync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.protocol.sim.SimFileSystem;
+import com.mucommander.commons.io.StreamUtils;
+
+/**
+ * This class is a TestNG test case for {@link FolderComparator}, comparing the folders of a simulated filesystem.
+ */
+public class FolderComparatorTest {
+
+    /** Counter used to register a new filesystem for each test */
+    private static int fileSystemCounter;
+
+    /** Synthetic folder */
+    private AbstractFile sourceFolder;
+
+    /** Copy of the synthetic folder */
+    private AbstractFile destFolder;
+
+    /**
+     * Creates a synthetic folder and a copy of it.
+     *
+     * @throws IOException should not happen
+     */
+    @BeforeMethod
+    public void setUp() throws IOException {
+        String name = "comparator" + (fileSystemCounter++);
+        SimFileSystem.register(name, new SimFileSystem(2, 2, 3, 10, 100));
+
+        AbstractFile root = FileFactory.getFile("sim://" + name + "/", true);
+        sourceFolder = root.getDirectChild("folder0");
+        destFolder = root.getDirectChild("copy");
+        copy(sourceFolder, destFolder);
+    }
+
+    /**
+     * Copies the given folder recursively.
+     */
+    private static void copy(AbstractFile folder, AbstractFile destFolder) throws IOException {
+        destFolder.mkdir();
+        for (AbstractFile child : folder.ls()) {
+            AbstractFile destFile = destFolder.getDirectChild(child.getName());
+            if (child.isDirectory())
+                copy(child, destFile);
+            else
+                write(destFile, child);
+        }
+    }
+
+    /**
+     * Replaces the content of the given file with that of the given source file.
+     */
+    private static void write(AbstractFile file, AbstractFile sourceFile) throws IOException {
+        try (InputStream in = sourceFile.getInputStream(); OutputStream out = file.getOutputStream()) {
+            StreamUtils.copyStream(in, out);
+        }
+    }
+
+    /**
+     * Replaces the content of the given file with the given bytes.
+     */
+    private static void write(AbstractFile file, byte content[]) throws IOException {
+        try (OutputStream out = file.getOutputStream()) {
+            out.write(content);
+        }
+    }
+
+    /**
+     * Returns a copy of the content of the given file, with its first byte changed.
+     */
+    private static byte[] getModifiedContent(AbstractFile file) throws IOException {
+        byte content[] = new byte[(int)file.getSize()];
+        try (InputStream in = file.getInputStream()) {
+            StreamUtils.readFully(in, content);
+        }
+        content[0]++;
+
+        return content;
+    }
+
+    /**
+     * Asserts that a folder and its copy are found identical, whether content is compared or not.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testIdenticalFolders() throws IOException {
+        assert new FolderComparator(sourceFolder, destFolder, false).compare().isEmpty();
+        assert new FolderComparator(sourceFolder, destFolder, true).compare().isEmpty();
+    }
+
+    /**
+     * Asserts that missing files are found, and that the files of missing folders are not reported individually.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testMissingFiles() throws IOException {
+        destFolder.getDirectChild("file1.dat").delete();
+        destFolder.getDirectChild("folder1").deleteRecursively();
+
+        List<FileDifference> differences = new FolderComparator(sourceFolder, destFolder, false).compare();
+
+        assert differences.size() == 2;
+        assert differences.get(0).getPath().equals("file1.dat");
+        assert differences.get(0).getReason() == FileDifference.Reason.MISSING;
+        assert differences.get(0).getDestinationFile() == null;
+        assert differences.get(0).getDestinationFolder().equals(destFolder);
+        assert differences.get(1).getPath().equals("folder1");
+        assert differences.get(1).getReason() == FileDifference.Reason.MISSING;
+        assert differences.get(1).getSourceFile().isDirectory();
+    }
+
+    /**
+     * Asserts that files are compared by size and date, and that files that only exist in the destination folder
+     * are ignored.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testSizeAndDate() throws IOException {
+        // The source file is more recent than its copy
+        AbstractFile sourceFile = sourceFolder.getDirectChild("folder0").getDirectChild("file2.dat");
+        write(sourceFile, getModifiedContent(sourceFile));
+        sourceFile.changeDate(System.currentTimeMillis() + 10000);
+
+        // The source file is older than its copy, but has another size
+        sourceFile = sourceFolder.getDirectChild("file0.dat");
+        write(sourceFile, new byte[(int)sourceFile.getSize() + 1]);
+        sourceFile.changeDate(0);
+
+        // The destination file is more recent than the source file
+        destFolder.getDirectChild("file1.dat").changeDate(System.currentTimeMillis() + 10000);
+
+        destFolder.getDirectChild("extra.dat").mkfile();
+
+        List<FileDifference> differences = new FolderComparator(sourceFolder, destFolder, false).compare();
+
+        assert differences.size() == 2;
+        assert differences.get(0).getPath().equals("file0.dat");
+        assert differences.get(0).getReason() == FileDifference.Reason.SIZE;
+        assert differences.get(1).getPath().equals("folder0/file2.dat");
+        assert differences.get(1).getReason() == FileDifference.Reason.DATE;
+        assert differences.get(1).getDestinationFolder().equals(destFolder.getDirectChild("folder0"));
+    }
+
+    /**
+     * Asserts that files of the same size are compared by content regardless of their date when content comparison
+     * is enabled.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testContent() throws IOException {
+        // Same content, more recent
+        sourceFolder.getDirectChild("file0.dat").changeDate(System.currentTimeMillis() + 10000);
+
+        // Same size and date, different content
+        AbstractFile sourceFile = sourceFolder.getDirectChild("folder1").getDirectChild("file1.dat");
+        AbstractFile destFile = destFolder.getDirectChild("folder1").getDirectChild("file1.dat");
+        long date = destFile.getDate();
+        write(destFile, getModifiedContent(sourceFile));
+        destFile.changeDate(date);
+
+        assert new FolderComparator(sourceFolder, destFolder, false).compare().size() == 1;
+
+        List<FileDifference> differences = new FolderComparator(sourceFolder, destFolder, true).compare();
+
+        assert differences.size() == 1;
+        assert differences.get(0).getPath().equals("folder1/file1.dat");
+        assert differences.get(0).getReason() == FileDifference.Reason.CONTENT;
+    }
+
+    /**
+     * Asserts that a regular file replaced by a folder is reported as such.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testType() throws IOException {
+        AbstractFile destFile = destFolder.getDirectChild("file2.dat");
+        destFile.delete();
+        destFile.mkdir();
+
+        List<FileDifference> differences = new FolderComparator(sourceFolder, destFolder, false).compare();
+
+        assert differences.size() == 1;
+        assert differences.get(0).getReason() == FileDifference.Reason.TYPE;
+    }
+}
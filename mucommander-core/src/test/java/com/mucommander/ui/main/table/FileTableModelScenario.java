@@ -0,0 +1,56 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.main.table;
+
+import com.mucommander.benchmark.Benchmark;
+import com.mucommander.benchmark.Scenario;
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+
+/**
+ * Displays a folder of the simulated filesystem in a {@link FileTableModel}: the folder is listed, the model filled
+ * with its children and sorted, and the values of all the cells are retrieved as the table would when painting them.
+ * This scenario lives in the package of the model to access the methods used by the file tables.
+ */
+public class FileTableModelScenario extends Scenario {
+
+    private final FileTableModel model = new FileTableModel();
+
+    public FileTableModelScenario() {
+        super("table");
+        model.setSortInfo(new SortInfo());
+    }
+
+    @Override
+    public long run(AbstractFile root) throws Exception {
+        AbstractFile folder = FileFactory.getFile(Benchmark.getSourceFolder(root).getURL(), true);
+        AbstractFile children[] = folder.ls();
+
+        model.setCurrentFolder(folder, children);
+        model.sortRows();
+
+        int nbRows = model.getRowCount();
+        int nbColumns = model.getColumnCount();
+        for (int row = 0; row < nbRows; row++) {
+            for (int column = 0; column < nbColumns; column++)
+                model.getValueAt(row, column);
+        }
+
+        return children.length;
+    }
+}
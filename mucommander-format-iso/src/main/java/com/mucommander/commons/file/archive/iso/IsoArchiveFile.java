@@ -36,10 +36,23 @@ import java.io.InputStream;
  */
 public class IsoArchiveFile extends AbstractROArchiveFile {
 
+    /** Sectors read from the ISO file, shared by the entry iterator and the entry streams */
+    private final IsoSectorCache sectorCache = new IsoSectorCache();
+
     public IsoArchiveFile(AbstractFile file) {
         super(file);
     }
 
+    /**
+     * Returns the sector cache of this ISO file, emptied beforehand if the file has been modified.
+     *
+     * @return the sector cache of this ISO file
+     */
+    private IsoSectorCache getSectorCache() {
+        sectorCache.checkFileDate(file.getDate());
+        return sectorCache;
+    }
+
     //////////////////////////////////////////
     // AbstractROArchiveFile implementation //
     //////////////////////////////////////////
@@ -48,7 +61,7 @@ public class IsoArchiveFile extends AbstractROArchiveFile {
     public ArchiveEntryIterator getEntryIterator() throws IOException, UnsupportedFileOperationException {
         RandomAccessInputStream rais = getRandomAccessInputStream();
 
-        return new IsoEntryIterator(IsoParser.getEntries(this, rais).iterator(), rais);
+        return new IsoEntryIterator(IsoParser.getEntries(this, rais, getSectorCache()).iterator(), rais);
     }
 
     @Override
@@ -71,6 +84,8 @@ public class IsoArchiveFile extends AbstractROArchiveFile {
             rais = getRandomAccessInputStream();
         }
 
-        return new IsoEntryInputStream(rais, isoEntry);
+        return new IsoEntryInputStream(
+                new IsoSectorReader(rais, getSectorCache(), isoEntry.getSectSize(), isoEntry.getShiftOffset(), isoEntry.getAudio()),
+                isoEntry);
     }
 }
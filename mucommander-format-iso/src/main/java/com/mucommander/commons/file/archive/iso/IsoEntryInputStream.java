@@ -18,32 +18,57 @@
 
 package com.mucommander.commons.file.archive.iso;
 
-import com.mucommander.commons.io.RandomAccessInputStream;
-import com.mucommander.commons.io.StreamUtils;
-
 import java.io.IOException;
 import java.io.InputStream;
 
 /**
  * <code>IsoEntryInputStream</code> allows to reads an ISO entry.
+ * <p>
+ * The entry's data is read through an {@link IsoSectorReader}, which reads the image by blocks of contiguous sectors
+ * and strips the headers of raw sectors. Audio tracks are preceded by a generated WAV header.
+ * </p>
  *
  * @author Xavier Martin
  */
 class IsoEntryInputStream extends InputStream {
 
-    private RandomAccessInputStream rais;
-    private int pos;
+    private IsoSectorReader reader;
+    private long index;
+    private long pos;
     private long size;
-    private int sectSize;
     private boolean audio;
 
-    IsoEntryInputStream(RandomAccessInputStream rais, IsoArchiveEntry entry) throws IOException {
-        this.rais = rais;
+    /** Size of the WAV header preceding the data of audio entries, 0 for other entries */
+    private int headerSize;
+
+    IsoEntryInputStream(IsoSectorReader reader, IsoArchiveEntry entry) {
+        this.reader = reader;
+        this.index = entry.getIndex();
         this.size = entry.getSize();
         this.pos = 0;
-        this.sectSize = entry.getSectSize();
         this.audio = entry.getAudio();
-        rais.seek(IsoUtil.offsetInSector(entry.getIndex(), sectSize, audio) + entry.getShiftOffset());
+        this.headerSize = audio ? IsoUtil.WAV_header : 0;
+    }
+
+    /**
+     * Returns the WAV header of audio entries.
+     *
+     * @return the WAV header of audio entries
+     */
+    private byte[] getWavHeader() {
+        byte b[] = new byte[IsoUtil.WAV_header];
+        IsoUtil.toArray(0x46464952, b, 0);                         // "RIFF"
+        IsoUtil.toArray((int) size - 8, b, 4);                     // size of file - 8
+        IsoUtil.toArray(0x45564157, b, 8);                         // "WAVE"
+        IsoUtil.toArray(0x20746D66, b, 12);                        // "fmt "
+        b[16] = 0x10;                                              // Chunk Data Size
+        IsoUtil.toArray(0x00020001, b, 20);                        // WAVE type format : PCM header 0100, stereo 0200
+        IsoUtil.toArray(0x0000AC44, b, 24);                        // sample rate : 44100hz
+        IsoUtil.toArray(0x0002B110, b, 28);                        // bytes/sec : 176400
+        IsoUtil.toArray(0x00100004, b, 32);                        // Block alignment 0400  + Bits/sample 1000
+        IsoUtil.toArray(0x61746164, b, 36);                        // "data"
+        IsoUtil.toArray((int) size - IsoUtil.WAV_header, b, 40);   // size of 'real' data
+        return b;
     }
 
 
@@ -53,7 +78,8 @@ class IsoEntryInputStream extends InputStream {
 
     @Override
     public int read() throws IOException {
-        return rais.read();
+        byte b[] = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
     }
 
 
@@ -68,90 +94,48 @@ class IsoEntryInputStream extends InputStream {
 
     @Override
     public int read(byte b[], int off, int len) throws IOException {
-        int available = available();
-        int toRead = len;
+        if (len == 0)
+            return 0;
 
-        if (toRead > available) {
-            toRead = available;
-        }
-
-        if (available == 0) {
+        if (pos >= size)
             return -1;
-        }
 
+        int toRead = (int) Math.min(len, size - pos);
         int ret;
-        int cur = off;
-        int before = pos;
-        int skip = 0;
 
         // on the 1st run : generate a valid wav header
-        if (audio && pos == 0) {
-            IsoUtil.toArray(0x46464952, b, 0);                         // "RIFF"
-            IsoUtil.toArray((int) size - 8, b, 4);                     // size of file - 8
-            IsoUtil.toArray(0x45564157, b, 8);                         // "WAVE"
-            IsoUtil.toArray(0x20746D66, b, 12);                        // "fmt "
-            b[16] = 0x10;                                              // Chunk Data Size
-            IsoUtil.toArray(0x00020001, b, 20);                        // WAVE type format : PCM header 0100, stereo 0200
-            IsoUtil.toArray(0x0000AC44, b, 24);                        // sample rate : 44100hz
-            IsoUtil.toArray(0x0002B110, b, 28);                        // bytes/sec : 176400
-            IsoUtil.toArray(0x00100004, b, 32);                        // Block alignment 0400  + Bits/sample 1000
-            IsoUtil.toArray(0x61746164, b, 36);                        // "data"
-            IsoUtil.toArray((int) size - IsoUtil.WAV_header, b, 40);   // size of 'real' data
-            cur = IsoUtil.WAV_header;
-            toRead -= IsoUtil.WAV_header;
-            pos += IsoUtil.WAV_header;
+        if (pos < headerSize) {
+            ret = Math.min(toRead, headerSize - (int) pos);
+            System.arraycopy(getWavHeader(), (int) pos, b, off, ret);
+        } else {
+            long dataPos = pos - headerSize;
+            int dataSize = reader.getDataSize();
+            ret = reader.read(index + dataPos / dataSize, (int) (dataPos % dataSize), b, off, toRead);
+            if (ret == -1)
+                return -1;
         }
 
-        switch (sectSize) {
-            case IsoUtil.MODE2_2336:
-                skip = IsoUtil.MODE2_2336_skip;
-                break;
-            case IsoUtil.MODE2_2352:
-                skip = IsoUtil.MODE2_2352_skip;
-                break;
-            case IsoUtil.MODE1_2048:
-                // shortcut
-                ret = rais.read(b, off, toRead);
-                if (ret != -1)
-                    pos += ret;
-                return ret;
-        }
+        pos += ret;
+        return ret;
+    }
 
-        // atm it work because it's called for 8192 (2048 * 4)
-        int full = toRead >> 11;
-        int half = toRead % IsoUtil.MODE1_2048;
-        if (full >= 1) {
-            for (int i = 0; i < full; i++) {
-                ret = rais.read(b, cur, IsoUtil.MODE1_2048);
-                if (ret != -1)
-                    pos += ret;
-                if (!audio)
-                    StreamUtils.skipFully(rais, IsoUtil.MODE2_EC_skip + skip);
-                cur += IsoUtil.MODE1_2048;
-            }
-            ret = rais.read(b, cur, half);
-            if (ret != -1)
-                pos += ret;
-        } else {
-            // in fact it doesn't work for internal viewer, because it's called by chunk of 1024
-            ret = rais.read(b, cur, half);
-            if (ret != -1)
-                pos += ret;
-            if (((pos % 2048) == 0) && !audio)
-                StreamUtils.skipFully(rais, IsoUtil.MODE2_EC_skip + skip);
-        }
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0)
+            return 0;
 
-        return pos - before;
+        long skipped = Math.min(n, size - pos);
+        pos += skipped;
+        return skipped;
     }
 
     @Override
     public int available() throws IOException {
-        int available = (int) (size - pos);
-        return (available < 0) ? 0 : available;
+        return (int) Math.max(0, Math.min(size - pos, Integer.MAX_VALUE));
     }
 
     @Override
     public void close() throws IOException {
-        rais.close();
+        reader.close();
     }
 }
@@ -21,7 +21,6 @@ package com.mucommander.commons.file.archive.iso;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.io.BufferPool;
 import com.mucommander.commons.io.RandomAccessInputStream;
-import com.mucommander.commons.io.StreamUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,8 +46,9 @@ import java.util.Vector;
  */
 class IsoParser {
     private static final Logger LOGGER = LoggerFactory.getLogger(IsoParser.class);
-    public static Vector<IsoArchiveEntry> getEntries(byte[] buffer, RandomAccessInputStream rais, int sectSize, long sector_offset, long shiftOffset) throws Exception {
+    public static Vector<IsoArchiveEntry> getEntries(byte[] buffer, RandomAccessInputStream rais, IsoSectorCache cache, int sectSize, long sector_offset, long shiftOffset) throws Exception {
         Vector<IsoArchiveEntry> entries = new Vector<IsoArchiveEntry>();
+        IsoSectorReader reader = new IsoSectorReader(rais, cache, sectSize, shiftOffset, false);
 
         Calendar calendar = Calendar.getInstance();
         int start = 16;
@@ -57,7 +57,7 @@ class IsoParser {
 
         int level = 0;
         for (int i = 1; i < 17; i++) {  // fuzzy search, can have type=0 (bootable el torito), type=2 (svd)
-            pvd = new isoPvd(buffer, rais, start + i, sectSize, shiftOffset);
+            pvd = new isoPvd(buffer, reader, start + i);
             if (pvd.type[0] == 2 && pvd.id[0] == 'C' && pvd.id[1] == 'D' && pvd.id[2] == '0' && pvd.id[3] == '0' && pvd.id[4] == '1') {
                 // gotta read docs a little more about those UCS-2 Escape Sequences
                 switch (pvd.unused3[2]) {
@@ -75,12 +75,12 @@ class IsoParser {
         }
 
         if (level == 0) // if no SVD with Joliet, fallback to plain-old ISO9660
-            pvd = new isoPvd(buffer, rais, start, sectSize, shiftOffset);
+            pvd = new isoPvd(buffer, reader, start);
 
         isoDr idr = new isoDr(pvd.root_directory_record, 0);
-        todo_idr = parse_dir(todo_idr, "", isonum_733(idr.extent), isonum_733(idr.size), rais, buffer, entries, sectSize, level, shiftOffset, sector_offset, calendar);
+        todo_idr = parse_dir(todo_idr, "", isonum_733(idr.extent), isonum_733(idr.size), reader, buffer, entries, sectSize, level, shiftOffset, sector_offset, calendar);
         while (todo_idr != null) {
-            todo_idr = parse_dir(todo_idr, todo_idr.name, todo_idr.extent, todo_idr.length, rais, buffer, entries, sectSize, level, shiftOffset, sector_offset, calendar);
+            todo_idr = parse_dir(todo_idr, todo_idr.name, todo_idr.extent, todo_idr.length, reader, buffer, entries, sectSize, level, shiftOffset, sector_offset, calendar);
             todo_idr = todo_idr.next;
         }
 
@@ -93,15 +93,16 @@ class IsoParser {
      *
      * @param file the ISO file to parse
      * @param rais random access stream to read the ISO file. It will *not* be closed by this method.
+     * @param cache the cache in which to keep the sectors that are read
      * @return the list of entries contained by the ISO file
      * @throws IOException if an I/O error occurs
      */
-    static Vector<IsoArchiveEntry> getEntries(AbstractFile file, RandomAccessInputStream rais) throws IOException {
+    static Vector<IsoArchiveEntry> getEntries(AbstractFile file, RandomAccessInputStream rais, IsoSectorCache cache) throws IOException {
         byte[] buffer = BufferPool.getByteArray(IsoUtil.MODE1_2048);
 
         try {
             if ("nrg".equals(file.getExtension())) {
-                return NrgParser.getEntries(buffer, file, rais);
+                return NrgParser.getEntries(buffer, file, rais, cache);
             }
 
             int sectSize = IsoUtil.guessSectorSize(file);
@@ -112,7 +113,7 @@ class IsoParser {
             // bytes : depend if there's earlier track we discard
             long shiftOffset = 0;
 
-            return getEntries(buffer, rais, sectSize, sector_offset, shiftOffset);
+            return getEntries(buffer, rais, cache, sectSize, sector_offset, shiftOffset);
 
             /*
             if ("cdi".equals(file.getExtension())) {
@@ -146,14 +147,13 @@ class IsoParser {
         name.append((level == 0) ? new String(b, 0, len) : new String(b, 0, len, "UnicodeBigUnmarked"));
     }
 
-    public static todo parse_dir(todo todo_idr, String rootname, int extent, int len, RandomAccessInputStream rais, byte[] buffer, Vector<IsoArchiveEntry> entries, int sectSize, int level, long shiftOffset, long sector_offset, Calendar calendar) throws Exception {
+    public static todo parse_dir(todo todo_idr, String rootname, int extent, int len, IsoSectorReader reader, byte[] buffer, Vector<IsoArchiveEntry> entries, int sectSize, int level, long shiftOffset, long sector_offset, Calendar calendar) throws Exception {
         todo td;
         int i;
         isoDr idr;
 
         while (len > 0) {
-            rais.seek(IsoUtil.offsetInSector(extent - sector_offset, sectSize, false) + shiftOffset);
-            StreamUtils.readFully(rais, buffer);
+            reader.readSector(extent - sector_offset, buffer);
             len -= buffer.length;
             extent++;
             i = 0;
@@ -348,10 +348,8 @@ class IsoParser {
                 effective_date, file_structure_version, unused4, application_data,
                 unused5};
 
-        public isoPvd(byte[] pvd, RandomAccessInputStream rais, int start, int sectSize, long shiftOffset) throws IOException {
-            rais.seek(IsoUtil.offsetInSector(start, sectSize, false) + shiftOffset);
-            if (rais.read(pvd) == -1)
-                throw new IOException("unable to read PVD");
+        public isoPvd(byte[] pvd, IsoSectorReader reader, int start) throws IOException {
+            reader.readSector(start, pvd);
             load(pvd);
         }
 
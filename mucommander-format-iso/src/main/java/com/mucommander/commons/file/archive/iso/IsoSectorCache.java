@@ -0,0 +1,135 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.archive.iso;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of the sector blocks read by {@link IsoSectorReader}. A single instance is
+ * shared by all the readers of an ISO file, so that the sectors read while listing the file's entries can be served
+ * again when the entries are read, without going back to the underlying file.
+ * <p>
+ * Blocks hold the user data of the sectors, i.e. with the headers and error correction codes of raw sectors already
+ * stripped. Since an image may contain tracks of different modes (NRG), blocks are identified by the geometry of the
+ * track they belong to in addition to their index.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @see IsoSectorReader
+ */
+class IsoSectorCache {
+
+    /** Default maximum number of blocks held by the cache: 4MB worth of 2048-byte sectors */
+    final static int DEFAULT_CAPACITY = 64;
+
+    /** Cached blocks, in access order */
+    private final LinkedHashMap<Key, byte[]> blocks;
+
+    /** Date of the ISO file the cached blocks were read from */
+    private long fileDate = -1;
+
+    IsoSectorCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    IsoSectorCache(final int capacity) {
+        blocks = new LinkedHashMap<Key, byte[]>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Empties the cache if the ISO file has been modified since the cached blocks were read from it.
+     *
+     * @param date the current date of the ISO file
+     */
+    synchronized void checkFileDate(long date) {
+        if (date != fileDate) {
+            blocks.clear();
+            fileDate = date;
+        }
+    }
+
+    /**
+     * Returns the user data of the given block, <code>null</code> if it isn't in the cache.
+     *
+     * @param shiftOffset offset of the track the block belongs to
+     * @param sectSize size of the track's raw sectors
+     * @param audio <code>true</code> for an audio track
+     * @param index index of the block in the track
+     * @return the user data of the block, <code>null</code> if it isn't in the cache
+     */
+    synchronized byte[] get(long shiftOffset, int sectSize, boolean audio, long index) {
+        return blocks.get(new Key(shiftOffset, sectSize, audio, index));
+    }
+
+    /**
+     * Adds the user data of the given block to the cache, evicting the least recently used block if the cache is full.
+     *
+     * @param shiftOffset offset of the track the block belongs to
+     * @param sectSize size of the track's raw sectors
+     * @param audio <code>true</code> for an audio track
+     * @param index index of the block in the track
+     * @param data the user data of the block, must not be modified after this call
+     */
+    synchronized void put(long shiftOffset, int sectSize, boolean audio, long index, byte[] data) {
+        blocks.put(new Key(shiftOffset, sectSize, audio, index), data);
+    }
+
+
+    /**
+     * Identifies a block within an image.
+     */
+    private static class Key {
+        private final long shiftOffset;
+        private final int sectSize;
+        private final boolean audio;
+        private final long index;
+
+        private Key(long shiftOffset, int sectSize, boolean audio, long index) {
+            this.shiftOffset = shiftOffset;
+            this.sectSize = sectSize;
+            this.audio = audio;
+            this.index = index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+
+            Key key = (Key) o;
+            return index == key.index && shiftOffset == key.shiftOffset && sectSize == key.sectSize && audio == key.audio;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = (int) (index ^ (index >>> 32));
+            h = 31 * h + (int) (shiftOffset ^ (shiftOffset >>> 32));
+            h = 31 * h + sectSize;
+            return 31 * h + (audio ? 1 : 0);
+        }
+    }
+}
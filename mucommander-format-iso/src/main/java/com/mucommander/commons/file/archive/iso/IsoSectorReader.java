@@ -0,0 +1,176 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.archive.iso;
+
+import com.mucommander.commons.io.RandomAccessInputStream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads the user data of the sectors of an ISO/NRG track.
+ * <p>
+ * Sectors are not read one at a time: they are read by blocks of {@link #BLOCK_SECTORS} contiguous sectors, with a
+ * single seek and read on the underlying {@link RandomAccessInputStream}, which matters a lot when the image is
+ * located on a remote filesystem where each seek is a round trip. The headers and error correction codes of raw
+ * (2352 and 2336-byte) sectors are stripped in memory, and blocks are kept in an {@link IsoSectorCache} which is
+ * shared with the other readers of the image.
+ * </p>
+ *
+ * @see IsoSectorCache
+ */
+class IsoSectorReader {
+
+    /** Number of sectors read at once */
+    final static int BLOCK_SECTORS = 32;
+
+    private final RandomAccessInputStream rais;
+    private final IsoSectorCache cache;
+    private final int sectSize;
+    private final long shiftOffset;
+    private final boolean audio;
+
+    /** Size of a raw sector in the image */
+    private final int rawSize;
+
+    /** Size of the user data contained in a sector */
+    private final int dataSize;
+
+    /** Offset of the user data within a raw sector */
+    private final int headerSize;
+
+    /**
+     * Creates a new reader for the track with the given geometry.
+     *
+     * @param rais the stream to read the image from, closed by {@link #close()}
+     * @param cache the sector cache of the image
+     * @param sectSize size of the track's raw sectors
+     * @param shiftOffset offset of the track in the image
+     * @param audio <code>true</code> for an audio track, whose sectors contain 2352 bytes of data
+     */
+    IsoSectorReader(RandomAccessInputStream rais, IsoSectorCache cache, int sectSize, long shiftOffset, boolean audio) {
+        this.rais = rais;
+        this.cache = cache;
+        this.sectSize = sectSize;
+        this.shiftOffset = shiftOffset;
+        this.audio = audio;
+
+        // Audio data is contiguous, whatever the sector size of the track
+        this.dataSize = audio ? IsoUtil.MODE2_2352 : IsoUtil.MODE1_2048;
+        this.rawSize = audio ? dataSize : sectSize;
+        this.headerSize = audio ? 0 : (int) IsoUtil.offsetInSector(0, sectSize, false);
+    }
+
+    /**
+     * Returns the number of bytes of user data contained in a sector.
+     *
+     * @return the number of bytes of user data contained in a sector
+     */
+    int getDataSize() {
+        return dataSize;
+    }
+
+    /**
+     * Reads the user data of the given sector, filling the given array.
+     *
+     * @param sector index of the sector in the track
+     * @param b the array to fill, its length must not exceed {@link #getDataSize()}
+     * @throws EOFException if the sector lies beyond the end of the image
+     * @throws IOException if an I/O error occurs
+     */
+    void readSector(long sector, byte[] b) throws IOException {
+        if (read(sector, 0, b, 0, b.length) < b.length)
+            throw new EOFException("unable to read sector " + sector);
+    }
+
+    /**
+     * Reads up to <code>len</code> bytes of user data starting at the given position, without crossing the end of
+     * the block the position lies in.
+     *
+     * @param sector index of the sector in the track
+     * @param offset offset within the user data of the sector
+     * @param b the array to fill
+     * @param off offset in the array at which to store the data
+     * @param len maximum number of bytes to read
+     * @return the number of bytes read, <code>-1</code> if the position lies beyond the end of the image
+     * @throws IOException if an I/O error occurs
+     */
+    int read(long sector, int offset, byte[] b, int off, int len) throws IOException {
+        if (sector < 0)
+            throw new IOException("invalid sector " + sector);
+
+        long index = sector / BLOCK_SECTORS;
+        byte[] block = cache.get(shiftOffset, sectSize, audio, index);
+        if (block == null) {
+            block = readBlock(index);
+            cache.put(shiftOffset, sectSize, audio, index, block);
+        }
+
+        int start = (int) (sector % BLOCK_SECTORS) * dataSize + offset;
+        if (start >= block.length)
+            return -1;
+
+        int nbBytes = Math.min(len, block.length - start);
+        System.arraycopy(block, start, b, off, nbBytes);
+
+        return nbBytes;
+    }
+
+    /**
+     * Reads the given block from the image and strips the sector headers. The returned array is shorter than a full
+     * block if the end of the image is reached.
+     *
+     * @param index index of the block in the track
+     * @return the user data of the block
+     * @throws IOException if an I/O error occurs
+     */
+    private byte[] readBlock(long index) throws IOException {
+        byte[] raw = new byte[BLOCK_SECTORS * rawSize];
+
+        rais.seek(index * BLOCK_SECTORS * rawSize + shiftOffset);
+        int rawLength = 0;
+        int nbRead;
+        while (rawLength < raw.length && (nbRead = rais.read(raw, rawLength, raw.length - rawLength)) != -1)
+            rawLength += nbRead;
+
+        // Cooked sectors and audio sectors contain nothing but user data
+        if (headerSize == 0 && dataSize == rawSize)
+            return rawLength == raw.length ? raw : Arrays.copyOf(raw, rawLength);
+
+        byte[] data = new byte[BLOCK_SECTORS * dataSize];
+        int length = 0;
+        for (int rawPos = headerSize; rawPos < rawLength; rawPos += rawSize) {
+            int nbBytes = Math.min(dataSize, rawLength - rawPos);
+            System.arraycopy(raw, rawPos, data, length, nbBytes);
+            length += nbBytes;
+        }
+
+        return length == data.length ? data : Arrays.copyOf(data, length);
+    }
+
+    /**
+     * Closes the stream the image is read from.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void close() throws IOException {
+        rais.close();
+    }
+}
@@ -30,7 +30,7 @@ import java.util.Vector;
  */
 class NrgParser extends IsoParser {
 
-    static Vector<IsoArchiveEntry> getEntries(byte[] buffer, AbstractFile file, RandomAccessInputStream rais) throws Exception {
+    static Vector<IsoArchiveEntry> getEntries(byte[] buffer, AbstractFile file, RandomAccessInputStream rais, IsoSectorCache cache) throws Exception {
         int sectSize = IsoUtil.MODE1_2048;
 
         // sector shift : 0 most of the time
@@ -186,7 +186,7 @@ class NrgParser extends IsoParser {
 
         }
 
-        return getEntries(buffer, rais, sectSize, sector_offset, shiftOffset);
+        return getEntries(buffer, rais, cache, sectSize, sector_offset, shiftOffset);
 
     }
 }
@@ -0,0 +1,130 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.commons.file.archive.rar;
+
+import java.io.IOException;
+
+import com.github.junrar.Archive;
+import com.github.junrar.io.IReadOnlyAccess;
+import com.github.junrar.volume.Volume;
+import com.github.junrar.volume.VolumeManager;
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.io.RandomAccessInputStream;
+
+/**
+ * A junrar {@link VolumeManager} that gives junrar random access to a single-volume RAR archive through
+ * {@link AbstractFile#getRandomAccessInputStream()}. This allows junrar to seek from one header to the next when
+ * listing the archive, and directly to the data of an entry when extracting it, instead of reading the whole archive
+ * sequentially.
+ *
+ * <p>Multi-volume archives are not supported: {@link #nextArchive(Archive, Volume)} only returns the volume of the
+ * given file.</p>
+ *
+ * @see RarFile
+ */
+class RandomAccessVolumeManager implements VolumeManager {
+
+    /** The archive file */
+    private final AbstractFile file;
+
+    RandomAccessVolumeManager(AbstractFile file) {
+        this.file = file;
+    }
+
+    @Override
+    public Volume nextArchive(Archive archive, Volume lastVolume) throws IOException {
+        if (lastVolume != null)
+            return null;
+
+        return new RandomAccessVolume(archive, file);
+    }
+
+
+    /**
+     * The single volume of an archive, backed by an {@link AbstractFile}.
+     */
+    private static class RandomAccessVolume implements Volume {
+
+        private final Archive archive;
+
+        private final AbstractFile file;
+
+        private RandomAccessVolume(Archive archive, AbstractFile file) {
+            this.archive = archive;
+            this.file = file;
+        }
+
+        @Override
+        public IReadOnlyAccess getReadOnlyAccess() throws IOException {
+            return new RandomAccessReadOnlyAccess(file.getRandomAccessInputStream());
+        }
+
+        @Override
+        public long getLength() {
+            return file.getSize();
+        }
+
+        @Override
+        public Archive getArchive() {
+            return archive;
+        }
+    }
+
+
+    /**
+     * Exposes a {@link RandomAccessInputStream} as a junrar {@link IReadOnlyAccess}.
+     */
+    private static class RandomAccessReadOnlyAccess implements IReadOnlyAccess {
+
+        private final RandomAccessInputStream in;
+
+        private RandomAccessReadOnlyAccess(RandomAccessInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public long getPosition() throws IOException {
+            return in.getOffset();
+        }
+
+        @Override
+        public void setPosition(long pos) throws IOException {
+            in.seek(pos);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int count) throws IOException {
+            return in.read(buffer, off, count);
+        }
+
+        @Override
+        public int readFully(byte[] buffer, int count) throws IOException {
+            in.readFully(buffer, 0, count);
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -20,7 +20,10 @@ package com.mucommander.commons.file.archive.rar;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
+import java.util.function.Predicate;
 
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
@@ -64,6 +67,8 @@ public class RarArchiveFile extends AbstractROArchiveFile {
         long currentDate = file.getDate();
         
         if (rarFile==null || currentDate != lastRarFileDate) {
+            if (rarFile != null)
+                rarFile.close();
         	rarFile = new RarFile(file);
             declareRarFileUpToDate(currentDate);
         }
@@ -84,13 +89,15 @@ public class RarArchiveFile extends AbstractROArchiveFile {
      * @return an ArchiveEntry whose attributes are fetched from the given FileHeader
      */
     private ArchiveEntry createArchiveEntry(FileHeader header) {
-    	return new ArchiveEntry(
+    	ArchiveEntry entry = new ArchiveEntry(
     			header.getFileNameString().replace('\\', '/'),
     			header.isDirectory(),
     			header.getMTime().getTime(),
     			header.getFullUnpackSize(),
                 true
     	);
+    	entry.setEntryObject(header);
+    	return entry;
     }
 
     
@@ -107,12 +114,37 @@ public class RarArchiveFile extends AbstractROArchiveFile {
 		}
 
         Vector<ArchiveEntry> entries = new Vector<ArchiveEntry>();
-        for (Object o : rarFile.getEntries())
-            entries.add(createArchiveEntry((FileHeader)o));
+        for (FileHeader header : rarFile.getEntries())
+            entries.add(createArchiveEntry(header));
 
         return new WrapperArchiveEntryIterator(entries.iterator());
     }
 
+    /**
+     * Returns an iterator whose accepted entries are all extracted by {@link RarFile#extractEntries(List)}, in a single
+     * pass over the archive.
+     */
+    @Override
+    public synchronized ArchiveEntryIterator getEntryIterator(Predicate<ArchiveEntry> filter) throws IOException, UnsupportedFileOperationException {
+        try {
+            checkRarFile();
+        } catch (RarException e) {
+            throw new IOException();
+        }
+
+        Vector<ArchiveEntry> entries = new Vector<ArchiveEntry>();
+        List<FileHeader> extractedHeaders = new ArrayList<FileHeader>();
+        for (FileHeader header : rarFile.getEntries()) {
+            ArchiveEntry entry = createArchiveEntry(header);
+            entries.add(entry);
+
+            if (!header.isDirectory() && filter.test(entry))
+                extractedHeaders.add(header);
+        }
+
+        return new RarEntryIterator(entries, rarFile.extractEntries(extractedHeaders));
+    }
+
     @Override
     public synchronized InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) throws IOException, UnsupportedFileOperationException {
 		try {
@@ -122,9 +154,48 @@ public class RarArchiveFile extends AbstractROArchiveFile {
 		}
 		
 		try {
+			// Use the header the entry was created from, unless the archive has been reloaded since then
+			Object header = entry.getEntryObject();
+			if (header instanceof FileHeader && rarFile.contains((FileHeader)header)) {
+				// Take the entry from the extraction started with the iterator, if any
+				if (entryIterator instanceof RarEntryIterator) {
+					RarFile.BulkExtraction extraction = ((RarEntryIterator)entryIterator).extraction;
+					InputStream in = extraction == null ? null : extraction.getInputStream((FileHeader)header);
+					if (in != null)
+						return in;
+				}
+
+				return rarFile.getEntryInputStream((FileHeader)header);
+			}
+
 			return rarFile.getEntryInputStream(entry.getPath().replace('/', '\\'));
 		} catch (RarException e) {
 			throw new IOException();
 		}
 	}
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * Iterates through the entries of the archive while {@link RarFile#extractEntries(List)} extracts some of them.
+     */
+    private static class RarEntryIterator extends WrapperArchiveEntryIterator {
+
+        /** Extraction of the entries to read, <code>null</code> if the entries are extracted one by one */
+        private final RarFile.BulkExtraction extraction;
+
+        private RarEntryIterator(List<ArchiveEntry> entries, RarFile.BulkExtraction extraction) {
+            super(entries.iterator());
+            this.extraction = extraction;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (extraction != null)
+                extraction.close();
+        }
+    }
 }
@@ -18,68 +18,438 @@ package com.mucommander.commons.file.archive.rar;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.github.junrar.Archive;
 import com.github.junrar.exception.RarException;
 import com.github.junrar.exception.RarException.RarExceptionType;
 import com.github.junrar.rarfile.FileHeader;
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
 import com.mucommander.commons.util.CircularByteBuffer;
 
 /**
+ * Reads the entries of a RAR archive using the junrar library.
+ *
+ * <p>If the archive file has random read access, junrar is given a {@link RandomAccessVolumeManager} so that listing
+ * the entries only reads their headers. The headers are indexed by path once, when the archive is opened.</p>
+ *
+ * <p>Entries are decompressed by a single worker thread which is reused from one entry to the next: junrar's
+ * {@link Archive} is not thread-safe, and extracting the entries of a solid archive one after the other, in the order
+ * returned by {@link #getEntries()}, is much cheaper than extracting them in any other order. Decompressed data is
+ * handed to the reader through a bounded buffer, so the worker waits for the reader instead of piling up the whole
+ * entry in memory.</p>
+ *
+ * <p>The worker extracts one entry at a time, until the stream of the entry has been read to the end or closed. An
+ * entry that is requested while the worker is busy is extracted by a dedicated thread, from a separate instance of the
+ * archive, so that a stream left open never blocks the extraction of other entries.</p>
+ *
+ * <p>{@link #extractEntries(List)} extracts a list of entries in a single task of the worker, each entry being
+ * decompressed while the previous one is being read.</p>
+ *
  * @author Arik Hadas
  */
 public class RarFile {
-	
+    private static final Logger LOGGER = LoggerFactory.getLogger(RarFile.class);
+
+    /** Size of the buffer decompressed data goes through */
+    private final static int PIPE_BUFFER_SIZE = 1024 * 1024;
+
+    /** Minimum size of the buffer of a small entry */
+    private final static int MIN_PIPE_BUFFER_SIZE = 8 * 1024;
+
+    /** Number of entries extracted by {@link #extractEntries(List)} ahead of the reader */
+    private final static int MAX_EXTRACTED_AHEAD = 2;
+
+    /** Number of seconds after which the worker thread stops if there is no more entry to extract */
+    private final static int WORKER_KEEP_ALIVE = 30;
+
+    /** The archive file */
+    private AbstractFile file;
+
     /** Interface to junrar library */
     private Archive archive;
-    
+
+    /** Headers of the entries, indexed by path, in archive order */
+    private Map<String, FileHeader> headers;
+
+    /** Extracts the entries, one at a time */
+    private ThreadPoolExecutor worker;
+
+    /** True while the worker is extracting entries */
+    private boolean workerBusy;
+
 
     public RarFile(AbstractFile file) throws IOException, UnsupportedFileOperationException, RarException {
+        this.file = file;
+        archive = openArchive(file);
+
+        headers = new LinkedHashMap<String, FileHeader>();
+        for (FileHeader header : archive.getFileHeaders())
+            headers.putIfAbsent(header.getFileNameString(), header);
+
+        worker = new ThreadPoolExecutor(1, 1, WORKER_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), runnable -> {
+            Thread thread = new Thread(runnable, "RAR extractor: " + file.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        worker.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Opens the given archive, with random access if the file supports it so that only the headers are read.
+     */
+    private static Archive openArchive(AbstractFile file) throws IOException, UnsupportedFileOperationException, RarException {
+        if (file.isFileOperationSupported(FileOperation.RANDOM_READ_FILE))
+            return new Archive(new RandomAccessVolumeManager(file));
+
         try (InputStream fileIn = file.getInputStream()) {
-            archive = new Archive(fileIn);
+            return new Archive(fileIn);
         }
     }
 
+    /**
+     * Returns the headers of the entries, in the order in which they appear in the archive.
+     *
+     * @return the headers of the entries
+     */
     public Collection<FileHeader> getEntries() {
-    	return archive.getFileHeaders();
+        return Collections.unmodifiableCollection(headers.values());
+    }
+
+    /**
+     * Returns the header of the entry with the given path, <code>null</code> if there is none.
+     *
+     * @param path the path of an entry, using backslashes as separators
+     * @return the header of the entry with the given path, <code>null</code> if there is none
+     */
+    public FileHeader getEntry(String path) {
+        return headers.get(path);
+    }
+
+    /**
+     * Returns <code>true</code> if the given header was read by this RarFile.
+     *
+     * @param header a header
+     * @return <code>true</code> if the given header was read by this RarFile
+     */
+    public boolean contains(FileHeader header) {
+        return headers.get(header.getFileNameString()) == header;
     }
-    
+
     public InputStream getEntryInputStream(String path) throws IOException, RarException {
-        final FileHeader header = archive.getFileHeaders().stream()
-                .filter(h -> h.getFileNameString().equals(path))
-                .findFirst()
-                .orElse(null);
+        FileHeader header = getEntry(path);
+        if (header == null)
+            throw new IOException("Entry not found: " + path);
+
+        return getEntryInputStream(header);
+    }
+
+    public InputStream getEntryInputStream(final FileHeader header) throws IOException, RarException {
+        checkExtractable(header);
+
+        synchronized (this) {
+            if (!workerBusy) {
+                workerBusy = true;
+
+                final CircularByteBuffer cbb = createPipe(header);
+                worker.execute(() -> {
+                    try {
+                        extract(archive, header, cbb.getOutputStream());
+                    }
+                    finally {
+                        // Release the worker before the reader reaches the end of the entry, so that the next entry
+                        // it requests is extracted by the worker
+                        releaseWorker();
+                        closeQuietly(cbb.getOutputStream());
+                    }
+                });
+
+                return cbb.getInputStream();
+            }
+        }
+
+        return extractSeparately(header);
+    }
+
+    /**
+     * Extracts the given entry from a separate instance of the archive, in a dedicated thread. This is used when the
+     * worker is busy with another entry, whose stream may never be read.
+     */
+    private InputStream extractSeparately(FileHeader header) throws IOException, RarException {
+        LOGGER.debug("Extractor busy, extracting {} separately", header.getFileNameString());
+
+        final Archive separateArchive = openArchive(file);
+        FileHeader separateHeader = null;
+        for (FileHeader candidate : separateArchive.getFileHeaders()) {
+            if (candidate.getFileNameString().equals(header.getFileNameString())) {
+                separateHeader = candidate;
+                break;
+            }
+        }
+
+        if (separateHeader == null) {
+            closeQuietly(separateArchive);
+            throw new IOException("Entry not found: " + header.getFileNameString());
+        }
+
+        final FileHeader extractedHeader = separateHeader;
+        final CircularByteBuffer cbb = createPipe(header);
+        Thread thread = new Thread(() -> {
+            try {
+                extract(separateArchive, extractedHeader, cbb.getOutputStream());
+            }
+            finally {
+                closeQuietly(cbb.getOutputStream());
+                closeQuietly(separateArchive);
+            }
+        }, "RAR extractor: " + file.getName());
+        thread.setDaemon(true);
+        thread.start();
 
-    	// If the file that is going to be extracted is divided and continued in another archive 
-        // part - don't extract it and throw corresponding exception to raise an error. 
-        if (header.isSplitAfter())
-    		throw new RarException(RarExceptionType.notImplementedYet);
-    	
-        final CircularByteBuffer cbb = new CircularByteBuffer(CircularByteBuffer.INFINITE_SIZE);
-        
-        new Thread(
-    		    new Runnable(){
-    		      public void run(){
-    		    	try {
-						archive.extractFile(header, cbb.getOutputStream());
-					} catch (RarException e) {
-						if (e.getType() != RarExceptionType.crcError)
-							e.printStackTrace();
-					}
-    		    	finally {
-    		    		try {
-							cbb.getOutputStream().close();
-						} catch (IOException e1) {
-							e1.printStackTrace();
-						}
-    		    	}
-    		      }
-    		    }
-    		  ).start();
-        
         return cbb.getInputStream();
     }
+
+    /**
+     * Extracts the given entries one after the other, in a single task of the worker thread. Each entry is
+     * decompressed while the previous one is being read, and at most {@value #MAX_EXTRACTED_AHEAD} entries are
+     * extracted ahead of the reader.
+     *
+     * @param entries the headers of the entries to extract, in the order in which they appear in the archive
+     * @return the extraction of the entries, <code>null</code> if the worker is busy
+     */
+    public BulkExtraction extractEntries(final List<FileHeader> entries) {
+        synchronized (this) {
+            if (workerBusy)
+                return null;
+            workerBusy = true;
+        }
+
+        final BulkExtraction extraction = new BulkExtraction();
+        worker.execute(() -> {
+            try {
+                for (FileHeader header : entries) {
+                    if (header.isSplitAfter())
+                        continue;
+
+                    CircularByteBuffer cbb = createPipe(header);
+                    try {
+                        if (!extraction.offer(header, cbb.getInputStream()))
+                            break;
+
+                        extract(archive, header, cbb.getOutputStream());
+                    }
+                    finally {
+                        closeQuietly(cbb.getOutputStream());
+                    }
+                }
+            }
+            finally {
+                releaseWorker();
+                extraction.offerEnd();
+            }
+        });
+
+        return extraction;
+    }
+
+    private synchronized void releaseWorker() {
+        workerBusy = false;
+    }
+
+    /**
+     * Throws an exception if the given entry cannot be extracted.
+     */
+    private static void checkExtractable(FileHeader header) throws RarException {
+        // If the file that is going to be extracted is divided and continued in another archive
+        // part - don't extract it and throw corresponding exception to raise an error.
+        if (header.isSplitAfter())
+            throw new RarException(RarExceptionType.notImplementedYet);
+    }
+
+    /**
+     * Returns a buffer large enough for the given entry, or for a chunk of it if the entry is large.
+     */
+    private static CircularByteBuffer createPipe(FileHeader header) {
+        long size = Math.min(PIPE_BUFFER_SIZE, header.getFullUnpackSize() + 1);
+        return new CircularByteBuffer((int) Math.max(MIN_PIPE_BUFFER_SIZE, size));
+    }
+
+    /**
+     * Decompresses the given entry of the given archive to the given stream, logging errors.
+     */
+    private static void extract(Archive archive, FileHeader header, OutputStream out) {
+        try {
+            archive.extractFile(header, out);
+        }
+        catch (RarException e) {
+            if (e.getType() != RarExceptionType.crcError)
+                LOGGER.info("Failed to extract " + header.getFileNameString(), e);
+        }
+        catch (IOException e) {
+            LOGGER.info("Failed to extract " + header.getFileNameString(), e);
+        }
+    }
+
+    private static void closeQuietly(OutputStream out) {
+        try {
+            out.close();
+        }
+        catch (IOException e) {
+            // Not much we can do about it
+        }
+    }
+
+    private static void closeQuietly(Archive archive) {
+        try {
+            archive.close();
+        }
+        catch (IOException e) {
+            LOGGER.info("Failed to close archive", e);
+        }
+    }
+
+    /**
+     * Releases the resources used by this RarFile, once the entries that are being extracted are done.
+     */
+    public void close() {
+        worker.execute(() -> closeQuietly(archive));
+        worker.shutdown();
+    }
+
+
+    /**
+     * The entries being extracted by {@link RarFile#extractEntries(List)}, which are handed to the reader in order.
+     */
+    public static class BulkExtraction {
+
+        /** Marks the end of the extraction in the queue */
+        private final static ExtractedEntry END = new ExtractedEntry(null, null);
+
+        /** Extracted entries that have not been read yet */
+        private final BlockingQueue<ExtractedEntry> queue = new ArrayBlockingQueue<ExtractedEntry>(MAX_EXTRACTED_AHEAD);
+
+        private volatile boolean closed;
+
+        private boolean ended;
+
+        private BulkExtraction() {
+        }
+
+        /**
+         * Hands the stream of an entry to the reader, waiting for the reader to catch up if it is too far behind.
+         * Returns <code>false</code> if the extraction has been closed.
+         */
+        private boolean offer(FileHeader header, InputStream in) {
+            try {
+                while (!closed) {
+                    if (queue.offer(new ExtractedEntry(header, in), 100, TimeUnit.MILLISECONDS))
+                        return true;
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+
+        private void offerEnd() {
+            try {
+                while (!closed && !queue.offer(END, 100, TimeUnit.MILLISECONDS));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Returns the stream of the given entry, skipping the entries before it that have not been read.
+         *
+         * @param header the header of an entry passed to {@link RarFile#extractEntries(List)}
+         * @return the stream of the entry, <code>null</code> if the entry is not part of the remaining entries
+         * @throws IOException if the calling thread was interrupted while waiting for the entry
+         */
+        public synchronized InputStream getInputStream(FileHeader header) throws IOException {
+            while (!ended && !closed) {
+                ExtractedEntry next;
+                try {
+                    next = queue.take();
+                }
+                catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+
+                if (next == END) {
+                    ended = true;
+                    break;
+                }
+
+                if (next.header == header)
+                    return next.in;
+
+                // The skipped entry must be decompressed anyway, to extract the next ones from a solid archive
+                skipQuietly(next.in);
+            }
+
+            return null;
+        }
+
+        /**
+         * Stops the extraction, discarding the entries that have not been read.
+         */
+        public synchronized void close() {
+            closed = true;
+
+            ExtractedEntry next;
+            while ((next = queue.poll()) != null) {
+                if (next != END) {
+                    try {
+                        next.in.close();
+                    }
+                    catch (IOException e) {
+                        // Not much we can do about it
+                    }
+                }
+            }
+        }
+
+        private static void skipQuietly(InputStream in) {
+            try {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1);
+                in.close();
+            }
+            catch (IOException e) {
+                // Not much we can do about it
+            }
+        }
+    }
+
+    /**
+     * An entry extracted by {@link RarFile#extractEntries(List)}.
+     */
+    private static class ExtractedEntry {
+        private final FileHeader header;
+        private final InputStream in;
+
+        private ExtractedEntry(FileHeader header, InputStream in) {
+            this.header = header;
+            this.in = in;
+        }
+    }
 }
@@ -0,0 +1,434 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.desktop.linux;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.cache.FastLRUCache;
+import com.mucommander.cache.LRUCache;
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.protocol.local.LocalFile;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.desktop.QueuedTrash;
+import com.mucommander.job.impl.DeleteJob;
+import com.mucommander.process.ProcessRunner;
+import com.mucommander.text.Translator;
+import com.mucommander.ui.dialog.file.ProgressDialog;
+import com.mucommander.ui.main.MainFrame;
+import com.mucommander.ui.main.WindowManager;
+
+/**
+ * This class provides access to a trash as defined by the freedesktop specification (see
+ * https://specifications.freedesktop.org/trash-spec/trashspec-latest.html), which is used by GNOME and Xfce.
+ *
+ * <p>
+ * <b>Implementation notes:</b><br>
+ * <br>
+ * Files located on the volume of the home trash are moved to it. Files located on other volumes are moved to the trash
+ * of the user on their volume: <code>$topdir/.Trash/$uid</code> if the administrator has created a
+ * <code>$topdir/.Trash</code> folder with the sticky bit, <code>$topdir/.Trash-$uid</code> otherwise, which is created
+ * when needed. Either way, files are renamed rather than copied to the trash.
+ * </p>
+ *
+ * <p>
+ * The trash folders are shared by all instances of this class, so that the number of items they contain is only
+ * counted once.
+ * </p>
+ *
+ * @see FreedesktopTrashFolder
+ */
+public abstract class FreedesktopTrash extends QueuedTrash {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FreedesktopTrash.class);
+
+    /** Trash folders that have been used, by path */
+    private final static Map<Path, FreedesktopTrashFolder> TRASH_FOLDERS = new LinkedHashMap<Path, FreedesktopTrashFolder>();
+
+    /** Identifier of the user in the names of the volume trash folders, <code>null</code> if it is not known */
+    private final static String USER_ID = getUserId();
+
+    /** Mode bit of the shared volume trash folders */
+    private final static int STICKY_BIT = 01000;
+
+    /** Number of folders whose volume can be temporarily cached */
+    private final static int VOLUME_CACHE_CAPACITY = 100;
+
+    /** Number of milliseconds before cached volumes expire, so that volumes mounted in the meantime are found */
+    private final static int VOLUME_TIME_TO_LIVE = 60000;
+
+    /** Caches the volume of folders for a while, since it is looked up for each file that is moved to or tested
+     * against the trash and requires listing the mounted volumes. This map uses the folders' path as its key. */
+    private final static LRUCache<String, AbstractFile> VOLUME_CACHE = new FastLRUCache<String, AbstractFile>(VOLUME_CACHE_CAPACITY);
+
+    /** Home trash folder, <code>null</code> if there is no usable trash folder */
+    private final FreedesktopTrashFolder homeTrash;
+
+    /** Volume on which the home trash folder resides */
+    private final AbstractFile homeTrashVolume;
+
+    /** Command that opens the trash in the file manager of the desktop */
+    private final String revealCommand;
+
+    /**
+     * Creates a new trash.
+     *
+     * @param homeTrashFolder the home trash folder of the user, <code>null</code> if there is no usable trash folder
+     * @param revealCommand the command that opens the trash in the file manager of the desktop
+     */
+    protected FreedesktopTrash(AbstractFile homeTrashFolder, String revealCommand) {
+        this.homeTrash = homeTrashFolder == null ? null : getTrashFolder(Paths.get(homeTrashFolder.getAbsolutePath()), null);
+        this.homeTrashVolume = homeTrashFolder == null ? null : homeTrashFolder.getVolume();
+        this.revealCommand = revealCommand;
+    }
+
+    /**
+     * Return <code>true</code> if the specified file is a trash folder, i.e. is a directory and has two
+     * subdirectories named "info" and "files".
+     *
+     * @param file the file to test
+     * @return <code>true</code> if the specified file is a trash folder
+     */
+    protected static boolean isTrashFolder(AbstractFile file) {
+        try {
+            return file.isDirectory() && file.getChild("info").isDirectory() && file.getChild("files").isDirectory();
+        }
+        catch(IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the trash folder at the given path, which must exist.
+     */
+    private static FreedesktopTrashFolder getTrashFolder(Path folder, Path topDir) {
+        synchronized(TRASH_FOLDERS) {
+            return TRASH_FOLDERS.computeIfAbsent(folder, key -> new FreedesktopTrashFolder(key, topDir));
+        }
+    }
+
+    /**
+     * Returns the identifier of the current user, assumed to own its home folder.
+     */
+    private static String getUserId() {
+        try {
+            return Files.getAttribute(Paths.get(System.getProperty("user.home")), "unix:uid").toString();
+        }
+        catch(Exception e) {    // IOException, UnsupportedOperationException
+            LOGGER.debug("Failed to retrieve the user id, trash folders on other volumes are not available", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the given file is a local file that is not an archive entry.
+     */
+    private static boolean isLocalFile(AbstractFile file) {
+        return file.getTopAncestor() instanceof LocalFile && file.getParentArchive() == null;
+    }
+
+    /**
+     * Returns the volume on which the given local file resides, which is looked up once for all the files of a folder.
+     * A file that is itself a volume other than the home folder, such as a mount point, is thus considered to reside
+     * on the volume of its parent folder, which it cannot be renamed away from anyway.
+     */
+    private AbstractFile getVolume(AbstractFile file) {
+        AbstractFile parent = file.getParent();
+        if(parent==null || file.equals(homeTrashVolume))
+            return file.getVolume();
+
+        String parentPath = parent.getAbsolutePath(true);
+        AbstractFile volume = VOLUME_CACHE.get(parentPath);
+        if(volume==null) {
+            volume = parent.getVolume();
+            VOLUME_CACHE.add(parentPath, volume, VOLUME_TIME_TO_LIVE);
+        }
+
+        return volume;
+    }
+
+    /**
+     * Returns the trash folders of the user on the volume mounted at the given folder: the one in the shared trash
+     * folder of the volume, then the one of the user alone.
+     */
+    private static Path[] getVolumeTrashFolders(Path topDir) {
+        return new Path[] {topDir.resolve(".Trash").resolve(USER_ID), topDir.resolve(".Trash-" + USER_ID)};
+    }
+
+    /**
+     * Returns the trash folder the given local file can be moved to, <code>null</code> if there is none.
+     *
+     * @param file a local file
+     * @param create <code>true</code> to create the trash folder of the user on the volume of the file if needed
+     * @return the trash folder the file can be moved to
+     */
+    private FreedesktopTrashFolder getTrashFolder(AbstractFile file, boolean create) {
+        AbstractFile volume = getVolume(file);
+        if(homeTrash!=null && volume.equals(homeTrashVolume))
+            return homeTrash;
+
+        if(USER_ID==null)
+            return null;
+
+        Path topDir = Paths.get(volume.getAbsolutePath());
+        Path sharedTrash = topDir.resolve(".Trash");
+        Path[] trashFolders = getVolumeTrashFolders(topDir);
+
+        try {
+            // The shared trash folder is ignored unless it has the sticky bit and is not a symlink
+            if(Files.isDirectory(sharedTrash, LinkOption.NOFOLLOW_LINKS)
+                    && ((Integer)Files.getAttribute(sharedTrash, "unix:mode", LinkOption.NOFOLLOW_LINKS) & STICKY_BIT) != 0) {
+                if(isTrashFolder(trashFolders[0]))
+                    return getTrashFolder(trashFolders[0], topDir);
+
+                if(create && createTrashFolder(trashFolders[0]))
+                    return getTrashFolder(trashFolders[0], topDir);
+            }
+
+            if(isTrashFolder(trashFolders[1]))
+                return getTrashFolder(trashFolders[1], topDir);
+
+            if(create && createTrashFolder(trashFolders[1]))
+                return getTrashFolder(trashFolders[1], topDir);
+        }
+        catch(IOException | UnsupportedOperationException e) {
+            LOGGER.debug("Failed to access trash folder on " + topDir, e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns <code>true</code> if the given folder is a trash folder that is not a symlink.
+     */
+    private static boolean isTrashFolder(Path folder) {
+        return Files.isDirectory(folder, LinkOption.NOFOLLOW_LINKS)
+            && Files.isDirectory(folder.resolve("info"))
+            && Files.isDirectory(folder.resolve("files"));
+    }
+
+    /**
+     * Creates a trash folder that only the user can access.
+     *
+     * @return <code>true</code> if the folder has been created
+     */
+    private static boolean createTrashFolder(Path folder) {
+        try {
+            if(!Files.isDirectory(folder, LinkOption.NOFOLLOW_LINKS))
+                Files.createDirectory(folder, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            Files.createDirectories(folder.resolve("info"));
+            Files.createDirectories(folder.resolve("files"));
+
+            return true;
+        }
+        catch(IOException e) {
+            LOGGER.debug("Failed to create trash folder " + folder, e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the trash folders that have been used so far.
+     */
+    private static List<FreedesktopTrashFolder> getTrashFolders() {
+        synchronized(TRASH_FOLDERS) {
+            return new ArrayList<FreedesktopTrashFolder>(TRASH_FOLDERS.values());
+        }
+    }
+
+
+    //////////////////////////////////
+    // AbstractTrash implementation //
+    //////////////////////////////////
+
+    /**
+     * Implementation notes: returns <code>true</code> only for local files that are not archive entries, and that
+     * reside on the volume of the home trash folder or on a volume where the user has or can create a trash folder.
+     */
+    @Override
+    public boolean canMoveToTrash(AbstractFile file) {
+        if(homeTrash==null || !isLocalFile(file))
+            return false;
+
+        if(getTrashFolder(file, false)!=null)
+            return true;
+
+        // The trash folder of the user will be created on the volume
+        return USER_ID!=null && Files.isWritable(Paths.get(getVolume(file).getAbsolutePath()));
+    }
+
+    /**
+     * <b>Implementation notes:</b> returns <code>true</code> if there is a usable home trash folder.
+     *
+     * @return True if trash can be emptied, otherwise false
+     */
+    @Override
+    public boolean canEmpty() {
+        return homeTrash!=null;
+    }
+
+    /**
+     * Return trash files count
+     * <p>
+     * We assume the count of items in trash equals the count of files in the <code>info</code> folders of the home
+     * trash and of the other trash folders that have been used.
+     *
+     * @return Count of files in trash
+     */
+    @Override
+    public int getItemCount() {
+        // Abort if there is no usable trash folder
+        if(homeTrash==null)
+            return -1;
+
+        try {
+            int count = 0;
+            for(FreedesktopTrashFolder trashFolder : getTrashFolders())
+                count += trashFolder.getItemCount();
+            return count;
+        }
+        catch(IOException e) {
+            // can't access trash folder
+            return -1;
+        }
+    }
+
+    /**
+     * Empty the trash
+     * <p>
+     * <b>Implementation notes:</b><br>
+     * Simply deletes the content of the <code>files</code> and <code>info</code> folders of the trash folders
+     * </p>
+     *
+     * @return True if everything went well
+     */
+    @Override
+    public boolean empty() {
+        // Abort if there is no usable trash folder
+        if(homeTrash==null)
+            return false;
+
+        FileSet filesToDelete = new FileSet(FileFactory.getFile(homeTrash.getFolder().toString()));
+
+        try {
+            for(FreedesktopTrashFolder trashFolder : getTrashFolders()) {
+                for(Path path : trashFolder.getContent())
+                    filesToDelete.add(FileFactory.getFile(path.toString()));
+            }
+        }
+        catch(IOException e) {
+            LOGGER.debug("Failed to list files", e);
+            return false;
+        }
+
+        if (filesToDelete.size() > 0) {
+            // Starts deleting files
+            MainFrame mainFrame = WindowManager.getCurrentMainFrame();
+            ProgressDialog progressDialog = new ProgressDialog(mainFrame, Translator.get("delete_dialog.deleting"));
+            DeleteJob deleteJob = new DeleteJob(progressDialog, mainFrame, filesToDelete, false);
+            progressDialog.start(deleteJob);
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean canOpen() {
+        return homeTrash!=null;
+    }
+
+    /**
+     * Opens the trash in the file manager of the desktop.
+     */
+    @Override
+    public void open() {
+        try {
+            ProcessRunner.execute(revealCommand).waitFor();
+        }
+        catch(Exception e) {    // IOException, InterruptedException
+            LOGGER.debug("Caught an exception running command \"" + revealCommand + "\"", e);
+        }
+    }
+
+    @Override
+    public boolean isTrashFile(AbstractFile file) {
+        if(homeTrash==null || !isLocalFile(file))
+            return false;
+
+        Path path = Paths.get(file.getAbsolutePath());
+        if(homeTrash.contains(path))
+            return true;
+
+        if(USER_ID==null)
+            return false;
+
+        for(Path trashFolder : getVolumeTrashFolders(Paths.get(getVolume(file).getAbsolutePath()))) {
+            if(path.startsWith(trashFolder))
+                return true;
+        }
+
+        return false;
+    }
+
+
+    ////////////////////////////////
+    // QueuedTrash implementation //
+    ////////////////////////////////
+
+    /**
+     * Implementation of {@link com.mucommander.desktop.QueuedTrash} moveToTrash method.
+     * <p>
+     * Groups the queued files by trash folder and renames each group into its trash folder, see
+     * {@link FreedesktopTrashFolder#moveToTrash(List)}.
+     * </p>
+     * @param queuedFiles Collection of files to the trash
+     * @return <code>true</code> if movement has been successful or <code>false</code> otherwise
+     */
+    @Override
+    protected boolean moveToTrash(List<AbstractFile> queuedFiles) {
+        boolean retVal = true;     // overall return value (if everything went OK or at least one file wasn't moved properly
+
+        Map<FreedesktopTrashFolder, List<Path>> filesByTrashFolder = new LinkedHashMap<FreedesktopTrashFolder, List<Path>>();
+        for(AbstractFile file : queuedFiles) {
+            FreedesktopTrashFolder trashFolder = getTrashFolder(file, true);
+            if(trashFolder==null) {
+                LOGGER.debug("No trash folder for " + file.getAbsolutePath());
+                retVal = false;
+                continue;
+            }
+
+            filesByTrashFolder.computeIfAbsent(trashFolder, key -> new ArrayList<Path>()).add(Paths.get(file.getAbsolutePath()));
+        }
+
+        for(Map.Entry<FreedesktopTrashFolder, List<Path>> entry : filesByTrashFolder.entrySet())
+            retVal &= entry.getKey().moveToTrash(entry.getValue());
+
+        return retVal;
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.desktop.linux;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A trash folder as defined by the freedesktop specification (see
+ * https://specifications.freedesktop.org/trash-spec/trashspec-latest.html): the home trash of the user, or the trash of
+ * the user on another volume. Files are moved to its <code>files</code> subfolder, and a <code>.trashinfo</code> file
+ * describing each of them is written to its <code>info</code> subfolder.
+ *
+ * <p>Files are moved to the trash with an atomic rename, and therefore only from the volume of the trash folder:
+ * moving a folder to the trash takes the same time whatever its size.</p>
+ *
+ * <p>The number of items in the trash is counted once, then updated as info files are added or removed by this class.
+ * It is counted again whenever the <code>info</code> folder has been modified by another application, which is
+ * checked before each change this class makes to it.</p>
+ *
+ * @see FreedesktopTrash
+ */
+class FreedesktopTrashFolder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FreedesktopTrashFolder.class);
+
+    /** Extension of the files of the <code>info</code> subfolder */
+    private final static String INFO_EXTENSION = ".trashinfo";
+
+    /** Formats dates in trash info files */
+    private final static DateTimeFormatter INFO_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    /** Characters that are not escaped in the paths of trash info files, besides letters and digits */
+    private final static String UNESCAPED_PATH_CHARS = "/-_.!~*'()";
+
+    private final Path folder;
+    private final Path infoFolder;
+    private final Path filesFolder;
+
+    /** Folder the paths of trashed files are relative to, <code>null</code> if paths are absolute */
+    private final Path topDir;
+
+    /** Number of items in the trash, <code>-1</code> if it has to be counted */
+    private int itemCount = -1;
+
+    /** Date of the <code>info</code> folder when the item count was last updated */
+    private long infoFolderDate;
+
+    /**
+     * Creates a new trash folder. The folder and its subfolders must exist.
+     *
+     * @param folder the trash folder
+     * @param topDir the folder the paths of trashed files are relative to, <code>null</code> for absolute paths
+     */
+    FreedesktopTrashFolder(Path folder, Path topDir) {
+        this.folder = folder;
+        this.infoFolder = folder.resolve("info");
+        this.filesFolder = folder.resolve("files");
+        this.topDir = topDir;
+    }
+
+    /**
+     * Returns the trash folder.
+     *
+     * @return the trash folder
+     */
+    Path getFolder() {
+        return folder;
+    }
+
+    /**
+     * Returns <code>true</code> if the given file is this trash folder or is located in it.
+     *
+     * @param file a file
+     * @return <code>true</code> if the given file is this trash folder or is located in it
+     */
+    boolean contains(Path file) {
+        return file.startsWith(folder);
+    }
+
+    /**
+     * Returns the files and the info files of the trashed items.
+     *
+     * @return the files and the info files of the trashed items
+     * @throws IOException if the trash folder could not be listed
+     */
+    List<Path> getContent() throws IOException {
+        List<Path> content = new ArrayList<Path>();
+        for (Path subfolder : new Path[] {filesFolder, infoFolder}) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(subfolder)) {
+                for (Path path : stream)
+                    content.add(path);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Returns the number of items in this trash, counting them only if the trash has been modified by another
+     * application since the last time they were counted.
+     *
+     * @return the number of items in this trash
+     * @throws IOException if the trash folder could not be listed
+     */
+    synchronized int getItemCount() throws IOException {
+        long date = getInfoFolderDate();
+        if (itemCount == -1 || date != infoFolderDate) {
+            int count = 0;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(infoFolder, "*" + INFO_EXTENSION)) {
+                for (Path ignored : stream)
+                    count++;
+            }
+
+            itemCount = count;
+            infoFolderDate = date;
+        }
+
+        return itemCount;
+    }
+
+    /**
+     * Moves the given files, which must be located on the volume of this trash folder, to this trash.
+     * <p>
+     * The info files of all the files are written and forced to disk first, and the <code>info</code> folder is synced
+     * once so that their entries are on disk before any file is moved. The files are then renamed, and the
+     * <code>files</code> folder is synced once.
+     * </p>
+     *
+     * @param files the files to move to the trash
+     * @return <code>true</code> if all files were moved to the trash
+     */
+    synchronized boolean moveToTrash(List<Path> files) {
+        boolean success = true;
+        String deletionDate = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).format(INFO_DATE_FORMAT);
+
+        List<Path> infoFiles = new ArrayList<Path>(files.size());
+        for (Path file : files) {
+            try {
+                infoFiles.add(createInfoFile(file, deletionDate));
+            }
+            catch (IOException e) {
+                LOGGER.debug("Failed to create trash info file for " + file, e);
+                infoFiles.add(null);
+                success = false;
+            }
+        }
+
+        syncFolder(infoFolder);
+
+        for (int i = 0; i < files.size(); i++) {
+            Path infoFile = infoFiles.get(i);
+            if (infoFile == null)
+                continue;
+
+            String name = infoFile.getFileName().toString();
+            Path trashFile = filesFolder.resolve(name.substring(0, name.length() - INFO_EXTENSION.length()));
+            try {
+                Files.move(files.get(i), trashFile, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (IOException e) {
+                LOGGER.debug("Failed to move file to trash: " + files.get(i), e);
+                success = false;
+
+                try {
+                    deleteInfoFile(infoFile);
+                }
+                catch (IOException e1) {
+                    // simply ignore
+                }
+            }
+        }
+
+        syncFolder(filesFolder);
+
+        return success;
+    }
+
+    /**
+     * Creates the info file of the given file, named after the first name that is available in both the
+     * <code>info</code> and <code>files</code> subfolders. Creating the info file exclusively reserves the name. The
+     * content of the info file is forced to disk, so that a file is never found in the trash with an empty info file.
+     *
+     * @return the info file
+     */
+    private Path createInfoFile(Path file, String deletionDate) throws IOException {
+        Path path = topDir == null ? file.toAbsolutePath() : topDir.relativize(file.toAbsolutePath());
+        byte[] content = ("[Trash Info]\n" +
+                "Path=" + escapePath(path.toString()) + "\n" +
+                "DeletionDate=" + deletionDate + "\n").getBytes(StandardCharsets.UTF_8);
+
+        String name = file.getFileName().toString();
+        for (int count = 0; ; count++) {
+            String trashName = count == 0 ? name : getNumberedName(name, count);
+            Path infoFile = infoFolder.resolve(trashName + INFO_EXTENSION);
+
+            FileChannel channel;
+            try {
+                checkInfoFolderDate();
+                channel = FileChannel.open(infoFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                infoFilesChanged(1);
+            }
+            catch (FileAlreadyExistsException e) {
+                continue;
+            }
+
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                channel.force(false);
+                channel.close();
+            }
+            catch (IOException e) {
+                try { channel.close(); }
+                catch (IOException e2) {}
+
+                deleteInfoFile(infoFile);
+                throw e;
+            }
+
+            // A file may have been left without info file, e.g. by a crash
+            if (Files.exists(filesFolder.resolve(trashName), LinkOption.NOFOLLOW_LINKS)) {
+                deleteInfoFile(infoFile);
+                continue;
+            }
+
+            return infoFile;
+        }
+    }
+
+    /**
+     * Deletes the given info file, if it exists.
+     */
+    private void deleteInfoFile(Path infoFile) throws IOException {
+        checkInfoFolderDate();
+        if (Files.deleteIfExists(infoFile))
+            infoFilesChanged(-1);
+    }
+
+    /**
+     * Invalidates the item count if the <code>info</code> folder has been modified since the count was last updated,
+     * i.e. by another application. This method is called before each change this class makes to the folder.
+     */
+    private void checkInfoFolderDate() {
+        if (itemCount != -1 && getInfoFolderDate() != infoFolderDate)
+            itemCount = -1;
+    }
+
+    /**
+     * Updates the item count after the given number of info files have been added to the <code>info</code> folder
+     * (removed if negative) by this class, along with the date of the folder it matches.
+     */
+    private void infoFilesChanged(int delta) {
+        if (itemCount != -1) {
+            itemCount += delta;
+            infoFolderDate = getInfoFolderDate();
+        }
+    }
+
+    /**
+     * Returns the given filename with <code>_N</code> appended to its name, before its extension.
+     */
+    private static String getNumberedName(String name, int count) {
+        int dotIndex = name.lastIndexOf('.');
+        if (dotIndex <= 0)
+            return name + "_" + count;
+
+        return name.substring(0, dotIndex) + "_" + count + name.substring(dotIndex);
+    }
+
+    /**
+     * Escapes the given path as a URL path, as required by the specification.
+     */
+    static String escapePath(String path) {
+        StringBuilder escaped = new StringBuilder(path.length());
+        for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || UNESCAPED_PATH_CHARS.indexOf(c) != -1)
+                escaped.append(c);
+            else
+                escaped.append('%').append(String.format("%02X", (int) c));
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Returns the date of the <code>info</code> folder, which changes whenever an item is added to or removed from
+     * the trash.
+     */
+    private long getInfoFolderDate() {
+        try {
+            return Files.getLastModifiedTime(infoFolder).toMillis();
+        }
+        catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Flushes the entries of the given folder to disk.
+     */
+    private static void syncFolder(Path folder) {
+        try (FileChannel channel = FileChannel.open(folder, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+        catch (IOException e) {
+            // Not all platforms allow folders to be synced
+            LOGGER.debug("Failed to sync " + folder, e);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.desktop.linux;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * This class is a TestNG test case for {@link FreedesktopTrashFolder}, moving files to a trash folder created in a
+ * temporary folder.
+ */
+public class FreedesktopTrashFolderTest {
+
+    /** Temporary folder containing the trash folder and the files to move to the trash */
+    private Path topDir;
+
+    /** The trash folder being tested */
+    private FreedesktopTrashFolder trash;
+
+    /**
+     * Creates an empty trash folder in a temporary folder.
+     *
+     * @throws IOException should not happen
+     */
+    @BeforeMethod
+    public void setUp() throws IOException {
+        topDir = Files.createTempDirectory("trash");
+
+        Path folder = topDir.resolve(".Trash-1000");
+        Files.createDirectories(folder.resolve("info"));
+        Files.createDirectories(folder.resolve("files"));
+
+        trash = new FreedesktopTrashFolder(folder, topDir);
+    }
+
+    /**
+     * Deletes the temporary folder.
+     *
+     * @throws IOException should not happen
+     */
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(topDir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(path);
+        }
+    }
+
+    /**
+     * Creates a file with the given path relative to the temporary folder.
+     */
+    private Path createFile(String path) throws IOException {
+        Path file = topDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, path.getBytes(StandardCharsets.UTF_8));
+
+        return file;
+    }
+
+    /**
+     * Returns the sorted names of the files in the given subfolder of the trash folder.
+     */
+    private List<String> list(String subfolder) throws IOException {
+        List<String> names = new ArrayList<String>();
+        try (Stream<Path> paths = Files.list(trash.getFolder().resolve(subfolder))) {
+            paths.forEach(path -> names.add(path.getFileName().toString()));
+        }
+        Collections.sort(names);
+
+        return names;
+    }
+
+    /**
+     * Asserts that paths are escaped as URL paths, UTF-8 characters included.
+     */
+    @Test
+    public void testEscapePath() {
+        assert "/home/user/file.txt".equals(FreedesktopTrashFolder.escapePath("/home/user/file.txt"));
+        assert "a%20b/(c)_d-e~!*'".equals(FreedesktopTrashFolder.escapePath("a b/(c)_d-e~!*'"));
+        assert "%25%23%3F%26".equals(FreedesktopTrashFolder.escapePath("%#?&"));
+        assert "caf%C3%A9".equals(FreedesktopTrashFolder.escapePath("café"));
+    }
+
+    /**
+     * Moves files with the same name to the trash and asserts that they are numbered, skipping the names of files
+     * that were left in the trash without info file, and that their info files describe them.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testCollisionNaming() throws IOException {
+        // A file left without info file, e.g. by a crash
+        Files.createFile(trash.getFolder().resolve("files").resolve("file_1.txt"));
+
+        assert trash.moveToTrash(Arrays.asList(createFile("a/file.txt"), createFile("b/file.txt"), createFile("c d/file.txt")));
+        assert trash.moveToTrash(Collections.singletonList(createFile("README")));
+        assert trash.moveToTrash(Collections.singletonList(createFile("e/README")));
+
+        assert Arrays.asList("README", "README_1", "file.txt", "file_1.txt", "file_2.txt", "file_3.txt").equals(list("files"));
+        assert Arrays.asList("README.trashinfo", "README_1.trashinfo", "file.txt.trashinfo",
+                "file_2.txt.trashinfo", "file_3.txt.trashinfo").equals(list("info"));
+
+        assert "c d/file.txt".equals(new String(Files.readAllBytes(trash.getFolder().resolve("files").resolve("file_3.txt")), StandardCharsets.UTF_8));
+
+        List<String> info = Files.readAllLines(trash.getFolder().resolve("info").resolve("file_3.txt.trashinfo"), StandardCharsets.UTF_8);
+        assert info.size() == 3;
+        assert "[Trash Info]".equals(info.get(0));
+        assert "Path=c%20d/file.txt".equals(info.get(1));
+        assert info.get(2).matches("DeletionDate=\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}");
+    }
+
+    /**
+     * Asserts that the item count is updated as files are moved to the trash, and counted again when info files are
+     * added by another application, including between the time items were counted and a move.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testItemCount() throws IOException {
+        assert trash.getItemCount() == 0;
+
+        assert trash.moveToTrash(Arrays.asList(createFile("file1"), createFile("file2")));
+        assert trash.getItemCount() == 2;
+
+        // A file moved to the trash by another application
+        Files.createFile(trash.getFolder().resolve("info").resolve("other1.trashinfo"));
+        assert trash.getItemCount() == 3;
+
+        // Another one, right before files are moved by this trash
+        Files.createFile(trash.getFolder().resolve("info").resolve("other2.trashinfo"));
+        assert trash.moveToTrash(Collections.singletonList(createFile("file3")));
+        assert trash.getItemCount() == 5;
+
+        // A file that cannot be moved does not count
+        assert !trash.moveToTrash(Arrays.asList(createFile("file4"), topDir.resolve("missing")));
+        assert trash.getItemCount() == 6;
+        assert list("info").size() == 6;
+    }
+}
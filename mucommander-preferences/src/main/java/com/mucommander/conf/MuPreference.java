@@ -41,6 +41,8 @@ public enum MuPreference {
 	SHELL_HISTORY_SIZE(MuPreferences.SHELL_HISTORY_SIZE),
 	SHELL_ENCODING(MuPreferences.SHELL_ENCODING),
 	AUTODETECT_SHELL_ENCODING(MuPreferences.AUTODETECT_SHELL_ENCODING),
+	SHELL_OUTPUT_BUFFER_SIZE(MuPreferences.SHELL_OUTPUT_BUFFER_SIZE),
+	SAVE_SHELL_OUTPUT(MuPreferences.SAVE_SHELL_OUTPUT),
 	SMTP_SERVER(MuPreferences.SMTP_SERVER),
 	SMTP_PORT(MuPreferences.SMTP_PORT),
 	MAIL_SENDER_NAME(MuPreferences.MAIL_SENDER_NAME),
@@ -68,6 +70,10 @@ public enum MuPreference {
 	WAIT_AFTER_REFRESH(MuPreferences.WAIT_AFTER_REFRESH),
 	PROGRESS_DIALOG_EXPANDED(MuPreferences.PROGRESS_DIALOG_EXPANDED),
 	PROGRESS_DIALOG_CLOSE_WHEN_FINISHED(MuPreferences.PROGRESS_DIALOG_CLOSE_WHEN_FINISHED),
+	LOCAL_CONCURRENT_TRANSFERS(MuPreferences.LOCAL_CONCURRENT_TRANSFERS),
+	REMOTE_CONCURRENT_TRANSFERS(MuPreferences.REMOTE_CONCURRENT_TRANSFERS),
+	LOCAL_JOBS_PER_DEVICE(MuPreferences.LOCAL_JOBS_PER_DEVICE),
+	REMOTE_JOBS_PER_DEVICE(MuPreferences.REMOTE_JOBS_PER_DEVICE),
 	THEME_TYPE(MuPreferences.THEME_TYPE),
 	THEME_NAME(MuPreferences.THEME_NAME),
 	ENABLE_BONJOUR_DISCOVERY(MuPreferences.ENABLE_BONJOUR_DISCOVERY),
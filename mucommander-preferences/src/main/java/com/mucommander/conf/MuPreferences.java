@@ -123,6 +123,14 @@ public class MuPreferences implements MuPreferencesAPI {
 	public static final String  AUTODETECT_SHELL_ENCODING         = SHELL_SECTION + '.' + "autodect_encoding";
 	/** Default shell encoding auto-detection behaviour. */
 	public static final boolean DEFAULT_AUTODETECT_SHELL_ENCODING = true;
+	/** Maximum number of characters of command output displayed by the run dialog. */
+	public static final String  SHELL_OUTPUT_BUFFER_SIZE          = SHELL_SECTION + '.' + "output_buffer_size";
+	/** Default maximum number of characters of command output displayed by the run dialog. */
+	public static final int     DEFAULT_SHELL_OUTPUT_BUFFER_SIZE  = 1000000;
+	/** Whether or not the whole output of commands should be saved to a temporary file. */
+	public static final String  SAVE_SHELL_OUTPUT                 = SHELL_SECTION + '.' + "save_output";
+	/** Default command output saving behaviour. */
+	public static final boolean DEFAULT_SAVE_SHELL_OUTPUT         = false;
 
 
 
@@ -310,6 +318,29 @@ public class MuPreferences implements MuPreferencesAPI {
 
 
 
+	// - File transfer variables ---------------------------------------------
+	// -----------------------------------------------------------------------
+	/** Section describing the behavior of file transfer jobs. */
+	public static final String FILE_TRANSFER_SECTION              = "file_transfer";
+	/** Maximum number of files copied at once to a local destination, 1 to copy files one after the other. */
+	public static final String LOCAL_CONCURRENT_TRANSFERS         = FILE_TRANSFER_SECTION + '.' + "local_concurrent_transfers";
+	/** Default maximum number of files copied at once to a local destination. */
+	public static final int    DEFAULT_LOCAL_CONCURRENT_TRANSFERS = 4;
+	/** Maximum number of files copied at once to a remote destination, 1 to copy files one after the other. */
+	public static final String REMOTE_CONCURRENT_TRANSFERS        = FILE_TRANSFER_SECTION + '.' + "remote_concurrent_transfers";
+	/** Default maximum number of files copied at once to a remote destination. */
+	public static final int    DEFAULT_REMOTE_CONCURRENT_TRANSFERS = 2;
+	/** Maximum number of jobs transferring files at once on the same local volume, 0 for no limit. */
+	public static final String LOCAL_JOBS_PER_DEVICE              = FILE_TRANSFER_SECTION + '.' + "local_jobs_per_device";
+	/** Default maximum number of jobs transferring files at once on the same local volume. */
+	public static final int    DEFAULT_LOCAL_JOBS_PER_DEVICE      = 1;
+	/** Maximum number of jobs transferring files at once on the same remote server, 0 for no limit. */
+	public static final String REMOTE_JOBS_PER_DEVICE             = FILE_TRANSFER_SECTION + '.' + "remote_jobs_per_device";
+	/** Default maximum number of jobs transferring files at once on the same remote server. */
+	public static final int    DEFAULT_REMOTE_JOBS_PER_DEVICE     = 2;
+
+
+
 	// - Variables used for themes -------------------------------------------
 	// -----------------------------------------------------------------------
 	/** Section controlling which theme should be applied to muCommander. */
@@ -19,6 +19,11 @@ package com.mucommander.process;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,6 +55,9 @@ class ProcessOutputMonitor implements Runnable {
     /** Whether the process is still being monitored. */
     private boolean         monitor;
 
+    /** Size of the buffers used to read and decode the stream. */
+    private final static int BUFFER_SIZE = 8192;
+
 
 
     // - Initialisation --------------------------------------------------------
@@ -89,22 +97,32 @@ class ProcessOutputMonitor implements Runnable {
      * Empties the content of the stream and notifies the listener.
      */
     public void run() {
-        byte[] buffer; // Where to store the stream's output.
-        int    read;   // Number of bytes read in the last read operation.
+        ByteBuffer     bytes;   // Where to store the stream's output.
+        CharBuffer     chars;   // Where to store the decoded output.
+        CharsetDecoder decoder; // Decodes the output, bytes of incomplete characters being kept for the next read.
+        int            read;    // Number of bytes read in the last read operation.
 
-        buffer = new byte[512];
+        bytes   = ByteBuffer.allocate(BUFFER_SIZE);
+        chars   = CharBuffer.allocate(BUFFER_SIZE);
+        decoder = getCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
 
         // Reads the content of the stream.
         try {
-            while(monitor && ((read = in.read(buffer, 0, buffer.length)) != -1)) {
+            while(monitor && ((read = in.read(bytes.array(), bytes.position(), bytes.remaining())) != -1)) {
                 if(listener != null) {
-                    listener.processOutput(buffer, 0, read);
-                    if(encoding == null)
-                        listener.processOutput(new String(buffer, 0, read));
-                    else
-                        listener.processOutput(new String(buffer, 0, read, encoding));
+                    listener.processOutput(bytes.array(), bytes.position(), read);
+                    bytes.position(bytes.position() + read);
+                    decode(decoder, bytes, chars, false);
                 }
+                else
+                    bytes.clear();
             }
+
+            // Flushes the bytes left in the decoder.
+            if(monitor && listener != null)
+                decode(decoder, bytes, chars, true);
         }
         // Ignore this exception: either there's nothing we can do about it anyway,
         // or it's 'normal' (the process has been killed).
@@ -137,6 +155,50 @@ class ProcessOutputMonitor implements Runnable {
         }
     }
 
+    /**
+     * Returns the charset the stream is encoded with: the one this monitor was created with if it is supported,
+     * the platform's default charset otherwise.
+     * @return the charset the stream is encoded with.
+     */
+    private Charset getCharset() {
+        if(encoding != null) {
+            try {return Charset.forName(encoding);}
+            catch(IllegalArgumentException e) {
+                LOGGER.debug("Unsupported encoding "+encoding+", using the default charset", e);
+            }
+        }
+        return Charset.defaultCharset();
+    }
+
+    /**
+     * Decodes the bytes available in <code>bytes</code> and passes the resulting text to the listener.
+     * <p>
+     * Bytes that belong to a character which hasn't been entirely read yet are left in <code>bytes</code>, so that
+     * multibyte characters are not split across two reads.
+     * </p>
+     * @param decoder     decoder to use.
+     * @param bytes       bytes to decode, ready to be written to again when this method returns.
+     * @param chars       buffer used to store the decoded characters.
+     * @param endOfInput  whether the end of the stream has been reached.
+     */
+    private void decode(CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars, boolean endOfInput) {
+        bytes.flip();
+        while(true) {
+            boolean overflow = decoder.decode(bytes, chars, endOfInput).isOverflow();
+            if(!overflow && endOfInput)
+                overflow = decoder.flush(chars).isOverflow();
+
+            chars.flip();
+            if(chars.hasRemaining())
+                listener.processOutput(chars.toString());
+            chars.clear();
+
+            if(!overflow)
+                break;
+        }
+        bytes.compact();
+    }
+
     /**
      * Notifies the monitor that it should stop reading from the stream it's been affected to.
      * <p>
@@ -39,8 +39,10 @@ import java.io.*;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 
 /**
@@ -68,10 +70,21 @@ import java.util.Date;
  *  passive mode is assumed.
  *  <li>{@link #ENCODING_PROPERTY_NAME}: specifies the character encoding used by the server. If the property is not 
  *  specified when the connection is created, {@link #DEFAULT_ENCODING} is assumed.
+ *  <li>{@link #LISTING_CACHE_TTL_PROPERTY_NAME}: specifies how long directory listings are cached by a connection, in
+ *  seconds. If the property is not specified when the connection is created, {@link #DEFAULT_LISTING_CACHE_TTL} is
+ *  assumed.
+ *  <li>{@link #MAX_CONNECTIONS_PROPERTY_NAME}: specifies the maximum number of connections to the server, and thus
+ *  the maximum number of data transfers performed in parallel. If the property is not specified,
+ *  {@link ConnectionPool#DEFAULT_MAX_CONNECTIONS_PER_REALM} is assumed.
  * </ul>
  * These properties are only used when the FTP connection is created. Setting them after the connection is created
  * will not have any immediate effect, their values will only be used if the connection needs to be re-established.
  *
+ * <p>If the server supports the <code>MLST</code> and <code>MLSD</code> commands (RFC 3659), as reported by the
+ * <code>FEAT</code> command, they are used to retrieve the attributes of a single file and to list directories in a
+ * machine-readable format. Otherwise, files are resolved by listing their parent directory with <code>LIST</code>.
+ * Either way, each connection caches the directory listings it retrieves for a short while.
+ *
  * <p>Access to FTP files is provided by the <code>Commons-net</code> library distributed under the Apache Software License.
  * The {@link #getUnderlyingFileObject()} method allows to retrieve a <code>org.apache.commons.net.ftp.FTPFile</code>
  * instance corresponding to this FTPFile.
@@ -119,6 +132,16 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
     /** Default value if {@link #CONNECTION_RETRY_DELAY_PROPERTY_NAME} is not set */
     public final static int DEFAULT_CONNECTION_RETRY_DELAY = 15;
 
+    /** Name of the property that holds the amount of time (in seconds) during which directory listings are cached by
+     *  a connection. <code>0</code> disables caching. */
+    public final static String LISTING_CACHE_TTL_PROPERTY_NAME = "listingCacheTTL";
+
+    /** Default value if {@link #LISTING_CACHE_TTL_PROPERTY_NAME} is not set */
+    public final static int DEFAULT_LISTING_CACHE_TTL = 10;
+
+    /** Name of the property that holds the maximum number of connections to the server */
+    public final static String MAX_CONNECTIONS_PROPERTY_NAME = "maxConnections";
+
     /** Date format used by the SITE UTIME command */
     private final static SimpleDateFormat SITE_UTIME_DATE_FORMAT = new SimpleDateFormat("yyyyMMddHHmm");
 
@@ -154,50 +177,122 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
 
 
     private org.apache.commons.net.ftp.FTPFile getFTPFile(FileURL fileURL) throws IOException {
-        // Todo: this method is very ineffective as it lists the parent directory to retrieve the information about the
-        // requested file to workaround the fact that FTPClient#listFiles follows directories.
-        // => Use the MLST command if supported by the server (use FEAT command to find out if it is supported).
-        // See http://tools.ietf.org/html/draft-ietf-ftpext-mlst-16
-        FileURL parentURL = fileURL.getParent();
-        LOGGER.trace("fileURL={} parent={}", fileURL, parentURL);
+        LOGGER.trace("fileURL={} parent={}", fileURL, fileURL.getParent());
 
         // Parent is null, create '/' file
-        if(parentURL==null) {
+        if(fileURL.getParent()==null)
             return createFTPFile("/", true);
+
+        FTPConnectionHandler connHandler = (FTPConnectionHandler)ConnectionPool.getConnectionHandler(this, fileURL, true);
+        try {
+            return getFTPFile(connHandler, fileURL);
         }
-        else {
-            FTPConnectionHandler connHandler = (FTPConnectionHandler)ConnectionPool.getConnectionHandler(this, fileURL, true);
-            org.apache.commons.net.ftp.FTPFile files[];
-            try {
-                // Makes sure the connection is started, if not starts it
-                connHandler.checkConnection();
+        finally {
+            // Release the lock on the ConnectionHandler
+            connHandler.releaseLock();
+        }
+    }
 
-                // List files contained by this file's parent in order to retrieve the FTPFile instance corresponding
-                // to this file
-                files = listFiles(connHandler, parentURL.getPath());
-            }
-            finally {
-                // Release the lock on the ConnectionHandler
-                connHandler.releaseLock();
+    /**
+     * Retrieves the attributes of the given file, which must not be the root folder, using the given connection
+     * handler. The file is looked up in the cached listing of its parent if there is one, otherwise its attributes
+     * are retrieved with the MLST command if the server supports it, or by listing the parent folder.
+     *
+     * @return the file's attributes, <code>null</code> if the file doesn't exist
+     */
+    private static org.apache.commons.net.ftp.FTPFile getFTPFile(FTPConnectionHandler connHandler, FileURL fileURL) throws IOException {
+        String parentPath = fileURL.getParent().getPath();
+        String wantedName = fileURL.getFilename();
+
+        org.apache.commons.net.ftp.FTPFile files[] = connHandler.listingCache.get(parentPath);
+        if(files==null) {
+            // Makes sure the connection is started, if not starts it
+            connHandler.checkConnection();
+
+            if(connHandler.mlstCommandSupported) {
+                org.apache.commons.net.ftp.FTPFile file = getFTPFileMLST(connHandler, fileURL.getPath());
+                if(connHandler.mlstCommandSupported) {
+                    if(file!=null)
+                        file.setName(wantedName);
+                    return file;
+                }
             }
 
-            // File doesn't exist
-            if(files==null || files.length==0)
-                return null;
+            // List files contained by this file's parent in order to retrieve the FTPFile instance corresponding
+            // to this file
+            files = listFiles(connHandler, parentPath);
+        }
+
+        // Find the file in the parent folder's contents
+        for(org.apache.commons.net.ftp.FTPFile file : files) {
+            if(file!=null && file.getName().equalsIgnoreCase(wantedName))
+                return file;
+        }
+
+        // File doesn't exists
+        return null;
+    }
 
-            // Find the file in the parent folder's contents
-            int nbFiles = files.length;
-            String wantedName = fileURL.getFilename();
-            for(int i=0; i<nbFiles; i++) {
-                if(files[i].getName().equalsIgnoreCase(wantedName))
-                    return files[i];
+    /**
+     * Retrieves the attributes of the given file with the MLST command. If the server replies that the command is not
+     * supported, the command is marked as such in the connection handler and <code>null</code> is returned.
+     *
+     * @return the file's attributes, <code>null</code> if the file doesn't exist
+     */
+    private static org.apache.commons.net.ftp.FTPFile getFTPFileMLST(FTPConnectionHandler connHandler, String absPath) throws IOException {
+        try {
+            org.apache.commons.net.ftp.FTPFile file = connHandler.ftpClient.mlistFile(absPath);
+            if(file!=null)
+                return file;
+
+            int replyCode = connHandler.ftpClient.getReplyCode();
+            if(isCommandNotSupported(replyCode)) {
+                LOGGER.info("marking MLST command as unsupported");
+                connHandler.mlstCommandSupported = false;
+                return null;
             }
 
-            // File doesn't exists
+            // The file doesn't exist or can't be accessed
+            if(replyCode==FTPReply.FILE_UNAVAILABLE)
+                return null;
+
+            // Throw an IOException if server replied with an error
+            connHandler.checkServerReply();
             return null;
         }
+        catch(IOException e) {
+            // Checks if the IOException corresponds to a socket error and in that case, closes the connection
+            connHandler.checkSocketException(e);
+
+            throw e;
+        }
     }
 
+    /**
+     * Returns <code>true</code> if the given reply code means that the server doesn't support the command.
+     */
+    private static boolean isCommandNotSupported(int replyCode) {
+        return replyCode==FTPReply.UNRECOGNIZED_COMMAND
+            || replyCode==FTPReply.COMMAND_NOT_IMPLEMENTED
+            || replyCode==FTPReply.COMMAND_NOT_IMPLEMENTED_FOR_PARAMETER;
+    }
+
+    /**
+     * Removes the listing of the given folder from the listing cache of all the connections to its server, after the
+     * folder's contents have been modified.
+     *
+     * @param folderURL location of a folder, may be <code>null</code>
+     */
+    private static void invalidateListing(FileURL folderURL) {
+        if(folderURL==null)
+            return;
+
+        FileURL realm = folderURL.getRealm();
+        for(ConnectionHandler connHandler : ConnectionPool.getConnectionHandlersSnapshot()) {
+            if(connHandler instanceof FTPConnectionHandler && connHandler.getRealm().equals(realm, false, false))
+                ((FTPConnectionHandler)connHandler).listingCache.invalidate(folderURL.getPath());
+        }
+    }
 
     private org.apache.commons.net.ftp.FTPFile createFTPFile(String name, boolean isDirectory) {
         org.apache.commons.net.ftp.FTPFile file = new org.apache.commons.net.ftp.FTPFile();
@@ -211,8 +306,9 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
 
     /**
      * Lists and returns the contents of the given path on the server using the given connection handler.
-     * The directory contents is listed by issuing a CWD followed by a LIST so after this method is called, the current
-     * working directory is left to the specified path.
+     * The directory contents is listed by issuing a CWD followed by a MLSD if the server supports it, a LIST otherwise,
+     * so after this method is called, the current working directory is left to the specified path. The listing is
+     * added to the connection's listing cache.
      *
      * @param connHandler the connection handler to use for communicating with the server
      * @param absPath absolute path to the directory to list
@@ -243,13 +339,24 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
             // http://issues.apache.org/jira/browse/NET-10
 
             connHandler.ftpClient.changeWorkingDirectory(absPath);
-            files = connHandler.ftpClient.listFiles();
+            files = null;
+            if(connHandler.mlstCommandSupported) {
+                files = listFilesMLSD(connHandler);
+                if(files==null && isCommandNotSupported(connHandler.ftpClient.getReplyCode())) {
+                    LOGGER.info("marking MLSD command as unsupported");
+                    connHandler.mlstCommandSupported = false;
+                }
+            }
+            if(!connHandler.mlstCommandSupported)
+                files = connHandler.ftpClient.listFiles();
 
             // Throw an IOException if server replied with an error
             connHandler.checkServerReply();
 
             if(files==null)     // In some rare conditions (bug) this method can return null
-                return new org.apache.commons.net.ftp.FTPFile[0];
+                files = new org.apache.commons.net.ftp.FTPFile[0];
+
+            connHandler.listingCache.put(absPath, files);
 
             return files;
         }
@@ -268,6 +375,35 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
     }
 
 
+    /**
+     * Lists the current working directory with the MLSD command, leaving out the entries that designate the directory
+     * itself and its parent.
+     *
+     * @return the directory's contents, <code>null</code> if the server replied with an error
+     */
+    private static org.apache.commons.net.ftp.FTPFile[] listFilesMLSD(FTPConnectionHandler connHandler) throws IOException {
+        org.apache.commons.net.ftp.FTPFile files[] = connHandler.ftpClient.mlistDir();
+        if(!FTPReply.isPositiveCompletion(connHandler.ftpClient.getReplyCode()))
+            return null;
+
+        List<org.apache.commons.net.ftp.FTPFile> children = new ArrayList<org.apache.commons.net.ftp.FTPFile>(files.length);
+        for(org.apache.commons.net.ftp.FTPFile file : files) {
+            if(file==null)
+                continue;
+
+            // The 'type' fact of the directory itself and of its parent is 'cdir' and 'pdir' respectively
+            String rawListing = file.getRawListing().toLowerCase();
+            if(rawListing.startsWith("type=cdir;") || rawListing.contains(";type=cdir;")
+                    || rawListing.startsWith("type=pdir;") || rawListing.contains(";type=pdir;"))
+                continue;
+
+            children.add(file);
+        }
+
+        return children.toArray(new org.apache.commons.net.ftp.FTPFile[children.size()]);
+    }
+
+
     /////////////////////////////////////////////
     // ConnectionHandlerFactory implementation //
     /////////////////////////////////////////////
@@ -276,6 +412,21 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
         return new FTPConnectionHandler(location);
     }
 
+    /**
+     * Returns the value of the {@link #MAX_CONNECTIONS_PROPERTY_NAME} property of the given location if it is set,
+     * {@link ConnectionPool#DEFAULT_MAX_CONNECTIONS_PER_REALM} otherwise.
+     */
+    @Override
+    public int getMaxConnections(FileURL location) {
+        String prop = location.getProperty(MAX_CONNECTIONS_PROPERTY_NAME);
+        if(prop!=null) {
+            try { return Math.max(1, Integer.parseInt(prop)); }
+            catch(NumberFormatException e) {}
+        }
+
+        return ConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_REALM;
+    }
+
 
     /////////////////////////////////////////
     // AbstractFile methods implementation //
@@ -344,6 +495,8 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
 
                 throw new IOException();
             }
+
+            invalidateListing(fileURL.getParent());
         }
         catch(IOException e) {
             // Checks if the IOException corresponds to a socket error and in that case, closes the connection
@@ -529,6 +682,8 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
                 connHandler.ftpClient.deleteFile(absPath);
 
             fileExists = false; // need to set to false since the file is cached
+            invalidateListing(fileURL.getParent());
+            invalidateListing(fileURL);
             // Throw an IOException if server replied with an error
             connHandler.checkServerReply();
         }
@@ -571,10 +726,6 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
         String childName;
         int nbFiles = files.length;
         int fileCount = 0;
-        String parentPath = fileURL.getPath();
-        if(!parentPath.endsWith(SEPARATOR))
-            parentPath += SEPARATOR;
-
         for(int i=0; i<nbFiles; i++) {
             if(files[i]==null)
                 continue;
@@ -583,9 +734,8 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
             if(childName.equals(".") || childName.equals(".."))
                 continue;
 
-            // Note: properties and credentials are cloned for every children's url
-            childURL = (FileURL)fileURL.clone();
-            childURL.setPath(parentPath+childName);
+            // Note: properties are shared with this file's url until modified, credentials are immutable
+            childURL = fileURL.getChild(childName);
 
             // Discard '.' and '..' files
             if(childName.equals(".") || childName.equals(".."))
@@ -615,6 +765,7 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
             connHandler.checkConnection();
 
             connHandler.ftpClient.makeDirectory(absPath);
+            invalidateListing(fileURL.getParent());
             // Throw an IOException if server replied with an error
             connHandler.checkServerReply();
 
@@ -711,6 +862,8 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
 
                 throw new IOException();
             }
+
+            invalidateListing(fileURL.getParent());
         }
         catch(IOException e) {
             // Checks if the IOException corresponds to a socket error and in that case, closes the connection
@@ -755,6 +908,10 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
 
             if(!connHandler.ftpClient.rename(absPath, destFile.getURL().getPath()))
                 throw new IOException();
+
+            invalidateListing(fileURL.getParent());
+            invalidateListing(fileURL);
+            invalidateListing(destFile.getURL().getParent());
         }
         catch(IOException e) {
             // Checks if the IOException corresponds to a socket error and in that case, closes the connection
@@ -950,9 +1107,6 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
             if(isClosed)
                 return;
 
-            // we need to refresh the file after an update
-            // otherwise the displayed size of archive files is incorrect
-            file = getFTPFile(getURL());
             isClosed = true;
 
             try {
@@ -962,6 +1116,14 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
                 connHandler.ftpClient.completePendingCommand();
                 LOGGER.info("commands completed");
 
+                // we need to refresh the file after an update
+                // otherwise the displayed size of archive files is incorrect.
+                // The file is resolved with this stream's connection rather than with another one, which would not be
+                // available if all the connections to the server were transferring data and closing at the same time.
+                org.apache.commons.net.ftp.FTPFile refreshedFile = getFTPFile(connHandler, fileURL);
+                if(refreshedFile!=null)
+                    file = refreshedFile;
+
                 // Todo: An IOException will be thrown by completePendingCommand if the transfer has not finished before calling close.
                 // An 'abort' command should be issued to the server before closing if the transfer is not finished yet.
                 // Currently in that case (transfer not finished) the whole connection has to be re-established (bad!).
@@ -1093,6 +1255,8 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
                 LOGGER.trace("complete pending commands");
                 connHandler.ftpClient.completePendingCommand();
                 LOGGER.trace("commands completed");
+
+                invalidateListing(fileURL.getParent());
             }
             catch(IOException e) {
                 LOGGER.info("exception in completePendingCommands()", e);
@@ -1137,6 +1301,13 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
         /** False if SITE CHMOD command is not supported by the remote server (once tried and failed) */
         private boolean chmodCommandSupported = true;
 
+        /** True if the MLST and MLSD commands are supported by the remote server, as reported by the FEAT command.
+         * Set to false if they fail nonetheless. */
+        private boolean mlstCommandSupported;
+
+        /** Directory listings retrieved through this connection */
+        private final FTPListingCache listingCache;
+
         /** Controls how ofter should keepAlive() be called by ConnectionPool */
         private final static long KEEP_ALIVE_PERIOD = 60;
 
@@ -1186,6 +1357,18 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
                 catch(NumberFormatException e) { connectionRetryDelay = DEFAULT_CONNECTION_RETRY_DELAY; }
             }
 
+            // Use the property that controls how long directory listings are cached, if the property is set
+            int listingCacheTTL;
+            prop = location.getProperty(LISTING_CACHE_TTL_PROPERTY_NAME);
+            if(prop==null) {
+                listingCacheTTL = DEFAULT_LISTING_CACHE_TTL;
+            }
+            else {
+                try { listingCacheTTL = Integer.parseInt(prop); }
+                catch(NumberFormatException e) { listingCacheTTL = DEFAULT_LISTING_CACHE_TTL; }
+            }
+            listingCache = new FTPListingCache(listingCacheTTL*1000L);
+
             setKeepAlivePeriod(KEEP_ALIVE_PERIOD);
         }
 
@@ -1311,6 +1494,11 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
 	                    ftpClient.sendCommand("OPTS UTF8 ON");
 	                }
 
+	                // Find out whether the server supports the MLST and MLSD commands (RFC 3659), which are advertised by
+	                // the 'MLST' feature. Servers that do not support the FEAT command support neither.
+	                mlstCommandSupported = ftpClient.hasFeature("MLST");
+	                LOGGER.info("mlstCommandSupported={}", mlstCommandSupported);
+
 	                break;
 	            }
 	            catch(IOException e) {
@@ -1384,6 +1572,8 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
 
                 ftpClient = null;
             }
+
+            listingCache.clear();
         }
 
 
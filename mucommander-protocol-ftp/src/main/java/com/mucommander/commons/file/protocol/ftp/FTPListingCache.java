@@ -0,0 +1,125 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.ftp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+/**
+ * Caches the directory listings retrieved through an FTP connection for a limited amount of time, so that files can
+ * be resolved without listing their parent folder again.
+ *
+ * <p>Listings are cached by the absolute path of the directory, for up to the time-to-live specified in the
+ * constructor. Only the {@link #MAX_CACHED_FOLDERS} most recently used listings are kept.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+class FTPListingCache {
+
+    /** Maximum number of directory listings kept in the cache */
+    final static int MAX_CACHED_FOLDERS = 64;
+
+    /** Time-to-live of cached listings, in milliseconds */
+    private final long ttl;
+
+    /** Cached listings, by directory path, in access order */
+    private final Map<String, Listing> listings = new LinkedHashMap<String, Listing>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Listing> eldest) {
+            return size() > MAX_CACHED_FOLDERS;
+        }
+    };
+
+    /**
+     * Creates a new cache.
+     *
+     * @param ttl the time-to-live of cached listings in milliseconds, <code>0</code> to disable caching
+     */
+    FTPListingCache(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Returns the cached listing of the given directory, <code>null</code> if it isn't cached or has expired.
+     *
+     * @param path absolute path of a directory
+     * @return the cached listing of the directory, <code>null</code> if it isn't cached or has expired
+     */
+    synchronized FTPFile[] get(String path) {
+        path = normalize(path);
+        Listing listing = listings.get(path);
+        if (listing == null)
+            return null;
+
+        if (System.currentTimeMillis() - listing.timestamp >= ttl) {
+            listings.remove(path);
+            return null;
+        }
+
+        return listing.files;
+    }
+
+    /**
+     * Caches the given listing of the given directory.
+     *
+     * @param path absolute path of a directory
+     * @param files the contents of the directory
+     */
+    synchronized void put(String path, FTPFile[] files) {
+        if (ttl > 0)
+            listings.put(normalize(path), new Listing(files));
+    }
+
+    /**
+     * Removes the listing of the given directory from the cache, if it is cached.
+     *
+     * @param path absolute path of a directory
+     */
+    synchronized void invalidate(String path) {
+        listings.remove(normalize(path));
+    }
+
+    /**
+     * Removes all listings from the cache.
+     */
+    synchronized void clear() {
+        listings.clear();
+    }
+
+    /**
+     * Removes the trailing separator of the given path, if any, so that both forms of a directory path are cached
+     * under the same key.
+     */
+    private static String normalize(String path) {
+        return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    /**
+     * The listing of a directory, and the time at which it was retrieved.
+     */
+    private static class Listing {
+        private final FTPFile[] files;
+        private final long timestamp = System.currentTimeMillis();
+
+        private Listing(FTPFile[] files) {
+            this.files = files;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.ftp;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.testng.annotations.Test;
+
+/**
+ * This class is a TestNG test case for {@link FTPListingCache}.
+ */
+public class FTPListingCacheTest {
+
+    /**
+     * Asserts that cached listings are returned until they expire, regardless of the trailing separator of the path.
+     *
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void testExpiration() throws InterruptedException {
+        FTPListingCache cache = new FTPListingCache(200);
+        FTPFile files[] = new FTPFile[] {new FTPFile()};
+
+        assert cache.get("/folder") == null;
+
+        cache.put("/folder/", files);
+        assert cache.get("/folder") == files;
+        assert cache.get("/folder/") == files;
+        assert cache.get("/") == null;
+
+        Thread.sleep(300);
+        assert cache.get("/folder") == null;
+    }
+
+    /**
+     * Asserts that nothing is cached when the time-to-live is <code>0</code>.
+     */
+    @Test
+    public void testDisabled() {
+        FTPListingCache cache = new FTPListingCache(0);
+        cache.put("/", new FTPFile[0]);
+
+        assert cache.get("/") == null;
+    }
+
+    /**
+     * Asserts that invalidated listings are no longer returned.
+     */
+    @Test
+    public void testInvalidate() {
+        FTPListingCache cache = new FTPListingCache(60000);
+        cache.put("/", new FTPFile[0]);
+        cache.put("/folder", new FTPFile[0]);
+
+        cache.invalidate("/folder/");
+        assert cache.get("/folder") == null;
+        assert cache.get("/") != null;
+
+        cache.clear();
+        assert cache.get("/") == null;
+    }
+
+    /**
+     * Asserts that the least recently used listings are evicted once {@link FTPListingCache#MAX_CACHED_FOLDERS}
+     * listings are cached.
+     */
+    @Test
+    public void testEviction() {
+        FTPListingCache cache = new FTPListingCache(60000);
+        for (int i = 0; i < FTPListingCache.MAX_CACHED_FOLDERS; i++)
+            cache.put("/folder" + i, new FTPFile[0]);
+
+        // Use the first listing so that the second one becomes the least recently used
+        assert cache.get("/folder0") != null;
+
+        cache.put("/folder", new FTPFile[0]);
+        assert cache.get("/folder0") != null;
+        assert cache.get("/folder1") == null;
+        assert cache.get("/folder") != null;
+    }
+}
@@ -0,0 +1,376 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.gdrive;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.Change;
+import com.google.api.services.drive.model.ChangeList;
+import com.google.api.services.drive.model.File;
+import com.google.api.services.drive.model.FileList;
+
+/**
+ * Caches the metadata of the files of a Google Drive account, for the lifetime of a connection.
+ * <p>
+ * The children of the folders that have been listed are kept by folder id, in least-recently-used order. Rather than
+ * listing folders again to find out whether they have changed, the cache polls the Drive changes feed, which returns
+ * only the files that have been created, modified or removed since the previous poll, and applies these changes to
+ * the folders it holds. Files created or removed through this connection are applied right away.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+class GoogleDriveCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GoogleDriveCache.class);
+
+    /** Metadata fields retrieved for each file */
+    static final String FILE_FIELDS = "id,name,parents,size,modifiedTime,mimeType,trashed";
+
+    /** Maximum number of files returned per page of listing or changes, as allowed by the API */
+    private static final int PAGE_SIZE = 1000;
+
+    /** Maximum number of requests sent in a single batch, as allowed by the API */
+    private static final int BATCH_SIZE = 100;
+
+    /** Minimum number of milliseconds between two polls of the changes feed */
+    private static final long SYNC_INTERVAL = 1000;
+
+    /** Maximum number of folders whose children are cached */
+    private static final int MAX_CACHED_FOLDERS = 256;
+
+    /** Maximum number of milliseconds to wait for uploaded files to be listed */
+    private static final long CONSISTENCY_TIMEOUT = 10000;
+
+    /** Alias of the root folder's id */
+    private static final String ROOT_ALIAS = "root";
+
+    private final Drive drive;
+
+    /** Cached folders, by id, in access order */
+    private final Map<String, Folder> folders = new LinkedHashMap<String, Folder>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Folder> eldest) {
+            return size() > MAX_CACHED_FOLDERS;
+        }
+    };
+
+    /** Ids of the files uploaded through this connection that haven't been listed yet, by parent folder id */
+    private final Map<String, Set<String>> unlistedUploads = new HashMap<String, Set<String>>();
+
+    /** Actual id of the root folder, <code>null</code> until it is needed */
+    private String rootId;
+
+    /** Token of the next page of the changes feed, <code>null</code> until the feed is first polled */
+    private String changesPageToken;
+
+    /** Time at which the changes feed was last polled */
+    private long lastSync;
+
+    GoogleDriveCache(Drive drive) {
+        this.drive = drive;
+    }
+
+    /**
+     * Returns the children of the given folder, excluding trashed files.
+     *
+     * @param folderId the id of a folder
+     * @return the children of the folder
+     * @throws IOException if the folder couldn't be listed
+     */
+    synchronized List<File> list(String folderId) throws IOException {
+        return new ArrayList<File>(getFolder(folderId).children.values());
+    }
+
+    /**
+     * Returns a date that changes whenever the children of the given folder change: the latest modification date of
+     * its files or, if more recent, the time at which a change to its children was last noticed.
+     *
+     * @param folderId the id of a folder
+     * @return a date that changes whenever the children of the given folder change
+     * @throws IOException if the folder couldn't be listed
+     */
+    synchronized long getFolderDate(String folderId) throws IOException {
+        return getFolder(folderId).date;
+    }
+
+    /**
+     * Records that the given file has been created or modified through this connection.
+     *
+     * @param file the metadata of the file, as returned by the API
+     */
+    synchronized void fileUploaded(File file) {
+        apply(file.getId(), file);
+
+        if (file.getParents() != null) {
+            for (String parentId : file.getParents()) {
+                Set<String> uploads = unlistedUploads.get(parentId);
+                if (uploads == null)
+                    unlistedUploads.put(parentId, uploads = new HashSet<String>());
+                uploads.add(file.getId());
+            }
+        }
+    }
+
+    /**
+     * Records that the given file has been removed through this connection.
+     *
+     * @param fileId the id of the file
+     */
+    synchronized void fileRemoved(String fileId) {
+        apply(fileId, null);
+    }
+
+    /**
+     * Waits until the files uploaded to the given folder through this connection are returned when listing it, so
+     * that the folder can be refreshed without missing any of them. The folder is listed again, with an increasing
+     * delay, until that is the case or a timeout expires.
+     *
+     * @param folderId the id of a folder
+     * @throws IOException if the folder couldn't be listed or if the current thread was interrupted
+     */
+    void awaitUploads(String folderId) throws IOException {
+        long deadline = System.currentTimeMillis() + CONSISTENCY_TIMEOUT;
+        long delay = 100;
+        while (true) {
+            synchronized (this) {
+                folderId = resolve(folderId);
+                Set<String> uploads = unlistedUploads.get(folderId);
+                if (uploads == null || uploads.isEmpty())
+                    return;
+
+                if (System.currentTimeMillis() >= deadline) {
+                    LOGGER.info("uploaded files are still not listed in folder {}: {}", folderId, uploads);
+                    return;
+                }
+
+                folders.put(folderId, fetchFolder(folderId, folders.get(folderId)));
+                if (unlistedUploads.get(folderId) == null)
+                    return;
+            }
+
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            delay = Math.min(delay * 2, 1000);
+        }
+    }
+
+    /**
+     * Returns the cached folder with the given id, after having applied the pending changes. The folder is listed if
+     * it isn't in the cache.
+     */
+    private Folder getFolder(String folderId) throws IOException {
+        folderId = resolve(folderId);
+        sync();
+
+        Folder folder = folders.get(folderId);
+        if (folder == null) {
+            folder = fetchFolder(folderId, null);
+            folders.put(folderId, folder);
+        }
+
+        return folder;
+    }
+
+    /**
+     * Returns the actual id of the given folder: the files returned by the API refer to the root folder by its id
+     * rather than by its alias.
+     */
+    private String resolve(String folderId) throws IOException {
+        if (!ROOT_ALIAS.equals(folderId))
+            return folderId;
+
+        if (rootId == null)
+            rootId = drive.files().get(ROOT_ALIAS).setFields("id").execute().getId();
+        return rootId;
+    }
+
+    /**
+     * Lists the children of the given folder, following all the pages of the listing.
+     *
+     * @param folderId the actual id of the folder
+     * @param previous the previously cached content of the folder, <code>null</code> if none
+     */
+    private Folder fetchFolder(String folderId, Folder previous) throws IOException {
+        Folder folder = new Folder();
+        String pageToken = null;
+        do {
+            FileList result = drive.files().list()
+                    .setFields("nextPageToken,files(" + FILE_FIELDS + ")")
+                    .setQ(String.format("'%s' in parents and trashed = false", folderId))
+                    .setPageSize(PAGE_SIZE)
+                    .setPageToken(pageToken)
+                    .execute();
+
+            if (result.getFiles() != null) {
+                for (File file : result.getFiles())
+                    folder.add(file);
+            }
+            pageToken = result.getNextPageToken();
+        } while (pageToken != null);
+
+        if (previous != null)
+            folder.date = Math.max(folder.date, previous.date);
+
+        Set<String> uploads = unlistedUploads.get(folderId);
+        if (uploads != null) {
+            uploads.removeAll(folder.children.keySet());
+            if (uploads.isEmpty())
+                unlistedUploads.remove(folderId);
+        }
+
+        return folder;
+    }
+
+    /**
+     * Applies the changes that occurred since the changes feed was last polled to the cached folders. The whole cache
+     * is discarded if the feed cannot be read.
+     */
+    private void sync() {
+        long now = System.currentTimeMillis();
+        if (now - lastSync < SYNC_INTERVAL)
+            return;
+        lastSync = now;
+
+        try {
+            if (changesPageToken == null) {
+                // Nothing has been cached yet, start polling from now on
+                changesPageToken = drive.changes().getStartPageToken().execute().getStartPageToken();
+                folders.clear();
+                return;
+            }
+
+            List<String> unknownFileIds = new ArrayList<String>();
+            String pageToken = changesPageToken;
+            while (pageToken != null) {
+                ChangeList changes = drive.changes().list(pageToken)
+                        .setFields("nextPageToken,newStartPageToken,changes(fileId,removed,file(" + FILE_FIELDS + "))")
+                        .setPageSize(PAGE_SIZE)
+                        .execute();
+
+                for (Change change : changes.getChanges()) {
+                    if (Boolean.TRUE.equals(change.getRemoved()))
+                        apply(change.getFileId(), null);
+                    else if (change.getFile() == null)
+                        unknownFileIds.add(change.getFileId());
+                    else
+                        apply(change.getFileId(), change.getFile());
+                }
+
+                if (changes.getNewStartPageToken() != null)
+                    changesPageToken = changes.getNewStartPageToken();
+                pageToken = changes.getNextPageToken();
+            }
+
+            if (!unknownFileIds.isEmpty()) {
+                Map<String, File> files = fetch(unknownFileIds);
+                for (String fileId : unknownFileIds)
+                    apply(fileId, files.get(fileId));
+            }
+        } catch (IOException e) {
+            LOGGER.info("failed to read the changes feed, discarding cached folders", e);
+            changesPageToken = null;
+            folders.clear();
+        }
+    }
+
+    /**
+     * Retrieves the metadata of the given files, sending batches of requests rather than a request per file.
+     *
+     * @return the metadata of the files, by id, which doesn't contain the files that couldn't be retrieved
+     */
+    private Map<String, File> fetch(Collection<String> fileIds) throws IOException {
+        final Map<String, File> files = new HashMap<String, File>();
+        JsonBatchCallback<File> callback = new JsonBatchCallback<File>() {
+            @Override
+            public void onSuccess(File file, HttpHeaders responseHeaders) {
+                files.put(file.getId(), file);
+            }
+
+            @Override
+            public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+                LOGGER.debug("failed to retrieve file metadata: {}", error.getMessage());
+            }
+        };
+
+        BatchRequest batch = drive.batch();
+        for (String fileId : fileIds) {
+            drive.files().get(fileId).setFields(FILE_FIELDS).queue(batch, callback);
+            if (batch.size() == BATCH_SIZE)
+                batch.execute();
+        }
+        if (batch.size() > 0)
+            batch.execute();
+
+        return files;
+    }
+
+    /**
+     * Applies a change to the cached folders.
+     *
+     * @param fileId the id of the file that has changed
+     * @param file the new metadata of the file, <code>null</code> if the file has been removed
+     */
+    private void apply(String fileId, File file) {
+        boolean exists = file != null && !Boolean.TRUE.equals(file.getTrashed());
+        for (Map.Entry<String, Folder> entry : folders.entrySet()) {
+            Folder folder = entry.getValue();
+            boolean removed = folder.children.remove(fileId) != null;
+            if (exists && file.getParents() != null && file.getParents().contains(entry.getKey()))
+                folder.add(file);
+            else if (!removed)
+                continue;
+
+            folder.date = Math.max(folder.date + 1, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * The cached children of a folder.
+     */
+    private static class Folder {
+        private final Map<String, File> children = new LinkedHashMap<String, File>();
+        private long date;
+
+        private void add(File file) {
+            children.put(file.getId(), file);
+            if (!GoogleDriveFile.FOLDER_MIME_TYPE.equals(file.getMimeType()) && file.getModifiedTime() != null)
+                date = Math.max(date, file.getModifiedTime().getValue());
+        }
+    }
+}
@@ -38,6 +38,7 @@ public class GoogleDriveConnHandler extends ConnectionHandler implements AutoClo
 
     private FileURL location;
     private GoogleDriveClient client;
+    private GoogleDriveCache cache;
 
     public String getCertificate() {
         return location.getProperty("certificate");
@@ -52,11 +53,21 @@ public class GoogleDriveConnHandler extends ConnectionHandler implements AutoClo
         return client.getConnection();
     }
 
+    /**
+     * Returns the cache of file metadata associated with this connection.
+     *
+     * @return the cache of file metadata associated with this connection
+     */
+    GoogleDriveCache getCache() {
+        return cache;
+    }
+
     @Override
     public void startConnection() throws IOException, AuthException {
         if (client == null) {
             client = new GoogleDriveClient(location);
             client.connect();
+            cache = new GoogleDriveCache(client.getConnection());
         }
     }
 
@@ -73,6 +84,7 @@ public class GoogleDriveConnHandler extends ConnectionHandler implements AutoClo
             // nothing we can do... ignore..
         } finally {
             client = null;
+            cache = null;
         }
     }
 
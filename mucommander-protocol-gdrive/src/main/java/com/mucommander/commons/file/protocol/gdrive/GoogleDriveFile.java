@@ -19,20 +19,24 @@ package com.mucommander.commons.file.protocol.gdrive;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.api.client.googleapis.media.MediaHttpUploader;
 import com.google.api.client.http.InputStreamContent;
+import com.google.api.services.drive.Drive;
 import com.google.api.services.drive.model.About;
 import com.google.api.services.drive.model.File;
-import com.google.api.services.drive.model.FileList;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.FileOperation;
@@ -49,6 +53,8 @@ import com.mucommander.commons.file.connection.ConnectionHandlerFactory;
 import com.mucommander.commons.file.connection.ConnectionPool;
 import com.mucommander.commons.file.protocol.ProtocolFile;
 import com.mucommander.commons.file.util.PathUtils;
+import com.mucommander.commons.io.FileTransferError;
+import com.mucommander.commons.io.FileTransferException;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
 
@@ -60,6 +66,14 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
 
     public static String FOLDER_MIME_TYPE = "application/vnd.google-apps.folder";
 
+    private static final String BINARY_MIME_TYPE = "application/octet-stream";
+
+    /** Files up to this size are uploaded along with their metadata in a single request */
+    private static final long DIRECT_UPLOAD_THRESHOLD = 5 * 1024 * 1024;
+
+    /** Size of the chunks larger files are uploaded by, using the resumable upload protocol */
+    private static final int UPLOAD_CHUNK_SIZE = 32 * MediaHttpUploader.MINIMUM_CHUNK_SIZE;
+
     protected GoogleDriveFile(FileURL url, File file) {
         super(url);
         this.file = file;
@@ -87,24 +101,21 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
 
     @Override
     public void postCopyHook() {
-        try {
-            Thread.sleep(2000);
-        } catch (InterruptedException e) {}
+        if (!exists())
+            return;
+
+        // Listings may lag behind uploads: wait for the copied files to be listed before the folder gets refreshed
+        try(GoogleDriveConnHandler connHandler = getConnHandler()) {
+            connHandler.getCache().awaitUploads(getId());
+        } catch (IOException e) {
+            LOGGER.info("failed to check that copied files are listed", e);
+        }
     }
 
     @Override
     public long getDateCurrentFolder() {
         try(GoogleDriveConnHandler connHandler = getConnHandler()) {
-            FileList result = connHandler.getConnection().files().list()
-                    .setFields("files(id,name,parents,size,modifiedTime,mimeType)")
-                    .setQ(String.format("'%s' in parents", getId()))
-                    .execute();
-            return result.getFiles().stream()
-                    .filter(file -> !isFolderMimeType(file.getMimeType()))
-                    .map(this::toFile)
-                    .map(AbstractFile::getDate)
-                    .max(Long::compareTo)
-                    .orElse(0l);
+            return connHandler.getCache().getFolderDate(getId());
         } catch (IOException e) {
             LOGGER.error("failed to retrieve folder modification date", e);
             return 0;
@@ -207,12 +218,8 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
     @Override
     public AbstractFile[] ls() throws IOException, UnsupportedFileOperationException {
         try(GoogleDriveConnHandler connHandler = getConnHandler()) {
-            FileList result = connHandler.getConnection().files().list()
-                    .setFields("files(id,name,parents,size,modifiedTime,mimeType)")
-                    .setQ(String.format("'%s' in parents", getId()))
-                    .execute();
-            List<File> files = result.getFiles();
-            if (files == null || files.isEmpty()) {
+            List<File> files = connHandler.getCache().list(getId());
+            if (files.isEmpty()) {
                 LOGGER.info("No files found.");
                 return new AbstractFile[0];
             }
@@ -236,13 +243,12 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
     @Override
     public void mkdir() throws IOException, UnsupportedFileOperationException {
         try(GoogleDriveConnHandler connHandler = getConnHandler()) {
-            File fileMetadata = new File();
-            String filename = getURL().getFilename();
-            fileMetadata.setName(filename);
+            File fileMetadata = createFileMetadata();
             fileMetadata.setMimeType(FOLDER_MIME_TYPE);
             file = connHandler.getConnection().files().create(fileMetadata)
-                    .setFields("id")
+                    .setFields(GoogleDriveCache.FILE_FIELDS)
                     .execute();
+            connHandler.getCache().fileUploaded(file);
         }
     }
 
@@ -258,28 +264,88 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
     @Override
     public OutputStream getOutputStream() throws IOException, UnsupportedFileOperationException {
         try(GoogleDriveConnHandler connHandler = getConnHandler()) {
-            File fileMetadata = new File();
-            String filename = getURL().getFilename();
-            GoogleDriveFile parent = (GoogleDriveFile) getParent();
-            fileMetadata.setParents(Collections.singletonList(parent.getId()));
-            fileMetadata.setName(filename);
-            PipedOutputStream output = new PipedOutputStream();
-            PipedInputStream input = new PipedInputStream(output);
-            new Thread(() -> {
-                InputStreamContent in = new InputStreamContent("application/octet-stream", input);
+            Drive drive = connHandler.getConnection();
+            GoogleDriveCache cache = connHandler.getCache();
+            File fileMetadata = createFileMetadata();
+            PipedInputStream input = new PipedInputStream();
+            FutureTask<File> upload = new FutureTask<>(() -> {
                 try {
-                    file = connHandler.getConnection().files()
-                            .create(fileMetadata, in)
-                            .setFields("id")
-                            .execute();
-                } catch (IOException e) {
-                    LOGGER.error("failed to copy to Google Drive", e);
+                    return upload(drive, cache, fileMetadata, input, -1);
+                } finally {
+                    // Unblock the writer if the upload failed
+                    input.close();
+                }
+            });
+            PipedOutputStream output = new PipedOutputStream(input) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    // The file is complete once it has been uploaded, not when all its data has been written
+                    try {
+                        file = upload.get();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    } catch (ExecutionException e) {
+                        throw new IOException("failed to copy to Google Drive", e.getCause());
+                    }
                 }
-            }).start();
+            };
+            new Thread(upload, "Google Drive upload: " + getName()).start();
             return output;
         }
     }
 
+    @Override
+    public void copyStream(InputStream in, boolean append, long length) throws FileTransferException {
+        if (append)
+            throw new FileTransferException(FileTransferError.OPENING_DESTINATION);
+
+        // Upload the stream directly rather than through a pipe and another thread
+        try(GoogleDriveConnHandler connHandler = getConnHandler()) {
+            file = upload(connHandler.getConnection(), connHandler.getCache(), createFileMetadata(), in, length);
+        } catch (IOException e) {
+            LOGGER.info("failed to copy to Google Drive", e);
+            throw new FileTransferException(FileTransferError.WRITING_DESTINATION);
+        }
+    }
+
+    /**
+     * Creates the metadata of a new file with the name of this file, in the parent folder of this file.
+     */
+    private File createFileMetadata() {
+        File fileMetadata = new File();
+        fileMetadata.setName(getURL().getFilename());
+        GoogleDriveFile parent = (GoogleDriveFile) getParent();
+        if (parent != null)
+            fileMetadata.setParents(Collections.singletonList(parent.getId()));
+        return fileMetadata;
+    }
+
+    /**
+     * Creates a new file with the given metadata and content. Small files are uploaded in a single request, larger
+     * ones and those whose length is unknown are uploaded by chunks using the resumable upload protocol.
+     *
+     * @param in the content of the file, which is not closed by this method
+     * @param length the length of the content, <code>-1</code> if unknown
+     * @return the metadata of the created file
+     */
+    private static File upload(Drive drive, GoogleDriveCache cache, File fileMetadata, InputStream in, long length) throws IOException {
+        InputStreamContent content = new InputStreamContent(BINARY_MIME_TYPE, in);
+        content.setCloseInputStream(false);
+        if (length >= 0)
+            content.setLength(length);
+
+        Drive.Files.Create create = drive.files().create(fileMetadata, content)
+                .setFields(GoogleDriveCache.FILE_FIELDS);
+        MediaHttpUploader uploader = create.getMediaHttpUploader();
+        uploader.setDirectUploadEnabled(length >= 0 && length <= DIRECT_UPLOAD_THRESHOLD);
+        uploader.setChunkSize(UPLOAD_CHUNK_SIZE);
+
+        File file = create.execute();
+        cache.fileUploaded(file);
+        return file;
+    }
+
     @Override
     public AbstractFile getChild(String filename, AbstractFile template) throws IOException {
         if (template == null)
@@ -312,6 +378,7 @@ public class GoogleDriveFile extends ProtocolFile implements ConnectionHandlerFa
     public void delete() throws IOException, UnsupportedFileOperationException {
         try(GoogleDriveConnHandler connHandler = getConnHandler()) {
             connHandler.getConnection().files().delete(file.getId()).execute();
+            connHandler.getCache().fileRemoved(file.getId());
         }
     }
 
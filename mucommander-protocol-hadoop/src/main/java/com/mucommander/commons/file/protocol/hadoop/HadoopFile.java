@@ -311,7 +311,14 @@ public abstract class HadoopFile extends ProtocolFile {
 
     @Override
     public InputStream getInputStream() throws IOException {
-        return fs.open(path);
+        FSDataInputStream in = fs.open(path);
+
+        // Files that fit in a single range are not worth being read concurrently
+        long size = getSize();
+        if(size <= HadoopParallelInputStream.RANGE_SIZE)
+            return in;
+
+        return new HadoopParallelInputStream(in, size, fileAttributes.getBlockSize());
     }
 
     @Override
@@ -397,17 +404,13 @@ public abstract class HadoopFile extends ProtocolFile {
 
         int nbChildren = statuses==null?0:statuses.length;
         AbstractFile[] children = new AbstractFile[nbChildren];
-        String parentPath = fileURL.getPath();
-        if(!parentPath.endsWith("/"))
-            parentPath += "/";
         FileURL childURL;
         FileStatus childStatus;
 
         for(int i=0; i<nbChildren; i++) {
             childStatus = statuses[i];
 
-            childURL = (FileURL)fileURL.clone();
-            childURL.setPath(parentPath + childStatus.getPath().getName());
+            childURL = fileURL.getChild(childStatus.getPath().getName());
 
             Map<String, Object> parameters = new HashMap<>();
             parameters.put("file-system", fs);
@@ -463,6 +466,9 @@ public abstract class HadoopFile extends ProtocolFile {
 
         private final static int TTL = 60000;
 
+        /** Size of the file's blocks, 0 if unknown */
+        private long blockSize;
+
         // this constructor is called by the public constructor
         private HadoopFileAttributes() throws AuthException {
             super(TTL, false);       // no initial update
@@ -516,6 +522,16 @@ public abstract class HadoopFile extends ProtocolFile {
             ));
             setOwner(fileStatus.getOwner());
             setGroup(fileStatus.getGroup());
+            blockSize = fileStatus.getBlockSize();
+        }
+
+        /**
+         * Returns the size of the file's blocks, or the filesystem's default block size if it is unknown.
+         *
+         * @return the size of the file's blocks
+         */
+        private long getBlockSize() {
+            return blockSize>0?blockSize:fs.getDefaultBlockSize();
         }
 
         /**
@@ -545,19 +561,36 @@ public abstract class HadoopFile extends ProtocolFile {
 
     /**
      * Turns a Hadoop {@link FSDataInputStream} into a {@link RandomAccessInputStream}.
+     *
+     * <p>Data is read with positional reads, so that seeking costs nothing until data is actually read. Small reads
+     * are served from a buffer, which is filled with a single positional read: archive parsers typically read
+     * headers by small pieces, which would otherwise cost a request each.</p>
      */
     private static class HadoopRandomAccessInputStream extends RandomAccessInputStream {
 
+        /** Size of the read buffer */
+        private final static int BUFFER_SIZE = 64 * 1024;
+
         private FSDataInputStream in;
         private long length;
 
+        /** Current offset within the file */
+        private long offset;
+
+        /** Data read ahead of the current offset */
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        /** Offset of the buffered data within the file */
+        private long bufferOffset;
+        /** Number of bytes in the buffer */
+        private int bufferLength;
+
         private HadoopRandomAccessInputStream(FSDataInputStream in, long length) {
             this.in = in;
             this.length = length;
         }
 
         public long getOffset() throws IOException {
-            return in.getPos();
+            return offset;
         }
 
         public long getLength() throws IOException {
@@ -565,21 +598,66 @@ public abstract class HadoopFile extends ProtocolFile {
         }
 
         public void seek(long offset) throws IOException {
-            in.seek(offset);
+            this.offset = offset;
         }
 
         @Override
         public int read() throws IOException {
-            return in.read();
+            if(!fillBuffer())
+                return -1;
+
+            return buffer[(int)(offset++ - bufferOffset)] & 0xFF;
         }
 
         @Override
         public int read(byte[] b, int off, int len) throws IOException {
-            return in.read(b, off, len);
+            if(len==0)
+                return 0;
+
+            // Large reads bypass the buffer
+            if(len>=BUFFER_SIZE && !isBuffered(offset)) {
+                int nbRead = in.read(offset, b, off, len);
+                if(nbRead>0)
+                    offset += nbRead;
+                return nbRead;
+            }
+
+            if(!fillBuffer())
+                return -1;
+
+            int start = (int)(offset - bufferOffset);
+            int nbBytes = Math.min(len, bufferLength - start);
+            System.arraycopy(buffer, start, b, off, nbBytes);
+            offset += nbBytes;
+
+            return nbBytes;
+        }
+
+        private boolean isBuffered(long position) {
+            return position>=bufferOffset && position<bufferOffset+bufferLength;
+        }
+
+        /**
+         * Makes sure that the byte at the current offset is buffered, reading from the current offset if it isn't.
+         *
+         * @return <code>false</code> if the current offset is at or beyond the end of the file
+         */
+        private boolean fillBuffer() throws IOException {
+            if(isBuffered(offset))
+                return true;
+
+            bufferOffset = offset;
+            bufferLength = 0;
+            int nbRead;
+            while(bufferLength<BUFFER_SIZE && (nbRead = in.read(offset+bufferLength, buffer, bufferLength, BUFFER_SIZE-bufferLength))>0)
+                bufferLength += nbRead;
+
+            return bufferLength>0;
         }
 
         @Override
         public void close() throws IOException {
+            in.close();
         }
     }
 
@@ -0,0 +1,85 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.protocol.hadoop;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+
+import com.mucommander.commons.io.ParallelRangeInputStream;
+
+/**
+ * An <code>InputStream</code> that reads a Hadoop file sequentially, by fetching several consecutive ranges of the
+ * file concurrently.
+ *
+ * <p>Ranges are read with positional reads on a single {@link FSDataInputStream}: with HDFS, each positional read
+ * opens its own connection to a datanode holding the range, so ranges are transferred in parallel, from different
+ * datanodes when they belong to different blocks. Ranges never span two blocks.</p>
+ *
+ * @see HadoopFile#getInputStream()
+ */
+class HadoopParallelInputStream extends ParallelRangeInputStream {
+
+    /** Size of the ranges fetched concurrently */
+    final static int RANGE_SIZE = 2 * 1024 * 1024;
+
+    /** Maximum number of ranges fetched ahead of the reader */
+    private final static int MAX_PARALLEL_READS = 4;
+
+    /** Fetches ranges for all streams */
+    private final static ExecutorService EXECUTOR = createExecutor(8, "Hadoop reader");
+
+    private final FSDataInputStream in;
+    private final long blockSize;
+
+    /**
+     * Creates a new stream reading the file opened by the given stream.
+     *
+     * @param in the file to read, closed when this stream is closed
+     * @param length the length of the file
+     * @param blockSize the size of the file's blocks
+     */
+    HadoopParallelInputStream(FSDataInputStream in, long length, long blockSize) {
+        super(EXECUTOR, length, RANGE_SIZE, MAX_PARALLEL_READS);
+        this.in = in;
+        this.blockSize = blockSize > 0 ? blockSize : RANGE_SIZE;
+    }
+
+    @Override
+    protected int readRange(long offset, byte[] b, int off, int len) throws IOException {
+        return in.read(offset, b, off, len);
+    }
+
+    @Override
+    protected int getRangeSize(long offset) {
+        // Do not cross a block boundary, so that each range is read from a single datanode
+        long blockEnd = (offset / blockSize + 1) * blockSize;
+        return (int) Math.min(RANGE_SIZE, blockEnd - offset);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (isClosed())
+            return;
+
+        super.close();
+        in.close();
+    }
+}
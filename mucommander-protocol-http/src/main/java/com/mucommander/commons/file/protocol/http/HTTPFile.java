@@ -22,6 +22,7 @@ import com.mucommander.commons.file.*;
 import com.mucommander.commons.file.protocol.FileProtocols;
 import com.mucommander.commons.file.protocol.ProtocolFile;
 import com.mucommander.commons.io.BlockRandomInputStream;
+import com.mucommander.commons.io.ParallelRangeInputStream;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
 import com.mucommander.commons.io.base64.Base64Encoder;
@@ -31,10 +32,17 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -94,6 +102,9 @@ public class HTTPFile extends ProtocolFile {
     /** True if file has been resolved on the remote HTTP server, either successfully or unsuccessfully */
     private boolean fileResolved;
 
+    /** True if the server advertised support for byte ranges when the file was resolved */
+    private boolean acceptRanges;
+
     private boolean parentValSet;
     protected AbstractFile parent;
 	
@@ -112,6 +123,9 @@ public class HTTPFile extends ProtocolFile {
     /** Matches HTML and XHTML attribute key/value pairs, where the value is surrounded by Double Quotes */
     private final static Pattern linkAttributePatternDQ = Pattern.compile("(src|href|SRC|HREF)=\\\".*?\\\"");
 
+    /** Fetches the ranges of the files being downloaded in segments and the blocks prefetched by random access streams */
+    private final static ExecutorService EXECUTOR = ParallelRangeInputStream.createExecutor(8, "HTTP reader");
+
 
     protected HTTPFile(FileURL fileURL) throws IOException {
         // TODO: optimize this
@@ -206,6 +220,9 @@ public class HTTPFile extends ProtocolFile {
             // Resolve size with content-length header (-1 if not available)
             attributes.setSize(conn.getContentLength());
 
+            // Test if the resource can be read in segments
+            acceptRanges = "bytes".equalsIgnoreCase(conn.getHeaderField("Accept-Ranges"));
+
             // Test if content is HTML
             String contentType = conn.getContentType();
             if(isParsableMimeType(contentType))
@@ -275,6 +292,54 @@ public class HTTPFile extends ProtocolFile {
             throw new IOException(conn.getResponseMessage());
     }
 
+    /**
+     * Reads up to <code>len</code> bytes of the resource starting at the given offset, using the 'Range' request
+     * header. The response is read entirely, which allows the underlying connection to be kept alive and reused by
+     * the next request to the same server.
+     *
+     * @param offset the offset in the resource of the first byte to read
+     * @param b the array to fill
+     * @param off the offset in the array at which to store the data
+     * @param len the number of bytes to read
+     * @return the number of bytes read, <code>-1</code> if the offset lies beyond the end of the resource
+     * @throws IOException if the request failed or if the server does not support ranges
+     */
+    private int requestRange(long offset, byte b[], int off, int len) throws IOException {
+        HttpURLConnection conn = getHttpURLConnection(url);
+        conn.setRequestProperty("Range", "bytes="+offset+"-"+(offset+len-1));
+
+        conn.connect();
+
+        // 416 (Range Not Satisfiable): the offset lies beyond the end of the resource
+        if(conn.getResponseCode()==416) {
+            InputStream err = conn.getErrorStream();
+            if(err!=null)
+                err.close();
+            return -1;
+        }
+
+        checkHTTPResponse(conn);
+
+        // The server returns the whole resource if it doesn't support ranges
+        if(conn.getResponseCode()!=206 && offset>0) {
+            conn.disconnect();
+            throw new IOException("Range requests are not supported by the server");
+        }
+
+        InputStream in = conn.getInputStream();
+        try {
+            int totalRead = 0;
+            int read;
+            while(totalRead<len && (read=in.read(b, off+totalRead, len-totalRead))!=-1)
+                totalRead += read;
+
+            return totalRead==0?-1:totalRead;
+        }
+        finally {
+            in.close();
+        }
+    }
+
     private void checkResolveFile() {
         if(resolve && !fileResolved) {
             try {
@@ -405,6 +470,12 @@ public class HTTPFile extends ProtocolFile {
 
     @Override
     public InputStream getInputStream() throws IOException {
+        // Download large files in segments, over several connections, when the server supports it
+        checkResolveFile();
+        long size = attributes.getSize();
+        if(acceptRanges && attributes.exists() && size>HTTPParallelInputStream.RANGE_SIZE)
+            return new HTTPParallelInputStream(size);
+
         HttpURLConnection conn = getHttpURLConnection(this.url);
 
         // Establish connection
@@ -719,20 +790,41 @@ public class HTTPFile extends ProtocolFile {
 
     /**
      * HTTPRandomAccessInputStream extends BlockRandomInputStream to provide random read access to an HTTPFile.
-     * It uses the 'Range' request header to read the HTTP resource partially, chunk by chunk and reposition the offset
-     * when {@link #seek(long)} is called.
+     * It uses the 'Range' request header to read the HTTP resource partially, block by block.
+     *
+     * <p>Blocks are aligned on multiples of the block size and the most recently used ones are kept in memory, so that
+     * going back and forth within a region of the resource, as archive readers do, doesn't request the same blocks
+     * again. When the resource is read sequentially, the next blocks are requested ahead of the reader, concurrently.
+     * </p>
      */
     private class HTTPRandomAccessInputStream extends BlockRandomInputStream {
 
-        /** Amount of data returned  */
-        private final static int CHUNK_SIZE = 1024;
+        /** Amount of data returned by each request */
+        private final static int BLOCK_SIZE = 64 * 1024;
+
+        /** Maximum number of blocks kept in memory */
+        private final static int MAX_CACHED_BLOCKS = 32;
+
+        /** Number of blocks requested ahead of the reader when it reads sequentially */
+        private final static int PREFETCH_BLOCKS = 4;
 
         /** Length of the HTTP resource */
         private long length;
 
+        /** Blocks that have been read or are being read, by index, in access order */
+        private final Map<Long, Future<byte[]>> blocks = new LinkedHashMap<Long, Future<byte[]>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Future<byte[]>> eldest) {
+                return size() > MAX_CACHED_BLOCKS;
+            }
+        };
+
+        /** Index of the block last read, -1 if none */
+        private long lastBlockIndex = -1;
+
 
         private HTTPRandomAccessInputStream() throws IOException {
-            super(CHUNK_SIZE);
+            super(BLOCK_SIZE);
 
             // HEAD the HTTP resource to get its length
             if(!fileResolved)
@@ -743,38 +835,88 @@ public class HTTPFile extends ProtocolFile {
                 throw new IOException();
         }
 
+        /**
+         * Returns the content of the given block, requesting it if it isn't in memory. The next blocks are prefetched
+         * if the blocks are read sequentially.
+         *
+         * @param index index of the block
+         * @return the content of the block, shorter than the block size if the end of the resource is reached
+         * @throws IOException if the block couldn't be read
+         */
+        private byte[] getBlock(long index) throws IOException {
+            Future<byte[]> block = blocks.get(index);
+            if(block==null) {
+                // Read the block in the current thread, rather than waiting for a thread of the executor
+                FutureTask<byte[]> task = new FutureTask<byte[]>(() -> fetchBlock(index));
+                blocks.put(index, task);
+                task.run();
+                block = task;
+            }
+
+            if(index==lastBlockIndex+1) {
+                for(long next=index+1; next<=index+PREFETCH_BLOCKS && next*BLOCK_SIZE<length; next++) {
+                    if(!blocks.containsKey(next)) {
+                        final long nextIndex = next;
+                        blocks.put(next, EXECUTOR.submit(() -> fetchBlock(nextIndex)));
+                    }
+                }
+            }
+            lastBlockIndex = index;
+
+            try {
+                return block.get();
+            }
+            catch(InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            catch(ExecutionException e) {
+                // Do not keep the failure, the block can be requested again
+                blocks.remove(index);
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException?(IOException)cause:new IOException(cause);
+            }
+        }
+
+        /**
+         * Requests the given block from the server.
+         */
+        private byte[] fetchBlock(long index) throws IOException {
+            long offset = index*BLOCK_SIZE;
+            byte data[] = new byte[(int)Math.max(0, Math.min(BLOCK_SIZE, length-offset))];
+            if(data.length==0)
+                return data;
+
+            int totalRead = 0;
+            int read;
+            while(totalRead<data.length && (read=requestRange(offset+totalRead, data, totalRead, data.length-totalRead))!=-1)
+                totalRead += read;
+
+            return totalRead==data.length?data:Arrays.copyOf(data, totalRead);
+        }
+
         ///////////////////////////////////////////
         // BlockRandomInputStream implementation //
         ///////////////////////////////////////////
 
         @Override
         protected int readBlock(long fileOffset, byte block[], int blockLen) throws IOException {
-            HttpURLConnection conn = getHttpURLConnection(url);
-
-            // Note: 'Range' may not be supported by the HTTP server, in that case an IOException will be thrown
-            conn.setRequestProperty("Range", "bytes="+fileOffset +"-"+ Math.min(fileOffset+blockLen, length-1));
-
-            conn.connect();
-            checkHTTPResponse(conn);
-
-            // Read up to blockLen bytes
-            InputStream in = conn.getInputStream();
-            try {
-                int totalRead = 0;
-                int read;
-                while(totalRead<blockLen) {
-                    read = in.read(block, totalRead, blockLen-totalRead);
-                    if(read==-1)
-                        break;
-
-                    totalRead += read;
-                }
-
-                return totalRead;
-            }
-            finally {
-                in.close();
+            // The requested block may span two cached blocks
+            int totalRead = 0;
+            while(totalRead<blockLen) {
+                long pos = fileOffset+totalRead;
+                long index = pos/BLOCK_SIZE;
+                byte data[] = getBlock(index);
+
+                int start = (int)(pos-index*BLOCK_SIZE);
+                if(start>=data.length)
+                    break;
+
+                int nbBytes = Math.min(data.length-start, blockLen-totalRead);
+                System.arraycopy(data, start, block, totalRead, nbBytes);
+                totalRead += nbBytes;
             }
+
+            return totalRead;
         }
 
         public long getLength() throws IOException {
@@ -783,7 +925,33 @@ public class HTTPFile extends ProtocolFile {
 
         @Override
         public void close() throws IOException {
-            // No-op, the underlying stream is already closed
+            // Discard the cached blocks, letting the pending requests complete so that their connection can be reused
+            for(Future<byte[]> block : blocks.values())
+                block.cancel(false);
+            blocks.clear();
+        }
+    }
+
+
+    /**
+     * HTTPParallelInputStream downloads an HTTPFile in segments, requesting several consecutive ranges of the
+     * resource concurrently over different connections.
+     */
+    private class HTTPParallelInputStream extends ParallelRangeInputStream {
+
+        /** Size of the ranges requested concurrently */
+        private final static int RANGE_SIZE = 1024 * 1024;
+
+        /** Maximum number of ranges requested ahead of the reader */
+        private final static int MAX_PARALLEL_READS = 4;
+
+        private HTTPParallelInputStream(long length) {
+            super(EXECUTOR, length, RANGE_SIZE, MAX_PARALLEL_READS);
+        }
+
+        @Override
+        protected int readRange(long offset, byte[] b, int off, int len) throws IOException {
+            return requestRange(offset, b, off, len);
         }
     }
 }
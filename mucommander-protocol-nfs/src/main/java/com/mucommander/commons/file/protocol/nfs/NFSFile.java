@@ -22,6 +22,8 @@ import com.mucommander.commons.file.*;
 import com.mucommander.commons.file.filter.FilenameFilter;
 import com.mucommander.commons.file.protocol.FileProtocols;
 import com.mucommander.commons.file.protocol.ProtocolFile;
+import com.mucommander.commons.io.FilteredOutputStream;
+import com.mucommander.commons.io.ParallelRangeInputStream;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
 import com.sun.xfile.XFile;
@@ -32,6 +34,10 @@ import com.sun.xfile.XRandomAccessFile;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
@@ -59,7 +65,8 @@ public class NFSFile extends ProtocolFile {
 
     private String absPath;
 
-    private FilePermissions permissions;
+    /** Cached file attributes */
+    private NFSFileAttributes fileAttributes;
 
     /** Caches the parent folder, initially null until getParent() gets called */
     private AbstractFile parent;
@@ -95,13 +102,51 @@ public class NFSFile extends ProtocolFile {
     /** Default transport protocol */
     public final static String DEFAULT_NFS_PROTOCOL = NFS_PROTOCOL_AUTO;
 
+    /** Period of time during which file attributes are cached, before being fetched again from the server. */
+    private static long attributeCachingPeriod = 60000;
+
+    /** Number of children whose attributes are fetched by the same task when listing a directory */
+    private final static int ATTRIBUTES_BATCH_SIZE = 64;
+
+    /** Fetches the ranges of files being read, for all files */
+    final static ExecutorService EXECUTOR = ParallelRangeInputStream.createExecutor(8, "NFS reader");
+
+    /** Fetches the attributes of listed files in the background, for all files */
+    private final static ExecutorService ATTRIBUTES_EXECUTOR = ParallelRangeInputStream.createExecutor(4, "NFS attributes");
+
+    /** Set to cancel the background fetches of the attributes of the last listed directory's children */
+    private final static AtomicReference<AtomicBoolean> LAST_ATTRIBUTES_FETCH_CANCELLED = new AtomicReference<AtomicBoolean>(new AtomicBoolean());
+
 
     /**
      * Creates a new instance of NFSFile.
      */
     protected NFSFile(FileURL fileURL) {
+        this(fileURL, null);
+    }
+
+    /**
+     * Creates a new instance of NFSFile, using the given attributes if they are not <code>null</code>.
+     */
+    protected NFSFile(FileURL fileURL, NFSFileAttributes fileAttributes) {
         super(fileURL);
 
+        this.fileAttributes = fileAttributes==null?new NFSFileAttributes(fileURL):fileAttributes;
+        this.file = this.fileAttributes.file;
+
+        // Retrieve the absolute path from the FileURL and NOT from the XFile instance which will return those weird flags
+        this.absPath = fileURL.toString();
+        // Remove trailing separator (if any)
+        this.absPath = absPath.endsWith(SEPARATOR)?absPath.substring(0,absPath.length()-1):absPath;
+    }
+
+    /**
+     * Creates the <code>XFile</code> corresponding to the given location.
+     *
+     * @param fileURL the location of the file
+     * @return the <code>XFile</code> corresponding to the given location
+     */
+    static XFile createXFile(FileURL fileURL) {
         // Create the NFS URL used by XFile.
 
         // The general syntax for NFS URLs is : nfs://<host>:<port><url-path>, as specified by RFC 2054
@@ -139,14 +184,23 @@ public class NFSFile extends ProtocolFile {
         String portString = port==-1||port==2049?"":""+port;
 
         // Create the XFile instance with the weird NFS url
-        this.file = new XFile("nfs://"+fileURL.getHost()+":"+portString+nfsVersion+nfsProtocol+"m"+"/"+fileURL.getPath());
-
-        // Retrieve the absolute path from the FileURL and NOT from the XFile instance which will return those weird flags
-        this.absPath = fileURL.toString();
-        // Remove trailing separator (if any)
-        this.absPath = absPath.endsWith(SEPARATOR)?absPath.substring(0,absPath.length()-1):absPath;
+        return new XFile("nfs://"+fileURL.getHost()+":"+portString+nfsVersion+nfsProtocol+"m"+"/"+fileURL.getPath());
+    }
 
-        this.permissions = new NFSFilePermissions(file);
+    /**
+     * Sets the time period during which attributes values (e.g. isDirectory, last modified, ...) are cached.
+     * The higher this value, the lower the number of network requests but also the longer it takes
+     * before those attributes can be refreshed. A value of <code>0</code> disables attributes caching.
+     *
+     * <p>This class ensures that the attributes changed remotely by one of its methods are always updated locally, even
+     * with attributes caching enabled. The attributes will however not be consistent if they have been changed by
+     * another {@link NFSFile} or by another process, and will remain inconsistent for up to <code>period</code>
+     * milliseconds.
+     *
+     * @param period time period during which attributes values are cached, in milliseconds. 0 disables attributes caching.
+     */
+    public static void setAttributeCachingPeriod(long period) {
+        attributeCachingPeriod = period;
     }
 
 
@@ -156,7 +210,7 @@ public class NFSFile extends ProtocolFile {
 
     @Override
     public long getDate() {
-        return file.lastModified();
+        return fileAttributes.getDate();
     }
 
     /**
@@ -173,7 +227,7 @@ public class NFSFile extends ProtocolFile {
 
     @Override
     public long getSize() {
-        return file.length();
+        return fileAttributes.getSize();
     }
 
     @Override
@@ -199,12 +253,12 @@ public class NFSFile extends ProtocolFile {
 
     @Override
     public boolean exists() {
-        return file.exists();
+        return fileAttributes.exists();
     }
 
     @Override
     public FilePermissions getPermissions() {
-        return permissions;
+        return fileAttributes.getPermissions();
     }
 
     @Override
@@ -254,7 +308,7 @@ public class NFSFile extends ProtocolFile {
 
     @Override
     public boolean isDirectory() {
-        return file.isDirectory();
+        return fileAttributes.isDirectory();
     }
 
     /**
@@ -280,21 +334,30 @@ public class NFSFile extends ProtocolFile {
     public void mkdir() throws IOException {
         if (!file.mkdir())
             throw new IOException();
+
+        // Update local attributes
+        fileAttributes.setExists(true);
+        fileAttributes.setDirectory(true);
     }
 
     @Override
     public InputStream getInputStream() throws IOException {
+        // Read large files with several requests in flight
+        long size = getSize();
+        if(size > NFSParallelInputStream.RANGE_SIZE)
+            return new NFSParallelInputStream(fileURL, size);
+
         return new XFileInputStream(file);
     }
 
     @Override
     public OutputStream getOutputStream() throws IOException {
-        return new XFileOutputStream(file, false);
+        return new AttributesInvalidatingOutputStream(new XFileOutputStream(file, false));
     }
 
     @Override
     public OutputStream getAppendOutputStream() throws IOException {
-        return new XFileOutputStream(file, true);
+        return new AttributesInvalidatingOutputStream(new XFileOutputStream(file, true));
     }
 
     @Override
@@ -313,7 +376,20 @@ public class NFSFile extends ProtocolFile {
     @Override
     @UnsupportedFileOperation
     public RandomAccessOutputStream getRandomAccessOutputStream() throws IOException {
-        return new NFSRandomAccessOutputStream(new XRandomAccessFile(file, "rw"));
+        RandomAccessOutputStream out = new NFSRandomAccessOutputStream(new XRandomAccessFile(file, "rw")) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                }
+                finally {
+                    fileAttributes.invalidate();
+                }
+            }
+        };
+        fileAttributes.invalidate();
+
+        return out;
     }
 
     @Override
@@ -322,6 +398,9 @@ public class NFSFile extends ProtocolFile {
 
         if(!ret)
             throw new IOException();
+
+        // Update local attributes
+        fileAttributes.setExists(false);
     }
 
     /**
@@ -336,6 +415,10 @@ public class NFSFile extends ProtocolFile {
         // Rename file
         if(!file.renameTo(((NFSFile)destFile).file))
             throw new IOException();
+
+        // Update local attributes
+        fileAttributes.setExists(false);
+        ((NFSFile)destFile).fileAttributes.invalidate();
     }
 
     /**
@@ -399,19 +482,36 @@ public class NFSFile extends ProtocolFile {
         if(filenameFilter!=null)
             names = filenameFilter.filter(names);
 
-        AbstractFile children[] = new AbstractFile[names.length];
-        FileURL childURL;
-        String baseURLPath = fileURL.getPath();
-        if(!baseURLPath.endsWith("/"))
-            baseURLPath += SEPARATOR;
-
+        // Derive the children's URL from this file's, carrying over the connection properties
+        FileURL childURLs[] = new FileURL[names.length];
+        NFSFileAttributes childAttributes[] = new NFSFileAttributes[names.length];
         for(int i=0; i<names.length; i++) {
-            // Clone this file's URL with the connection properties and set the child file's path
-            childURL = (FileURL)fileURL.clone();
-            childURL.setPath(baseURLPath+names[i]);
+            childURLs[i] = fileURL.getChild(names[i]);
+            childAttributes[i] = new NFSFileAttributes(childURLs[i]);
+        }
 
-            // Create the child NFSFile using this file as a parent
-            children[i] = FileFactory.getFile(childURL, this);
+        // The attributes of each child are retrieved with requests of their own: fetch them in the background, several
+        // children at once, so that they are ready or on their way when the children are displayed. The children are
+        // returned right away; an attribute that is accessed before it has been fetched in the background is fetched
+        // by the caller, or waited for if its fetch has started.
+        // The fetches of the previous listing that have not been done yet are cancelled, so that they do not pile up
+        // as the user browses through large directories: its children fetch their attributes when they need them.
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        LAST_ATTRIBUTES_FETCH_CANCELLED.getAndSet(cancelled).set(true);
+
+        for(int start=0; start<names.length; start+=ATTRIBUTES_BATCH_SIZE) {
+            final int from = start;
+            final int to = Math.min(start+ATTRIBUTES_BATCH_SIZE, names.length);
+            ATTRIBUTES_EXECUTOR.execute(() -> {
+                for(int i=from; i<to && !cancelled.get(); i++)
+                    childAttributes[i].fetchAttributesIfExpired();
+            });
+        }
+
+        AbstractFile children[] = new AbstractFile[names.length];
+        for(int i=0; i<names.length; i++) {
+            // Create the child NFSFile using this file as a parent, and the attributes being fetched
+            children[i] = FileFactory.getFile(childURLs[i], this, Collections.singletonMap("attributes", childAttributes[i]));
         }
 
         return children;
@@ -533,34 +633,91 @@ public class NFSFile extends ProtocolFile {
 
 
     /**
-     * A Permissions implementation for NFSFile.
+     * Invalidates the attributes of the file once the file has been written, as its size and date have changed.
      */
-    private static class NFSFilePermissions extends IndividualPermissionBits implements FilePermissions {
+    private class AttributesInvalidatingOutputStream extends FilteredOutputStream {
+
+        private AttributesInvalidatingOutputStream(OutputStream out) {
+            super(out);
+            fileAttributes.invalidate();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            }
+            finally {
+                fileAttributes.invalidate();
+            }
+        }
+    }
 
-        private XFile file;
 
-        private final static PermissionBits MASK = new GroupedPermissionBits(384);  // rw------- (300 octal)
+    /**
+     * NFSFileAttributes provides getters and setters for NFS file attributes. By extending
+     * <code>SyncedFileAttributes</code>, this class caches attributes for a certain amount of time
+     * ({@link NFSFile#attributeCachingPeriod}) after which a fresh value is retrieved from the server.
+     */
+    static class NFSFileAttributes extends SyncedFileAttributes {
 
-        public NFSFilePermissions(XFile file) {
-            this.file = file;
+        /** Permissions that can be retrieved: rw------- (300 octal) */
+        private final static PermissionBits MASK = new GroupedPermissionBits(384);
+
+        /** The file whose attributes are cached by this class */
+        private final XFile file;
+
+        private NFSFileAttributes(FileURL url) {
+            super(attributeCachingPeriod, false);   // no initial update
+
+            this.file = createXFile(url);
+            setPermissions(FilePermissions.EMPTY_FILE_PERMISSIONS);
+
+            // Fetch the attributes when they are first needed
+            invalidate();
         }
 
-        public boolean getBitValue(PermissionAccess access, PermissionType type) {
-            if(access!= PermissionAccess.USER)
-                return false;
-
-            switch(type) {
-            case READ:
-            	return file.canRead();
-            case WRITE:
-            	return file.canWrite();
-            default:
-            	return false;
+        /**
+         * Retrieves the attributes from the server and declares them as 'fresh', unless they have been retrieved in the
+         * meantime by another thread.
+         */
+        private synchronized void fetchAttributesIfExpired() {
+            if(System.currentTimeMillis() <= getExpirationDate())
+                return;
+
+            boolean exists = file.exists();
+            setExists(exists);
+            if(exists) {
+                setDirectory(file.isDirectory());
+                setDate(file.lastModified());
+                setSize(file.length());
+                setPermissions(new SimpleFilePermissions((file.canRead()?256:0) | (file.canWrite()?128:0), MASK));
+            }
+            else {
+                setDirectory(false);
+                setDate(0);
+                setSize(0);
+                setPermissions(FilePermissions.EMPTY_FILE_PERMISSIONS);
             }
+
+            updateExpirationDate();
+        }
+
+        /**
+         * Declares the attributes as expired, so that they are retrieved again when they are next accessed.
+         */
+        private void invalidate() {
+            setExpirationDate(0);
         }
 
-        public PermissionBits getMask() {
-            return MASK;
+
+        ////////////////////////////////////////////
+        // SyncedFileAttributes implementation //
+        ////////////////////////////////////////////
+
+        @Override
+        public void updateAttributes() {
+            fetchAttributesIfExpired();
         }
     }
 }
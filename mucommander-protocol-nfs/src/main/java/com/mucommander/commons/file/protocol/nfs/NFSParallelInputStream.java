@@ -0,0 +1,79 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.protocol.nfs;
+
+import java.io.IOException;
+
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.io.PooledHandleRangeInputStream;
+import com.sun.xfile.XRandomAccessFile;
+
+/**
+ * An <code>InputStream</code> that reads an NFS file sequentially, by fetching several consecutive ranges of the file
+ * concurrently.
+ *
+ * <p>Yanfs sends one READ request at a time per open file, and waits for its reply before sending the next one. This
+ * stream reads ranges through a few handles to the file instead, so that several READ requests are in flight and the
+ * connection doesn't sit idle for a round trip between two requests.</p>
+ *
+ * @see NFSFile#getInputStream()
+ */
+class NFSParallelInputStream extends PooledHandleRangeInputStream<XRandomAccessFile> {
+
+    /** Size of the ranges fetched concurrently */
+    final static int RANGE_SIZE = 512 * 1024;
+
+    /** Maximum number of ranges fetched ahead of the reader, and thus of handles opened on the file */
+    private final static int MAX_PARALLEL_READS = 4;
+
+    private final FileURL fileURL;
+
+    /**
+     * Creates a new stream reading the given file. A first handle is opened right away, so that an exception is thrown
+     * if the file cannot be read.
+     *
+     * @param fileURL the location of the file to read
+     * @param length the length of the file
+     * @throws IOException if the file cannot be opened
+     */
+    NFSParallelInputStream(FileURL fileURL, long length) throws IOException {
+        super(NFSFile.EXECUTOR, length, RANGE_SIZE, MAX_PARALLEL_READS);
+        this.fileURL = fileURL;
+
+        openFirstHandle();
+    }
+
+    /**
+     * Opens a new handle to the file, on a <code>XFile</code> of its own so that handles don't share any state.
+     */
+    @Override
+    protected XRandomAccessFile openHandle() throws IOException {
+        return new XRandomAccessFile(NFSFile.createXFile(fileURL), "r");
+    }
+
+    @Override
+    protected int readRange(XRandomAccessFile handle, long offset, byte[] b, int off, int len) throws IOException {
+        handle.seek(offset);
+        return handle.read(b, off, len);
+    }
+
+    @Override
+    protected void closeHandle(XRandomAccessFile handle) throws IOException {
+        handle.close();
+    }
+}
@@ -34,6 +34,8 @@ import com.mucommander.commons.file.protocol.ProtocolProvider;
 public class NFSProtocolProvider implements ProtocolProvider {
 
     public AbstractFile getFile(FileURL url, Map<String, Object> instantiationParams) throws IOException {
-        return new NFSFile(url);
+        return instantiationParams.isEmpty()
+            ?new NFSFile(url)
+            :new NFSFile(url, (NFSFile.NFSFileAttributes)instantiationParams.get("attributes"));
     }
 }
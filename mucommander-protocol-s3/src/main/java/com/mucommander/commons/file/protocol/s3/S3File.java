@@ -115,8 +115,7 @@ public abstract class S3File extends ProtocolFile {
                 if(objectKey.equals(prefix))
                     continue;
 
-                childURL = (FileURL)fileURL.clone();
-                childURL.setPath(bucketName + "/" + objectKey);
+                childURL = fileURL.getChild(objectKey.substring(prefix.length()));
 
                 Map<String, Object> parameters = new HashMap<>();
                 parameters.put("service", service);
@@ -127,8 +126,7 @@ public abstract class S3File extends ProtocolFile {
 
             org.jets3t.service.model.S3Object directoryObject;
             for(String commonPrefix : commonPrefixes) {
-                childURL = (FileURL)fileURL.clone();
-                childURL.setPath(bucketName + "/" + commonPrefix);
+                childURL = fileURL.getChild(commonPrefix.substring(prefix.length()));
 
                 directoryObject = new org.jets3t.service.model.S3Object(commonPrefix);
                 // Common prefixes are not objects per se, and therefore do not have a date, content-length nor owner.
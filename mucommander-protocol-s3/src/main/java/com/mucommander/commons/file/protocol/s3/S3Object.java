@@ -25,7 +25,10 @@ import java.io.OutputStream;
 import org.jets3t.service.S3Service;
 import org.jets3t.service.S3ServiceException;
 import org.jets3t.service.ServiceException;
+import org.jets3t.service.StorageObjectsChunk;
+import org.jets3t.service.model.MultipleDeleteResult;
 import org.jets3t.service.model.StorageObject;
+import org.jets3t.service.model.container.ObjectKeyAndVersion;
 import org.jets3t.service.model.StorageOwner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,6 +64,9 @@ public class S3Object extends S3File {
     /** Maximum size of an S3 object (5GB) */
     private final static long MAX_OBJECT_SIZE = 5368709120l;
 
+    /** Maximum number of objects deleted by a single multi-object delete request */
+    private final static int MAX_DELETED_OBJECTS = 1000;
+
     // TODO: add support for ACL ? (would cost an extra request per object)
     /** Default permissions for S3 objects */
     private final static FilePermissions DEFAULT_PERMISSIONS = new SimpleFilePermissions(384);   // rw-------
@@ -195,6 +201,52 @@ public class S3Object extends S3File {
         }
     }
 
+    /**
+     * Overridden to delete all the objects located under a directory with multi-object delete requests, each of them
+     * deleting up to {@link #MAX_DELETED_OBJECTS} objects, rather than listing and deleting each directory separately.
+     */
+    @Override
+    public void deleteRecursively() throws IOException {
+        if(!isDirectory()) {
+            delete();
+            return;
+        }
+
+        try {
+            StorageObjectsChunk chunk;
+            String priorLastKey = null;
+            do {
+                // No delimiter: list the objects of all subdirectories, including the directory objects themselves
+                chunk = service.listObjectsChunked(bucketName, getObjectKey(true), null, MAX_DELETED_OBJECTS, priorLastKey, false);
+
+                StorageObject objects[] = chunk.getObjects();
+                if(objects.length>0) {
+                    ObjectKeyAndVersion keys[] = new ObjectKeyAndVersion[objects.length];
+                    for(int i=0; i<objects.length; i++)
+                        keys[i] = new ObjectKeyAndVersion(objects[i].getKey());
+
+                    // Quiet mode: only the objects that could not be deleted are reported
+                    MultipleDeleteResult result = service.deleteMultipleObjects(bucketName, keys, true);
+                    if(result.hasErrors()) {
+                        MultipleDeleteResult.ErrorResult error = result.getErrorResults().get(0);
+                        throw new IOException("Failed to delete "+error.getKey()+": "+error.getMessage());
+                    }
+                }
+
+                priorLastKey = chunk.getPriorLastKey();
+            }
+            while(!chunk.isListingComplete());
+
+            // Update file attributes locally
+            atts.setExists(false);
+            atts.setDirectory(false);
+            atts.setSize(0);
+        }
+        catch(ServiceException e) {
+            throw getIOException(e);
+        }
+    }
+
     @Override
     public void renameTo(AbstractFile destFile) throws IOException {
         copyTo(destFile);
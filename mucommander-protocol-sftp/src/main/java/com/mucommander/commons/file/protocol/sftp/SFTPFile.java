@@ -433,10 +433,6 @@ public class SFTPFile extends ProtocolFile {
         FileURL childURL;
         String filename;
         int fileCount = 0;
-        String parentPath = fileURL.getPath();
-        if(!parentPath .endsWith(SEPARATOR))
-            parentPath  += SEPARATOR;
-
         // Fill AbstractFile array and discard '.' and '..' files
         for (LsEntry file : files) {
             filename = file.getFilename();
@@ -444,8 +440,7 @@ public class SFTPFile extends ProtocolFile {
             if (filename.equals(".") || filename.equals(".."))
                 continue;
 
-            childURL = (FileURL) fileURL.clone();
-            childURL.setPath(parentPath + filename);
+            childURL = fileURL.getChild(filename);
 
             children[fileCount++] = FileFactory.getFile(childURL, this, Collections.singletonMap("attributes", new SFTPFileAttributes(childURL, file.getAttrs())));
         }
@@ -136,7 +136,7 @@ import java.util.Collections;
      * @return an SmbFile corresponding to the given location
      * @throws MalformedURLException if an error occurred while creating the SmbFile instance
      */
-    private static SmbFile createSmbFile(FileURL url) throws MalformedURLException {
+    static SmbFile createSmbFile(FileURL url) throws MalformedURLException {
         Credentials credentials = url.getCredentials();
         if(credentials==null)
             return new SmbFile(url.toString(false));
@@ -344,6 +344,11 @@ import java.util.Collections;
 
     @Override
     public InputStream getInputStream() throws IOException {
+        // Read large files with several requests in flight
+        long size = getSize();
+        if(size > SMBParallelInputStream.RANGE_SIZE)
+            return new SMBParallelInputStream(fileURL, size);
+
         return new SmbFileInputStream(file);
     }
 
@@ -503,7 +508,8 @@ import java.util.Collections;
                 childURL.setHost(smbFile.getServer());
                 childURL.setPath(smbFile.getURL().getPath());
 
-                // Use SMBFile private constructor to recycle the SmbFile instance
+                // Use SMBFile private constructor to recycle the SmbFile instance, whose attributes have been filled
+                // from the listing: this spares a request to the server per child
                 children[currentIndex++] = FileFactory.getFile(childURL, this, Collections.singletonMap("parentSmbFile", smbFile));
             }
 
@@ -0,0 +1,87 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.protocol.smb;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.io.PooledHandleRangeInputStream;
+
+import jcifs.smb.SmbRandomAccessFile;
+
+/**
+ * An <code>InputStream</code> that reads an SMB file sequentially, by fetching several consecutive ranges of the file
+ * concurrently.
+ *
+ * <p>A single SMB1 read transfers at most 64 KB, so reading a file one request at a time leaves the connection idle
+ * for a round trip between two requests. This stream keeps several read requests in flight instead: jCIFS multiplexes
+ * the requests of all the files opened on a server over the same session, so ranges are read by a few handles to the
+ * file, each of them seeking to and reading its range independently.</p>
+ *
+ * @see SMBFile#getInputStream()
+ */
+class SMBParallelInputStream extends PooledHandleRangeInputStream<SmbRandomAccessFile> {
+
+    /** Size of the ranges fetched concurrently */
+    final static int RANGE_SIZE = 1024 * 1024;
+
+    /** Maximum number of ranges fetched ahead of the reader, and thus of handles opened on the file */
+    private final static int MAX_PARALLEL_READS = 4;
+
+    /** Fetches ranges for all streams */
+    private final static ExecutorService EXECUTOR = createExecutor(8, "SMB reader");
+
+    private final FileURL fileURL;
+
+    /**
+     * Creates a new stream reading the given file. A first handle is opened right away, so that an exception is thrown
+     * if the file cannot be read.
+     *
+     * @param fileURL the location of the file to read
+     * @param length the length of the file
+     * @throws IOException if the file cannot be opened
+     */
+    SMBParallelInputStream(FileURL fileURL, long length) throws IOException {
+        super(EXECUTOR, length, RANGE_SIZE, MAX_PARALLEL_READS);
+        this.fileURL = fileURL;
+
+        openFirstHandle();
+    }
+
+    /**
+     * Opens a new handle to the file. A new <code>SmbFile</code> is created as a <code>SmbFile</code> can hold only
+     * one open handle at a time.
+     */
+    @Override
+    protected SmbRandomAccessFile openHandle() throws IOException {
+        return new SmbRandomAccessFile(SMBFile.createSmbFile(fileURL), "r");
+    }
+
+    @Override
+    protected int readRange(SmbRandomAccessFile handle, long offset, byte[] b, int off, int len) throws IOException {
+        handle.seek(offset);
+        return handle.read(b, off, len);
+    }
+
+    @Override
+    protected void closeHandle(SmbRandomAccessFile handle) throws IOException {
+        handle.close();
+    }
+}
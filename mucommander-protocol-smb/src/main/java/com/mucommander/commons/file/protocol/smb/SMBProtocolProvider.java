@@ -56,6 +56,13 @@ public class SMBProtocolProvider implements ProtocolProvider {
         // when JCIFS first tries to resolve a path would timeout causing a long startup delay (e.g. running JCIFS only
         // on the local machine without a network like on a laptop)."
         System.setProperty("jcifs.smb.client.dfs.disabled", "true");
+
+        // Raise the size of the buffers to the largest SMB1 message, so that each read and write request transfers as
+        // much data as the server allows. jCIFS's defaults are 60416 bytes for reads and only 16644 bytes for writes.
+        if(System.getProperty("jcifs.smb.client.rcv_buf_size")==null)
+            System.setProperty("jcifs.smb.client.rcv_buf_size", "65535");
+        if(System.getProperty("jcifs.smb.client.snd_buf_size")==null)
+            System.setProperty("jcifs.smb.client.snd_buf_size", "65535");
     }
 
 
@@ -111,6 +118,6 @@ public class SMBProtocolProvider implements ProtocolProvider {
     public AbstractFile getFile(FileURL url, Map<String, Object> instantiationParams) throws IOException {
         return instantiationParams.isEmpty()
             ?new SMBFile(url)
-            :new SMBFile(url, (SmbFile)instantiationParams.get("parent"));
+            :new SMBFile(url, (SmbFile)instantiationParams.get("parentSmbFile"));
     }
 }
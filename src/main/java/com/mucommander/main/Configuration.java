@@ -52,6 +52,13 @@ public class Configuration {
     // Allows users to tweak how credentials are loaded.
     @Parameter(names={"-u", "--credentials"}, description="Load credentials from FILE")
     public String credentials;
+    // Allows users to run jobs without user interface.
+    @Parameter(names={"-B", "--batch"}, description="Run the jobs described in FILE without user interface, '-' to read them from the standard input")
+    public String batch;
+    @Parameter(names={"--on-collision"}, description="In batch mode, what to do when a file already exists: overwrite, overwrite-if-older, resume, skip or cancel")
+    public String onCollision = "skip";
+    @Parameter(names={"--on-error"}, description="In batch mode, what to do when a file cannot be processed: skip or cancel")
+    public String onError = "cancel";
     @Parameter(description="[folders]")
     public List<String> folders = new ArrayList<>();
 
@@ -70,6 +77,9 @@ public class Configuration {
         map.put("mucommander.shellHistory", shellHistory);
         map.put("mucommander.toolbar", toolbar);
         map.put("mucommander.credentials", credentials);
+        map.put("mucommander.batch", batch);
+        map.put("mucommander.onCollision", onCollision);
+        map.put("mucommander.onError", onError);
         map.put("mucommander.folders", folders.stream().collect(Collectors.joining(",")));
         return map;
     }
@@ -225,8 +225,8 @@ public class muCommander
 //            return;
         }
 
-        // Ensure that a graphics environment is available
-        if (GraphicsEnvironment.isHeadless()) {
+        // Ensure that a graphics environment is available, unless jobs are run without user interface
+        if (configuration.batch == null && GraphicsEnvironment.isHeadless()) {
             System.err.println("Error: no graphical environment detected.");
             return;
         }